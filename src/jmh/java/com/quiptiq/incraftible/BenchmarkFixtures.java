@@ -0,0 +1,412 @@
+package com.quiptiq.incraftible;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bukkit.Server;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.inventory.InventoryType.SlotType;
+import org.bukkit.inventory.CraftingInventory;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.plugin.InvalidDescriptionException;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * Lightweight stand-ins for the Bukkit objects used on the craft path. Mocking
+ * frameworks add too much overhead of their own to be used while measuring,
+ * so interfaces are implemented with dynamic proxies that only answer the
+ * calls Incraftible makes.
+ *
+ * @author Taufiq Hoven
+ */
+final class BenchmarkFixtures {
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    /**
+     * Prefix for permissions from other plugins, which fill a player's
+     * permission attachments without affecting crafting.
+     */
+    private static final String FILLER_PERMISSION_PREFIX = "benchmark.filler.node";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Creates a config loaded from a config file using the specified strategy.
+     *
+     * @param strategy
+     *            Permissions strategy to configure.
+     * @return Loaded config.
+     * @throws IOException
+     *             if the config files couldn't be written.
+     * @throws InvalidDescriptionException
+     *             if the plugin description couldn't be read.
+     */
+    static IncraftibleConfig createConfig(PermissionsStrategy strategy) throws IOException,
+            InvalidDescriptionException {
+        return createConfig(strategy, null);
+    }
+
+    /**
+     * Creates a config loaded from a config file using the specified strategy,
+     * for a plugin running on the specified server.
+     *
+     * @param strategy
+     *            Permissions strategy to configure.
+     * @param server
+     *            Server stand-in, or null for no server.
+     * @return Loaded config.
+     * @throws IOException
+     *             if the config files couldn't be written.
+     * @throws InvalidDescriptionException
+     *             if the plugin description couldn't be read.
+     */
+    static IncraftibleConfig createConfig(PermissionsStrategy strategy, Server server) throws IOException,
+            InvalidDescriptionException {
+        File dataFolder = createDataFolder();
+        FileWriter writer = new FileWriter(new File(dataFolder, "config.yml"));
+        try {
+            writer.write("messages:" + NEWLINE);
+            writer.write("    disallowed: \"You are not allowed to craft %s\"" + NEWLINE);
+            writer.write("craft.default:  " + strategy.getConfigString() + NEWLINE);
+            writer.write("audit:" + NEWLINE);
+            writer.write("    enabled: false" + NEWLINE);
+        } finally {
+            writer.close();
+        }
+        return new IncraftibleConfig(new BenchmarkIncraftible(dataFolder, server), null);
+    }
+
+    /**
+     * Creates the specified number of permissions that do not affect crafting,
+     * standing in for the permissions granted by other plugins.
+     *
+     * @param count
+     *            Number of permissions.
+     * @return Permission values by name.
+     */
+    static Map<String, Boolean> fillerPermissions(int count) {
+        Map<String, Boolean> permissions = new HashMap<String, Boolean>();
+        for (int i = 0; i < count; i++) {
+            permissions.put(FILLER_PERMISSION_PREFIX + i, (i % 2) == 0);
+        }
+        return permissions;
+    }
+
+    /**
+     * Creates a player with the specified permissions set. As with Bukkit's
+     * own permissible, permission names are lower-cased and looked up in a
+     * hash map.
+     *
+     * @param name
+     *            Player name.
+     * @param permissions
+     *            Permission values by name.
+     * @return Player stand-in.
+     */
+    static Player createPlayer(final String name, Map<String, Boolean> permissions) {
+        final UUID playerId = UUID.randomUUID();
+        final Map<String, Boolean> playerPermissions = new HashMap<String, Boolean>();
+        for (Map.Entry<String, Boolean> permission : permissions.entrySet()) {
+            playerPermissions.put(permission.getKey().toLowerCase(), permission.getValue());
+        }
+        return proxy(Player.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("isPermissionSet".equals(methodName) && args[0] instanceof String) {
+                    return playerPermissions.containsKey(((String) args[0]).toLowerCase());
+                } else if ("hasPermission".equals(methodName) && args[0] instanceof String) {
+                    Boolean value = playerPermissions.get(((String) args[0]).toLowerCase());
+                    return value != null && value.booleanValue();
+                } else if ("getEffectivePermissions".equals(methodName)) {
+                    Set<PermissionAttachmentInfo> infos = new HashSet<PermissionAttachmentInfo>();
+                    for (Map.Entry<String, Boolean> permission : playerPermissions.entrySet()) {
+                        infos.add(new PermissionAttachmentInfo(
+                                (Player) proxy, permission.getKey(), null, permission.getValue()));
+                    }
+                    return infos;
+                } else if ("getUniqueId".equals(methodName)) {
+                    return playerId;
+                } else if ("getName".equals(methodName)) {
+                    return name;
+                }
+                return defaultResult(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Creates a crafting inventory of the specified type holding the specified
+     * recipe.
+     *
+     * @param type
+     *            Inventory type, either CRAFTING or WORKBENCH.
+     * @param recipe
+     *            Recipe in the crafting matrix.
+     * @return Crafting inventory stand-in.
+     */
+    static CraftingInventory createCraftingInventory(final InventoryType type, final Recipe recipe) {
+        return proxy(CraftingInventory.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("getType".equals(methodName)) {
+                    return type;
+                } else if ("getRecipe".equals(methodName)) {
+                    return recipe;
+                } else if ("getResult".equals(methodName)) {
+                    return recipe.getResult();
+                } else if ("getItem".equals(methodName) && Integer.valueOf(0).equals(args[0])) {
+                    // Slot 0 of a crafting inventory is the result
+                    return recipe.getResult();
+                }
+                return defaultResult(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Creates a click on the result slot of the specified inventory.
+     *
+     * @param player
+     *            Player clicking.
+     * @param inventory
+     *            Crafting inventory clicked.
+     * @return Click event.
+     */
+    static InventoryClickEvent createResultClick(final Player player, final CraftingInventory inventory) {
+        InventoryView view = new InventoryView() {
+            @Override
+            public Inventory getTopInventory() {
+                return inventory;
+            }
+
+            @Override
+            public Inventory getBottomInventory() {
+                return null;
+            }
+
+            @Override
+            public HumanEntity getPlayer() {
+                return player;
+            }
+
+            @Override
+            public InventoryType getType() {
+                return inventory.getType();
+            }
+        };
+        return new InventoryClickEvent(view, SlotType.RESULT, 0, false, false);
+    }
+
+    /**
+     * Reads the permissions declared in the plugin's own plugin.yml, which
+     * must be on the class path.
+     *
+     * @return Declared permissions.
+     * @throws IOException
+     *             if plugin.yml couldn't be read.
+     * @throws InvalidDescriptionException
+     *             if plugin.yml couldn't be parsed.
+     */
+    static List<Permission> loadPluginPermissions() throws IOException, InvalidDescriptionException {
+        InputStream stream = BenchmarkFixtures.class.getClassLoader().getResourceAsStream("plugin.yml");
+        if (stream == null) {
+            throw new IOException("plugin.yml is not on the class path");
+        }
+        try {
+            return new PluginDescriptionFile(stream).getPermissions();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Creates a plugin manager that only registers permissions, keeping them
+     * in registration order.
+     *
+     * @return Plugin manager stand-in.
+     */
+    static PluginManager createPluginManager() {
+        final Map<String, Permission> permissions = new LinkedHashMap<String, Permission>();
+        return proxy(PluginManager.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("addPermission".equals(methodName)) {
+                    Permission permission = (Permission) args[0];
+                    String name = permission.getName().toLowerCase();
+                    if (permissions.containsKey(name)) {
+                        throw new IllegalArgumentException("The permission " + name + " is already defined!");
+                    }
+                    permissions.put(name, permission);
+                    return null;
+                } else if ("getPermission".equals(methodName)) {
+                    return permissions.get(((String) args[0]).toLowerCase());
+                } else if ("getPermissions".equals(methodName)) {
+                    return new HashSet<Permission>(permissions.values());
+                } else if ("removePermission".equals(methodName)) {
+                    String name = args[0] instanceof Permission ? ((Permission) args[0]).getName() : (String) args[0];
+                    permissions.remove(name.toLowerCase());
+                    return null;
+                }
+                return defaultResult(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Creates a server with the specified plugin manager and online players.
+     *
+     * @param pluginManager
+     *            Plugin manager holding the registered permissions.
+     * @param onlinePlayers
+     *            Players online, which may be added to after the server is
+     *            created.
+     * @return Server stand-in.
+     */
+    static Server createServer(final PluginManager pluginManager, final List<Player> onlinePlayers) {
+        return proxy(Server.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String methodName = method.getName();
+                if ("getPluginManager".equals(methodName)) {
+                    return pluginManager;
+                } else if ("getOnlinePlayers".equals(methodName)) {
+                    return onlinePlayers.toArray(new Player[onlinePlayers.size()]);
+                } else if ("getName".equals(methodName)) {
+                    return "Benchmark";
+                } else if ("getVersion".equals(methodName)) {
+                    return "benchmark";
+                }
+                return defaultResult(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Expands permissions granted to a player through the children of the
+     * registered permissions, as Bukkit's permissible does: a child is set to
+     * its declared value if its parent is granted, or to the opposite if its
+     * parent is denied.
+     *
+     * @param granted
+     *            Permission values set directly on the player.
+     * @param pluginManager
+     *            Plugin manager holding the registered permissions.
+     * @return Effective permission values by lower-cased name.
+     */
+    static Map<String, Boolean> effectivePermissions(Map<String, Boolean> granted, PluginManager pluginManager) {
+        Map<String, Boolean> effective = new HashMap<String, Boolean>();
+        for (Map.Entry<String, Boolean> permission : granted.entrySet()) {
+            addEffectivePermission(effective, permission.getKey(), permission.getValue(), pluginManager);
+        }
+        return effective;
+    }
+
+    private static void addEffectivePermission(Map<String, Boolean> effective, String name, boolean value,
+            PluginManager pluginManager) {
+        effective.put(name.toLowerCase(), value);
+        Permission permission = pluginManager.getPermission(name);
+        if (permission == null) {
+            return;
+        }
+        for (Map.Entry<String, Boolean> child : permission.getChildren().entrySet()) {
+            addEffectivePermission(effective, child.getKey(), child.getValue() ^ !value, pluginManager);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(BenchmarkFixtures.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    /**
+     * Result for calls a stand-in does not model: identity semantics for
+     * Object methods, otherwise the default value of the return type.
+     */
+    private static Object defaultResult(Object proxy, Method method, Object[] args) {
+        String methodName = method.getName();
+        if ("equals".equals(methodName)) {
+            return proxy == args[0];
+        } else if ("hashCode".equals(methodName)) {
+            return System.identityHashCode(proxy);
+        } else if ("toString".equals(methodName)) {
+            return proxy.getClass().getName();
+        }
+        Class<?> returnType = method.getReturnType();
+        if (!returnType.isPrimitive() || Void.TYPE.equals(returnType)) {
+            return null;
+        } else if (Boolean.TYPE.equals(returnType)) {
+            return false;
+        } else if (Long.TYPE.equals(returnType)) {
+            return 0L;
+        } else if (Double.TYPE.equals(returnType)) {
+            return 0d;
+        } else if (Float.TYPE.equals(returnType)) {
+            return 0f;
+        } else if (Short.TYPE.equals(returnType)) {
+            return (short) 0;
+        } else if (Byte.TYPE.equals(returnType)) {
+            return (byte) 0;
+        } else if (Character.TYPE.equals(returnType)) {
+            return (char) 0;
+        }
+        return 0;
+    }
+
+    private static File createDataFolder() throws IOException {
+        File dataFolder = File.createTempFile("incraftible-benchmark", "");
+        if (!dataFolder.delete() || !dataFolder.mkdirs()) {
+            throw new IOException("Couldn't create benchmark data folder " + dataFolder);
+        }
+        dataFolder.deleteOnExit();
+        return dataFolder;
+    }
+
+    /**
+     * Plugin initialised against a temporary data folder, without a server.
+     */
+    private static class BenchmarkIncraftible extends Incraftible {
+        BenchmarkIncraftible(File dataFolder, Server server) throws IOException, InvalidDescriptionException {
+            File pluginFile = new File(dataFolder, "plugin.yml");
+            FileWriter writer = new FileWriter(pluginFile);
+            try {
+                writer.write("name: Incraftible" + NEWLINE);
+                writer.write("version: benchmark" + NEWLINE);
+                writer.write("main: com.quiptiq.incraftible.Incraftible" + NEWLINE);
+            } finally {
+                writer.close();
+            }
+            FileReader reader = new FileReader(pluginFile);
+            try {
+                initialize(null, server, new PluginDescriptionFile(reader), dataFolder,
+                        new File(dataFolder, "Incraftible.jar"), BenchmarkFixtures.class.getClassLoader());
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
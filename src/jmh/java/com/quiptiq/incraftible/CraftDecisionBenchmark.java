@@ -0,0 +1,108 @@
+package com.quiptiq.incraftible;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link IncraftibleConfig#isItemAllowed} for each way a material is
+ * resolved to a permission.
+ *
+ * @author Taufiq Hoven
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CraftDecisionBenchmark {
+    /**
+     * Permissions strategy in effect.
+     */
+    @Param({"STANDARD", "ALL", "NONE"})
+    public String strategy;
+
+    /**
+     * Number of unrelated permissions set on the player.
+     */
+    @Param({"0", "16", "256"})
+    public int attachments;
+
+    /**
+     * Whether decisions are answered from the decision cache. When false, the
+     * player's cached decisions are discarded before each check, as after a
+     * permission change.
+     */
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private IncraftibleConfig config;
+
+    private Player player;
+
+    private final ItemStack baseStack = new ItemStack(Material.CLAY, 1);
+
+    private final ItemStack woolStack = new ItemStack(Material.WOOL, 1, (short) 5);
+
+    private final ItemStack dyeStack = new ItemStack(Material.INK_SACK, 1, (short) 10);
+
+    @Setup
+    public void setUp() throws Exception {
+        config = BenchmarkFixtures.createConfig(PermissionsStrategy.valueOf(strategy));
+        Map<String, Boolean> permissions = BenchmarkFixtures.fillerPermissions(attachments);
+        permissions.put(perms.getBasePermissionName(Material.CLAY), true);
+        permissions.put(perms.getDataPermissionName(Material.WOOL, PermissionsReference.getDataValue(woolStack)), true);
+        permissions.put(perms.getDataPermissionName(Material.INK_SACK, PermissionsReference.getDataValue(dyeStack)), false);
+        player = BenchmarkFixtures.createPlayer("benchmarkPlayer", permissions);
+    }
+
+    /**
+     * Material with a name-based permission.
+     */
+    @Benchmark
+    public boolean basePermission() {
+        discardIfUncached();
+        return config.isItemAllowed(Material.CLAY, baseStack, player);
+    }
+
+    /**
+     * Wool, resolved through its colour data value.
+     */
+    @Benchmark
+    public boolean woolDataPermission() {
+        discardIfUncached();
+        return config.isItemAllowed(Material.WOOL, woolStack, player);
+    }
+
+    /**
+     * Dye, resolved through its colour data value.
+     */
+    @Benchmark
+    public boolean dyeDataPermission() {
+        discardIfUncached();
+        return config.isItemAllowed(Material.INK_SACK, dyeStack, player);
+    }
+
+    private void discardIfUncached() {
+        if (!cached) {
+            config.getDecisionCache().invalidate(player);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.quiptiq.incraftible;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.CraftingInventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.inventory.ShapelessRecipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the craft listener on the allow and deny paths, both from the
+ * inventory click and directly through {@link CraftEventListener#handleCraft}.
+ *
+ * @author Taufiq Hoven
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CraftEventListenerBenchmark {
+    /**
+     * Permissions strategy in effect.
+     */
+    @Param({"STANDARD", "ALL", "NONE"})
+    public String strategy;
+
+    /**
+     * Number of unrelated permissions set on the player.
+     */
+    @Param({"0", "16", "256"})
+    public int attachments;
+
+    /**
+     * Whether the player is allowed to craft the result.
+     */
+    @Param({"true", "false"})
+    public boolean allowed;
+
+    private CraftEventListener listener;
+
+    private InventoryClickEvent event;
+
+    private Recipe recipe;
+
+    @Setup
+    public void setUp() throws Exception {
+        IncraftibleConfig config = BenchmarkFixtures.createConfig(PermissionsStrategy.valueOf(strategy));
+        listener = new CraftEventListener(config);
+        Map<String, Boolean> permissions = BenchmarkFixtures.fillerPermissions(attachments);
+        permissions.put(PermissionsReference.getInstance().getBasePermissionName(Material.TNT), allowed);
+        Player player = BenchmarkFixtures.createPlayer("benchmarkPlayer", permissions);
+        recipe = new ShapelessRecipe(new ItemStack(Material.TNT, 1)).addIngredient(Material.SAND);
+        CraftingInventory inventory = BenchmarkFixtures.createCraftingInventory(InventoryType.WORKBENCH, recipe);
+        event = BenchmarkFixtures.createResultClick(player, inventory);
+    }
+
+    /**
+     * Full listener path from a click on the result slot.
+     */
+    @Benchmark
+    public boolean onInventoryClick() {
+        event.setCancelled(false);
+        listener.onInventoryClick(event);
+        return event.isCancelled();
+    }
+
+    /**
+     * Decision and side effects only, once the click has been matched to a
+     * recipe.
+     */
+    @Benchmark
+    public boolean handleCraft() {
+        event.setCancelled(false);
+        return listener.handleCraft(event, recipe, Material.TNT);
+    }
+}
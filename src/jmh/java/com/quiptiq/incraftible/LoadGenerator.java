@@ -0,0 +1,317 @@
+package com.quiptiq.incraftible;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.CraftingInventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.ShapelessRecipe;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
+import org.bukkit.plugin.PluginManager;
+
+import com.quiptiq.incraftible.stats.CraftStats;
+import com.quiptiq.incraftible.stats.LatencyHistogram;
+
+/**
+ * Headless load generator for the craft listener. Registers the permission
+ * tree from the plugin's own plugin.yml with a stand-in server, logs in a
+ * population of simulated players with randomly distributed permissions, and
+ * fires clicks on crafting results at the listener from a single thread, as
+ * the main server thread would. Reports throughput, the listener's latency
+ * percentiles and the allocation rate.
+ *
+ * Options are given as key=value arguments, which may also be separated by
+ * commas:
+ * <ul>
+ * <li>players: number of simulated players. Defaults to 2000.</li>
+ * <li>events: number of clicks measured. Defaults to 2000000.</li>
+ * <li>warmup: number of clicks before measuring. Defaults to 200000.</li>
+ * <li>strategy: permissions strategy, as configured for craft.default.
+ * Defaults to standard.</li>
+ * <li>groups: chance of a player being granted each group permission, such as
+ * incraftible.craft.tools.*. Defaults to 0.2.</li>
+ * <li>denies: chance of a player being denied each material permission.
+ * Defaults to 0.05.</li>
+ * <li>filler: number of permissions from other plugins set on each player.
+ * Defaults to 16.</li>
+ * <li>ticks: clicks per server tick. Defaults to 100.</li>
+ * <li>seed: random seed. Defaults to 1.</li>
+ * </ul>
+ *
+ * Run with: mvn -Pload test-compile exec:exec [-Dload.options=players=5000,events=10000000]
+ *
+ * @author Taufiq Hoven
+ */
+public final class LoadGenerator {
+    private static final String OPTION_SEPARATOR = ",";
+
+    private static final String VALUE_SEPARATOR = "=";
+
+    /**
+     * Ticks between summaries of coalesced messages, as scheduled by the
+     * plugin.
+     */
+    private static final int MESSAGE_FLUSH_PERIOD_TICKS = 5;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, String> options;
+
+    private final Random random;
+
+    private final List<Player> players = new ArrayList<Player>();
+
+    private final List<CraftingInventory> inventories = new ArrayList<CraftingInventory>();
+
+    private IncraftibleConfig config;
+
+    private CraftEventListener listener;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        random = new Random(getLong("seed", 1));
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args
+     *            Options, as key=value.
+     * @throws Exception
+     *             if the harness couldn't be set up.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            for (String option : arg.split(OPTION_SEPARATOR)) {
+                int separator = option.indexOf(VALUE_SEPARATOR);
+                if (separator > 0) {
+                    options.put(option.substring(0, separator).trim(), option.substring(separator + 1).trim());
+                } else if (option.trim().length() > 0) {
+                    throw new IllegalArgumentException("Expected key=value, got " + option);
+                }
+            }
+        }
+        LoadGenerator generator = new LoadGenerator(options);
+        generator.setUp();
+        generator.run();
+    }
+
+    /**
+     * Registers the permission tree, creates the players and recipes, and
+     * creates the listener.
+     */
+    private void setUp() throws Exception {
+        String strategyName = getString("strategy", PermissionsStrategy.STANDARD.getConfigString());
+        PermissionsStrategy strategy = PermissionsStrategy.strategyForConfig(strategyName);
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown strategy " + strategyName);
+        }
+        PluginManager pluginManager = BenchmarkFixtures.createPluginManager();
+        List<Permission> declared = BenchmarkFixtures.loadPluginPermissions();
+        for (Permission permission : declared) {
+            pluginManager.addPermission(permission);
+        }
+        if (PermissionsStrategy.STANDARD.equals(strategy)) {
+            for (Permission permission : PermissionsReference.getInstance().createDefaultMaterialPermissions(declared)) {
+                if (pluginManager.getPermission(permission.getName()) == null) {
+                    pluginManager.addPermission(permission);
+                }
+            }
+        }
+        Server server = BenchmarkFixtures.createServer(pluginManager, players);
+        config = BenchmarkFixtures.createConfig(strategy, server);
+        listener = new CraftEventListener(config);
+
+        List<Material> materials = new ArrayList<Material>(PermissionsReference.getInstance().getPermissionMaterials(
+                PermissionsReference.PERMISSION_CRAFT_PREFIX));
+        for (Material material : materials) {
+            ShapelessRecipe recipe = new ShapelessRecipe(new ItemStack(material, 1)).addIngredient(Material.SAND);
+            inventories.add(BenchmarkFixtures.createCraftingInventory(InventoryType.WORKBENCH, recipe));
+        }
+        createPlayers(pluginManager, materials);
+        config.rebuildContestedMaterials();
+        System.out.println(String.format("%d players, %d permissions registered, %d craftable materials, %s strategy",
+                players.size(), pluginManager.getPermissions().size(), materials.size(), strategy.getConfigString()));
+    }
+
+    /**
+     * Logs in the simulated players. Each player is granted the permissions
+     * that default to true, then each group permission and denied each
+     * material permission by chance, then given unrelated permissions from
+     * other plugins.
+     */
+    private void createPlayers(PluginManager pluginManager, List<Material> materials) {
+        int count = getInt("players", 2000);
+        double groupChance = getDouble("groups", 0.2);
+        double denyChance = getDouble("denies", 0.05);
+        Map<String, Boolean> filler = BenchmarkFixtures.fillerPermissions(getInt("filler", 16));
+        List<String> groups = new ArrayList<String>();
+        List<String> defaults = new ArrayList<String>();
+        Set<Permission> registered = pluginManager.getPermissions();
+        for (Permission permission : registered) {
+            if (PermissionDefault.TRUE.equals(permission.getDefault())) {
+                defaults.add(permission.getName());
+            } else if (permission.getName().startsWith(PermissionsReference.PERMISSION_CRAFT_PREFIX)
+                    && !permission.getChildren().isEmpty()) {
+                groups.add(permission.getName());
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            Map<String, Boolean> granted = new LinkedHashMap<String, Boolean>();
+            for (String name : defaults) {
+                granted.put(name, true);
+            }
+            for (String name : groups) {
+                if (random.nextDouble() < groupChance) {
+                    granted.put(name, true);
+                }
+            }
+            for (Material material : materials) {
+                if (random.nextDouble() < denyChance) {
+                    granted.put(PermissionsReference.getInstance().getBasePermissionName(material), false);
+                }
+            }
+            Map<String, Boolean> effective = BenchmarkFixtures.effectivePermissions(granted, pluginManager);
+            effective.putAll(filler);
+            players.add(BenchmarkFixtures.createPlayer("player" + i, effective));
+        }
+    }
+
+    /**
+     * Warms up, then measures.
+     */
+    private void run() {
+        int clicksPerTick = getInt("ticks", 100);
+        fire(getLong("warmup", 200000), clicksPerTick);
+        CraftStats stats = config.getStats();
+        stats.reset();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcMillis();
+        long events = getLong("events", 2000000);
+        long start = System.nanoTime();
+        fire(events, clicksPerTick);
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes(threads) - allocatedBefore;
+
+        double seconds = elapsed / NANOS_PER_SECOND;
+        System.out.println(String.format("%d events in %.2f s: %.0f events/s", events, seconds, events / seconds));
+        System.out.println(String.format("%d checks, %d allowed, %d denied", stats.getChecks(), stats.getAllows(),
+                stats.getDenials()));
+        printLatency("click", stats.getClickLatency());
+        printLatency("handleCraft", stats.getHandleCraftLatency());
+        if (allocatedBefore < 0) {
+            System.out.println("Allocation: not supported by this JVM");
+        } else {
+            // Includes the click event itself, as allocated by the server
+            System.out.println(String.format("Allocation: %.1f MB/s, %.0f bytes/event",
+                    allocated / BYTES_PER_MEGABYTE / seconds, (double) allocated / events));
+        }
+        System.out.println(String.format("GC: %d collections, %d ms", gcCount() - gcCountBefore,
+                gcMillis() - gcTimeBefore));
+    }
+
+    /**
+     * Fires clicks from random players on random results, ticking the
+     * listener and flushing coalesced messages as the server would.
+     */
+    private void fire(long events, int clicksPerTick) {
+        int playerCount = players.size();
+        int inventoryCount = inventories.size();
+        long tick = 0;
+        for (long i = 0; i < events; i++) {
+            Player player = players.get(random.nextInt(playerCount));
+            CraftingInventory inventory = inventories.get(random.nextInt(inventoryCount));
+            listener.onInventoryClick(BenchmarkFixtures.createResultClick(player, inventory));
+            if ((i + 1) % clicksPerTick == 0) {
+                listener.tick();
+                if (++tick % MESSAGE_FLUSH_PERIOD_TICKS == 0) {
+                    config.getMessageCoalescer().flush();
+                }
+            }
+        }
+    }
+
+    private static void printLatency(String name, LatencyHistogram histogram) {
+        StringBuilder line = new StringBuilder(name).append(" latency (ns):");
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(" p%s=%d", percentileName(percentile), histogram.getPercentile(percentile)));
+        }
+        line.append(" max=").append(histogram.getMax());
+        System.out.println(line);
+    }
+
+    private static String percentileName(double percentile) {
+        String name = Double.toString(percentile * 100);
+        return name.endsWith(".0") ? name.substring(0, name.length() - 2) : name;
+    }
+
+    /**
+     * Bytes allocated by the current thread, or -1 if the JVM can't tell.
+     */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private String getString(String key, String defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    private double getDouble(String key, double defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,117 @@
+package com.quiptiq.incraftible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures static initialisation of the permission and material name tables.
+ * Each invocation loads the class into a fresh class loader so that its
+ * static initialiser runs again; the measurement therefore also includes
+ * defining the Incraftible classes involved, and for MaterialNamer, loading
+ * the resource bundle.
+ *
+ * @author Taufiq Hoven
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticInitBenchmark {
+    private static final String ISOLATED_PACKAGE = "com.quiptiq.incraftible.";
+
+    /**
+     * Class file contents, read once so that file access is not measured.
+     */
+    private static final Map<String, byte[]> CLASS_BYTES = new ConcurrentHashMap<String, byte[]>();
+
+    private ClassLoader loader;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        loader = new IsolatingClassLoader(StaticInitBenchmark.class.getClassLoader());
+    }
+
+    @Benchmark
+    public Class<?> permissionsReference() throws ClassNotFoundException {
+        return Class.forName(ISOLATED_PACKAGE + "PermissionsReference", true, loader);
+    }
+
+    @Benchmark
+    public Class<?> materialNamer() throws ClassNotFoundException {
+        return Class.forName(ISOLATED_PACKAGE + "message.MaterialNamer", true, loader);
+    }
+
+    /**
+     * Loads Incraftible classes itself rather than delegating to its parent,
+     * so that their static initialisers run once per loader.
+     */
+    private static final class IsolatingClassLoader extends ClassLoader {
+        IsolatingClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(ISOLATED_PACKAGE)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded == null) {
+                byte[] bytes = classBytes(name);
+                loaded = defineClass(name, bytes, 0, bytes.length);
+            }
+            if (resolve) {
+                resolveClass(loaded);
+            }
+            return loaded;
+        }
+
+        private byte[] classBytes(String name) throws ClassNotFoundException {
+            byte[] bytes = CLASS_BYTES.get(name);
+            if (bytes != null) {
+                return bytes;
+            }
+            InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+            if (in == null) {
+                throw new ClassNotFoundException(name);
+            }
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                bytes = out.toByteArray();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Already read
+                }
+            }
+            CLASS_BYTES.put(name, bytes);
+            return bytes;
+        }
+    }
+}
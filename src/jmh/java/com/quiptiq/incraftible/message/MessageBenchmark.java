@@ -0,0 +1,58 @@
+package com.quiptiq.incraftible.message;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.quiptiq.incraftible.ConfigSnapshot;
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * Measures preparation of the denial message.
+ *
+ * @author Taufiq Hoven
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBenchmark {
+    private WorldPolicy policy;
+
+    @Setup
+    public void setUp() throws Exception {
+        YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString("messages:\n    disallowed: \"You are not allowed to craft %s\"\n");
+        policy = ConfigSnapshot.fromConfig(config).getDefaultWorldPolicy();
+    }
+
+    /**
+     * Message for a material from the world's compiled template, as sent on
+     * the deny path.
+     */
+    @Benchmark
+    public String prepareMaterialMessage() {
+        return policy.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED).forMaterial(Material.TNT);
+    }
+
+    /**
+     * Recompiling the message, as when it is overridden from the config.
+     */
+    @Benchmark
+    public MessageTemplate compileTemplate() {
+        return new MessageTemplate("You are not allowed to craft %s", MaterialNamer.getInstance());
+    }
+}
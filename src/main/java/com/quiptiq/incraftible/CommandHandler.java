@@ -2,18 +2,34 @@ package com.quiptiq.incraftible;
 
 import static com.quiptiq.incraftible.message.FixedMessage.COMMAND_PREFIX;
 import static com.quiptiq.incraftible.message.FixedMessage.COMMAND_USAGE;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_AUDIT_USAGE;
 import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_LOGPERMS_USAGE;
 import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_LOG_SET;
 import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_LOG_USAGE;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_PLAYER_NOT_FOUND;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_SHADOW_DISABLED;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_SHADOW_STATUS;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_SHADOW_USAGE;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_STATS_RESET;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_STATS_USAGE;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_TRACE_EMPTY;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_TRACE_SET;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_TRACE_USAGE;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import com.quiptiq.incraftible.shadow.ShadowEvaluator;
+import com.quiptiq.incraftible.stats.CraftStats;
+import com.quiptiq.incraftible.trace.CraftTracer;
 
 /**
  * Handles Incraftible commands.
@@ -23,11 +39,36 @@ import org.bukkit.command.CommandSender;
 public class CommandHandler implements CommandExecutor {
     private static final String SUBCOMMAND_LOGPERMS = "logperms";
     private static final String SUBCOMMAND_LOG = "log";
+    private static final String SUBCOMMAND_RELOAD = "reload";
+    private static final String SUBCOMMAND_TRACE = "trace";
+    private static final String SUBCOMMAND_STATS = "stats";
+    private static final String SUBCOMMAND_AUDIT = "audit";
+    private static final String SUBCOMMAND_SHADOW = "shadow";
 
     /* Arguments for setting message log levels */
     private static final String LOGLEVEL_DEBUG = "debug";
     private static final String LOGLEVEL_INFO = "info";
 
+    /* Arguments for tracing craft checks */
+    private static final String TRACE_DUMP = "dump";
+    private static final String TRACE_ON = "on";
+    private static final String TRACE_OFF = "off";
+
+    /* Argument for exporting logged permissions */
+    private static final String LOGPERMS_EXPORT = "export";
+
+    /* Argument for resetting craft statistics */
+    private static final String STATS_RESET = "reset";
+
+    /* Arguments for shadow mode */
+    private static final String SHADOW_REPORT = "report";
+    private static final String SHADOW_RESET = "reset";
+
+    /**
+     * Number of materials and of players listed in a shadow summary.
+     */
+    private static final int SHADOW_SUMMARY_TOP = 5;
+
     /**
      * Parent permission for Incraftible commands.
      */
@@ -48,7 +89,8 @@ public class CommandHandler implements CommandExecutor {
      */
     static {
         HashMap<String, String> permissions = new HashMap<String, String>();
-        String[] subCommands = {SUBCOMMAND_LOGPERMS, SUBCOMMAND_LOG};
+        String[] subCommands = {SUBCOMMAND_LOGPERMS, SUBCOMMAND_LOG, SUBCOMMAND_RELOAD, SUBCOMMAND_TRACE,
+                SUBCOMMAND_STATS, SUBCOMMAND_AUDIT, SUBCOMMAND_SHADOW};
         for (String subCommand : subCommands) {
             permissions.put(subCommand, PERMISSION_COMMAND_PARENT + "." + subCommand);
         }
@@ -95,7 +137,8 @@ public class CommandHandler implements CommandExecutor {
              * model of the command is intentionally different to how the commands
              * are executed - debug, which is mean to show debug messages, sets the
              * log level of debug-specific messages to INFO in order to display them,
-             * while info sets them to FINE.
+             * while info sets them to FINE. Tracing of craft checks follows
+             * whether these messages are displayed.
              */
             if (LOGLEVEL_DEBUG.equalsIgnoreCase(args[1])) {
                 config.setLogLevel(Level.INFO);
@@ -108,17 +151,164 @@ public class CommandHandler implements CommandExecutor {
             }
             return true;
         } else if (isSubCommandToExecute(SUBCOMMAND_LOGPERMS, args[0], sender)) {
-            if (args.length != 2) {
-                sender.sendMessage(PLAYER_MESSAGE_LOGPERMS_USAGE);
+            executeLogPerms(sender, args);
+        } else if (isSubCommandToExecute(SUBCOMMAND_RELOAD, args[0], sender)) {
+            config.getReloader().reloadAsync(sender);
+        } else if (isSubCommandToExecute(SUBCOMMAND_TRACE, args[0], sender)) {
+            executeTrace(sender, args);
+        } else if (isSubCommandToExecute(SUBCOMMAND_STATS, args[0], sender)) {
+            executeStats(sender, args);
+        } else if (isSubCommandToExecute(SUBCOMMAND_AUDIT, args[0], sender)) {
+            if (args.length > 2) {
+                sender.sendMessage(PLAYER_MESSAGE_AUDIT_USAGE);
                 return true;
             }
-            config.logCraftPermissions(sender.getServer().getPlayer(args[1]));
+            config.getAuditRunner().auditCraftPermissions(sender, args.length == 2 ? args[1] : null);
+        } else if (isSubCommandToExecute(SUBCOMMAND_SHADOW, args[0], sender)) {
+            executeShadow(sender, args);
         } else {
             return false;
         }
         return true;
     }
 
+    /**
+     * Executes the logperms subcommand, either sending a page of a player's
+     * craft permissions to the sender or exporting them to a file. An
+     * optional prefix below incraftible.craft. restricts the permissions
+     * listed.
+     *
+     * @param sender
+     *            Sender of the command.
+     * @param args
+     *            Command arguments, including the subcommand.
+     */
+    private void executeLogPerms(CommandSender sender, String[] args) {
+        if (args.length < 2 || args.length > 4) {
+            sender.sendMessage(PLAYER_MESSAGE_LOGPERMS_USAGE);
+            return;
+        }
+        String prefix = "";
+        String target = null;
+        if (args.length == 3 && (LOGPERMS_EXPORT.equalsIgnoreCase(args[2]) || isPageNumber(args[2]))) {
+            target = args[2];
+        } else if (args.length >= 3) {
+            prefix = args[2];
+            target = args.length == 4 ? args[3] : null;
+        }
+        if (target != null && !LOGPERMS_EXPORT.equalsIgnoreCase(target) && !isPageNumber(target)) {
+            sender.sendMessage(PLAYER_MESSAGE_LOGPERMS_USAGE);
+            return;
+        }
+        Player player = sender.getServer().getPlayer(args[1]);
+        if (player == null) {
+            sender.sendMessage(String.format(PLAYER_MESSAGE_PLAYER_NOT_FOUND, args[1]));
+        } else if (LOGPERMS_EXPORT.equalsIgnoreCase(target)) {
+            config.getPermissionExporter().exportCraftPermissions(sender, player, prefix);
+        } else {
+            config.getPermissionExporter().logCraftPermissions(sender, player, prefix,
+                    target == null ? 1 : Integer.parseInt(target));
+        }
+    }
+
+    private static boolean isPageNumber(String arg) {
+        try {
+            return Integer.parseInt(arg) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Executes the stats subcommand, either showing craft statistics to the
+     * sender or resetting them.
+     *
+     * @param sender
+     *            Sender of the command.
+     * @param args
+     *            Command arguments, including the subcommand.
+     */
+    private void executeStats(CommandSender sender, String[] args) {
+        CraftStats stats = config.getStats();
+        if (args.length == 1) {
+            for (String line : stats.report()) {
+                sender.sendMessage(line);
+            }
+        } else if (args.length == 2 && STATS_RESET.equalsIgnoreCase(args[1])) {
+            stats.reset();
+            sender.sendMessage(PLAYER_MESSAGE_STATS_RESET);
+        } else {
+            sender.sendMessage(PLAYER_MESSAGE_STATS_USAGE);
+        }
+    }
+
+    /**
+     * Executes the shadow subcommand, either summarising disagreements with
+     * the candidate config, writing the full report to a file, or reloading
+     * the candidate and clearing the report.
+     *
+     * @param sender
+     *            Sender of the command.
+     * @param args
+     *            Command arguments, including the subcommand.
+     */
+    private void executeShadow(CommandSender sender, String[] args) {
+        if (args.length > 2) {
+            sender.sendMessage(PLAYER_MESSAGE_SHADOW_USAGE);
+            return;
+        }
+        ShadowEvaluator shadow = config.getShadow();
+        if (shadow == null) {
+            sender.sendMessage(PLAYER_MESSAGE_SHADOW_DISABLED);
+        } else if (args.length == 1) {
+            sender.sendMessage(String.format(PLAYER_MESSAGE_SHADOW_STATUS, shadow.getCandidateName(),
+                    shadow.getSampledCount(), shadow.getQueuedCount(), shadow.getDroppedCount(),
+                    shadow.getSkippedCount()));
+            for (String line : shadow.getReport().summary(SHADOW_SUMMARY_TOP)) {
+                sender.sendMessage(line);
+            }
+        } else if (SHADOW_REPORT.equalsIgnoreCase(args[1])) {
+            config.getShadowMode().writeReport(sender);
+        } else if (SHADOW_RESET.equalsIgnoreCase(args[1])) {
+            config.getShadowMode().reloadCandidate(sender);
+        } else {
+            sender.sendMessage(PLAYER_MESSAGE_SHADOW_USAGE);
+        }
+    }
+
+    /**
+     * Executes the trace subcommand, either dumping traced craft decisions to
+     * the sender or switching tracing for a single player.
+     *
+     * @param sender
+     *            Sender of the command.
+     * @param args
+     *            Command arguments, including the subcommand.
+     */
+    private void executeTrace(CommandSender sender, String[] args) {
+        CraftTracer tracer = config.getTracer();
+        if (args.length == 2 && TRACE_DUMP.equalsIgnoreCase(args[1])) {
+            List<String> lines = tracer.dump();
+            if (lines.isEmpty()) {
+                sender.sendMessage(PLAYER_MESSAGE_TRACE_EMPTY);
+            }
+            for (String line : lines) {
+                sender.sendMessage(line);
+            }
+        } else if (args.length == 3 && (TRACE_ON.equalsIgnoreCase(args[1]) || TRACE_OFF.equalsIgnoreCase(args[1]))) {
+            Player player = sender.getServer().getPlayer(args[2]);
+            if (player == null) {
+                sender.sendMessage(String.format(PLAYER_MESSAGE_PLAYER_NOT_FOUND, args[2]));
+                return;
+            }
+            boolean traced = TRACE_ON.equalsIgnoreCase(args[1]);
+            tracer.setTracing(player.getUniqueId(), traced);
+            sender.sendMessage(String.format(PLAYER_MESSAGE_TRACE_SET, player.getName(), traced ? TRACE_ON : TRACE_OFF));
+        } else {
+            sender.sendMessage(PLAYER_MESSAGE_TRACE_USAGE);
+        }
+    }
+
     /**
      * Given the specified subcommand, argument and sender, determines whether
      * or not the subcommand matches the argument and may be executed by the
@@ -0,0 +1,103 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_RELOADED;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_RELOAD_FAILED;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Reloads config.yml without blocking the main server thread. The file is
+ * parsed on a scheduler thread and published to the config as a single
+ * snapshot; compiled permissions and contested materials, which are only
+ * touched from the main thread, are then rebuilt there.
+ *
+ * @author Taufiq Hoven
+ */
+public class ConfigReloader {
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private static final String LOG_WARN_RELOAD_FAILED = LOG_PREFIX + "Couldn't reload config from %s: %s";
+
+    private final Incraftible plugin;
+
+    private final IncraftibleConfig config;
+
+    private final PluginTasks tasks;
+
+    ConfigReloader(Incraftible plugin, IncraftibleConfig config, PluginTasks tasks) {
+        this.plugin = plugin;
+        this.config = config;
+        this.tasks = tasks;
+    }
+
+    /**
+     * Reloads the config file on a scheduler thread. The sender, if any, is
+     * told the outcome from the main thread. Without a server, the config is
+     * reloaded immediately.
+     *
+     * @param sender
+     *            Sender to notify once the config is reloaded, or null.
+     */
+    public void reloadAsync(final CommandSender sender) {
+        if (plugin.getServer() == null) {
+            config.reload();
+            if (sender != null) {
+                sender.sendMessage(PLAYER_MESSAGE_RELOADED);
+            }
+            return;
+        }
+        tasks.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                reloadSnapshot(sender);
+            }
+        });
+    }
+
+    /**
+     * Parses the config file and publishes it as a new snapshot, then
+     * discards compiled permissions and rebuilds the contested materials on
+     * the main server thread. May be called from any thread; a config file
+     * that can't be parsed is logged and leaves the current settings in
+     * place.
+     *
+     * @param sender
+     *            Sender to notify once the config is reloaded, or null.
+     */
+    synchronized void reloadSnapshot(final CommandSender sender) {
+        File configFile = config.getConfigFile();
+        YamlConfiguration newConfig = new YamlConfiguration();
+        ConfigSnapshot newSnapshot = null;
+        try {
+            newConfig.load(configFile);
+            newSnapshot = ConfigSnapshot.fromConfig(newConfig);
+        } catch (IOException e) {
+            log.warning(String.format(LOG_WARN_RELOAD_FAILED, configFile.getPath(), e.getMessage()));
+        } catch (InvalidConfigurationException e) {
+            log.warning(String.format(LOG_WARN_RELOAD_FAILED, configFile.getPath(), e.getMessage()));
+        }
+        if (newSnapshot != null) {
+            config.publish(newSnapshot);
+        }
+        final boolean reloaded = newSnapshot != null;
+        tasks.runSync(new Runnable() {
+            @Override
+            public void run() {
+                if (reloaded) {
+                    config.getDecisionCache().invalidateAll();
+                    config.rebuildContestedMaterials();
+                }
+                if (sender != null) {
+                    sender.sendMessage(reloaded ? PLAYER_MESSAGE_RELOADED : PLAYER_MESSAGE_RELOAD_FAILED);
+                }
+            }
+        });
+    }
+}
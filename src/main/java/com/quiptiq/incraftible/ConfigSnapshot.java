@@ -0,0 +1,510 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.quiptiq.incraftible.limit.CraftLimits;
+import com.quiptiq.incraftible.message.MaterialNamer;
+import com.quiptiq.incraftible.message.Message;
+import com.quiptiq.incraftible.message.MessageTemplate;
+import com.quiptiq.incraftible.recipe.RecipeRules;
+import com.quiptiq.incraftible.world.Region;
+import com.quiptiq.incraftible.world.RegionIndex;
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * Settings read from a single load of the config file. Snapshots are built
+ * completely before being published by {@link IncraftibleConfig}, so a craft
+ * check that reads its settings from one snapshot never sees a partially
+ * applied config.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class ConfigSnapshot {
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private static final String CONFIG_CRAFT_EVENT_RETURN_VALUE_NULL = "event.craft.returnvalue.null";
+
+    private static final String CONFIG_CRAFT_DEFAULT = "craft.default";
+
+    private static final String CONFIG_AUDIT_ENABLED = "audit.enabled";
+
+    private static final String CONFIG_AUDIT_QUEUE_CAPACITY = "audit.queue.capacity";
+
+    private static final String CONFIG_AUDIT_ROTATE_BYTES = "audit.rotate.bytes";
+
+    private static final String CONFIG_AUDIT_ROTATE_HOURS = "audit.rotate.hours";
+
+    private static final String CONFIG_AUDIT_FLUSH_MILLIS = "audit.flush.millis";
+
+    private static final String CONFIG_CAPTURE_ENABLED = "capture.enabled";
+
+    private static final String CONFIG_CAPTURE_QUEUE_CAPACITY = "capture.queue.capacity";
+
+    private static final String CONFIG_CAPTURE_FLUSH_MILLIS = "capture.flush.millis";
+
+    private static final String CONFIG_SHADOW_ENABLED = "shadow.enabled";
+
+    private static final String CONFIG_SHADOW_CONFIG = "shadow.config";
+
+    private static final String CONFIG_SHADOW_SAMPLE = "shadow.sample";
+
+    private static final String CONFIG_SHADOW_QUEUE_CAPACITY = "shadow.queue.capacity";
+
+    private static final String CONFIG_SHADOW_BUDGET_MICROS = "shadow.budget.micros";
+
+    private static final String CONFIG_WATCH_ENABLED = "watch.enabled";
+
+    private static final String CONFIG_RECIPES = "recipes";
+
+    private static final String CONFIG_LIMITS = "limits";
+
+    private static final String CONFIG_MESSAGES_COALESCE_MILLIS = "messages.coalesce.millis";
+
+    private static final String CONFIG_CRAFT_EVENT_SOURCE = "craft.event.source";
+
+    private static final String CONFIG_WORLDS = "worlds";
+
+    private static final String CONFIG_REGIONS = "regions";
+
+    private static final String LOG_WARN_INVALID_WORLD = LOG_PREFIX + "Ignoring world %s: expected a section";
+
+    private static final String LOG_WARN_INVALID_REGION = LOG_PREFIX + "Ignoring region %s: %s";
+
+    private static final long DEFAULT_MESSAGES_COALESCE_MILLIS = 2000;
+
+    private static final int DEFAULT_AUDIT_QUEUE_CAPACITY = 4096;
+
+    private static final long DEFAULT_AUDIT_ROTATE_BYTES = 10L * 1024 * 1024;
+
+    private static final int DEFAULT_AUDIT_ROTATE_HOURS = 24;
+
+    private static final long DEFAULT_AUDIT_FLUSH_MILLIS = 1000;
+
+    private static final int DEFAULT_CAPTURE_QUEUE_CAPACITY = 16384;
+
+    private static final long DEFAULT_CAPTURE_FLUSH_MILLIS = 1000;
+
+    private static final String DEFAULT_SHADOW_CONFIG = "shadow.yml";
+
+    private static final double DEFAULT_SHADOW_SAMPLE = 0.05;
+
+    private static final int DEFAULT_SHADOW_QUEUE_CAPACITY = 1024;
+
+    private static final long DEFAULT_SHADOW_BUDGET_MICROS = 5000;
+
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+
+    private static final PermissionsStrategy DEFAULT_PERMISSIONS_STRATEGY = PermissionsStrategy.ALL;
+
+    private static final CraftEventSource DEFAULT_CRAFT_EVENT_SOURCE = CraftEventSource.CLICK;
+
+    private final PermissionsStrategy strategy;
+
+    private final boolean eventReturnValueMadeNull;
+
+    private final boolean auditEnabled;
+
+    private final int auditQueueCapacity;
+
+    private final long auditRotateBytes;
+
+    private final long auditRotateMillis;
+
+    private final long auditFlushMillis;
+
+    private final boolean captureEnabled;
+
+    private final int captureQueueCapacity;
+
+    private final long captureFlushMillis;
+
+    private final boolean shadowEnabled;
+
+    private final String shadowConfig;
+
+    private final double shadowSample;
+
+    private final int shadowQueueCapacity;
+
+    private final long shadowBudgetMicros;
+
+    private final boolean watchEnabled;
+
+    private final RecipeRules recipeRules;
+
+    private final CraftLimits craftLimits;
+
+    private final long messageCoalesceMillis;
+
+    private final CraftEventSource craftEventSource;
+
+    /**
+     * Compiled template for every message, configured or not.
+     */
+    private final Map<Message, MessageTemplate> messageTemplates;
+
+    /**
+     * Policy of worlds without a section of their own.
+     */
+    private final WorldPolicy defaultWorldPolicy;
+
+    /**
+     * Configured policy of each world, by world name.
+     */
+    private final Map<String, WorldPolicy> worldPolicies;
+
+    private ConfigSnapshot(ConfigurationSection config) {
+        eventReturnValueMadeNull = config.getBoolean(CONFIG_CRAFT_EVENT_RETURN_VALUE_NULL, false);
+        auditEnabled = config.getBoolean(CONFIG_AUDIT_ENABLED, false);
+        auditQueueCapacity = config.getInt(CONFIG_AUDIT_QUEUE_CAPACITY, DEFAULT_AUDIT_QUEUE_CAPACITY);
+        auditRotateBytes = config.getLong(CONFIG_AUDIT_ROTATE_BYTES, DEFAULT_AUDIT_ROTATE_BYTES);
+        auditRotateMillis = config.getInt(CONFIG_AUDIT_ROTATE_HOURS, DEFAULT_AUDIT_ROTATE_HOURS) * MILLIS_PER_HOUR;
+        auditFlushMillis = config.getLong(CONFIG_AUDIT_FLUSH_MILLIS, DEFAULT_AUDIT_FLUSH_MILLIS);
+        captureEnabled = config.getBoolean(CONFIG_CAPTURE_ENABLED, false);
+        captureQueueCapacity = config.getInt(CONFIG_CAPTURE_QUEUE_CAPACITY, DEFAULT_CAPTURE_QUEUE_CAPACITY);
+        captureFlushMillis = config.getLong(CONFIG_CAPTURE_FLUSH_MILLIS, DEFAULT_CAPTURE_FLUSH_MILLIS);
+        shadowEnabled = config.getBoolean(CONFIG_SHADOW_ENABLED, false);
+        shadowConfig = config.getString(CONFIG_SHADOW_CONFIG, DEFAULT_SHADOW_CONFIG);
+        double sample = config.getDouble(CONFIG_SHADOW_SAMPLE, DEFAULT_SHADOW_SAMPLE);
+        if (sample < 0 || sample > 1) {
+            log.warning(LOG_PREFIX + "Invalid shadow sample rate: " + sample);
+            sample = DEFAULT_SHADOW_SAMPLE;
+        }
+        shadowSample = sample;
+        shadowQueueCapacity = config.getInt(CONFIG_SHADOW_QUEUE_CAPACITY, DEFAULT_SHADOW_QUEUE_CAPACITY);
+        shadowBudgetMicros = config.getLong(CONFIG_SHADOW_BUDGET_MICROS, DEFAULT_SHADOW_BUDGET_MICROS);
+        watchEnabled = config.getBoolean(CONFIG_WATCH_ENABLED, true);
+        recipeRules = RecipeRules.fromConfig(config.getConfigurationSection(CONFIG_RECIPES));
+        craftLimits = CraftLimits.fromConfig(config.getConfigurationSection(CONFIG_LIMITS));
+        messageCoalesceMillis = config.getLong(CONFIG_MESSAGES_COALESCE_MILLIS, DEFAULT_MESSAGES_COALESCE_MILLIS);
+
+        String defaultCraftPermissions = config.getString(CONFIG_CRAFT_DEFAULT,
+                DEFAULT_PERMISSIONS_STRATEGY.getConfigString());
+        log.info(LOG_PREFIX + "Using permission strategy:" + defaultCraftPermissions);
+        PermissionsStrategy configuredStrategy = PermissionsStrategy.strategyForConfig(defaultCraftPermissions);
+        if (configuredStrategy == null) {
+            log.warning("Invalid crafting default: " + defaultCraftPermissions);
+            configuredStrategy = DEFAULT_PERMISSIONS_STRATEGY;
+        }
+        strategy = configuredStrategy;
+
+        String eventSource = config.getString(CONFIG_CRAFT_EVENT_SOURCE, DEFAULT_CRAFT_EVENT_SOURCE.getConfigString());
+        CraftEventSource configuredSource = CraftEventSource.sourceForConfig(eventSource);
+        if (configuredSource == null) {
+            log.warning(LOG_PREFIX + "Invalid craft event source: " + eventSource);
+            configuredSource = DEFAULT_CRAFT_EVENT_SOURCE;
+        }
+        craftEventSource = configuredSource;
+
+        // Messages that aren't configured take their built-in text, so that
+        // the snapshot depends on the config alone
+        EnumMap<Message, MessageTemplate> templates = new EnumMap<Message, MessageTemplate>(Message.class);
+        for (Message message : Message.values()) {
+            String configuredMessage = config.getString(message.getConfigNode());
+            if (configuredMessage != null) {
+                templates.put(message, new MessageTemplate(configuredMessage, MaterialNamer.getInstance()));
+            } else {
+                templates.put(message, new MessageTemplate(message.getDefaultMessage(), MaterialNamer.getInstance()));
+            }
+        }
+        messageTemplates = Collections.unmodifiableMap(templates);
+
+        defaultWorldPolicy = WorldPolicy.createDefault(strategy, messageTemplates);
+        Map<String, List<Region>> regions = readRegions(config.getConfigurationSection(CONFIG_REGIONS));
+        Map<String, ConfigurationSection> worldSections = new HashMap<String, ConfigurationSection>();
+        ConfigurationSection worlds = config.getConfigurationSection(CONFIG_WORLDS);
+        if (worlds != null) {
+            for (String worldName : worlds.getKeys(false)) {
+                ConfigurationSection world = worlds.getConfigurationSection(worldName);
+                if (world == null) {
+                    log.warning(String.format(LOG_WARN_INVALID_WORLD, worldName));
+                    continue;
+                }
+                worldSections.put(worldName, world);
+            }
+        }
+        // Worlds with regions need a policy of their own to hold them
+        Set<String> worldNames = new HashSet<String>(worldSections.keySet());
+        worldNames.addAll(regions.keySet());
+        HashMap<String, WorldPolicy> policies = new HashMap<String, WorldPolicy>();
+        for (String worldName : worldNames) {
+            List<Region> worldRegions = regions.get(worldName);
+            policies.put(worldName, WorldPolicy.fromConfig(worldName, worldSections.get(worldName),
+                    defaultWorldPolicy, worldRegions == null ? RegionIndex.EMPTY : RegionIndex.build(worldRegions)));
+        }
+        worldPolicies = Collections.unmodifiableMap(policies);
+    }
+
+    /**
+     * Reads the regions in the specified section, by world name. Invalid
+     * regions are logged and ignored.
+     */
+    private static Map<String, List<Region>> readRegions(ConfigurationSection section) {
+        Map<String, List<Region>> regions = new HashMap<String, List<Region>>();
+        if (section == null) {
+            return regions;
+        }
+        for (String id : section.getKeys(false)) {
+            ConfigurationSection regionSection = section.getConfigurationSection(id);
+            try {
+                if (regionSection == null) {
+                    throw new IllegalArgumentException("expected a section");
+                }
+                Region region = Region.fromConfig(id, regionSection);
+                List<Region> worldRegions = regions.get(region.getWorldName());
+                if (worldRegions == null) {
+                    worldRegions = new ArrayList<Region>();
+                    regions.put(region.getWorldName(), worldRegions);
+                }
+                worldRegions.add(region);
+            } catch (IllegalArgumentException e) {
+                log.warning(String.format(LOG_WARN_INVALID_REGION, id, e.getMessage()));
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Reads a snapshot from the specified configuration.
+     *
+     * @param config
+     *            Loaded configuration.
+     * @return Settings read from the configuration.
+     */
+    public static ConfigSnapshot fromConfig(ConfigurationSection config) {
+        return new ConfigSnapshot(config);
+    }
+
+    /**
+     * @return Default method of granting craft permissions. Possible values
+     *         are defined in {@link PermissionsStrategy}
+     */
+    public PermissionsStrategy getPermissionsStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Whether or not a craft event return value should be set to null once
+     * handled.
+     *
+     * @return True if a craft event return value should be set to null when it
+     *         is handled, otherwise false.
+     */
+    public boolean isEventReturnValueMadeNull() {
+        return eventReturnValueMadeNull;
+    }
+
+    /**
+     * Gets the compiled template for the specified message.
+     *
+     * @param message
+     *            Message to get.
+     * @return Template for the message.
+     */
+    public MessageTemplate getMessageTemplate(Message message) {
+        return messageTemplates.get(message);
+    }
+
+    /**
+     * @return Policy of worlds without a section of their own, which applies
+     *         the rest of the config unchanged.
+     */
+    public WorldPolicy getDefaultWorldPolicy() {
+        return defaultWorldPolicy;
+    }
+
+    /**
+     * @return Configured policy of each world, by world name.
+     */
+    public Map<String, WorldPolicy> getWorldPolicies() {
+        return worldPolicies;
+    }
+
+    /**
+     * Gets the policy of the named world.
+     *
+     * @param worldName
+     *            Name of the world, or null if not known.
+     * @return Policy configured for the world, or the default policy.
+     */
+    public WorldPolicy getWorldPolicy(String worldName) {
+        WorldPolicy policy = worldName == null ? null : worldPolicies.get(worldName);
+        return policy == null ? defaultWorldPolicy : policy;
+    }
+
+    /**
+     * Whether any world uses the specified permissions strategy, including
+     * worlds without a section of their own.
+     *
+     * @param strategy
+     *            Strategy to look for.
+     * @return True if the default policy or any configured world uses the
+     *         strategy.
+     */
+    public boolean usesStrategy(PermissionsStrategy strategy) {
+        if (strategy.equals(defaultWorldPolicy.getPermissionsStrategy())) {
+            return true;
+        }
+        for (WorldPolicy policy : worldPolicies.values()) {
+            if (strategy.equals(policy.getPermissionsStrategy())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether or not denied crafts are written to the audit log.
+     *
+     * @return True if the audit log is enabled, otherwise false.
+     */
+    public boolean isAuditEnabled() {
+        return auditEnabled;
+    }
+
+    /**
+     * @return Maximum number of denial records waiting to be written to the
+     *         audit log before further records are dropped.
+     */
+    public int getAuditQueueCapacity() {
+        return auditQueueCapacity;
+    }
+
+    /**
+     * @return Size in bytes after which the audit log is rotated.
+     */
+    public long getAuditRotateBytes() {
+        return auditRotateBytes;
+    }
+
+    /**
+     * @return Age in milliseconds after which the audit log is rotated.
+     */
+    public long getAuditRotateMillis() {
+        return auditRotateMillis;
+    }
+
+    /**
+     * @return Interval in milliseconds between writes to the audit log.
+     */
+    public long getAuditFlushMillis() {
+        return auditFlushMillis;
+    }
+
+    /**
+     * Whether or not evaluated crafts are captured to a binary trace.
+     *
+     * @return True if crafts are captured, otherwise false.
+     */
+    public boolean isCaptureEnabled() {
+        return captureEnabled;
+    }
+
+    /**
+     * @return Maximum number of crafts waiting to be written to the trace
+     *         before further crafts are dropped.
+     */
+    public int getCaptureQueueCapacity() {
+        return captureQueueCapacity;
+    }
+
+    /**
+     * @return Interval in milliseconds between writes to the trace.
+     */
+    public long getCaptureFlushMillis() {
+        return captureFlushMillis;
+    }
+
+    /**
+     * Whether or not a candidate config is evaluated in shadow mode.
+     *
+     * @return True if shadow mode is enabled, otherwise false.
+     */
+    public boolean isShadowEnabled() {
+        return shadowEnabled;
+    }
+
+    /**
+     * @return Name of the candidate config file, within the plugin data
+     *         folder.
+     */
+    public String getShadowConfig() {
+        return shadowConfig;
+    }
+
+    /**
+     * @return Fraction of craft checks, between 0 and 1, evaluated against
+     *         the candidate config.
+     */
+    public double getShadowSample() {
+        return shadowSample;
+    }
+
+    /**
+     * @return Maximum number of sampled checks waiting to be evaluated
+     *         before further samples are dropped.
+     */
+    public int getShadowQueueCapacity() {
+        return shadowQueueCapacity;
+    }
+
+    /**
+     * @return Time in microseconds that may be spent evaluating samples in
+     *         each second, after which sampling pauses until the next second.
+     */
+    public long getShadowBudgetMicros() {
+        return shadowBudgetMicros;
+    }
+
+    /**
+     * Whether or not the config file is watched for changes.
+     *
+     * @return True if changes to the config file are reloaded automatically.
+     */
+    public boolean isWatchEnabled() {
+        return watchEnabled;
+    }
+
+    /**
+     * @return Rules allowing or denying particular recipes.
+     */
+    public RecipeRules getRecipeRules() {
+        return recipeRules;
+    }
+
+    /**
+     * @return Window in milliseconds within which repeated messages to a
+     *         player are coalesced, or 0 if every message is sent.
+     */
+    public long getMessageCoalesceMillis() {
+        return messageCoalesceMillis;
+    }
+
+    /**
+     * @return Per-player crafting rate limits and daily quotas.
+     */
+    public CraftLimits getCraftLimits() {
+        return craftLimits;
+    }
+
+    /**
+     * @return Bukkit event that is authoritative for craft checks.
+     */
+    public CraftEventSource getCraftEventSource() {
+        return craftEventSource;
+    }
+}
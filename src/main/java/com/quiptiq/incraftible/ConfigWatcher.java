@@ -0,0 +1,58 @@
+package com.quiptiq.incraftible;
+
+import java.io.File;
+
+/**
+ * Polls the config file for changes and reloads the config when it changes.
+ * Run periodically on a scheduler thread, so the file is checked and parsed
+ * without blocking the main server thread.
+ *
+ * @author Taufiq Hoven
+ */
+public class ConfigWatcher implements Runnable {
+    /**
+     * Period between checks of the config file, in server ticks.
+     */
+    public static final long WATCH_PERIOD_TICKS = 40;
+
+    private final IncraftibleConfig config;
+
+    private final File configFile;
+
+    private long lastModified;
+
+    private long length;
+
+    /**
+     * Creates a new watcher for the config file of the specified config. The
+     * file as it is now is taken to be already loaded.
+     *
+     * @param config
+     *            Config to reload when its file changes.
+     */
+    public ConfigWatcher(IncraftibleConfig config) {
+        this.config = config;
+        this.configFile = config.getConfigFile();
+        lastModified = configFile.lastModified();
+        length = configFile.length();
+    }
+
+    /**
+     * Reloads the config if its file has been modified since the last check.
+     * A file that has been removed is ignored until it reappears.
+     */
+    @Override
+    public void run() {
+        if (!config.getSnapshot().isWatchEnabled() || !configFile.exists()) {
+            return;
+        }
+        long currentModified = configFile.lastModified();
+        long currentLength = configFile.length();
+        if (currentModified == lastModified && currentLength == length) {
+            return;
+        }
+        lastModified = currentModified;
+        length = currentLength;
+        config.getReloader().reloadSnapshot(null);
+    }
+}
@@ -0,0 +1,235 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.PermissionsReference.PERMISSION_ROOT;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * Set of materials whose craft permission may be set for some player. A
+ * material is contested if its base or data permission appears in the
+ * registered permission tree or has been granted to a player. Any other
+ * material is never set for anyone, so its craft decision is always
+ * {@link CraftDecision#UNSET} and is determined by the permissions strategy
+ * alone.
+ *
+ * Until the set is first built, all materials are treated as contested.
+ * Granted permissions are added as players are scanned: when they join or
+ * change world, when their craft decisions are invalidated, and at each
+ * periodic {@link #rebuildIfChanged check}. Plugins that grant craft
+ * permissions while a player is online, such as through an attachment, should
+ * still invalidate that player's craft decisions, so that the grant is seen
+ * at once rather than at the next check.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class ContestedMaterials {
+    private static final String WILDCARD = "*";
+
+    private final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private final int materialCount = Material.values().length;
+
+    /**
+     * One bit per material ordinal.
+     */
+    private volatile AtomicLongArray contested = new AtomicLongArray(words(materialCount));
+
+    /**
+     * Whether all materials are contested, such as before the set is built or
+     * when a wildcard covering all materials has been granted.
+     */
+    private volatile boolean allContested = true;
+
+    /**
+     * Names of permissions registered when the set was last built.
+     */
+    private volatile Set<String> registeredNames = Collections.emptySet();
+
+    /**
+     * Number of permissions registered when the set was last built.
+     */
+    private volatile int registeredCount = -1;
+
+    /**
+     * Sum of the hash codes of the names of the permissions registered when
+     * the set was last built, so that a permission replaced by another is
+     * noticed although their number is unchanged.
+     */
+    private volatile int registeredHash;
+
+    /**
+     * Whether crafting of the specified material may be controlled by a
+     * permission set for any player.
+     *
+     * @param material
+     *            Material to check.
+     * @return True if the material's permission may be set, false if it is
+     *         never set.
+     */
+    public boolean isContested(Material material) {
+        if (allContested) {
+            return true;
+        }
+        int ordinal = material.ordinal();
+        return (contested.get(ordinal >>> 6) & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Rebuilds the set from the registered permissions and the effective
+     * permissions of the specified players.
+     *
+     * @param pluginManager
+     *            Manager holding the registered permissions.
+     * @param players
+     *            Players whose granted permissions are included.
+     */
+    public synchronized void rebuild(PluginManager pluginManager, Player[] players) {
+        Set<Permission> permissions = pluginManager.getPermissions();
+        Set<String> names = new HashSet<String>();
+        for (Permission permission : permissions) {
+            names.add(permission.getName().toLowerCase());
+        }
+        registeredNames = names;
+        registeredCount = permissions.size();
+        registeredHash = hashNames(permissions);
+
+        // Build completely before publishing, so that checks never see a
+        // partially built set
+        AtomicLongArray newContested = new AtomicLongArray(words(materialCount));
+        boolean wildcardGranted = false;
+        for (Permission permission : permissions) {
+            wildcardGranted |= markPermission(permission.getName(), newContested);
+            for (String childName : permission.getChildren().keySet()) {
+                wildcardGranted |= markPermission(childName, newContested);
+            }
+        }
+        for (Player player : players) {
+            wildcardGranted |= markGranted(player, newContested);
+        }
+        contested = newContested;
+        allContested = wildcardGranted;
+    }
+
+    /**
+     * Rebuilds the set if the registered permissions have changed since it
+     * was last built, and otherwise adds the permissions now granted to the
+     * specified players. Permissions granted at runtime, such as through
+     * attachments, raise no event, so they are only seen here.
+     *
+     * @param pluginManager
+     *            Manager holding the registered permissions.
+     * @param players
+     *            Players whose granted permissions are included.
+     * @return True if the set was rebuilt.
+     */
+    public synchronized boolean rebuildIfChanged(PluginManager pluginManager, Player[] players) {
+        Set<Permission> permissions = pluginManager.getPermissions();
+        if (permissions.size() == registeredCount && hashNames(permissions) == registeredHash) {
+            for (Player player : players) {
+                addGranted(player);
+            }
+            return false;
+        }
+        rebuild(pluginManager, players);
+        return true;
+    }
+
+    private static int hashNames(Set<Permission> permissions) {
+        int hash = 0;
+        for (Permission permission : permissions) {
+            hash += permission.getName().hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Adds the craft permissions in effect for the specified player.
+     *
+     * @param player
+     *            Player whose effective permissions are added.
+     */
+    public synchronized void addGranted(Player player) {
+        if (allContested) {
+            return;
+        }
+        if (markGranted(player, contested)) {
+            allContested = true;
+        }
+    }
+
+    /**
+     * Marks the craft permissions in effect for the specified player.
+     *
+     * @return True if a wildcard covering all materials is in effect.
+     */
+    private boolean markGranted(Player player, AtomicLongArray bits) {
+        boolean wildcardGranted = false;
+        for (PermissionAttachmentInfo info : player.getEffectivePermissions()) {
+            wildcardGranted |= markPermission(info.getPermission(), bits);
+        }
+        return wildcardGranted;
+    }
+
+    /**
+     * Marks the material controlled by the specified permission as contested.
+     * Wildcards that are not registered permissions, as used by some
+     * permissions plugins, mark every material with a permission under the
+     * wildcard's parent.
+     *
+     * @return True if the permission is a wildcard covering all materials.
+     */
+    private boolean markPermission(String permissionName, AtomicLongArray bits) {
+        String name = permissionName.toLowerCase();
+        Material material = perms.getPermissionMaterial(name);
+        if (material != null) {
+            mark(material, bits);
+        } else if (isUnregisteredWildcard(name)) {
+            String prefix = name.substring(0, name.length() - WILDCARD.length());
+            if ((PERMISSION_ROOT + ".").startsWith(prefix)) {
+                return true;
+            }
+            for (Material prefixMaterial : perms.getPermissionMaterials(prefix)) {
+                mark(prefixMaterial, bits);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the specified permission is a wildcard that is not a registered
+     * permission. Bukkit does not expand such wildcards, but some permissions
+     * plugins do, without listing the expanded permissions.
+     *
+     * @param permissionName
+     *            Lower case permission name.
+     * @return True if the permission is an unregistered wildcard.
+     */
+    public boolean isUnregisteredWildcard(String permissionName) {
+        return permissionName.endsWith(WILDCARD) && !registeredNames.contains(permissionName);
+    }
+
+    private static void mark(Material material, AtomicLongArray bits) {
+        int ordinal = material.ordinal();
+        int word = ordinal >>> 6;
+        long bit = 1L << ordinal;
+        long current;
+        do {
+            current = bits.get(word);
+        } while ((current & bit) == 0 && !bits.compareAndSet(word, current, current | bit));
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+}
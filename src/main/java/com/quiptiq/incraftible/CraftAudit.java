@@ -0,0 +1,346 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.PermissionsReference.PERMISSION_CRAFT_PREFIX;
+import static com.quiptiq.incraftible.PermissionsReference.PERMISSION_ROOT;
+import static com.quiptiq.incraftible.PermissionsReference.SLOT_COUNT;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.PluginManager;
+
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * Matrix of whether each online player may craft each of a selection of
+ * slots, as decided by the policy of the player's world: the materials always
+ * allowed or denied there, then the player's permissions under the world's
+ * strategy. Recipe rules and regions are not applied, as they depend on the
+ * crafting matrix and the player's location at the time of a craft.
+ *
+ * The players' compiled permission tables and world policies are captured on
+ * the main server thread by {@link #snapshot}; the matrix is then evaluated in
+ * parallel and written out on other threads. Players sharing a table in the
+ * same policy share a row, so the work done depends on the number of distinct
+ * rows rather than the number of players.
+ *
+ * @author Taufiq Hoven
+ */
+public final class CraftAudit {
+    private static final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static final String CSV_SEPARATOR = ",";
+
+    private static final String CSV_PLAYER_HEADING = "player";
+
+    private static final String WILDCARD = "*";
+
+    /**
+     * Slots audited, one per column.
+     */
+    private final int[] slots;
+
+    private final String[] playerNames;
+
+    /**
+     * Index of each player's row.
+     */
+    private final int[] playerRows;
+
+    /**
+     * Table of each distinct row.
+     */
+    private final CraftPermissionTable[] tables;
+
+    /**
+     * World policy of each distinct row.
+     */
+    private final WorldPolicy[] policies;
+
+    /**
+     * Whether each slot is allowed, per distinct row. Filled in by
+     * {@link #evaluate}.
+     */
+    private final boolean[][] allowed;
+
+    private CraftAudit(int[] slots, String[] playerNames, int[] playerRows, CraftPermissionTable[] tables,
+            WorldPolicy[] policies) {
+        this.slots = slots;
+        this.playerNames = playerNames;
+        this.playerRows = playerRows;
+        this.tables = tables;
+        this.policies = policies;
+        this.allowed = new boolean[tables.length][];
+    }
+
+    /**
+     * Selects the slots to audit. The filter may be a material name, which
+     * selects each of the material's slots; a registered permission, such as
+     * incraftible.craft.tools.diamond.*, which selects the slots of the
+     * permissions it grants; or a permission prefix, relative to
+     * incraftible.craft. if it is not below incraftible., which selects the
+     * slots whose permissions start with it.
+     *
+     * @param filter
+     *            Material name or permission, or null to select every slot
+     *            with a permission.
+     * @param pluginManager
+     *            Manager holding the registered permissions, or null if there
+     *            is none.
+     * @return Selected slots, in ascending order. Empty if none match.
+     */
+    public static int[] selectSlots(String filter, PluginManager pluginManager) {
+        Material material = null;
+        Set<String> names = null;
+        String prefix = null;
+        if (filter != null) {
+            material = Material.matchMaterial(filter);
+            if (material == null) {
+                String node = filter.toLowerCase();
+                if (!node.startsWith(PERMISSION_ROOT + ".")) {
+                    node = PERMISSION_CRAFT_PREFIX + node;
+                }
+                if (pluginManager != null && pluginManager.getPermission(node) != null) {
+                    names = new HashSet<String>();
+                    addGranted(node, pluginManager, names);
+                } else {
+                    prefix = node.endsWith(WILDCARD) ? node.substring(0, node.length() - WILDCARD.length()) : node;
+                }
+            }
+        }
+        List<Integer> selected = new ArrayList<Integer>();
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            String permissionName = perms.getSlotPermissionName(slot);
+            if (permissionName == null) {
+                continue;
+            }
+            if ((material != null && slot / PermissionsReference.DATA_VALUES == material.ordinal())
+                    || (names != null && names.contains(permissionName))
+                    || (prefix != null && permissionName.startsWith(prefix))
+                    || filter == null) {
+                selected.add(slot);
+            }
+        }
+        int[] slots = new int[selected.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = selected.get(i);
+        }
+        return slots;
+    }
+
+    /**
+     * Adds the specified permission and all permissions it grants, directly
+     * or through its children.
+     */
+    private static void addGranted(String permissionName, PluginManager pluginManager, Set<String> names) {
+        if (!names.add(permissionName)) {
+            return;
+        }
+        Permission permission = pluginManager.getPermission(permissionName);
+        if (permission == null) {
+            return;
+        }
+        for (Map.Entry<String, Boolean> child : permission.getChildren().entrySet()) {
+            if (child.getValue().booleanValue()) {
+                addGranted(child.getKey().toLowerCase(), pluginManager, names);
+            }
+        }
+    }
+
+    /**
+     * Captures the compiled permissions and world policies of the specified
+     * players. Must be called from the main server thread.
+     *
+     * @param players
+     *            Players to audit.
+     * @param playerPolicies
+     *            Policy of each player's world, in the same order as the
+     *            players.
+     * @param decisionCache
+     *            Cache of compiled permissions.
+     * @param contestedMaterials
+     *            Contested materials, used to compile permissions for
+     *            players the cache does not hold.
+     * @param slots
+     *            Slots to audit, as given by {@link #selectSlots}.
+     * @return Unevaluated audit.
+     */
+    public static CraftAudit snapshot(Player[] players, WorldPolicy[] playerPolicies,
+            CraftDecisionCache decisionCache, ContestedMaterials contestedMaterials, int[] slots) {
+        String[] playerNames = new String[players.length];
+        int[] playerRows = new int[players.length];
+        Map<WorldPolicy, Map<CraftPermissionTable, Integer>> rowIndices =
+                new IdentityHashMap<WorldPolicy, Map<CraftPermissionTable, Integer>>();
+        List<CraftPermissionTable> tables = new ArrayList<CraftPermissionTable>();
+        List<WorldPolicy> policies = new ArrayList<WorldPolicy>();
+        for (int i = 0; i < players.length; i++) {
+            CraftPermissionTable table = decisionCache.getTable(players[i]);
+            if (table == null) {
+                table = CraftPermissionTable.compile(players[i], contestedMaterials);
+            }
+            Map<CraftPermissionTable, Integer> policyRows = rowIndices.get(playerPolicies[i]);
+            if (policyRows == null) {
+                policyRows = new IdentityHashMap<CraftPermissionTable, Integer>();
+                rowIndices.put(playerPolicies[i], policyRows);
+            }
+            Integer index = policyRows.get(table);
+            if (index == null) {
+                index = tables.size();
+                policyRows.put(table, index);
+                tables.add(table);
+                policies.add(playerPolicies[i]);
+            }
+            playerNames[i] = players[i].getName();
+            playerRows[i] = index;
+        }
+        return new CraftAudit(slots, playerNames, playerRows,
+                tables.toArray(new CraftPermissionTable[tables.size()]),
+                policies.toArray(new WorldPolicy[policies.size()]));
+    }
+
+    /**
+     * Evaluates the matrix, splitting the distinct rows between tasks on
+     * the specified executor and waiting for them to complete.
+     *
+     * @param executor
+     *            Executor on which the matrix is evaluated.
+     * @param parallelism
+     *            Number of tasks to split the matrix between.
+     * @throws InterruptedException
+     *             if interrupted while waiting for the tasks.
+     * @throws ExecutionException
+     *             if a task failed.
+     */
+    public void evaluate(ExecutorService executor, int parallelism) throws InterruptedException,
+            ExecutionException {
+        int chunk = Math.max(1, (tables.length + parallelism - 1) / parallelism);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < tables.length; start += chunk) {
+            final int from = start;
+            final int to = Math.min(tables.length, start + chunk);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = from; i < to; i++) {
+                        allowed[i] = evaluate(tables[i], policies[i]);
+                    }
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> result : executor.invokeAll(tasks)) {
+            result.get();
+        }
+    }
+
+    private boolean[] evaluate(CraftPermissionTable table, WorldPolicy policy) {
+        Material[] materials = Material.values();
+        boolean[] row = new boolean[slots.length];
+        for (int column = 0; column < slots.length; column++) {
+            CraftDecision decision = policy.getMaterialDecision(
+                    materials[slots[column] / PermissionsReference.DATA_VALUES]);
+            if (decision == null) {
+                decision = table.get(slots[column]);
+            }
+            row[column] = decision.isAllowed(policy.getPermissionsStrategy());
+        }
+        return row;
+    }
+
+    /**
+     * Writes the evaluated matrix as CSV, with a row per player and a column
+     * per permission.
+     *
+     * @param file
+     *            File to write.
+     * @throws IOException
+     *             if the file couldn't be written.
+     */
+    public void writeCsv(File file) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            writer.write(CSV_PLAYER_HEADING);
+            for (int slot : slots) {
+                writer.write(CSV_SEPARATOR);
+                writer.write(perms.getSlotPermissionName(slot));
+            }
+            writer.write(LINE_SEPARATOR);
+            for (int i = 0; i < playerNames.length; i++) {
+                writer.write(playerNames[i]);
+                for (boolean cell : allowed[playerRows[i]]) {
+                    writer.write(CSV_SEPARATOR);
+                    writer.write(Boolean.toString(cell));
+                }
+                writer.write(LINE_SEPARATOR);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return Number of players audited.
+     */
+    public int getPlayerCount() {
+        return playerNames.length;
+    }
+
+    /**
+     * @return Number of distinct rows among the players: permission tables
+     *         in the same world policy.
+     */
+    public int getTableCount() {
+        return tables.length;
+    }
+
+    /**
+     * @return Number of slots audited.
+     */
+    public int getColumnCount() {
+        return slots.length;
+    }
+
+    /**
+     * @param column
+     *            Column of the matrix.
+     * @return Name of the permission audited in the column.
+     */
+    public String getColumnPermissionName(int column) {
+        return perms.getSlotPermissionName(slots[column]);
+    }
+
+    /**
+     * Counts the players allowed to craft the slot in the specified column.
+     * The matrix must have been evaluated.
+     *
+     * @param column
+     *            Column of the matrix.
+     * @return Number of players allowed.
+     */
+    public int getAllowedCount(int column) {
+        int count = 0;
+        for (int row : playerRows) {
+            if (allowed[row][column]) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
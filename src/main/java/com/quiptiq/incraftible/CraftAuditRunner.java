@@ -0,0 +1,161 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_AUDIT_COLUMN;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_AUDIT_FAILED;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_AUDIT_NO_MATCH;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_AUDIT_WRITTEN;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * Runs /ic audit. Players' permissions are captured as a {@link CraftAudit}
+ * on the main server thread; the matrix is then evaluated on a pool of daemon
+ * threads, one per processor, and written as CSV from a scheduler thread.
+ *
+ * @author Taufiq Hoven
+ */
+public class CraftAuditRunner {
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    /**
+     * Directory in the data folder to which audit matrices are written, apart
+     * from the denial log.
+     */
+    private static final String AUDIT_DIRECTORY = "audit/matrix";
+
+    private static final String AUDIT_FILE_FORMAT = "audit-%s.csv";
+
+    private static final String AUDIT_THREAD_NAME = "Incraftible audit";
+
+    /**
+     * Maximum number of permissions for which allowed counts are sent to the
+     * sender of an audit, rather than only being written to the file.
+     */
+    private static final int AUDIT_SUMMARY_COLUMNS = 16;
+
+    private static final String LOG_WARN_AUDIT_FAILED = LOG_PREFIX + "Couldn't write audit to %s: %s";
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final Incraftible plugin;
+
+    private final IncraftibleConfig config;
+
+    private final PluginTasks tasks;
+
+    CraftAuditRunner(Incraftible plugin, IncraftibleConfig config, PluginTasks tasks) {
+        this.plugin = plugin;
+        this.config = config;
+        this.tasks = tasks;
+    }
+
+    /**
+     * Audits whether each online player may craft the slots selected by the
+     * specified filter, writing the matrix as CSV to the plugin's data folder
+     * and sending a summary to the sender. Must be called from the main
+     * server thread.
+     *
+     * @param sender
+     *            Sender to which the summary is sent.
+     * @param filter
+     *            Material name or permission, as accepted by
+     *            {@link CraftAudit#selectSlots}, or null to audit every
+     *            permission.
+     */
+    public void auditCraftPermissions(final CommandSender sender, String filter) {
+        Server server = plugin.getServer();
+        int[] slots = CraftAudit.selectSlots(filter, server == null ? null : server.getPluginManager());
+        if (slots.length == 0) {
+            sender.sendMessage(String.format(PLAYER_MESSAGE_AUDIT_NO_MATCH, filter));
+            return;
+        }
+        final long start = System.nanoTime();
+        Player[] players = server == null ? new Player[0] : server.getOnlinePlayers();
+        WorldPolicy[] playerPolicies = new WorldPolicy[players.length];
+        for (int i = 0; i < players.length; i++) {
+            playerPolicies[i] = config.getWorldPolicy(players[i].getWorld());
+        }
+        final CraftAudit audit = CraftAudit.snapshot(players, playerPolicies, config.getDecisionCache(),
+                config.getContestedMaterials(), slots);
+        final File auditFile = tasks.getDataFile(AUDIT_DIRECTORY,
+                String.format(AUDIT_FILE_FORMAT, PluginTasks.timestamp()));
+        tasks.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                List<String> lines = new ArrayList<String>();
+                try {
+                    evaluate(audit);
+                    PluginTasks.createParentDirectory(auditFile);
+                    audit.writeCsv(auditFile);
+                    lines.add(String.format(PLAYER_MESSAGE_AUDIT_WRITTEN, audit.getPlayerCount(),
+                            audit.getTableCount(), audit.getColumnCount(),
+                            (System.nanoTime() - start) / NANOS_PER_MILLI, auditFile.getPath()));
+                    if (audit.getColumnCount() <= AUDIT_SUMMARY_COLUMNS) {
+                        for (int column = 0; column < audit.getColumnCount(); column++) {
+                            lines.add(String.format(PLAYER_MESSAGE_AUDIT_COLUMN,
+                                    audit.getColumnPermissionName(column), audit.getAllowedCount(column),
+                                    audit.getPlayerCount()));
+                        }
+                    }
+                } catch (IOException e) {
+                    logAuditFailure(auditFile, e, lines);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logAuditFailure(auditFile, e, lines);
+                } catch (ExecutionException e) {
+                    logAuditFailure(auditFile, e.getCause(), lines);
+                }
+                tasks.sendSync(sender, lines);
+            }
+        });
+    }
+
+    /**
+     * Evaluates the specified audit on a pool of audit threads, one per
+     * processor, which is shut down once the audit is evaluated.
+     */
+    private static void evaluate(CraftAudit audit) throws InterruptedException, ExecutionException {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new AuditThreadFactory());
+        try {
+            audit.evaluate(executor, parallelism);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void logAuditFailure(File auditFile, Throwable cause, List<String> lines) {
+        log.log(Level.WARNING, String.format(LOG_WARN_AUDIT_FAILED, auditFile.getPath(), cause), cause);
+        lines.clear();
+        lines.add(PLAYER_MESSAGE_AUDIT_FAILED);
+    }
+
+    /**
+     * Creates daemon threads for evaluating audits, so that an audit in
+     * progress does not hold up server shutdown.
+     */
+    private static class AuditThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, AUDIT_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.quiptiq.incraftible;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.Recipe;
+
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * State of a single craft as it passes through the craft pipeline. Each
+ * stage fills in what the following stages need.
+ *
+ * This class is not thread-safe; a context is used by a single thread.
+ *
+ * @author Taufiq Hoven
+ */
+public final class CraftContext {
+    private final InventoryClickEvent event;
+
+    private final CraftEventSource source;
+
+    private final ConfigSnapshot settings;
+
+    private Player player;
+
+    private WorldPolicy policy;
+
+    private Recipe recipe;
+
+    private Material craftable;
+
+    private CraftDecision decision;
+
+    private Material counted;
+
+    private boolean allowed = true;
+
+    /**
+     * Creates the context for a craft.
+     *
+     * @param event
+     *            Event raised for the craft.
+     * @param source
+     *            Source of the event, either {@link CraftEventSource#CLICK}
+     *            or {@link CraftEventSource#CRAFT}.
+     * @param settings
+     *            Settings in effect for the whole craft.
+     */
+    public CraftContext(InventoryClickEvent event, CraftEventSource source, ConfigSnapshot settings) {
+        this.event = event;
+        this.source = source;
+        this.settings = settings;
+    }
+
+    /**
+     * @return Event raised for the craft.
+     */
+    public InventoryClickEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * @return Source of the event.
+     */
+    public CraftEventSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return Settings in effect for the whole craft.
+     */
+    public ConfigSnapshot getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return Player crafting, or null if not yet known.
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * @param player
+     *            Player crafting.
+     */
+    public void setPlayer(Player player) {
+        this.player = player;
+    }
+
+    /**
+     * @return Policy of the world in which the player is crafting, or null if
+     *         not yet known.
+     */
+    public WorldPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @param policy
+     *            Policy of the world in which the player is crafting.
+     */
+    public void setPolicy(WorldPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return Recipe crafted, or null if not yet resolved.
+     */
+    public Recipe getRecipe() {
+        return recipe;
+    }
+
+    /**
+     * @param recipe
+     *            Recipe crafted.
+     */
+    public void setRecipe(Recipe recipe) {
+        this.recipe = recipe;
+    }
+
+    /**
+     * @return Material crafted, or null if not yet resolved.
+     */
+    public Material getCraftable() {
+        return craftable;
+    }
+
+    /**
+     * @param craftable
+     *            Material crafted.
+     */
+    public void setCraftable(Material craftable) {
+        this.craftable = craftable;
+    }
+
+    /**
+     * @return Material counted against the player's limits, or null if the
+     *         craft wasn't counted.
+     */
+    public Material getCounted() {
+        return counted;
+    }
+
+    /**
+     * @param counted
+     *            Material counted against the player's limits.
+     */
+    public void setCounted(Material counted) {
+        this.counted = counted;
+    }
+
+    /**
+     * @return Decision for the craft, or null if not yet decided.
+     */
+    public CraftDecision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return Whether the craft is allowed. True until decided otherwise.
+     */
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    /**
+     * Records the decision for the craft.
+     *
+     * @param decision
+     *            Decision for the craft.
+     * @param allowed
+     *            Whether the decision allows the craft under the strategy in
+     *            effect.
+     */
+    public void decide(CraftDecision decision, boolean allowed) {
+        this.decision = decision;
+        this.allowed = allowed;
+    }
+}
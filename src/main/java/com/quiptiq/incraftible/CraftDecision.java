@@ -0,0 +1,44 @@
+package com.quiptiq.incraftible;
+
+/**
+ * Outcome of looking up a craft permission for a player. Permissions that are
+ * not set are resolved by the configured {@link PermissionsStrategy}, so that
+ * a change of strategy does not invalidate stored decisions.
+ *
+ * @author Taufiq Hoven
+ */
+public enum CraftDecision {
+    /**
+     * Permission is set and granted.
+     */
+    ALLOWED,
+
+    /**
+     * Permission is set and denied.
+     */
+    DENIED,
+
+    /**
+     * Permission is not set, so the permission strategy applies.
+     */
+    UNSET,
+
+    /**
+     * Item could not be resolved to a permission, so crafting is denied.
+     */
+    INVALID;
+
+    /**
+     * Resolves this decision to whether or not crafting is allowed.
+     *
+     * @param strategy
+     *            Strategy used when the permission is not set.
+     * @return True if crafting is allowed, otherwise false.
+     */
+    public boolean isAllowed(PermissionsStrategy strategy) {
+        if (this == UNSET) {
+            return PermissionsStrategy.ALL.equals(strategy);
+        }
+        return this == ALLOWED;
+    }
+}
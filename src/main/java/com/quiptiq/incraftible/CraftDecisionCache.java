@@ -0,0 +1,208 @@
+package com.quiptiq.incraftible;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Per-player craft permission tables. Each player's craft permissions are
+ * compiled into a {@link CraftPermissionTable} the first time they are needed,
+ * usually when the player joins, so that a craft check is answered without
+ * going back to the Bukkit permission engine.
+ *
+ * Tables are interned: players whose craft permissions compile to the same
+ * table, such as members of the same permission group, share a single
+ * instance, which is released once no player refers to it. Memory therefore
+ * grows with the number of distinct sets of craft permissions rather than the
+ * number of players.
+ *
+ * Tables must be invalidated whenever a player's permissions may have
+ * changed. Incraftible does this when a player quits or changes world and
+ * when the config is reloaded; other plugins that change permissions should
+ * call {@link #invalidate(Player)} or {@link #invalidateAll()}.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class CraftDecisionCache {
+    /**
+     * Materials whose permissions may be set, used when compiling tables.
+     */
+    private final ContestedMaterials contestedMaterials;
+
+    /**
+     * Compiled table for each player.
+     */
+    private final ConcurrentHashMap<UUID, CraftPermissionTable> playerTables =
+            new ConcurrentHashMap<UUID, CraftPermissionTable>();
+
+    /**
+     * Interned tables, with the number of players referring to each. Guarded
+     * by this cache.
+     */
+    private final Map<CraftPermissionTable, SharedTable> sharedTables =
+            new HashMap<CraftPermissionTable, SharedTable>();
+
+    /**
+     * Incremented whenever tables are invalidated, so that a table compiled
+     * from permissions read before an invalidation is not cached after it.
+     * Guarded by this cache.
+     */
+    private long generation;
+
+    /**
+     * Creates a new, empty cache.
+     *
+     * @param contestedMaterials
+     *            Materials whose permissions may be set for some player.
+     */
+    public CraftDecisionCache(ContestedMaterials contestedMaterials) {
+        this.contestedMaterials = contestedMaterials;
+    }
+
+    /**
+     * Gets the compiled table for the specified player, compiling it if
+     * necessary.
+     *
+     * @param player
+     *            Player crafting.
+     * @return Compiled table, or null if the player cannot be identified.
+     */
+    public CraftPermissionTable getTable(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (playerId == null) {
+            return null;
+        }
+        CraftPermissionTable table = playerTables.get(playerId);
+        if (table == null) {
+            table = compile(player, playerId);
+        }
+        return table;
+    }
+
+    /**
+     * Compiles the specified player's table, replacing any existing table.
+     *
+     * @param player
+     *            Player whose permissions are compiled.
+     */
+    public void compile(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (playerId != null) {
+            compile(player, playerId);
+        }
+    }
+
+    private CraftPermissionTable compile(Player player, UUID playerId) {
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+        // Compiled outside the lock, as walking permissions may be slow
+        CraftPermissionTable compiled = CraftPermissionTable.compile(player, contestedMaterials);
+        synchronized (this) {
+            if (generation != startGeneration) {
+                // Invalidated while compiling, so the table may be stale;
+                // it answers this check only and is compiled again next time
+                return compiled;
+            }
+            CraftPermissionTable table = intern(compiled);
+            release(playerTables.put(playerId, table));
+            return table;
+        }
+    }
+
+    /**
+     * Gets the shared instance of the specified table, adding a reference to
+     * it. Must be called while holding the lock on this cache.
+     */
+    private CraftPermissionTable intern(CraftPermissionTable table) {
+        SharedTable shared = sharedTables.get(table);
+        if (shared == null) {
+            shared = new SharedTable(table);
+            sharedTables.put(table, shared);
+        }
+        shared.references++;
+        return shared.table;
+    }
+
+    /**
+     * Removes a reference to the specified shared table, discarding it once
+     * it has no references. Must be called while holding the lock on this
+     * cache.
+     */
+    private void release(CraftPermissionTable table) {
+        if (table == null) {
+            return;
+        }
+        SharedTable shared = sharedTables.get(table);
+        if (shared != null && --shared.references == 0) {
+            sharedTables.remove(table);
+        }
+    }
+
+    /**
+     * Discards the compiled table for the specified player.
+     *
+     * @param player
+     *            Player whose table is discarded.
+     */
+    public void invalidate(Player player) {
+        invalidate(player.getUniqueId());
+    }
+
+    /**
+     * Discards the compiled table for the player with the specified id.
+     *
+     * @param playerId
+     *            Unique id of the player whose table is discarded.
+     */
+    public void invalidate(UUID playerId) {
+        if (playerId != null) {
+            synchronized (this) {
+                generation++;
+                release(playerTables.remove(playerId));
+            }
+        }
+    }
+
+    /**
+     * Discards the compiled tables for all players.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        playerTables.clear();
+        sharedTables.clear();
+    }
+
+    /**
+     * @return Number of players with compiled tables.
+     */
+    public int size() {
+        return playerTables.size();
+    }
+
+    /**
+     * @return Number of distinct tables shared between players.
+     */
+    public synchronized int getSharedTableCount() {
+        return sharedTables.size();
+    }
+
+    /**
+     * Interned table and the number of players referring to it.
+     */
+    private static final class SharedTable {
+        private final CraftPermissionTable table;
+
+        private int references;
+
+        SharedTable(CraftPermissionTable table) {
+            this.table = table;
+        }
+    }
+}
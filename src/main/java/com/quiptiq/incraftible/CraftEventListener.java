@@ -2,9 +2,14 @@ package com.quiptiq.incraftible;
 
 import static com.quiptiq.incraftible.message.FixedMessage.LOG_ITEM_CRAFT_ATTEMPT;
 
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 
+import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -15,16 +20,54 @@ import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.event.inventory.InventoryType.SlotType;
 import org.bukkit.inventory.CraftingInventory;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.Recipe;
 
+import com.quiptiq.incraftible.audit.DenialAuditLog;
+import com.quiptiq.incraftible.audit.DenialRecord;
+import com.quiptiq.incraftible.limit.CraftLimits;
+import com.quiptiq.incraftible.limit.LimitResult;
 import com.quiptiq.incraftible.message.Message;
+import com.quiptiq.incraftible.recipe.RecipeRules;
+import com.quiptiq.incraftible.shadow.ShadowEvaluator;
+import com.quiptiq.incraftible.trace.CraftTracer;
+import com.quiptiq.incraftible.trace.TraceRecorder;
+import com.quiptiq.incraftible.world.Region;
+import com.quiptiq.incraftible.world.RegionIndex;
+import com.quiptiq.incraftible.world.WorldPolicy;
 
 /**
  * Simple listener for inventory crafting events.
  * 
+ * Clicks on the result slot and craft item events both feed a single craft
+ * pipeline, of which events are checked depending on the configured
+ * {@link CraftEventSource}. The pipeline's stages are, in order:
+ * <ol>
+ * <li>Duplicate suppression, when both events are checked.</li>
+ * <li>Cheap filters that end the pipeline early: rate limits and quotas, and
+ * results that nobody has a permission for, which the strategy alone allows
+ * or denies. The policy of the player's world is found here.</li>
+ * <li>Recipe resolution.</li>
+ * <li>The craft decision.</li>
+ * <li>Side effects of a denial.</li>
+ * </ol>
+ * 
  * @author Taufiq Hoven
  */
 public class CraftEventListener implements Listener {
+    private static final String TRACE_CRAFT_IGNORED =
+            "Craft event ignored, cancelled: %s, slot type: %s, recipe: %s, inventory type: %s";
+
+    private static final String TRACE_RECIPE_RULE = "Recipe rule %s matched: %s";
+
+    private static final String TRACE_REGION = "Region %s decided %s: %s";
+
+    private static final String TRACE_LIMITED = "Craft of %s cancelled: %s";
+
+    private static final String TRACE_DUPLICATE = "Duplicate %s event for craft already checked, cancelled: %s";
+
+    private static final String TRACE_UNCONTESTED = "Nobody has a permission for %s, allowed under %s: %s";
+
     private final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
 
     /**
@@ -32,6 +75,49 @@ public class CraftEventListener implements Listener {
      */
     private final IncraftibleConfig config;
 
+    /**
+     * Audit log of denied crafts, or null if auditing is disabled.
+     */
+    private final DenialAuditLog auditLog;
+
+    /**
+     * Recorder of evaluated crafts, or null if crafts are not captured.
+     */
+    private final TraceRecorder traceRecorder;
+
+    /**
+     * Side effects of a denial.
+     */
+    private final EffectsStage effectsStage = new EffectsStage();
+
+    /**
+     * Decision and side effects, applied once a craft has been matched to a
+     * recipe.
+     */
+    private final CraftPipeline craftStages = new CraftPipeline(new DecisionStage(), effectsStage);
+
+    /**
+     * Complete pipeline for an event on the result slot.
+     */
+    private final CraftPipeline pipeline = new CraftPipeline(new DuplicateStage(), new FilterStage(),
+            new RecipeStage(), new CraftStage() {
+                @Override
+                public boolean apply(CraftContext context) {
+                    return runCraftStages(context);
+                }
+            });
+
+    /**
+     * Most recent craft checked for each player, used to suppress duplicate
+     * events. Only used from the main server thread.
+     */
+    private final Map<HumanEntity, CheckedCraft> checkedCrafts = new WeakHashMap<HumanEntity, CheckedCraft>();
+
+    /**
+     * Number of server ticks since the listener was created.
+     */
+    private long tick;
+
     /**
      * Create a new listener for the specified plugin config.
      * 
@@ -39,7 +125,46 @@ public class CraftEventListener implements Listener {
      *            Configuration for the plugin behaviour.
      */
     public CraftEventListener(IncraftibleConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Create a new listener for the specified plugin config, recording denied
+     * crafts in the specified audit log.
+     * 
+     * @param config
+     *            Configuration for the plugin behaviour.
+     * @param auditLog
+     *            Audit log of denied crafts, or null if not audited.
+     */
+    public CraftEventListener(IncraftibleConfig config, DenialAuditLog auditLog) {
+        this(config, auditLog, null);
+    }
+
+    /**
+     * Create a new listener for the specified plugin config, recording denied
+     * crafts in the specified audit log and capturing evaluated crafts with
+     * the specified recorder.
+     * 
+     * @param config
+     *            Configuration for the plugin behaviour.
+     * @param auditLog
+     *            Audit log of denied crafts, or null if not audited.
+     * @param traceRecorder
+     *            Recorder of evaluated crafts, or null if not captured.
+     */
+    public CraftEventListener(IncraftibleConfig config, DenialAuditLog auditLog, TraceRecorder traceRecorder) {
         this.config = config;
+        this.auditLog = auditLog;
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Advances the listener's tick count. Called once per server tick, so
+     * that duplicate events for a craft can be recognised.
+     */
+    public void tick() {
+        tick++;
     }
 
     /**
@@ -47,20 +172,12 @@ public class CraftEventListener implements Listener {
      * BUKKIT-1112, this is not captured as a CraftItemEvent and must be checked
      * as an inventory click.
      * 
-     * @param clickEvent
+     * @param event
      *            Event containing the click information.
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onInventoryClick(InventoryClickEvent event) {
-        Inventory inv = event.getInventory();
-        if (inv != null && inv instanceof CraftingInventory && SlotType.RESULT.equals(event.getSlotType())
-                && !event.isCancelled()) {
-            Recipe recipe = ((CraftingInventory) inv).getRecipe();
-            if (recipe != null && recipe.getResult() != null
-                    && (InventoryType.CRAFTING.equals(inv.getType()) || InventoryType.WORKBENCH.equals(inv.getType()))) {
-                handleCraft(event, recipe, recipe.getResult().getType());
-            }
-        }
+        dispatch(event, CraftEventSource.CLICK);
     }
 
     /**
@@ -71,19 +188,32 @@ public class CraftEventListener implements Listener {
      */
     @EventHandler(priority = EventPriority.NORMAL)
     public void onInventoryCraft(CraftItemEvent event) {
-        log.info("onInventoryCraft");
-        if (!SlotType.RESULT.equals(event.getSlotType())
-                || event.isCancelled()
-                || event.getRecipe() == null
-                || event.getRecipe().getResult() == null
-                || !(InventoryType.CRAFTING.equals(event.getInventory().getType()) || InventoryType.WORKBENCH
-                        .equals(event.getInventory().getType()))) {
-            log.info("event.isCancelled(): " + event.isCancelled());
-            log.info("Slot type: " + event.getSlotType());
-            log.info("recipe: " + event.getRecipe());
-            log.info("Inventory type: " + event.getInventory().getType());
+        dispatch(event, CraftEventSource.CRAFT);
+    }
+
+    /**
+     * Feeds an event into the craft pipeline, if it is on the result slot and
+     * its source is checked.
+     * 
+     * @param event
+     *            Event raised.
+     * @param source
+     *            Source of the event.
+     */
+    private void dispatch(InventoryClickEvent event, CraftEventSource source) {
+        if (event.isCancelled() || !SlotType.RESULT.equals(event.getSlotType())) {
             return;
         }
+        // Only result clicks are timed, as other clicks return immediately
+        long start = System.nanoTime();
+        try {
+            ConfigSnapshot settings = config.getSnapshot();
+            if (settings.getCraftEventSource().accepts(source)) {
+                pipeline.apply(new CraftContext(event, source, settings));
+            }
+        } finally {
+            config.getStats().getClickLatency().record(System.nanoTime() - start);
+        }
     }
 
     /**
@@ -96,24 +226,452 @@ public class CraftEventListener implements Listener {
      * 
      * @param event
      *            Crafting event.
+     * @param recipe
+     *            Recipe crafted.
      * @param craftable
      *            Object created by the crafting.
      * @return True if the event is handled, false if it was not.
      */
     public boolean handleCraft(InventoryClickEvent event, Recipe recipe, Material craftable) {
-        if (Player.class.isAssignableFrom(event.getWhoClicked().getClass())) {
+        CraftContext context = new CraftContext(event, CraftEventSource.CLICK, config.getSnapshot());
+        context.setRecipe(recipe);
+        context.setCraftable(craftable);
+        if (event.getWhoClicked() instanceof Player) {
             Player player = (Player) event.getWhoClicked();
-            if (!config.isItemAllowed(craftable, recipe.getResult(), player)) {
-                player.sendMessage(Message.PLAYER_MESSAGE_DISALLOWED.prepareMessage(craftable));
-                event.setCancelled(true);
-                // Certain
-                if (config.isEventReturnValueMadeNull()) {
-                    event.setResult(null);
+            context.setPlayer(player);
+            context.setPolicy(config.getWorldPolicy(player.getWorld()));
+        }
+        runCraftStages(context);
+        return !context.isAllowed();
+    }
+
+    /**
+     * Applies the decision and side effect stages to a craft matched to a
+     * recipe, timing them together.
+     * 
+     * @return True if the craft is allowed.
+     */
+    private boolean runCraftStages(CraftContext context) {
+        long start = System.nanoTime();
+        try {
+            return context.getPlayer() != null && craftStages.apply(context);
+        } finally {
+            config.getStats().getHandleCraftLatency().record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Suppresses a second check of a craft that raised both a click and a
+     * craft item event in the same tick, giving the second event the outcome
+     * of the first. Only an event of the other source pairs with a checked
+     * event, and only once, so that repeated clicks in a tick, such as from
+     * an auto-clicker, are each checked.
+     */
+    private class DuplicateStage implements CraftStage {
+        @Override
+        public boolean apply(CraftContext context) {
+            if (!CraftEventSource.BOTH.equals(context.getSettings().getCraftEventSource())) {
+                return true;
+            }
+            InventoryClickEvent event = context.getEvent();
+            HumanEntity who = event.getWhoClicked();
+            CheckedCraft checked = checkedCrafts.get(who);
+            if (checked != null && checked.event != null && checked.tick == tick
+                    && checked.inventory == event.getInventory()
+                    && checked.source != context.getSource() && checked.event != event) {
+                event.setCancelled(checked.event.isCancelled());
+                event.setResult(checked.event.getResult());
+                // The pair is complete, so a later event is a new craft
+                checked.event = null;
+                CraftTracer tracer = config.getTracer();
+                if (tracer.isTracing(who)) {
+                    tracer.trace(TRACE_DUPLICATE, context.getSource(), event.isCancelled());
                 }
-                log.log(config.getLogLevel(), String.format(LOG_ITEM_CRAFT_ATTEMPT, player.getName(), craftable));
+                return false;
+            }
+            if (checked == null) {
+                checked = new CheckedCraft();
+                checkedCrafts.put(who, checked);
+            }
+            checked.tick = tick;
+            checked.inventory = event.getInventory();
+            checked.source = context.getSource();
+            checked.event = event;
+            return true;
+        }
+    }
+
+    /**
+     * Cheap checks that end the pipeline before the recipe is resolved:
+     * clicks over a rate limit or quota are cancelled, and a crafted result
+     * that nobody has a permission for, and that neither the world nor a
+     * region decides, is {@link CraftDecision#UNSET}: allowed under the ALL
+     * strategy, and denied under the others. The standard permissions are
+     * registered while any world uses the STANDARD strategy, so the results
+     * it grants are never uncontested.
+     */
+    private class FilterStage implements CraftStage {
+        @Override
+        public boolean apply(CraftContext context) {
+            InventoryClickEvent event = context.getEvent();
+            if (!(event.getWhoClicked() instanceof Player)) {
+                return false;
+            }
+            Player player = (Player) event.getWhoClicked();
+            context.setPlayer(player);
+            WorldPolicy policy = config.getWorldPolicy(player.getWorld());
+            context.setPolicy(policy);
+            ItemStack result = event.getCurrentItem();
+            if (result == null) {
                 return true;
             }
+            // Limits are checked first, so that clicks from auto-clickers
+            // are cancelled as cheaply as possible, but only for crafts: the
+            // result slots of other inventories, such as furnaces, and empty
+            // results aren't counted
+            if (!Material.AIR.equals(result.getType()) && isCraftingInventory(event.getInventory())
+                    && isOverLimit(context, result.getType())) {
+                return false;
+            }
+            // Recipe rules may decide any recipe, so they rule out the
+            // shortcut.
+            Material material = result.getType();
+            if (context.getSettings().getRecipeRules().isEmpty() && !Material.AIR.equals(material)
+                    && isCraftingInventory(event.getInventory())
+                    && !config.getContestedMaterials().isContested(material)
+                    && policy.getMaterialDecision(material) == null && findRegion(policy, player, material) == null) {
+                decideUncontested(context, result);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Decides a craft of a result that nobody has a permission for by the
+     * strategy alone, applying the side effects if it is denied.
+     *
+     * @param context
+     *            Context of the craft.
+     * @param result
+     *            Stack in the result slot.
+     */
+    private void decideUncontested(CraftContext context, ItemStack result) {
+        Player player = context.getPlayer();
+        Material material = result.getType();
+        PermissionsStrategy strategy = context.getPolicy().getPermissionsStrategy();
+        boolean allowed = CraftDecision.UNSET.isAllowed(strategy);
+        context.setCraftable(material);
+        context.decide(CraftDecision.UNSET, allowed);
+        CraftTracer tracer = config.getTracer();
+        if (tracer.isTracing(player)) {
+            tracer.trace(TRACE_UNCONTESTED, material, strategy, allowed);
         }
-        return false;
+        if (traceRecorder != null) {
+            traceRecorder.offer(player, material, getData(result), CraftDecision.UNSET, false, allowed);
+        }
+        ShadowEvaluator shadow = config.getShadow();
+        if (shadow != null && shadow.sample()) {
+            Inventory inv = context.getEvent().getInventory();
+            Recipe recipe = inv instanceof CraftingInventory ? ((CraftingInventory) inv).getRecipe() : null;
+            offerShadow(shadow, context, material, result, recipe, CraftDecision.UNSET, allowed);
+        }
+        if (!allowed) {
+            config.getStats().recordCheck(false);
+            effectsStage.apply(context);
+        }
+    }
+
+    /**
+     * Checks a click on the result slot against the player's rate limits and
+     * quotas, cancelling it if over a limit. A craft within its limits is
+     * counted against them, and given back if it is then denied.
+     * 
+     * @param context
+     *            Context of the craft.
+     * @param material
+     *            Material of the result.
+     * @return True if the click was cancelled.
+     */
+    private boolean isOverLimit(CraftContext context, Material material) {
+        ConfigSnapshot settings = context.getSettings();
+        CraftLimits limits = settings.getCraftLimits();
+        if (limits.isEmpty()) {
+            return false;
+        }
+        Player player = context.getPlayer();
+        LimitResult result = config.getLimiter().tryCraft(player.getUniqueId(), material, limits);
+        if (LimitResult.WITHIN_LIMITS.equals(result)) {
+            context.setCounted(material);
+            return false;
+        }
+        context.getEvent().setCancelled(true);
+        config.getStats().recordLimited();
+        Message message = LimitResult.RATE_LIMITED.equals(result) ? Message.PLAYER_MESSAGE_RATE_LIMITED
+                : Message.PLAYER_MESSAGE_QUOTA_EXCEEDED;
+        config.getMessageCoalescer().send(player, material, context.getPolicy().getMessageTemplate(message),
+                settings.getMessageCoalesceMillis());
+        CraftTracer tracer = config.getTracer();
+        if (tracer.isTracing(player)) {
+            tracer.trace(TRACE_LIMITED, material, result);
+        }
+        return true;
+    }
+
+    /**
+     * Whether the specified inventory is one in which items are crafted: the
+     * player's crafting grid or a workbench.
+     */
+    private static boolean isCraftingInventory(Inventory inv) {
+        return inv != null
+                && (InventoryType.CRAFTING.equals(inv.getType()) || InventoryType.WORKBENCH.equals(inv.getType()));
+    }
+
+    /**
+     * Resolves the recipe in a crafting or workbench inventory.
+     */
+    private class RecipeStage implements CraftStage {
+        @Override
+        public boolean apply(CraftContext context) {
+            InventoryClickEvent event = context.getEvent();
+            Inventory inv = event.getInventory();
+            Recipe recipe = inv instanceof CraftingInventory ? ((CraftingInventory) inv).getRecipe() : null;
+            if (recipe == null || recipe.getResult() == null || !isCraftingInventory(inv)) {
+                CraftTracer tracer = config.getTracer();
+                if (tracer.isTracing(event.getWhoClicked())) {
+                    tracer.trace(TRACE_CRAFT_IGNORED, event.isCancelled(), event.getSlotType(), recipe,
+                            inv == null ? null : inv.getType());
+                }
+                return false;
+            }
+            context.setRecipe(recipe);
+            context.setCraftable(recipe.getResult().getType());
+            return true;
+        }
+    }
+
+    /**
+     * Decides whether the craft is allowed, from a matching recipe rule, the
+     * materials always allowed or denied in the regions containing the player,
+     * those always allowed or denied in the player's world, or the
+     * permissions for the result, in that order.
+     */
+    private class DecisionStage implements CraftStage {
+        @Override
+        public boolean apply(CraftContext context) {
+            long start = System.nanoTime();
+            Player player = context.getPlayer();
+            Recipe recipe = context.getRecipe();
+            WorldPolicy policy = context.getPolicy();
+            CraftDecision ruleDecision = getRecipeDecision(context.getEvent(), recipe, player,
+                    context.getSettings().getRecipeRules());
+            if (ruleDecision == null) {
+                // Region and world lists are rules for materials alone
+                Region region = findRegion(policy, player, context.getCraftable());
+                if (region != null) {
+                    ruleDecision = region.getMaterialDecision(context.getCraftable());
+                    CraftTracer tracer = config.getTracer();
+                    if (tracer.isTracing(player)) {
+                        tracer.trace(TRACE_REGION, region.getId(), context.getCraftable(), ruleDecision);
+                    }
+                } else {
+                    ruleDecision = policy.getMaterialDecision(context.getCraftable());
+                }
+            }
+            CraftDecision decision = ruleDecision;
+            if (decision == null) {
+                decision = config.getCraftDecision(context.getCraftable(), recipe.getResult(), player);
+            }
+            boolean allowed = decision.isAllowed(policy.getPermissionsStrategy());
+            config.getStats().getItemAllowedLatency().record(System.nanoTime() - start);
+            config.getStats().recordCheck(allowed);
+            context.decide(decision, allowed);
+            if (traceRecorder != null) {
+                traceRecorder.offer(player, context.getCraftable(), getData(recipe.getResult()), decision,
+                        ruleDecision != null, allowed);
+            }
+            ShadowEvaluator shadow = config.getShadow();
+            if (shadow != null && shadow.sample()) {
+                // The candidate applies its own recipe rules to the
+                // permission decision
+                CraftDecision permissionDecision = ruleDecision == null ? decision
+                        : config.getCraftDecision(context.getCraftable(), recipe.getResult(), player);
+                offerShadow(shadow, context, context.getCraftable(), recipe.getResult(), recipe, permissionDecision,
+                        allowed);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Denies a craft that is not allowed: the craft is given back to the
+     * limits it was counted against, the player is told, the event is
+     * cancelled, and the denial is logged and audited. If the following
+     * option is set to true, the event result is also set to null:
+     * 
+     * <pre>
+     * event.craft.returnvalue.null
+     * </pre>
+     */
+    private class EffectsStage implements CraftStage {
+        @Override
+        public boolean apply(CraftContext context) {
+            if (context.isAllowed()) {
+                return true;
+            }
+            Player player = context.getPlayer();
+            Material craftable = context.getCraftable();
+            ConfigSnapshot settings = context.getSettings();
+            InventoryClickEvent event = context.getEvent();
+            WorldPolicy policy = context.getPolicy();
+            if (context.getCounted() != null) {
+                config.getLimiter().release(player.getUniqueId(), context.getCounted(), settings.getCraftLimits());
+            }
+            config.getMessageCoalescer().send(player, craftable,
+                    policy.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED),
+                    settings.getMessageCoalesceMillis());
+            event.setCancelled(true);
+            // Certain
+            if (settings.isEventReturnValueMadeNull()) {
+                event.setResult(null);
+            }
+            if (log.isLoggable(config.getLogLevel())) {
+                log.log(config.getLogLevel(), String.format(LOG_ITEM_CRAFT_ATTEMPT, player.getName(), craftable));
+            }
+            if (auditLog != null) {
+                // Crafts denied before the recipe is resolved have only the
+                // result slot
+                Recipe recipe = context.getRecipe();
+                auditDenial(player, craftable, recipe == null ? event.getCurrentItem() : recipe.getResult(),
+                        context.getDecision(), policy.getPermissionsStrategy());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gets the decision of the recipe rule matching the crafting matrix, if
+     * any. A matching rule takes precedence over the permissions for the
+     * result.
+     * 
+     * @param event
+     *            Crafting event.
+     * @param recipe
+     *            Recipe crafted.
+     * @param player
+     *            Player crafting.
+     * @param rules
+     *            Recipe rules in effect.
+     * @return Decision of the matching rule, or null if no rule matches.
+     */
+    private CraftDecision getRecipeDecision(InventoryClickEvent event, Recipe recipe, Player player,
+            RecipeRules rules) {
+        Inventory inv = event.getInventory();
+        if (rules.isEmpty() || !(inv instanceof CraftingInventory)) {
+            return null;
+        }
+        int rule = rules.match(recipe, ((CraftingInventory) inv).getMatrix());
+        if (rule == RecipeRules.NO_RULE) {
+            return null;
+        }
+        CraftDecision decision = rules.decide(rule, player);
+        CraftTracer tracer = config.getTracer();
+        if (tracer.isTracing(player)) {
+            tracer.trace(TRACE_RECIPE_RULE, rules.getId(rule), decision);
+        }
+        return decision;
+    }
+
+    /**
+     * Finds the region deciding the specified material where the player is
+     * standing. The location of the workbench isn't known from a crafting
+     * event, so the player's location stands in for it.
+     * 
+     * @param policy
+     *            Policy of the player's world.
+     * @param player
+     *            Player crafting.
+     * @param material
+     *            Material of the result.
+     * @return Region deciding the material, or null if no region does.
+     */
+    private static Region findRegion(WorldPolicy policy, Player player, Material material) {
+        RegionIndex regions = policy.getRegions();
+        if (regions.isEmpty()) {
+            return null;
+        }
+        Location location = player.getLocation();
+        return location == null ? null
+                : regions.find(material, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Offers a sampled craft check to the shadow evaluator, with the crafting
+     * matrix if the candidate config needs it.
+     * 
+     * @param shadow
+     *            Shadow evaluator.
+     * @param context
+     *            Context of the craft.
+     * @param craftable
+     *            Material of the result.
+     * @param stack
+     *            Stack created by the crafting.
+     * @param recipe
+     *            Recipe crafted, or null if unknown.
+     * @param decision
+     *            Permission decision for the craft, regardless of any recipe
+     *            rule.
+     * @param allowed
+     *            Whether the live config allowed the craft.
+     */
+    private void offerShadow(ShadowEvaluator shadow, CraftContext context, Material craftable, ItemStack stack,
+            Recipe recipe, CraftDecision decision, boolean allowed) {
+        Inventory inv = context.getEvent().getInventory();
+        ItemStack[] matrix = shadow.needsMatrix() && inv instanceof CraftingInventory
+                ? ((CraftingInventory) inv).getMatrix() : null;
+        shadow.offer(context.getPlayer(), craftable, getData(stack), recipe, matrix, decision, allowed);
+    }
+
+    /**
+     * Queues a record of a denied craft for the audit log.
+     * 
+     * @param player
+     *            Player denied.
+     * @param craftable
+     *            Object that would have been created by the crafting.
+     * @param stack
+     *            Stack that would have been created by the crafting.
+     * @param decision
+     *            Decision that led to the denial.
+     * @param strategy
+     *            Permissions strategy in effect.
+     */
+    private void auditDenial(Player player, Material craftable, ItemStack stack, CraftDecision decision,
+            PermissionsStrategy strategy) {
+        World world = player.getWorld();
+        auditLog.offer(new DenialRecord(System.currentTimeMillis(), player.getName(), craftable, getData(stack),
+                world == null ? null : world.getName(), decision, strategy));
+    }
+
+    /**
+     * @return Data value of the specified stack, 0 if there is no stack, or -1
+     *         if it is outside the range of data permissions.
+     */
+    private static byte getData(ItemStack stack) {
+        return stack == null ? 0 : PermissionsReference.getDataValue(stack);
+    }
+
+    /**
+     * Most recent craft checked for a player.
+     */
+    private static class CheckedCraft {
+        long tick;
+
+        Inventory inventory;
+
+        CraftEventSource source;
+
+        InventoryClickEvent event;
     }
 }
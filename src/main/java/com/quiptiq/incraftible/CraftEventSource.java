@@ -0,0 +1,66 @@
+package com.quiptiq.incraftible;
+
+import java.util.HashMap;
+
+/**
+ * Bukkit event that is authoritative for craft checks. Inventory clicks on
+ * the result slot are checked because of BUKKIT-1112, where crafts do not
+ * raise a CraftItemEvent; on builds where they do, a single craft may raise
+ * both events.
+ *
+ * @author Taufiq Hoven
+ */
+public enum CraftEventSource {
+    /**
+     * Crafts are checked on clicks on the result slot. This is the default.
+     */
+    CLICK("click"),
+
+    /**
+     * Crafts are checked on craft item events only.
+     */
+    CRAFT("craft"),
+
+    /**
+     * Crafts are checked on whichever event arrives first. The second event
+     * for the same craft in the same tick is given the outcome of the first
+     * rather than being checked again.
+     */
+    BOTH("both");
+
+    private static final HashMap<String, CraftEventSource> configToSource;
+
+    static {
+        HashMap<String, CraftEventSource> sources = new HashMap<String, CraftEventSource>();
+        for (CraftEventSource source : values()) {
+            sources.put(source.getConfigString(), source);
+        }
+        configToSource = sources;
+    }
+
+    private final String configString;
+
+    private CraftEventSource(String configString) {
+        this.configString = configString;
+    }
+
+    public String getConfigString() {
+        return configString;
+    }
+
+    public static CraftEventSource sourceForConfig(String config) {
+        return configToSource.get(config);
+    }
+
+    /**
+     * Whether events of the specified source are checked when this source is
+     * authoritative.
+     *
+     * @param source
+     *            Source of an event, either {@link #CLICK} or {@link #CRAFT}.
+     * @return True if the event should be checked.
+     */
+    public boolean accepts(CraftEventSource source) {
+        return this == BOTH || this == source;
+    }
+}
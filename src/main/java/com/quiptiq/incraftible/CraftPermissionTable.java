@@ -0,0 +1,199 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.PermissionsReference.DATA_VALUES;
+import static com.quiptiq.incraftible.PermissionsReference.SLOT_COUNT;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+
+/**
+ * A player's craft permissions, compiled into a pair of bitmaps over
+ * (material, data value) slots: one bit for whether the slot's permission is
+ * set and one for its value. A craft decision is then a single bit test.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class CraftPermissionTable {
+    private static final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private static final int WORDS = (SLOT_COUNT + 63) >>> 6;
+
+    private static final Material[] MATERIALS = Material.values();
+
+    /**
+     * Bit per slot, set if the slot's permission is set.
+     */
+    private final long[] setBits;
+
+    /**
+     * Bit per slot, set if the slot's permission is granted.
+     */
+    private final long[] allowedBits;
+
+    /**
+     * Fingerprint of the decisions in the table.
+     */
+    private final int hashCode;
+
+    private CraftPermissionTable(long[] setBits, long[] allowedBits) {
+        this.setBits = setBits;
+        this.allowedBits = allowedBits;
+        this.hashCode = 31 * Arrays.hashCode(setBits) + Arrays.hashCode(allowedBits);
+    }
+
+    /**
+     * Compiles the craft permissions in effect for the specified player. The
+     * player's effective permissions are walked once; if any of them is an
+     * unregistered wildcard that a permissions plugin may expand itself, each
+     * slot's permission is checked against the player instead. For materials
+     * with data permissions, slots whose own permission is not set take the
+     * material permission.
+     *
+     * @param player
+     *            Player whose permissions are compiled.
+     * @param contestedMaterials
+     *            Contested materials, used to recognise unregistered
+     *            wildcards.
+     * @return Compiled permissions.
+     */
+    public static CraftPermissionTable compile(Player player, ContestedMaterials contestedMaterials) {
+        long[] setBits = new long[WORDS];
+        long[] allowedBits = new long[WORDS];
+        Map<Material, Boolean> dataMaterials = null;
+        for (PermissionAttachmentInfo info : player.getEffectivePermissions()) {
+            String permissionName = info.getPermission().toLowerCase();
+            if (contestedMaterials.isUnregisteredWildcard(permissionName)) {
+                return compileFromPermissible(player);
+            }
+            int slot = perms.getPermissionSlot(permissionName);
+            if (slot >= 0) {
+                set(setBits, allowedBits, slot, info.getValue());
+                continue;
+            }
+            Material dataMaterial = perms.getDataMaterial(permissionName);
+            if (dataMaterial != null) {
+                if (dataMaterials == null) {
+                    dataMaterials = new EnumMap<Material, Boolean>(Material.class);
+                }
+                dataMaterials.put(dataMaterial, info.getValue());
+            }
+        }
+        if (dataMaterials != null) {
+            // Only known once every data permission has been walked
+            for (Map.Entry<Material, Boolean> entry : dataMaterials.entrySet()) {
+                int first = PermissionsReference.slot(entry.getKey(), 0);
+                for (int slot = first; slot < first + DATA_VALUES; slot++) {
+                    if (!isSet(setBits, slot)) {
+                        set(setBits, allowedBits, slot, entry.getValue());
+                    }
+                }
+            }
+        }
+        return new CraftPermissionTable(setBits, allowedBits);
+    }
+
+    /**
+     * Compiles the player's craft permissions by checking the permission of
+     * every slot.
+     */
+    private static CraftPermissionTable compileFromPermissible(Player player) {
+        long[] setBits = new long[WORDS];
+        long[] allowedBits = new long[WORDS];
+        for (Material material : MATERIALS) {
+            String materialPermissionName = null;
+            if (perms.hasDataPermission(material)) {
+                materialPermissionName = perms.getMaterialPermissionName(material);
+                if (!player.isPermissionSet(materialPermissionName)) {
+                    materialPermissionName = null;
+                }
+            }
+            int first = PermissionsReference.slot(material, 0);
+            for (int slot = first; slot < first + DATA_VALUES; slot++) {
+                String permissionName = perms.getSlotPermissionName(slot);
+                if (permissionName == null || !player.isPermissionSet(permissionName)) {
+                    permissionName = materialPermissionName;
+                }
+                if (permissionName != null) {
+                    set(setBits, allowedBits, slot, player.hasPermission(permissionName));
+                }
+            }
+        }
+        return new CraftPermissionTable(setBits, allowedBits);
+    }
+
+    private static boolean isSet(long[] setBits, int slot) {
+        return (setBits[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    private static void set(long[] setBits, long[] allowedBits, int slot, boolean allowed) {
+        setBits[slot >>> 6] |= 1L << slot;
+        if (allowed) {
+            allowedBits[slot >>> 6] |= 1L << slot;
+        }
+    }
+
+    /**
+     * Whether the specified data value has a slot in the table.
+     *
+     * @param data
+     *            Data value of a material.
+     * @return True if the data value is covered by the table.
+     */
+    public static boolean covers(byte data) {
+        return data >= 0 && data < DATA_VALUES;
+    }
+
+    /**
+     * Gets the decision for the specified material and data value, which must
+     * be covered by the table.
+     *
+     * @param material
+     *            Material crafted.
+     * @param data
+     *            Data value of the material.
+     * @return Decision for the slot.
+     */
+    public CraftDecision get(Material material, byte data) {
+        return get(PermissionsReference.slot(material, data));
+    }
+
+    /**
+     * Gets the decision for the specified slot.
+     *
+     * @param slot
+     *            Slot, as given by {@link PermissionsReference#slot}.
+     * @return Decision for the slot.
+     */
+    public CraftDecision get(int slot) {
+        long bit = 1L << slot;
+        if ((setBits[slot >>> 6] & bit) == 0) {
+            return CraftDecision.UNSET;
+        }
+        return (allowedBits[slot >>> 6] & bit) != 0 ? CraftDecision.ALLOWED : CraftDecision.DENIED;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CraftPermissionTable)) {
+            return false;
+        }
+        CraftPermissionTable other = (CraftPermissionTable) obj;
+        return hashCode == other.hashCode && Arrays.equals(setBits, other.setBits)
+                && Arrays.equals(allowedBits, other.allowedBits);
+    }
+}
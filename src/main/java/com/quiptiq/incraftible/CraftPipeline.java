@@ -0,0 +1,42 @@
+package com.quiptiq.incraftible;
+
+/**
+ * Sequence of stages through which a craft is handled, stopping at the first
+ * stage that ends the pipeline. A pipeline is itself a stage, so pipelines
+ * can be nested.
+ *
+ * This class is immutable; it is thread-safe if its stages are.
+ *
+ * @author Taufiq Hoven
+ */
+public final class CraftPipeline implements CraftStage {
+    private final CraftStage[] stages;
+
+    /**
+     * Creates a pipeline of the specified stages.
+     *
+     * @param stages
+     *            Stages, in the order they are applied.
+     */
+    public CraftPipeline(CraftStage... stages) {
+        this.stages = stages.clone();
+    }
+
+    /**
+     * Applies each stage in turn.
+     *
+     * @param context
+     *            Context of the craft.
+     * @return True if every stage was applied, false if a stage ended the
+     *         pipeline.
+     */
+    @Override
+    public boolean apply(CraftContext context) {
+        for (CraftStage stage : stages) {
+            if (!stage.apply(context)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
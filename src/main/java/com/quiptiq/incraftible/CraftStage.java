@@ -0,0 +1,19 @@
+package com.quiptiq.incraftible;
+
+/**
+ * Stage of the craft pipeline. Each stage reads and adds to the context of
+ * the craft, and may end the pipeline early.
+ *
+ * @author Taufiq Hoven
+ */
+public interface CraftStage {
+    /**
+     * Applies the stage to a craft.
+     *
+     * @param context
+     *            Context of the craft.
+     * @return True if the pipeline should continue to the next stage, false
+     *         if the craft needs no further handling.
+     */
+    boolean apply(CraftContext context);
+}
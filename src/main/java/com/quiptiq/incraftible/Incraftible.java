@@ -3,16 +3,40 @@ package com.quiptiq.incraftible;
 import static com.quiptiq.incraftible.message.FixedMessage.LOG_DISABLED;
 import static com.quiptiq.incraftible.message.FixedMessage.LOG_ENABLED;
 import static com.quiptiq.incraftible.message.FixedMessage.LOG_STANDARD_STRATEGY;
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_WARN_LIMITS_NOT_LOADED;
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_WARN_LIMITS_NOT_SAVED;
 import static com.quiptiq.incraftible.message.FixedMessage.LOG_WARN_NO_CONFIG;
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_WARN_STANDARD_WITH_NONE;
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_WARN_STATS_NOT_REGISTERED;
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_WARN_WARMUP_INTERRUPTED;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import com.quiptiq.incraftible.audit.DenialAuditLog;
+import com.quiptiq.incraftible.limit.CraftLimiter;
 import com.quiptiq.incraftible.message.FixedMessage;
+import com.quiptiq.incraftible.message.MaterialNamer;
+import com.quiptiq.incraftible.message.Message;
+import com.quiptiq.incraftible.stats.CraftStats;
+import com.quiptiq.incraftible.trace.TraceRecorder;
+import com.quiptiq.incraftible.world.WorldListener;
 
 /**
  * Plugin for intercepting crafting events.
@@ -26,44 +50,311 @@ public class Incraftible extends JavaPlugin {
      */
     public static final String DEFAULT_LOGGER = "Incraftible";
 
+    /**
+     * Interval between checks for newly registered permissions, in ticks.
+     */
+    private static final long PERMISSION_CHECK_PERIOD_TICKS = 200;
+
+    /**
+     * Interval between sending summaries of coalesced messages, in ticks.
+     */
+    private static final long MESSAGE_FLUSH_PERIOD_TICKS = 5;
+
     private Logger log;
 
     private IncraftibleConfig config;
 
-    private final PermissionsReference perms = PermissionsReference.getInstance();
+    private DenialAuditLog auditLog;
+
+    private TraceRecorder traceRecorder;
+
+    /**
+     * Name under which craft statistics are registered with JMX, or null if
+     * they are not registered.
+     */
+    private ObjectName statsName;
+
+    /**
+     * Parent permission granting, by default, the generated material
+     * permissions that default to true.
+     */
+    private static final String PERMISSION_STANDARD_DEFAULTS = PermissionsReference.PERMISSION_STANDARD + ".defaults";
+
+    /**
+     * Threads building the permission and material name tables, started on
+     * load and joined on enable.
+     */
+    private Thread[] tableBuilders = new Thread[0];
 
     @Override
     public final void onLoad() {
         log = Logger.getLogger(DEFAULT_LOGGER);
         super.onLoad();
+        // The tables walk every material, so build them while other plugins
+        // load
+        tableBuilders = new Thread[] {
+                startTableBuilder(new Runnable() {
+                    @Override
+                    public void run() {
+                        PermissionsReference.getInstance();
+                    }
+                }),
+                startTableBuilder(new Runnable() {
+                    @Override
+                    public void run() {
+                        MaterialNamer.getInstance();
+                        Message.values();
+                    }
+                })
+        };
+    }
+
+    /**
+     * Starts a daemon thread that builds a table.
+     *
+     * @param builder
+     *            Builds the table.
+     * @return Started thread.
+     */
+    private static Thread startTableBuilder(Runnable builder) {
+        Thread thread = new Thread(builder, FixedMessage.PLUGIN_NAME + " table builder");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Waits for the tables started on load to be built. If interrupted, any
+     * remaining tables are built when they are first used.
+     */
+    private void awaitTables() {
+        try {
+            for (Thread builder : tableBuilders) {
+                builder.join();
+            }
+        } catch (InterruptedException e) {
+            log.warning(LOG_WARN_WARMUP_INTERRUPTED);
+            Thread.currentThread().interrupt();
+        }
+        tableBuilders = new Thread[0];
     }
 
     @Override
     public void onDisable() {
+        unregisterStats();
+        if (config != null) {
+            saveLimits();
+            config.getShadowMode().stop();
+        }
+        if (auditLog != null) {
+            auditLog.stop();
+            auditLog = null;
+        }
+        if (traceRecorder != null) {
+            traceRecorder.stop();
+            traceRecorder = null;
+        }
         log.info(LOG_DISABLED);
     }
 
     @Override
     public final void onEnable() {
+        StartupProfile profile = new StartupProfile();
         PluginManager pluginManager = getServer().getPluginManager();
+        awaitTables();
+        profile.endPhase("tables");
 
         config = new IncraftibleConfig(this, this.getFile());
+        profile.endPhase("config");
         if (config == null) {
             // Error in loading?
             log.warning(LOG_WARN_NO_CONFIG);
         } else {
-            if (PermissionsStrategy.STANDARD.equals(config.getPermissionsStrategy())) {
-                List<Permission> materialPermissions =
-                        perms.createDefaultMaterialPermissions(this.getDescription().getPermissions());
+            ConfigSnapshot snapshot = config.getSnapshot();
+            if (snapshot.usesStrategy(PermissionsStrategy.STANDARD)) {
+                // Permission defaults are server-wide, so they also apply in worlds using other strategies
+                List<Permission> materialPermissions = PermissionsReference.getInstance()
+                        .createDefaultMaterialPermissions(this.getDescription().getPermissions());
                 log.info(LOG_STANDARD_STRATEGY);
-                for (Permission permission : materialPermissions) {
-                    pluginManager.addPermission(permission);
+                if (snapshot.usesStrategy(PermissionsStrategy.NONE)) {
+                    log.warning(LOG_WARN_STANDARD_WITH_NONE);
                 }
+                registerPermissions(pluginManager, materialPermissions);
+                profile.endPhase("permissions");
             }
             getCommand(FixedMessage.COMMAND_PREFIX).setExecutor(new CommandHandler(config));
 
-            pluginManager.registerEvents(new CraftEventListener(config), this);
+            if (config.isAuditEnabled()) {
+                auditLog = new DenialAuditLog(new File(getDataFolder(), DenialAuditLog.AUDIT_DIRECTORY),
+                        config.getAuditQueueCapacity(), config.getAuditRotateBytes(), config.getAuditRotateMillis(),
+                        config.getAuditFlushMillis());
+                auditLog.start();
+            }
+            if (config.isCaptureEnabled()) {
+                traceRecorder = new TraceRecorder(new File(getDataFolder(), TraceRecorder.TRACE_DIRECTORY),
+                        config.getCaptureQueueCapacity(), config.getCaptureFlushMillis());
+                traceRecorder.start();
+            }
+            config.getShadowMode().start();
+
+            registerStats(config.getStats());
+            final CraftEventListener craftListener = new CraftEventListener(config, auditLog, traceRecorder);
+            pluginManager.registerEvents(craftListener, this);
+            pluginManager.registerEvents(new PlayerSessionListener(config), this);
+            pluginManager.registerEvents(new WorldListener(config), this);
+            for (World world : getServer().getWorlds()) {
+                config.loadWorld(world);
+            }
+            loadLimits();
+            profile.endPhase("listeners");
+
+            config.rebuildContestedMaterials();
+            profile.endPhase("contested");
+            getServer().getScheduler().scheduleSyncRepeatingTask(this, new Runnable() {
+                @Override
+                public void run() {
+                    config.getContestedMaterials().rebuildIfChanged(
+                            getServer().getPluginManager(), getServer().getOnlinePlayers());
+                }
+            }, 1, PERMISSION_CHECK_PERIOD_TICKS);
+            getServer().getScheduler().scheduleSyncRepeatingTask(this, new Runnable() {
+                @Override
+                public void run() {
+                    config.getMessageCoalescer().flush();
+                }
+            }, MESSAGE_FLUSH_PERIOD_TICKS, MESSAGE_FLUSH_PERIOD_TICKS);
+            // Ticks let the listener recognise duplicate events for a craft
+            getServer().getScheduler().scheduleSyncRepeatingTask(this, new Runnable() {
+                @Override
+                public void run() {
+                    craftListener.tick();
+                }
+            }, 1, 1);
+            getServer().getScheduler().scheduleAsyncRepeatingTask(this, new ConfigWatcher(config),
+                    ConfigWatcher.WATCH_PERIOD_TICKS, ConfigWatcher.WATCH_PERIOD_TICKS);
+        }
+        log.info(String.format(LOG_ENABLED, profile.summary()));
+    }
+
+    /**
+     * Loads the rate limit and quota state saved when the plugin was last
+     * disabled, so that restarts do not reset daily quotas.
+     */
+    private void loadLimits() {
+        File limitsFile = new File(getDataFolder(), CraftLimiter.STATE_FILENAME);
+        if (!limitsFile.isFile()) {
+            return;
+        }
+        try {
+            config.getLimiter().load(limitsFile);
+        } catch (IOException e) {
+            log.warning(String.format(LOG_WARN_LIMITS_NOT_LOADED, limitsFile.getPath(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Saves the rate limit and quota state.
+     */
+    private void saveLimits() {
+        File limitsFile = new File(getDataFolder(), CraftLimiter.STATE_FILENAME);
+        try {
+            config.getLimiter().save(limitsFile);
+        } catch (IOException e) {
+            log.warning(String.format(LOG_WARN_LIMITS_NOT_SAVED, limitsFile.getPath(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Registers the specified permissions. Bukkit recalculates the
+     * permissions of every permissible each time a permission that is granted
+     * by default is registered, so such permissions are registered without a
+     * default and granted together through a single parent permission, which
+     * causes one recalculation.
+     *
+     * @param pluginManager
+     *            Manager with which the permissions are registered.
+     * @param permissions
+     *            Permissions to register.
+     */
+    private void registerPermissions(PluginManager pluginManager, List<Permission> permissions) {
+        Map<String, Boolean> defaultPermissions = new LinkedHashMap<String, Boolean>();
+        for (Permission permission : permissions) {
+            if (PermissionDefault.TRUE.equals(permission.getDefault())) {
+                pluginManager.addPermission(new Permission(permission.getName(), permission.getDescription(),
+                        PermissionDefault.FALSE, permission.getChildren()));
+                defaultPermissions.put(permission.getName(), true);
+            } else {
+                pluginManager.addPermission(permission);
+            }
+        }
+        if (!defaultPermissions.isEmpty()) {
+            pluginManager.addPermission(new Permission(PERMISSION_STANDARD_DEFAULTS, PermissionDefault.TRUE,
+                    defaultPermissions));
+        }
+    }
+
+    /**
+     * Registers the specified craft statistics with the platform MBean server.
+     * Failure is logged but does not stop the plugin from enabling.
+     *
+     * @param stats
+     *            Statistics to register.
+     */
+    private void registerStats(CraftStats stats) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(CraftStats.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // Left behind by a previous instance of the plugin
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(stats, name);
+            statsName = name;
+        } catch (JMException e) {
+            log.warning(String.format(LOG_WARN_STATS_NOT_REGISTERED, e.getMessage()));
+        }
+    }
+
+    /**
+     * Unregisters craft statistics from the platform MBean server, if they
+     * were registered.
+     */
+    private void unregisterStats() {
+        if (statsName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(statsName);
+        } catch (JMException e) {
+            log.warning(String.format(LOG_WARN_STATS_NOT_REGISTERED, e.getMessage()));
+        }
+        statsName = null;
+    }
+
+    /**
+     * Discards cached craft decisions for the specified player. Plugins that
+     * change a player's permissions should call this so that the change is
+     * seen by subsequent craft checks.
+     *
+     * @param player
+     *            Player whose permissions have changed.
+     */
+    public void invalidateCraftDecisions(Player player) {
+        if (config != null) {
+            config.getDecisionCache().invalidate(player);
+            config.getContestedMaterials().addGranted(player);
+        }
+    }
+
+    /**
+     * Discards cached craft decisions for all players. Plugins that change
+     * permissions for many players, such as on a group change, or that
+     * register permissions, should call this from the main server thread.
+     */
+    public void invalidateAllCraftDecisions() {
+        if (config != null) {
+            config.getDecisionCache().invalidateAll();
+            config.rebuildContestedMaterials();
         }
-        log.info(LOG_ENABLED);
     }
 }
@@ -1,22 +1,28 @@
 package com.quiptiq.incraftible;
 
-import static com.quiptiq.incraftible.PermissionsReference.PERMISSION_CRAFT_PREFIX;
 import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
 
 import java.io.*;
-import java.util.TreeSet;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.material.MaterialData;
-import org.bukkit.permissions.PermissionAttachmentInfo;
 
-import com.quiptiq.incraftible.message.Message;
+import com.quiptiq.incraftible.limit.CraftLimiter;
+import com.quiptiq.incraftible.message.MessageCoalescer;
+import com.quiptiq.incraftible.shadow.ShadowEvaluator;
+import com.quiptiq.incraftible.stats.CraftStats;
+import com.quiptiq.incraftible.trace.CraftTracer;
+import com.quiptiq.incraftible.world.WorldIds;
+import com.quiptiq.incraftible.world.WorldPolicies;
+import com.quiptiq.incraftible.world.WorldPolicy;
 
 /**
  * Configuration for Incraftible.
@@ -41,24 +47,88 @@ public class IncraftibleConfig {
 
     private static final String LOG_WARN_CLOSE_FILE_WRITER = LOG_PREFIX + "Couldn't close file writer";
 
-    private static final String CONFIG_CRAFT_EVENT_RETURN_VALUE_NULL = "event.craft.returnvalue.null";
-
-    private static final String CONFIG_CRAFT_DEFAULT = "craft.default";
-
     /**
      * Default logging level for configurable messages.
      */
     private static Level DEFAULT_LOG_LEVEL = Level.FINE;
 
-    private static final PermissionsStrategy DEFAULT_PERMISSIONS_STRATEGY = PermissionsStrategy.ALL;
+    private final PermissionsReference incraftiblePerms = PermissionsReference.getInstance();
 
-    private FileConfiguration config;
+    /**
+     * Settings from the most recent load of the config file, replaced as a
+     * whole on each reload.
+     */
+    private volatile ConfigSnapshot snapshot;
 
-    private boolean eventReturnValueMadeNull = false;
+    /**
+     * Debug tracing of craft checks, enabled along with debug logging.
+     */
+    private final CraftTracer tracer = new CraftTracer();
 
-    private final PermissionsReference incraftiblePerms = PermissionsReference.getInstance();
+    /**
+     * Counters and latencies for the craft path.
+     */
+    private final CraftStats stats = new CraftStats();
+
+    /**
+     * Rate limit and quota state for each player.
+     */
+    private final CraftLimiter limiter = new CraftLimiter();
 
-    private PermissionsStrategy strategy;
+    /**
+     * Coalesces repeated denial messages to each player.
+     */
+    private final MessageCoalescer messageCoalescer = new MessageCoalescer();
+
+    /**
+     * Materials whose permissions may be set for some player.
+     */
+    private final ContestedMaterials contestedMaterials = new ContestedMaterials();
+
+    /**
+     * Compiled craft permissions for each player.
+     */
+    private final CraftDecisionCache decisionCache = new CraftDecisionCache(contestedMaterials);
+
+    /**
+     * Ids of the server's worlds.
+     */
+    private final WorldIds worldIds = new WorldIds();
+
+    /**
+     * Policy of each world, compiled from the current snapshot and replaced
+     * whenever the snapshot is published or a world is loaded.
+     */
+    private volatile WorldPolicies worldPolicies;
+
+    private final Incraftible plugin;
+
+    private final File pluginFile;
+
+    /**
+     * Runs the work of commands off the main server thread.
+     */
+    private final PluginTasks tasks;
+
+    /**
+     * Reloads the config file in the background.
+     */
+    private final ConfigReloader reloader;
+
+    /**
+     * Lists and exports players' craft permissions in the background.
+     */
+    private final PermissionExporter permissionExporter;
+
+    /**
+     * Evaluates and writes audits of online players' craft permissions.
+     */
+    private final CraftAuditRunner auditRunner;
+
+    /**
+     * Evaluates a candidate config alongside this one.
+     */
+    private final ShadowMode shadowMode;
 
     /**
      * Level of logging to use for certain messages. Without a known logger,
@@ -75,7 +145,53 @@ public class IncraftibleConfig {
      *            Bukkit config on which properties are retrieved.
      */
     public IncraftibleConfig(Incraftible plugin, File pluginFile) {
+        this.plugin = plugin;
+        this.pluginFile = pluginFile;
+        tasks = new PluginTasks(plugin);
+        reloader = new ConfigReloader(plugin, this, tasks);
+        permissionExporter = new PermissionExporter(tasks);
+        auditRunner = new CraftAuditRunner(plugin, this, tasks);
+        shadowMode = new ShadowMode(plugin, this, tasks);
+        tracer.setEnabled(log.isLoggable(level));
+        loadConfig(plugin, pluginFile);
+    }
+
+    /**
+     * Reloads configuration from the config file of the plugin with which this
+     * config was created. Must be called from the main server thread.
+     */
+    public void reload() {
         loadConfig(plugin, pluginFile);
+        rebuildContestedMaterials();
+    }
+
+    /**
+     * Returns the reloader of the config file, for reloads that must not
+     * block the main server thread.
+     *
+     * @return Config reloader.
+     */
+    public ConfigReloader getReloader() {
+        return reloader;
+    }
+
+    /**
+     * @return Config file of the plugin with which this config was created.
+     */
+    public File getConfigFile() {
+        return new File(plugin.getDataFolder(), CONFIG_FILENAME);
+    }
+
+    /**
+     * Rebuilds the set of contested materials from the server's registered
+     * permissions and online players. Must be called from the main server
+     * thread.
+     */
+    public void rebuildContestedMaterials() {
+        Server server = plugin == null ? null : plugin.getServer();
+        if (server != null) {
+            contestedMaterials.rebuild(server.getPluginManager(), server.getOnlinePlayers());
+        }
     }
 
     /**
@@ -86,6 +202,7 @@ public class IncraftibleConfig {
      */
     public void setLogLevel(Level level) {
         this.level = level;
+        tracer.setEnabled(log.isLoggable(level));
     }
 
     /**
@@ -104,7 +221,8 @@ public class IncraftibleConfig {
      * @param newConfig
      *            Bukkit config on which properties are retrieved.
      */
-    public void loadConfig(Incraftible plugin, File pluginFile) {
+    public synchronized void loadConfig(Incraftible plugin, File pluginFile) {
+        FileConfiguration config;
         // Check for existing config file
         File configFile = new File(plugin.getDataFolder(), CONFIG_FILENAME);
         if (!configFile.exists()) {
@@ -114,24 +232,73 @@ public class IncraftibleConfig {
             plugin.reloadConfig();
             config = plugin.getConfig();
         }
-        // Override configurable messages
-        for (Message message : Message.values()) {
-            String configuredMessage = config.getString(message.getConfigNode());
-            if (configuredMessage != null) {
-                message.overrideMessage(configuredMessage);
-            }
+        publish(ConfigSnapshot.fromConfig(config == null ? new YamlConfiguration() : config));
+        decisionCache.invalidateAll();
+    }
+
+    /**
+     * Publishes the specified settings with a single write and compiles the
+     * world policies from them. Messages are read from the snapshot, so no
+     * other state is changed and this may be called from any thread.
+     *
+     * @param newSnapshot
+     *            Settings to publish.
+     */
+    void publish(ConfigSnapshot newSnapshot) {
+        snapshot = newSnapshot;
+        compileWorldPolicies();
+    }
+
+    /**
+     * Compiles the policy of each world with an id from the current
+     * snapshot. May be called from any thread; whichever of a reload and a
+     * world load compiles last sees the results of both.
+     */
+    private void compileWorldPolicies() {
+        synchronized (worldIds) {
+            ConfigSnapshot current = snapshot;
+            worldPolicies = WorldPolicies.compile(current.getDefaultWorldPolicy(), current.getWorldPolicies(),
+                    worldIds.getNames());
         }
-        eventReturnValueMadeNull = config.getBoolean(CONFIG_CRAFT_EVENT_RETURN_VALUE_NULL, false);
-        String defaultCraftPermissions = config.getString(CONFIG_CRAFT_DEFAULT,
-                DEFAULT_PERMISSIONS_STRATEGY.getConfigString());
-        log.info(LOG_PREFIX + "Using permission strategy:" + defaultCraftPermissions);
-        strategy = PermissionsStrategy.strategyForConfig(defaultCraftPermissions);
-        if (strategy == null) {
-            log.warning("Invalid crafting default: " + defaultCraftPermissions);
-            strategy = DEFAULT_PERMISSIONS_STRATEGY;
+    }
+
+    /**
+     * Assigns an id to a loaded world and compiles its policy. Must be called
+     * from the main server thread.
+     *
+     * @param world
+     *            World loaded.
+     */
+    public void loadWorld(World world) {
+        synchronized (worldIds) {
+            worldIds.load(world);
+            compileWorldPolicies();
         }
     }
 
+    /**
+     * Releases an unloaded world. Must be called from the main server thread.
+     *
+     * @param world
+     *            World unloaded.
+     */
+    public void unloadWorld(World world) {
+        worldIds.unload(world);
+    }
+
+    /**
+     * Gets the craft policy in effect in the specified world. Must be called
+     * from the main server thread.
+     *
+     * @param world
+     *            World in which a player is crafting, may be null.
+     * @return Policy of the world, or the default policy if the world has not
+     *         been loaded.
+     */
+    public WorldPolicy getWorldPolicy(World world) {
+        return worldPolicies.get(worldIds.getId(world));
+    }
+
     /**
      * Loads the default configuration for the specified plugin, using the given
      * plugin file and writes if out to the specified config file.
@@ -196,79 +363,217 @@ public class IncraftibleConfig {
      *         are defined in {@link PermissionsStrategy}
      */
     public PermissionsStrategy getPermissionsStrategy() {
-        return (strategy == null ? DEFAULT_PERMISSIONS_STRATEGY : strategy);
+        return snapshot.getPermissionsStrategy();
     }
 
     /**
-     * Whether or not the specified item is allowed.
+     * Returns the settings from the most recent load of the config file.
+     * Callers that need several settings to be consistent with each other
+     * should read them all from one snapshot.
+     *
+     * @return Current settings.
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Whether or not the specified item is allowed by the player's
+     * permissions, under the permissions strategy of the player's world.
      *
      * @param item
      *            Item to be checked. If null, returns false.
      * @return True if the item is allowed, otherwise false.
      */
     public boolean isItemAllowed(Material item, ItemStack stack, Player player) {
+        return getCraftDecision(item, stack, player).isAllowed(getWorldStrategy(player));
+    }
+
+    /**
+     * Gets the permissions strategy in effect in the player's world.
+     */
+    private PermissionsStrategy getWorldStrategy(Player player) {
+        return getWorldPolicy(player.getWorld()).getPermissionsStrategy();
+    }
+
+    /**
+     * Gets the permission decision for crafting the specified item. The
+     * decision must be resolved against the permissions strategy to determine
+     * whether crafting is allowed.
+     *
+     * @param item
+     *            Item to be checked. If null, returns
+     *            {@link CraftDecision#INVALID}.
+     * @param stack
+     *            Stack being crafted, used for data permissions.
+     * @param player
+     *            Player crafting the item.
+     * @return Decision for the item.
+     */
+    public CraftDecision getCraftDecision(Material item, ItemStack stack, Player player) {
         String permissionName;
+        byte data = 0;
         if (item == null) {
-            return false;
+            return CraftDecision.INVALID;
+        }
+        if (!contestedMaterials.isContested(item)) {
+            // Nobody can have a permission set for this material
+            if (tracer.isTracing(player)) {
+                tracer.traceDecision(player, item, data, null, CraftDecision.UNSET,
+                        CraftDecision.UNSET.isAllowed(getWorldStrategy(player)));
+            }
+            return CraftDecision.UNSET;
         }
         if (incraftiblePerms.hasBasePermission(item)) {
             permissionName = incraftiblePerms.getBasePermissionName(item);
-        } else if (incraftiblePerms.hasDataPermission(item)) {
+        } else {
             if (stack == null) {
                 log.warning(LOG_PREFIX + "Invalid stack " + item.toString());
-                return false;
-            }
-            MaterialData materialData = stack.getData();
-            if (materialData == null) {
-                log.warning(LOG_PREFIX + "No material data for expected item material" + item.toString());
-                return false;
+                return CraftDecision.INVALID;
             }
-            permissionName = incraftiblePerms.getDataPermissionName(item, materialData.getData());
-            log.log(level, "Checking permission value for " + permissionName);
+            data = PermissionsReference.getDataValue(stack);
+            permissionName = incraftiblePerms.getDataPermissionName(item, data);
             if (permissionName == null) {
-                log.warning(LOG_PREFIX + "No permission name stored for " + item.toString() + ":" + materialData.getData());
-                return false;
+                // Data values without a permission of their own are
+                // controlled by the material permission
+                permissionName = incraftiblePerms.getMaterialPermissionName(item);
             }
+        }
+
+        CraftDecision decision;
+        CraftPermissionTable table = decisionCache.getTable(player);
+        if (table != null && CraftPermissionTable.covers(data)) {
+            decision = table.get(item, data);
         } else {
-            // Attempt id-based permission
-            permissionName = PermissionsReference.extendPermissionName(
-                    PERMISSION_CRAFT_PREFIX, Integer.toString(item.getId()));
+            decision = lookupDecision(permissionName, player);
+            if (CraftDecision.UNSET.equals(decision) && incraftiblePerms.hasDataPermission(item)) {
+                String materialPermissionName = incraftiblePerms.getMaterialPermissionName(item);
+                if (!materialPermissionName.equals(permissionName)) {
+                    permissionName = materialPermissionName;
+                    decision = lookupDecision(permissionName, player);
+                }
+            }
+        }
+        if (tracer.isTracing(player)) {
+            tracer.traceDecision(player, item, data, permissionName, decision,
+                    decision.isAllowed(getWorldStrategy(player)));
         }
+        return decision;
+    }
 
+    /**
+     * Looks up the decision for the specified permission in the player's
+     * permissions.
+     *
+     * @param permissionName
+     *            Name of the permission to look up.
+     * @param player
+     *            Player whose permissions are checked.
+     * @return Decision for the permission.
+     */
+    private CraftDecision lookupDecision(String permissionName, Player player) {
         // If the permission is not set, only allowed if the ALL permission strategy is in effect.
         if (!player.isPermissionSet(permissionName)) {
-            log.log(level, LOG_PREFIX + permissionName + " not set, permission strategy " + strategy.toString());
-            return PermissionsStrategy.ALL.equals(strategy);
+            return CraftDecision.UNSET;
         } else {
-            log.log(level, LOG_PREFIX + "Permission check for " + permissionName);
-            return player.hasPermission(permissionName);
+            return player.hasPermission(permissionName) ? CraftDecision.ALLOWED : CraftDecision.DENIED;
         }
     }
 
     /**
-     * Logs all incraftible permissions for the specified player. This does not
-     * include default permissions.
+     * Returns the tracer for craft checks. Tracing for all players is enabled
+     * when configurable messages are logged at a level that is displayed.
      *
-     * @param player
-     *            Player for which permissions are logged.
+     * @return Tracer for craft checks.
      */
-    public void logCraftPermissions(Player player) {
-        if (player == null) {
-            log.warning(LOG_PREFIX + "Can't log permissions for null or offline players.");
-            return;
-        }
-        TreeSet<String> sortedLogEntries = new TreeSet<String>();
-        for (PermissionAttachmentInfo info : player.getEffectivePermissions()) {
-            String permissionName = info.getPermission();
-            if (!permissionName.startsWith(PERMISSION_CRAFT_PREFIX)) {
-                continue;
-            }
-            String value = player.isPermissionSet(permissionName) ? Boolean.toString(player.hasPermission(permissionName)) : "not set";
-            sortedLogEntries.add(permissionName + ":" + value);
-        }
-        for (String logEntry : sortedLogEntries) {
-            log.info(logEntry);
-        }
+    public CraftTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Returns the counters and latencies recorded for the craft path.
+     *
+     * @return Craft statistics.
+     */
+    public CraftStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the rate limit and quota state for each player.
+     *
+     * @return Craft limiter.
+     */
+    public CraftLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Returns the coalescer for messages sent to players when crafts are
+     * denied. Must only be used from the main server thread.
+     *
+     * @return Message coalescer.
+     */
+    public MessageCoalescer getMessageCoalescer() {
+        return messageCoalescer;
+    }
+
+    /**
+     * Returns the set of materials whose permissions may be set for some
+     * player. Craft checks for other materials are decided by the strategy
+     * alone.
+     *
+     * @return Contested materials.
+     */
+    public ContestedMaterials getContestedMaterials() {
+        return contestedMaterials;
+    }
+
+    /**
+     * Returns the compiled craft permissions for each player. These must be
+     * invalidated for a player whenever their permissions change.
+     *
+     * @return Compiled craft permissions.
+     */
+    public CraftDecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    /**
+     * Returns the lister and exporter of players' craft permissions.
+     *
+     * @return Permission exporter.
+     */
+    public PermissionExporter getPermissionExporter() {
+        return permissionExporter;
+    }
+
+    /**
+     * Returns the runner of audits of online players' craft permissions.
+     *
+     * @return Audit runner.
+     */
+    public CraftAuditRunner getAuditRunner() {
+        return auditRunner;
+    }
+
+    /**
+     * Returns the control of shadow mode, which evaluates a candidate config
+     * alongside this one.
+     *
+     * @return Shadow mode.
+     */
+    public ShadowMode getShadowMode() {
+        return shadowMode;
+    }
+
+    /**
+     * Returns the evaluator of the candidate config in shadow mode.
+     *
+     * @return Shadow evaluator, or null if shadow mode is not running.
+     */
+    public ShadowEvaluator getShadow() {
+        return shadowMode.getEvaluator();
     }
 
     /**
@@ -279,6 +584,68 @@ public class IncraftibleConfig {
      *         is handled, otherwise false.
      */
     public boolean isEventReturnValueMadeNull() {
-        return eventReturnValueMadeNull;
+        return snapshot.isEventReturnValueMadeNull();
+    }
+
+    /**
+     * Whether or not denied crafts are written to the audit log.
+     *
+     * @return True if the audit log is enabled, otherwise false.
+     */
+    public boolean isAuditEnabled() {
+        return snapshot.isAuditEnabled();
+    }
+
+    /**
+     * @return Maximum number of denial records waiting to be written to the
+     *         audit log before further records are dropped.
+     */
+    public int getAuditQueueCapacity() {
+        return snapshot.getAuditQueueCapacity();
+    }
+
+    /**
+     * @return Size in bytes after which the audit log is rotated.
+     */
+    public long getAuditRotateBytes() {
+        return snapshot.getAuditRotateBytes();
+    }
+
+    /**
+     * @return Age in milliseconds after which the audit log is rotated.
+     */
+    public long getAuditRotateMillis() {
+        return snapshot.getAuditRotateMillis();
+    }
+
+    /**
+     * @return Interval in milliseconds between writes to the audit log.
+     */
+    public long getAuditFlushMillis() {
+        return snapshot.getAuditFlushMillis();
+    }
+
+    /**
+     * Whether or not evaluated crafts are captured to a binary trace.
+     *
+     * @return True if crafts are captured, otherwise false.
+     */
+    public boolean isCaptureEnabled() {
+        return snapshot.isCaptureEnabled();
+    }
+
+    /**
+     * @return Maximum number of crafts waiting to be written to the trace
+     *         before further crafts are dropped.
+     */
+    public int getCaptureQueueCapacity() {
+        return snapshot.getCaptureQueueCapacity();
+    }
+
+    /**
+     * @return Interval in milliseconds between writes to the trace.
+     */
+    public long getCaptureFlushMillis() {
+        return snapshot.getCaptureFlushMillis();
     }
 }
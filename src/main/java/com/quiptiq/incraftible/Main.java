@@ -2,15 +2,23 @@ package com.quiptiq.incraftible;
 
 import static com.quiptiq.incraftible.message.FixedMessage.ENTER_TO_CONTINUE;
 import static com.quiptiq.incraftible.message.FixedMessage.USAGE;
+import static com.quiptiq.incraftible.message.FixedMessage.USAGE_REPLAY;
 
+import java.io.File;
 import java.io.IOException;
 
+import org.bukkit.plugin.InvalidDescriptionException;
+
+import com.quiptiq.incraftible.trace.TraceReplay;
+
 /**
  * Command-line execution.
  *
  * @author Taufiq Hoven
  */
 public final class Main {
+    private static final String REPLAY_COMMAND = "replay";
+
     /**
      * Hides constructor.
      */
@@ -19,12 +27,22 @@ public final class Main {
     }
 
     /**
-     * Default main method in case of accidentally executing the jar.
+     * Default main method in case of accidentally executing the jar. Also
+     * replays craft traces offline, when run with:
+     *
+     * <pre>
+     * replay &lt;trace&gt; &lt;config.yml&gt; [permissions.yml]
+     * </pre>
      *
-     * @param args  Command-line arguments. These are ignored.
+     * @param args  Command-line arguments.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && REPLAY_COMMAND.equals(args[0])) {
+            replay(args);
+            return;
+        }
         System.out.println(USAGE);
+        System.out.println(USAGE_REPLAY);
         System.out.println(ENTER_TO_CONTINUE);
         try {
             System.in.read();
@@ -33,4 +51,28 @@ public final class Main {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Replays a craft trace against a config, exiting with status 1 if any
+     * decision differs from the trace, or 2 if the replay couldn't be run.
+     *
+     * @param args  Command-line arguments, starting with the replay command.
+     */
+    private static void replay(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            System.out.println(USAGE_REPLAY);
+            System.exit(2);
+        }
+        try {
+            long differences = TraceReplay.replay(new File(args[1]), new File(args[2]),
+                    args.length > 3 ? new File(args[3]) : null, System.out);
+            System.exit(differences == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (InvalidDescriptionException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
 }
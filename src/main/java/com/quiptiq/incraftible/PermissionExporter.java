@@ -0,0 +1,105 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.PermissionsReference.PERMISSION_CRAFT_PREFIX;
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_LOGPERMS_EXPORTED;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_LOGPERMS_EXPORT_FAILED;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_LOGPERMS_PAGE;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Lists and exports players' craft permissions for /ic logperms. Each
+ * player's permissions are captured as a {@link PermissionListing} on the
+ * main server thread, then sorted, paginated and written on a scheduler
+ * thread. Default permissions are not included.
+ *
+ * @author Taufiq Hoven
+ */
+public class PermissionExporter {
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private static final String LOG_WARN_LOGPERMS_EXPORT_FAILED = LOG_PREFIX + "Couldn't export permissions to %s: %s";
+
+    /**
+     * Directory in the data folder to which permission listings are exported.
+     */
+    private static final String LOGPERMS_DIRECTORY = "logperms";
+
+    private static final String LOGPERMS_FILE_FORMAT = "%s-%s.txt";
+
+    private final PluginTasks tasks;
+
+    PermissionExporter(PluginTasks tasks) {
+        this.tasks = tasks;
+    }
+
+    /**
+     * Sends a page of the specified player's craft permissions to the sender.
+     *
+     * @param sender
+     *            Sender to which the page is sent.
+     * @param player
+     *            Online player whose permissions are listed.
+     * @param prefix
+     *            Prefix, below incraftible.craft., of the permissions listed.
+     * @param page
+     *            Page number, starting from 1.
+     */
+    public void logCraftPermissions(final CommandSender sender, Player player, String prefix, final int page) {
+        final PermissionListing listing = PermissionListing.snapshot(player, PERMISSION_CRAFT_PREFIX + prefix);
+        tasks.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                listing.sort();
+                List<String> lines = new ArrayList<String>();
+                lines.add(String.format(PLAYER_MESSAGE_LOGPERMS_PAGE, listing.getPlayerName(), page,
+                        listing.getPageCount(), listing.size()));
+                lines.addAll(listing.getPage(page));
+                tasks.sendSync(sender, lines);
+            }
+        });
+    }
+
+    /**
+     * Writes the specified player's craft permissions to a file in the
+     * plugin's data folder.
+     *
+     * @param sender
+     *            Sender to notify once the file is written.
+     * @param player
+     *            Online player whose permissions are exported.
+     * @param prefix
+     *            Prefix, below incraftible.craft., of the permissions
+     *            exported.
+     */
+    public void exportCraftPermissions(final CommandSender sender, Player player, String prefix) {
+        final PermissionListing listing = PermissionListing.snapshot(player, PERMISSION_CRAFT_PREFIX + prefix);
+        final File exportFile = tasks.getDataFile(LOGPERMS_DIRECTORY, String.format(LOGPERMS_FILE_FORMAT,
+                listing.getPlayerName(), PluginTasks.timestamp()));
+        tasks.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                try {
+                    PluginTasks.createParentDirectory(exportFile);
+                    listing.sort().export(exportFile);
+                    message = String.format(PLAYER_MESSAGE_LOGPERMS_EXPORTED, listing.size(),
+                            listing.getPlayerName(), exportFile.getPath());
+                } catch (IOException e) {
+                    log.warning(String.format(LOG_WARN_LOGPERMS_EXPORT_FAILED, exportFile.getPath(), e.getMessage()));
+                    message = PLAYER_MESSAGE_LOGPERMS_EXPORT_FAILED;
+                }
+                tasks.sendSync(sender, Collections.singletonList(message));
+            }
+        });
+    }
+}
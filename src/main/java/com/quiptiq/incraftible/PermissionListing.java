@@ -0,0 +1,136 @@
+package com.quiptiq.incraftible;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+
+/**
+ * Snapshot of the craft permissions in effect for a player, taken once on
+ * the main server thread so that it can be sorted, paginated and exported on
+ * another thread.
+ *
+ * This class is thread-safe once sorted; {@link #sort()} must be called
+ * before any other method, from a single thread.
+ *
+ * @author Taufiq Hoven
+ */
+public final class PermissionListing {
+    /**
+     * Number of permissions on each page.
+     */
+    public static final int PAGE_SIZE = 10;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static final String ENTRY_SEPARATOR = ":";
+
+    private final String playerName;
+
+    /**
+     * Entries of the form name:value.
+     */
+    private final String[] entries;
+
+    private PermissionListing(String playerName, String[] entries) {
+        this.playerName = playerName;
+        this.entries = entries;
+    }
+
+    /**
+     * Takes a snapshot of the specified player's effective permissions that
+     * start with the specified prefix. Must be called from the main server
+     * thread.
+     *
+     * @param player
+     *            Player whose permissions are listed.
+     * @param prefix
+     *            Prefix of the permissions listed.
+     * @return Unsorted listing.
+     */
+    public static PermissionListing snapshot(Player player, String prefix) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<String> entries = new ArrayList<String>();
+        for (PermissionAttachmentInfo info : player.getEffectivePermissions()) {
+            String permissionName = info.getPermission();
+            if (permissionName.startsWith(lowerPrefix)) {
+                entries.add(permissionName + ENTRY_SEPARATOR + info.getValue());
+            }
+        }
+        return new PermissionListing(player.getName(), entries.toArray(new String[entries.size()]));
+    }
+
+    /**
+     * Sorts the listing by permission name.
+     *
+     * @return This listing.
+     */
+    public PermissionListing sort() {
+        Arrays.sort(entries);
+        return this;
+    }
+
+    /**
+     * @return Name of the player whose permissions are listed.
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * @return Number of permissions listed.
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * @return Number of pages, at least one.
+     */
+    public int getPageCount() {
+        return Math.max(1, (entries.length + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    /**
+     * Gets the entries on the specified page.
+     *
+     * @param page
+     *            Page number, starting from 1.
+     * @return Entries on the page, empty if the page is out of range.
+     */
+    public List<String> getPage(int page) {
+        int start = (page - 1) * PAGE_SIZE;
+        if (page < 1 || start >= entries.length) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(
+                Arrays.asList(entries).subList(start, Math.min(start + PAGE_SIZE, entries.length)));
+    }
+
+    /**
+     * Writes all entries to the specified file, one per line.
+     *
+     * @param file
+     *            File to write.
+     * @throws IOException
+     *             if the file couldn't be written.
+     */
+    public void export(File file) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            for (String entry : entries) {
+                writer.write(entry);
+                writer.write(LINE_SEPARATOR);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
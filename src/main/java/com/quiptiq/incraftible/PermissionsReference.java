@@ -5,10 +5,12 @@ import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
 import java.util.*;
 import java.util.logging.Logger;
 
+import org.bukkit.CoalType;
 import org.bukkit.DyeColor;
 import org.bukkit.Material;
+import org.bukkit.TreeSpecies;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.Dye;
-import org.bukkit.material.MaterialData;
 import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionDefault;
 
@@ -49,71 +51,195 @@ public final class PermissionsReference {
      */
     public static final String PERMISSION_DYE = "dye";
 
-    private static final Map<Material, List<? extends Enum<?>>> MATERIAL_DATA_VALUES;
+    /**
+     * Number of bits of the data value in a slot.
+     */
+    private static final int DATA_BITS = 4;
 
     /**
-     * Generate a map of materials to the data enums that contain their values.
+     * Number of data values for which data permissions may be defined.
+     */
+    public static final int DATA_VALUES = 1 << DATA_BITS;
+
+    /**
+     * Textures of slabs, indexed by data value.
+     */
+    private static final String[] STEP_TEXTURES = {"stone", "sandstone", "wood", "cobblestone", "brick",
+            "smooth_brick"};
+
+    /**
+     * Variants of stone bricks, indexed by data value.
+     */
+    private static final String[] SMOOTH_BRICK_VARIANTS = {"plain", "mossy", "cracked", "chiseled"};
+
+    /**
+     * Final node of each data permission, indexed by data value, for every
+     * material whose data value tells apart items that are crafted or used as
+     * ingredients. Data values without a node are controlled by the material
+     * permission alone.
+     */
+    private static final Map<Material, String[]> MATERIAL_DATA_NAMES;
+
+    /**
+     * Generate the data nodes of each material with data permissions.
      */
     static {
-        HashMap<Material, List<? extends Enum<?>>> dataEnums = new HashMap<Material, List<? extends Enum<?>>>();
-        dataEnums.put(Material.INK_SACK, Arrays.asList(DyeColor.values()));
-        dataEnums.put(Material.WOOL, Arrays.asList(DyeColor.values()));
-        MATERIAL_DATA_VALUES = Collections.unmodifiableMap(dataEnums);
+        EnumMap<Material, String[]> dataNames = new EnumMap<Material, String[]>(Material.class);
+        String[] dyeNames = new String[DATA_VALUES];
+        String[] woolNames = new String[DATA_VALUES];
+        Dye dyeDataGenerator = new Dye();
+        for (DyeColor color : DyeColor.values()) {
+            // Numeric value of dye color may not be the same as the data
+            // value of a dye, but is the data value of wool
+            dyeDataGenerator.setColor(color);
+            dyeNames[dyeDataGenerator.getData()] = dataNodeName(color);
+            woolNames[color.getData()] = dataNodeName(color);
+        }
+        dataNames.put(Material.INK_SACK, dyeNames);
+        dataNames.put(Material.WOOL, woolNames);
+        String[] treeNames = new String[DATA_VALUES];
+        for (TreeSpecies species : TreeSpecies.values()) {
+            treeNames[species.getData()] = dataNodeName(species);
+        }
+        dataNames.put(Material.LOG, treeNames);
+        dataNames.put(Material.WOOD, treeNames);
+        String[] coalNames = new String[DATA_VALUES];
+        for (CoalType type : CoalType.values()) {
+            coalNames[type.getData()] = dataNodeName(type);
+        }
+        dataNames.put(Material.COAL, coalNames);
+        dataNames.put(Material.STEP, Arrays.copyOf(STEP_TEXTURES, DATA_VALUES));
+        dataNames.put(Material.SMOOTH_BRICK, Arrays.copyOf(SMOOTH_BRICK_VARIANTS, DATA_VALUES));
+        MATERIAL_DATA_NAMES = Collections.unmodifiableMap(dataNames);
     }
 
     /**
-     * Map from each material to the name-based permission that controls its
-     * crafting.
+     * Permission that controls crafting of each material as a whole, indexed
+     * by material ordinal. For materials with data permissions, this applies
+     * to data values whose own permission is not set.
+     */
+    private static final String[] PERMISSION_NAMES;
+
+    /**
+     * Whether each material has data permissions, indexed by material
+     * ordinal.
+     */
+    private static final boolean[] HAS_DATA_PERMISSIONS;
+
+    /**
+     * Material controlled by each material and data permission name.
+     */
+    private static final Map<String, Material> PERMISSION_MATERIALS;
+
+    /**
+     * Material with data permissions controlled as a whole by each material
+     * permission.
      */
-    private static final Map<Material, String> PERMISSION_NAMES;
+    private static final Map<String, Material> DATA_MATERIAL_PERMISSIONS;
 
-    private static final Map<Material, Map<Byte, String>> PERMISSION_DATA_NAMES;
+    /**
+     * Number of (material, data value) slots.
+     */
+    public static final int SLOT_COUNT = Material.values().length * DATA_VALUES;
 
     /**
-     * Generate a mapping from materials to their permissions.
+     * Permission checked when crafting each (material, data value) slot, or
+     * null if no permission is checked for the slot. Indexed by
+     * {@link #slot(Material, int)}, so this also holds every data permission.
+     */
+    private static final String[] SLOT_PERMISSION_NAMES;
+
+    /**
+     * Slot checked by each permission name.
+     */
+    private static final Map<String, Integer> PERMISSION_SLOTS;
+
+    /**
+     * Generate tables from materials to their permissions.
      */
     static {
-        HashMap<Material, String> permissionNames = new HashMap<Material, String>();
-        HashMap<Material, Map<Byte, String>> permissionDataNames = new HashMap<Material, Map<Byte, String>>();
-        for (Material material : Material.values()) {
-            if (MATERIAL_DATA_VALUES.containsKey(material)) {
-                String materialName = material.equals(Material.INK_SACK) ?
-                        PERMISSION_DYE : material.toString().toLowerCase();
-                Map<Byte, String> dataNames = createMaterialDataNames(material, materialName);
-                permissionDataNames.put(material, Collections.unmodifiableMap(dataNames));
+        Material[] materials = Material.values();
+        String[] permissionNames = new String[materials.length];
+        boolean[] hasDataPermissions = new boolean[materials.length];
+        String[] slotPermissionNames = new String[SLOT_COUNT];
+        for (Material material : materials) {
+            int ordinal = material.ordinal();
+            String materialName = material.equals(Material.INK_SACK) ?
+                    PERMISSION_DYE : material.toString().toLowerCase();
+            permissionNames[ordinal] = PERMISSION_CRAFT_PREFIX + materialName;
+            String[] dataNames = MATERIAL_DATA_NAMES.get(material);
+            hasDataPermissions[ordinal] = dataNames != null;
+            // Mirror the order of resolution when crafting: data permissions
+            // for materials with them, otherwise the material permission
+            if (dataNames != null) {
+                for (int data = 0; data < DATA_VALUES; data++) {
+                    if (dataNames[data] != null) {
+                        slotPermissionNames[slot(material, data)] = buildPermissionName(PERMISSION_CRAFT_NODE,
+                                materialName, dataNames[data]);
+                    }
+                }
             } else {
-                permissionNames.put(material, PERMISSION_CRAFT_PREFIX + material.toString().toLowerCase());
+                slotPermissionNames[slot(material, 0)] = permissionNames[ordinal];
             }
         }
-        PERMISSION_NAMES = Collections.unmodifiableMap(permissionNames);
-        PERMISSION_DATA_NAMES = Collections.unmodifiableMap(permissionDataNames);
+        PERMISSION_NAMES = permissionNames;
+        HAS_DATA_PERMISSIONS = hasDataPermissions;
+        SLOT_PERMISSION_NAMES = slotPermissionNames;
+
+        HashMap<String, Material> permissionMaterials = new HashMap<String, Material>();
+        HashMap<String, Material> dataMaterialPermissions = new HashMap<String, Material>();
+        HashMap<String, Integer> permissionSlots = new HashMap<String, Integer>();
+        for (Material material : materials) {
+            int ordinal = material.ordinal();
+            permissionMaterials.put(permissionNames[ordinal], material);
+            if (hasDataPermissions[ordinal]) {
+                dataMaterialPermissions.put(permissionNames[ordinal], material);
+            }
+        }
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            if (slotPermissionNames[slot] != null) {
+                permissionMaterials.put(slotPermissionNames[slot], materials[slot >>> DATA_BITS]);
+                permissionSlots.put(slotPermissionNames[slot], slot);
+            }
+        }
+        PERMISSION_MATERIALS = Collections.unmodifiableMap(permissionMaterials);
+        DATA_MATERIAL_PERMISSIONS = Collections.unmodifiableMap(dataMaterialPermissions);
+        PERMISSION_SLOTS = Collections.unmodifiableMap(permissionSlots);
     }
 
     /**
-     * Hides ugliness of data value assignment. Can't call common method so have
-     * to check individual cases. This is the main place where the generic
-     * methods won't work.
+     * Gets the slot for the specified material and data value.
      *
      * @param material
-     *            Material for which data names will be added.
-     * @param materialName
-     *            Name of the material.
-     * @return Map of material data names.
-     */
-    @SuppressWarnings("unchecked")
-    private static Map<Byte, String> createMaterialDataNames(Material material, String materialName) {
-        HashMap<Byte, String> dataNames = new HashMap<Byte, String>();
-        if (material.equals(Material.INK_SACK) || material.equals(Material.WOOL)) {
-            Dye dyeDataGenerator = new Dye();
-            for (DyeColor color : (List<DyeColor>) MATERIAL_DATA_VALUES.get(material)) {
-                // Numeric value of dye color may not be the same as the data
-                // value of a dye
-                dyeDataGenerator.setColor(color);
-                dataNames.put(dyeDataGenerator.getData(),
-                        dataNodePermissionName(color, materialName));
-            }
-        }
-        return dataNames;
+     *            Material crafted.
+     * @param data
+     *            Data value of the material, between 0 and
+     *            {@link #DATA_VALUES} exclusive.
+     * @return Slot for the material and data value.
+     */
+    public static int slot(Material material, int data) {
+        return material.ordinal() << DATA_BITS | data;
+    }
+
+    /**
+     * Gets the data value of the specified stack. The value is read from the
+     * stack's durability, so that no material data is created.
+     *
+     * @param stack
+     *            Stack crafted.
+     * @return Data value of the stack, or -1 if it is outside the range for
+     *         which data permissions may be defined.
+     */
+    public static byte getDataValue(ItemStack stack) {
+        short durability = stack.getDurability();
+        return durability >= 0 && durability < DATA_VALUES ? (byte) durability : -1;
+    }
+
+    /**
+     * @return Final node of the data permission for the specified value.
+     */
+    private static String dataNodeName(Enum<?> value) {
+        return value.toString().toLowerCase();
     }
 
     private static final PermissionsReference manager = new PermissionsReference();
@@ -211,7 +337,8 @@ public final class PermissionsReference {
                 continue;
             }
             String materialName = childName.substring(PERMISSION_CRAFT_PREFIX.length());
-            if (materialName.endsWith(PERMISSION_SEPARATOR + PERMISSION_WILDCARD)) {
+            boolean wildcard = materialName.endsWith(PERMISSION_SEPARATOR + PERMISSION_WILDCARD);
+            if (wildcard) {
                 materialName = materialName.substring(0,
                         materialName.length() - PERMISSION_SEPARATOR.length() - PERMISSION_WILDCARD.length());
             }
@@ -226,12 +353,10 @@ public final class PermissionsReference {
                 }
             }
 
-            Class<? extends MaterialData> dataClass = material.getData();
-            // For supported materials with data, add the data permissions
-            if (dataClass != null && MATERIAL_DATA_VALUES.containsKey(material)) {
-                addMaterialDataPermissions(
-                        materialPermissions, materialName, dataClass, MATERIAL_DATA_VALUES.get(material),
-                        val);
+            // For a wildcard over a material with data, add the data
+            // permissions; the material permission covers them all otherwise
+            if (wildcard && hasDataPermission(material)) {
+                addMaterialDataPermissions(materialPermissions, materialName, MATERIAL_DATA_NAMES.get(material), val);
             } else {
                 materialPermissions.add(new Permission(childName, PermissionDefault.TRUE));
             }
@@ -247,16 +372,17 @@ public final class PermissionsReference {
      *            List of permissions to which nodes will be added.
      * @param nodeName
      *            Name of the permission name with the material.
-     * @param dataClass
-     *            Class of the material data.
-     * @param dataEnums
-     *            Values of the named enumerator.
+     * @param dataNames
+     *            Final node of each data permission, indexed by data value.
      */
     private void addMaterialDataPermissions(List<Permission> materialPermissions, String nodeName,
-            Class<? extends MaterialData> dataClass, List<? extends Enum<?>> dataEnums, PermissionDefault val) {
+            String[] dataNames, PermissionDefault val) {
         HashMap<String, Boolean> dataPermissions = new HashMap<String, Boolean>();
-        for (Enum<?> dataEnum : dataEnums) {
-            String dataPermissionName = dataNodePermissionName(dataEnum, nodeName);
+        for (String dataName : dataNames) {
+            if (dataName == null) {
+                continue;
+            }
+            String dataPermissionName = buildPermissionName(PERMISSION_CRAFT_NODE, nodeName, dataName);
             dataPermissions.put(dataPermissionName, PermissionDefault.FALSE.equals(val) ? false : true);
             materialPermissions.add(new Permission(dataPermissionName, val));
         }
@@ -273,7 +399,7 @@ public final class PermissionsReference {
      *         false.
      */
     public boolean hasBasePermission(Material item) {
-        return PERMISSION_NAMES.containsKey(item);
+        return !HAS_DATA_PERMISSIONS[item.ordinal()];
     }
 
     /**
@@ -285,7 +411,35 @@ public final class PermissionsReference {
      * @return Permission name for the specified item, or null if none exists.
      */
     public String getBasePermissionName(Material item) {
-        return PERMISSION_NAMES.get(item);
+        return HAS_DATA_PERMISSIONS[item.ordinal()] ? null : PERMISSION_NAMES[item.ordinal()];
+    }
+
+    /**
+     * Gets the name of the permission controlling the specified material as a
+     * whole. For a material without data permissions this is its base
+     * permission; for one with them, it applies to each data value whose own
+     * permission is not set.
+     *
+     * @param item
+     *            Material for which a permission is retrieved.
+     * @return Material permission name.
+     */
+    public String getMaterialPermissionName(Material item) {
+        return PERMISSION_NAMES[item.ordinal()];
+    }
+
+    /**
+     * Gets the material with data permissions controlled as a whole by the
+     * specified permission.
+     *
+     * @param permissionName
+     *            Lower case permission name.
+     * @return Material whose data values the permission applies to, or null
+     *         if the permission is not the material permission of a material
+     *         with data permissions.
+     */
+    public Material getDataMaterial(String permissionName) {
+        return DATA_MATERIAL_PERMISSIONS.get(permissionName);
     }
 
     /**
@@ -297,7 +451,7 @@ public final class PermissionsReference {
      *         material, otherwise false.
      */
     public boolean hasDataPermission(Material item) {
-        return PERMISSION_DATA_NAMES.containsKey(item);
+        return HAS_DATA_PERMISSIONS[item.ordinal()];
     }
 
     /**
@@ -308,9 +462,91 @@ public final class PermissionsReference {
      *            Material for which data exists.
      * @param data
      *            Data for the specified material.
-     * @return Name of the permission for the specified material and data value.
+     * @return Name of the permission for the specified material and data
+     *         value, or null if none exists.
      */
     public String getDataPermissionName(Material item, byte data) {
-        return PERMISSION_DATA_NAMES.get(item).get(data);
+        if (!HAS_DATA_PERMISSIONS[item.ordinal()] || data < 0 || data >= DATA_VALUES) {
+            return null;
+        }
+        return SLOT_PERMISSION_NAMES[slot(item, data)];
+    }
+
+    /**
+     * Gets the material whose crafting is controlled by the specified base or
+     * data permission.
+     *
+     * @param permissionName
+     *            Lower case permission name.
+     * @return Material controlled by the permission, or null if the permission
+     *         does not control a single material.
+     */
+    public Material getPermissionMaterial(String permissionName) {
+        return PERMISSION_MATERIALS.get(permissionName);
+    }
+
+    /**
+     * Gets all materials controlled by base or data permissions that start
+     * with the specified prefix.
+     *
+     * @param prefix
+     *            Lower case permission name prefix.
+     * @return Materials controlled by permissions with the prefix.
+     */
+    public Set<Material> getPermissionMaterials(String prefix) {
+        EnumSet<Material> materials = EnumSet.noneOf(Material.class);
+        for (Map.Entry<String, Material> entry : PERMISSION_MATERIALS.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                materials.add(entry.getValue());
+            }
+        }
+        return materials;
+    }
+
+    /**
+     * Resolves an item named in the config to materials. Items are material
+     * names or ids, or permission prefixes below {@link #PERMISSION_CRAFT_PREFIX}
+     * such as dye.*.
+     *
+     * @param item
+     *            Item named in the config.
+     * @return Materials named by the item, empty if it is neither a material
+     *         nor a craft permission prefix.
+     */
+    public Set<Material> getItemMaterials(String item) {
+        Material material = Material.matchMaterial(item.trim());
+        if (material != null) {
+            return EnumSet.of(material);
+        }
+        String prefix = PERMISSION_CRAFT_PREFIX + item.trim().toLowerCase();
+        if (prefix.endsWith(PERMISSION_WILDCARD)) {
+            prefix = prefix.substring(0, prefix.length() - PERMISSION_WILDCARD.length());
+        }
+        return getPermissionMaterials(prefix);
+    }
+
+    /**
+     * Gets the permission checked when crafting the specified slot.
+     *
+     * @param slot
+     *            Slot, as given by {@link #slot(Material, int)}.
+     * @return Permission name, or null if no permission is checked for the
+     *         slot.
+     */
+    public String getSlotPermissionName(int slot) {
+        return SLOT_PERMISSION_NAMES[slot];
+    }
+
+    /**
+     * Gets the slot checked by the specified permission.
+     *
+     * @param permissionName
+     *            Lower case permission name.
+     * @return Slot checked by the permission, or -1 if no slot is checked by
+     *         it.
+     */
+    public int getPermissionSlot(String permissionName) {
+        Integer slot = PERMISSION_SLOTS.get(permissionName);
+        return slot == null ? -1 : slot.intValue();
     }
 }
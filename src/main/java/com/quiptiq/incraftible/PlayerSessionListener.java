@@ -0,0 +1,77 @@
+package com.quiptiq.incraftible;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import com.quiptiq.incraftible.message.PlayerLocales;
+
+/**
+ * Listener for player session events that affect compiled craft permissions,
+ * the permissions granted to players and the locales messages are sent in.
+ *
+ * @author Taufiq Hoven
+ */
+public class PlayerSessionListener implements Listener {
+    /**
+     * Configuration holding the compiled permissions.
+     */
+    private final IncraftibleConfig config;
+
+    /**
+     * Create a new listener for the specified plugin config.
+     *
+     * @param config
+     *            Configuration for the plugin behaviour.
+     */
+    public PlayerSessionListener(IncraftibleConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Called when a player joins the server, once permissions plugins have
+     * granted their permissions, adding those permissions to the contested
+     * materials, compiling the player's craft permissions and reading their
+     * locale.
+     *
+     * @param event
+     *            Event containing the player that joined.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        config.getContestedMaterials().addGranted(event.getPlayer());
+        config.getDecisionCache().compile(event.getPlayer());
+        PlayerLocales.getInstance().addPlayer(event.getPlayer());
+    }
+
+    /**
+     * Called when a player leaves the server, discarding their compiled
+     * permissions and locale, and the limit state that no longer limits any
+     * player.
+     *
+     * @param event
+     *            Event containing the player that quit.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        config.getDecisionCache().invalidate(event.getPlayer());
+        PlayerLocales.getInstance().removePlayer(event.getPlayer());
+        config.getLimiter().prune();
+    }
+
+    /**
+     * Called when a player changes world. Permissions plugins commonly apply
+     * per-world permissions, so compiled permissions are discarded.
+     *
+     * @param event
+     *            Event containing the player that changed world.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        config.getDecisionCache().invalidate(event.getPlayer());
+        config.getContestedMaterials().addGranted(event.getPlayer());
+    }
+}
@@ -0,0 +1,101 @@
+package com.quiptiq.incraftible;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Runs the work of commands on scheduler threads and reports back to the
+ * sender from the main server thread. Without a server, as when the plugin is
+ * driven offline, tasks are run immediately.
+ *
+ * @author Taufiq Hoven
+ */
+final class PluginTasks {
+    /**
+     * Timestamp in the names of exported files.
+     */
+    private static final String EXPORT_TIME_FORMAT = "yyyyMMdd-HHmmss";
+
+    private final Incraftible plugin;
+
+    PluginTasks(Incraftible plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Runs the specified task on a scheduler thread, or immediately if there
+     * is no server.
+     */
+    void runAsync(Runnable task) {
+        Server server = plugin.getServer();
+        if (server == null) {
+            task.run();
+        } else {
+            server.getScheduler().scheduleAsyncDelayedTask(plugin, task);
+        }
+    }
+
+    /**
+     * Runs the specified task on the main server thread, or immediately if
+     * there is no server.
+     */
+    void runSync(Runnable task) {
+        Server server = plugin.getServer();
+        if (server == null) {
+            task.run();
+        } else {
+            server.getScheduler().scheduleSyncDelayedTask(plugin, task);
+        }
+    }
+
+    /**
+     * Sends the specified lines to the sender from the main server thread.
+     */
+    void sendSync(final CommandSender sender, final List<String> lines) {
+        runSync(new Runnable() {
+            @Override
+            public void run() {
+                for (String line : lines) {
+                    sender.sendMessage(line);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets a file in the specified directory of the plugin's data folder.
+     *
+     * @param directory
+     *            Directory within the data folder.
+     * @param name
+     *            Name of the file.
+     * @return File in the directory.
+     */
+    File getDataFile(String directory, String name) {
+        return new File(new File(plugin.getDataFolder(), directory), name);
+    }
+
+    /**
+     * @return Current time, formatted for the names of exported files.
+     */
+    static String timestamp() {
+        return new SimpleDateFormat(EXPORT_TIME_FORMAT).format(new Date());
+    }
+
+    /**
+     * Creates the parent directory of the specified file, if it does not
+     * exist.
+     */
+    static void createParentDirectory(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create directory " + directory.getPath());
+        }
+    }
+}
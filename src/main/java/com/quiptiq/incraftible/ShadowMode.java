@@ -0,0 +1,208 @@
+package com.quiptiq.incraftible;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_SHADOW_RESET;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_SHADOW_RESET_FAILED;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_SHADOW_WRITE_FAILED;
+import static com.quiptiq.incraftible.message.FixedMessage.PLAYER_MESSAGE_SHADOW_WRITTEN;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
+
+import com.quiptiq.incraftible.shadow.ShadowEvaluator;
+
+/**
+ * Starts and stops the {@link ShadowEvaluator} of the candidate config named
+ * in config.yml, and reloads the candidate and writes its report for
+ * /ic shadow. Candidates are loaded and reports written on scheduler threads.
+ *
+ * @author Taufiq Hoven
+ */
+public class ShadowMode {
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    /**
+     * Directory in the data folder to which shadow reports are written.
+     */
+    private static final String SHADOW_DIRECTORY = "shadow";
+
+    private static final String SHADOW_FILE_FORMAT = "report-%s.txt";
+
+    private static final String LOG_SHADOW_STARTED = LOG_PREFIX
+            + "Evaluating %.1f%% of craft checks against candidate config %s";
+
+    private static final String LOG_WARN_SHADOW_LOAD_FAILED = LOG_PREFIX + "Couldn't load candidate config %s: %s";
+
+    private static final String LOG_WARN_SHADOW_WRITE_FAILED = LOG_PREFIX + "Couldn't write shadow report to %s: %s";
+
+    private final Incraftible plugin;
+
+    private final IncraftibleConfig config;
+
+    private final PluginTasks tasks;
+
+    /**
+     * Evaluator of the candidate config, or null if shadow mode is not
+     * running.
+     */
+    private volatile ShadowEvaluator evaluator;
+
+    ShadowMode(Incraftible plugin, IncraftibleConfig config, PluginTasks tasks) {
+        this.plugin = plugin;
+        this.config = config;
+        this.tasks = tasks;
+    }
+
+    /**
+     * Starts evaluating the configured candidate config, if shadow mode is
+     * enabled and it is not already running. A candidate config that can't
+     * be loaded is logged and leaves shadow mode off.
+     */
+    public synchronized void start() {
+        ConfigSnapshot settings = config.getSnapshot();
+        if (evaluator != null || !settings.isShadowEnabled()) {
+            return;
+        }
+        File candidateFile = getCandidateFile();
+        ConfigSnapshot candidate = loadCandidate(candidateFile);
+        if (candidate == null) {
+            return;
+        }
+        ShadowEvaluator newEvaluator = new ShadowEvaluator(candidateFile.getName(), candidate,
+                getStandardDefaults(), settings.getShadowSample(), settings.getShadowQueueCapacity(),
+                settings.getShadowBudgetMicros());
+        newEvaluator.start();
+        evaluator = newEvaluator;
+        log.info(String.format(LOG_SHADOW_STARTED, settings.getShadowSample() * 100, candidateFile.getPath()));
+    }
+
+    /**
+     * Stops shadow mode, if it is running.
+     */
+    public synchronized void stop() {
+        if (evaluator != null) {
+            evaluator.stop();
+            evaluator = null;
+        }
+    }
+
+    /**
+     * Returns the evaluator of the candidate config.
+     *
+     * @return Shadow evaluator, or null if shadow mode is not running.
+     */
+    public ShadowEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * @return Candidate config file evaluated in shadow mode.
+     */
+    public File getCandidateFile() {
+        return new File(plugin.getDataFolder(), config.getSnapshot().getShadowConfig());
+    }
+
+    /**
+     * Reloads the candidate config on a scheduler thread and clears the
+     * shadow report, so that a revised candidate can be evaluated without a
+     * restart. The sender is told the outcome from the main thread.
+     *
+     * @param sender
+     *            Sender to notify once the candidate is reloaded.
+     */
+    public void reloadCandidate(final CommandSender sender) {
+        final ShadowEvaluator current = evaluator;
+        if (current == null) {
+            return;
+        }
+        final File candidateFile = getCandidateFile();
+        tasks.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                ConfigSnapshot candidate = loadCandidate(candidateFile);
+                if (candidate != null) {
+                    current.setCandidate(candidate);
+                }
+                String message = candidate == null ? PLAYER_MESSAGE_SHADOW_RESET_FAILED
+                        : String.format(PLAYER_MESSAGE_SHADOW_RESET, candidateFile.getName());
+                tasks.sendSync(sender, Collections.singletonList(message));
+            }
+        });
+    }
+
+    /**
+     * Writes the full shadow report to a file in the plugin's data folder on
+     * a scheduler thread, telling the sender where it was written.
+     *
+     * @param sender
+     *            Sender to notify once the report is written.
+     */
+    public void writeReport(final CommandSender sender) {
+        final ShadowEvaluator current = evaluator;
+        if (current == null) {
+            return;
+        }
+        final File reportFile = tasks.getDataFile(SHADOW_DIRECTORY,
+                String.format(SHADOW_FILE_FORMAT, PluginTasks.timestamp()));
+        tasks.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                try {
+                    PluginTasks.createParentDirectory(reportFile);
+                    current.getReport().write(reportFile);
+                    message = String.format(PLAYER_MESSAGE_SHADOW_WRITTEN, reportFile.getPath());
+                } catch (IOException e) {
+                    log.warning(String.format(LOG_WARN_SHADOW_WRITE_FAILED, reportFile.getPath(), e.getMessage()));
+                    message = PLAYER_MESSAGE_SHADOW_WRITE_FAILED;
+                }
+                tasks.sendSync(sender, Collections.singletonList(message));
+            }
+        });
+    }
+
+    /**
+     * Loads a candidate config for shadow mode.
+     *
+     * @param candidateFile
+     *            Candidate config file.
+     * @return Settings of the candidate, or null if it couldn't be loaded.
+     */
+    private static ConfigSnapshot loadCandidate(File candidateFile) {
+        YamlConfiguration candidateConfig = new YamlConfiguration();
+        try {
+            candidateConfig.load(candidateFile);
+            return ConfigSnapshot.fromConfig(candidateConfig);
+        } catch (IOException e) {
+            log.warning(String.format(LOG_WARN_SHADOW_LOAD_FAILED, candidateFile.getPath(), e.getMessage()));
+        } catch (InvalidConfigurationException e) {
+            log.warning(String.format(LOG_WARN_SHADOW_LOAD_FAILED, candidateFile.getPath(), e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * @return Names of the permissions granted by default under the standard
+     *         permission strategy.
+     */
+    private List<String> getStandardDefaults() {
+        List<String> names = new ArrayList<String>();
+        for (Permission permission : PermissionsReference.getInstance().createDefaultMaterialPermissions(
+                plugin.getDescription().getPermissions())) {
+            if (PermissionDefault.TRUE.equals(permission.getDefault())) {
+                names.add(permission.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,74 @@
+package com.quiptiq.incraftible;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times the phases of plugin startup, so that the time taken to enable the
+ * plugin can be reported and attributed.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class StartupProfile {
+    private static final String PHASE_FORMAT = "%s %.1f ms";
+
+    private static final String SUMMARY_FORMAT = "%.1f ms (%s)";
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final long startNanos;
+
+    private long phaseStartNanos;
+
+    private final List<String> phaseNames = new ArrayList<String>();
+
+    private final List<Long> phaseNanos = new ArrayList<Long>();
+
+    /**
+     * Creates a new profile, starting the first phase.
+     */
+    public StartupProfile() {
+        startNanos = System.nanoTime();
+        phaseStartNanos = startNanos;
+    }
+
+    /**
+     * Ends the current phase and starts the next.
+     *
+     * @param phaseName
+     *            Name of the phase that has ended.
+     */
+    public void endPhase(String phaseName) {
+        long now = System.nanoTime();
+        phaseNames.add(phaseName);
+        phaseNanos.add(now - phaseStartNanos);
+        phaseStartNanos = now;
+    }
+
+    /**
+     * @return Time since the profile was created, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Summarises the total time and the time taken by each phase.
+     *
+     * @return Summary for logging.
+     */
+    public String summary() {
+        StringBuilder phases = new StringBuilder();
+        for (int i = 0; i < phaseNames.size(); i++) {
+            if (i > 0) {
+                phases.append(", ");
+            }
+            phases.append(String.format(Locale.ENGLISH, PHASE_FORMAT, phaseNames.get(i),
+                    phaseNanos.get(i) / NANOS_PER_MILLI));
+        }
+        return String.format(Locale.ENGLISH, SUMMARY_FORMAT, getElapsedNanos() / NANOS_PER_MILLI, phases);
+    }
+}
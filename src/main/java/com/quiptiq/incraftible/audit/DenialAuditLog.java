@@ -0,0 +1,388 @@
+package com.quiptiq.incraftible.audit;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import com.quiptiq.incraftible.Incraftible;
+
+/**
+ * Append-only audit log of denied crafts. Records are offered from the main
+ * server thread into a bounded, lock-free queue and written in batches by a
+ * background thread, so that auditing does not cost tick time. When the queue
+ * is full, records are dropped and counted rather than blocking the caller.
+ *
+ * The current segment is rotated once it exceeds a configured size or age, and
+ * rotated segments are compressed with gzip. The age of a segment is taken
+ * from its first record, so that it survives restarts.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class DenialAuditLog implements Runnable {
+    /**
+     * Path of the directory holding the denial log, within the plugin data
+     * folder. It is kept apart from the /ic audit matrices in audit/matrix.
+     */
+    public static final String AUDIT_DIRECTORY = "audit/denials";
+
+    private static final String LOG_FILE_NAME = "denials.log";
+
+    private static final String SEGMENT_PREFIX = "denials-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private static final String SEGMENT_TIME_FORMAT = "yyyyMMdd-HHmmss";
+
+    private static final String RECORD_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static final String THREAD_NAME = "Incraftible audit writer";
+
+    /**
+     * Maximum number of records written between flushes.
+     */
+    private static final int BATCH_SIZE = 512;
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private static final String LOG_WARN_DROPPED = LOG_PREFIX + "Audit queue full, dropped %d denial records";
+
+    private static final String LOG_WARN_WRITE_FAILED = LOG_PREFIX + "Couldn't write audit log %s: %s";
+
+    private static final String LOG_WARN_ROTATE_FAILED = LOG_PREFIX + "Couldn't rotate audit log %s";
+
+    private static final String LOG_WARN_CREATE_DIRECTORY = LOG_PREFIX + "Couldn't create audit directory %s";
+
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private final File directory;
+
+    private final File logFile;
+
+    private final int capacity;
+
+    private final long rotateBytes;
+
+    private final long rotateMillis;
+
+    private final long flushMillis;
+
+    private final ConcurrentLinkedQueue<DenialRecord> queue = new ConcurrentLinkedQueue<DenialRecord>();
+
+    /**
+     * Number of records in the queue. Tracked separately as the size of a
+     * ConcurrentLinkedQueue is not constant time.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = false;
+
+    private Thread writerThread;
+
+    /* Writer state, only accessed from the writer thread. */
+    private OutputStream out;
+
+    private long segmentBytes;
+
+    private long segmentStart;
+
+    private long reportedDrops = 0;
+
+    private final SimpleDateFormat recordTimeFormat = new SimpleDateFormat(RECORD_TIME_FORMAT);
+
+    /**
+     * Creates a new audit log in the specified directory.
+     *
+     * @param directory
+     *            Directory containing the audit log and its rotated segments.
+     * @param capacity
+     *            Maximum number of records waiting to be written.
+     * @param rotateBytes
+     *            Size in bytes after which the log is rotated.
+     * @param rotateMillis
+     *            Age in milliseconds after which the log is rotated.
+     * @param flushMillis
+     *            Interval in milliseconds between writes of queued records.
+     */
+    public DenialAuditLog(File directory, int capacity, long rotateBytes, long rotateMillis, long flushMillis) {
+        this.directory = directory;
+        this.logFile = new File(directory, LOG_FILE_NAME);
+        this.capacity = capacity;
+        this.rotateBytes = rotateBytes;
+        this.rotateMillis = rotateMillis;
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Queues a record for writing. Never blocks; if the queue is full the
+     * record is dropped and counted.
+     *
+     * @param record
+     *            Record to write.
+     * @return True if the record was queued, false if it was dropped.
+     */
+    public boolean offer(DenialRecord record) {
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.offer(record);
+        return true;
+    }
+
+    /**
+     * @return Total number of records dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Number of records waiting to be written.
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Starts the background writer.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this, THREAD_NAME);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the background writer, waiting for queued records to be written.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+
+    @Override
+    public void run() {
+        if (!directory.exists() && !directory.mkdirs()) {
+            log.warning(String.format(LOG_WARN_CREATE_DIRECTORY, directory.getPath()));
+            running = false;
+            return;
+        }
+        try {
+            while (running) {
+                try {
+                    Thread.sleep(flushMillis);
+                } catch (InterruptedException e) {
+                    // Stopping, write whatever remains below
+                }
+                writeQueued();
+            }
+            writeQueued();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    /**
+     * Writes all queued records in batches, then rotates the log if due.
+     */
+    private void writeQueued() {
+        try {
+            int written;
+            do {
+                written = writeBatch();
+            } while (written == BATCH_SIZE);
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                log.warning(String.format(LOG_WARN_DROPPED, drops - reportedDrops));
+                reportedDrops = drops;
+            }
+            if (out != null && (segmentBytes >= rotateBytes
+                    || System.currentTimeMillis() - segmentStart >= rotateMillis)) {
+                rotate();
+            }
+        } catch (IOException e) {
+            log.warning(String.format(LOG_WARN_WRITE_FAILED, logFile.getPath(), e.getMessage()));
+            closeSegment();
+        }
+    }
+
+    /**
+     * Writes up to {@link #BATCH_SIZE} queued records and flushes them.
+     *
+     * @return Number of records written.
+     * @throws IOException
+     *             if the records couldn't be written.
+     */
+    private int writeBatch() throws IOException {
+        int written = 0;
+        DenialRecord record;
+        while (written < BATCH_SIZE && (record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            if (out == null) {
+                openSegment();
+            }
+            byte[] line = formatRecord(record).getBytes(CHARSET);
+            out.write(line);
+            segmentBytes += line.length;
+            written++;
+        }
+        if (written > 0) {
+            out.flush();
+        }
+        return written;
+    }
+
+    private String formatRecord(DenialRecord record) {
+        StringBuilder line = new StringBuilder();
+        line.append(recordTimeFormat.format(new Date(record.getTimestamp()))).append(FIELD_SEPARATOR);
+        line.append(record.getPlayerName()).append(FIELD_SEPARATOR);
+        line.append(record.getMaterial()).append(':').append(record.getData()).append(FIELD_SEPARATOR);
+        line.append(record.getWorldName()).append(FIELD_SEPARATOR);
+        line.append(record.getReason()).append(LINE_SEPARATOR);
+        return line.toString();
+    }
+
+    private void openSegment() throws IOException {
+        segmentBytes = logFile.length();
+        segmentStart = segmentBytes > 0 ? readSegmentStart() : System.currentTimeMillis();
+        out = new BufferedOutputStream(new FileOutputStream(logFile, true));
+    }
+
+    /**
+     * Reads the time a segment left by an earlier writer was started from its
+     * first record, falling back to the time the segment was last modified.
+     *
+     * @return Start time of the existing segment.
+     */
+    private long readSegmentStart() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), CHARSET));
+            String line = reader.readLine();
+            int separator = line == null ? -1 : line.indexOf(FIELD_SEPARATOR);
+            if (separator > 0) {
+                return recordTimeFormat.parse(line.substring(0, separator)).getTime();
+            }
+        } catch (IOException e) {
+            // Fall back to the modification time below
+        } catch (ParseException e) {
+            // Fall back to the modification time below
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Only read, nothing lost
+                }
+            }
+        }
+        return logFile.lastModified();
+    }
+
+    private void closeSegment() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warning(String.format(LOG_WARN_WRITE_FAILED, logFile.getPath(), e.getMessage()));
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Closes the current segment, renames it with the time of rotation and
+     * compresses it. Segments rotated within the same second are told apart by
+     * a sequence number. The next record written starts a new segment.
+     *
+     * @throws IOException
+     *             if the rotated segment couldn't be compressed.
+     */
+    private void rotate() throws IOException {
+        closeSegment();
+        if (segmentBytes == 0) {
+            return;
+        }
+        String segmentTime = SEGMENT_PREFIX + new SimpleDateFormat(SEGMENT_TIME_FORMAT).format(new Date());
+        String segmentName = segmentTime + SEGMENT_SUFFIX;
+        for (int sequence = 1; new File(directory, segmentName).exists()
+                || new File(directory, segmentName + GZIP_SUFFIX).exists(); sequence++) {
+            segmentName = segmentTime + "-" + sequence + SEGMENT_SUFFIX;
+        }
+        File segment = new File(directory, segmentName);
+        if (!logFile.renameTo(segment)) {
+            log.warning(String.format(LOG_WARN_ROTATE_FAILED, logFile.getPath()));
+            return;
+        }
+        compress(segment, new File(directory, segmentName + GZIP_SUFFIX));
+        if (!segment.delete()) {
+            log.warning(String.format(LOG_WARN_ROTATE_FAILED, segment.getPath()));
+        }
+    }
+
+    private static void compress(File source, File destination) throws IOException {
+        InputStream in = null;
+        OutputStream gzipOut = null;
+        try {
+            in = new FileInputStream(source);
+            gzipOut = new GZIPOutputStream(new FileOutputStream(destination));
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                gzipOut.write(buffer, 0, read);
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+            if (gzipOut != null) {
+                gzipOut.close();
+            }
+        }
+    }
+}
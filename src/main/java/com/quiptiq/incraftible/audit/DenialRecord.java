@@ -0,0 +1,97 @@
+package com.quiptiq.incraftible.audit;
+
+import org.bukkit.Material;
+
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.PermissionsStrategy;
+
+/**
+ * Immutable record of a denied craft, for writing to the audit log.
+ *
+ * @author Taufiq Hoven
+ */
+public final class DenialRecord {
+    private final long timestamp;
+
+    private final String playerName;
+
+    private final Material material;
+
+    private final byte data;
+
+    private final String worldName;
+
+    private final CraftDecision decision;
+
+    private final PermissionsStrategy strategy;
+
+    /**
+     * Creates a new denial record.
+     *
+     * @param timestamp
+     *            Time of the denial, in milliseconds since the epoch.
+     * @param playerName
+     *            Name of the player denied.
+     * @param material
+     *            Material the player attempted to craft.
+     * @param data
+     *            Data value of the material.
+     * @param worldName
+     *            Name of the world the player was in, or null if unknown.
+     * @param decision
+     *            Permission decision that led to the denial.
+     * @param strategy
+     *            Permission strategy in effect.
+     */
+    public DenialRecord(long timestamp, String playerName, Material material, byte data, String worldName,
+            CraftDecision decision, PermissionsStrategy strategy) {
+        this.timestamp = timestamp;
+        this.playerName = playerName;
+        this.material = material;
+        this.data = data;
+        this.worldName = worldName;
+        this.decision = decision;
+        this.strategy = strategy;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public byte getData() {
+        return data;
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public CraftDecision getDecision() {
+        return decision;
+    }
+
+    public PermissionsStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Describes why the craft was denied. Permissions that are not set are
+     * qualified by the strategy that denied them.
+     *
+     * @return Reason for the denial.
+     */
+    public String getReason() {
+        if (CraftDecision.UNSET.equals(decision)) {
+            return decision + "/" + strategy.getConfigString();
+        }
+        return decision.toString();
+    }
+}
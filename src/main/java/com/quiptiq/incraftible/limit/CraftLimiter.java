@@ -0,0 +1,427 @@
+package com.quiptiq.incraftible.limit;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bukkit.Material;
+
+/**
+ * Rate limit and quota state for each player, checked against
+ * {@link CraftLimits}.
+ *
+ * State is held per player and limit id in concurrent hash maps, whose reads
+ * do not lock and whose writes are striped across segments. Each limit's
+ * state is a pair of longs updated by compare-and-set:
+ * <ul>
+ * <li>The rate limit is a generic cell rate algorithm, equivalent to a token
+ * bucket, holding the theoretical arrival time of the next craft.</li>
+ * <li>The quota holds the day in its high 32 bits and the crafts that day in
+ * its low 32 bits.</li>
+ * </ul>
+ * A craft is counted against every limit applying to it or against none: if
+ * any limit refuses it, what it took from the limits already checked is given
+ * back, as it is for a craft denied after its limits were checked. State that
+ * no longer limits anything is equivalent to no state, and is pruned when
+ * players quit. Times are wall clock times, so that state saved on shutdown remains
+ * meaningful when loaded on the next start.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class CraftLimiter {
+    /**
+     * Name of the file in the data folder to which state is saved.
+     */
+    public static final String STATE_FILENAME = "limits.dat";
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private static final long MICROS_PER_MILLI = 1000L;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static final long COUNT_MASK = 0xffffffffL;
+
+    private final ConcurrentMap<UUID, ConcurrentMap<String, LimitState>> players =
+            new ConcurrentHashMap<UUID, ConcurrentMap<String, LimitState>>();
+
+    private final TimeZone timeZone;
+
+    /**
+     * Creates a limiter whose days follow the default time zone.
+     */
+    public CraftLimiter() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Creates a limiter whose days follow the specified time zone.
+     *
+     * @param timeZone
+     *            Time zone in which quotas are reset at midnight.
+     */
+    public CraftLimiter(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Checks a craft of the specified material against the limits applying
+     * to it, counting the craft against all of them if it is within each.
+     *
+     * @param playerId
+     *            Unique id of the player crafting.
+     * @param material
+     *            Material crafted.
+     * @param limits
+     *            Limits in effect.
+     * @return Whether the craft is within the limits.
+     */
+    public LimitResult tryCraft(UUID playerId, Material material, CraftLimits limits) {
+        return tryCraft(playerId, material, limits, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks a craft at the specified time.
+     *
+     * @see #tryCraft(UUID, Material, CraftLimits)
+     */
+    LimitResult tryCraft(UUID playerId, Material material, CraftLimits limits, long nowMillis) {
+        int[] materialLimits = limits.getLimits(material);
+        if (materialLimits.length == 0 || playerId == null) {
+            return LimitResult.WITHIN_LIMITS;
+        }
+        ConcurrentMap<String, LimitState> states = players.get(playerId);
+        if (states == null) {
+            states = new ConcurrentHashMap<String, LimitState>();
+            ConcurrentMap<String, LimitState> existing = players.putIfAbsent(playerId, states);
+            if (existing != null) {
+                states = existing;
+            }
+        }
+        long today = day(nowMillis);
+        for (int i = 0; i < materialLimits.length; i++) {
+            int limit = materialLimits[i];
+            String id = limits.getId(limit);
+            LimitState state = states.get(id);
+            if (state == null) {
+                state = new LimitState();
+                LimitState existing = states.putIfAbsent(id, state);
+                if (existing != null) {
+                    state = existing;
+                }
+            }
+            long interval = limits.getIntervalMicros(limit);
+            if (interval != 0
+                    && !state.tryRate(nowMillis * MICROS_PER_MILLI, interval, limits.getToleranceMicros(limit))) {
+                release(states, limits, materialLimits, i, today);
+                return LimitResult.RATE_LIMITED;
+            }
+            int quota = limits.getDailyQuota(limit);
+            if (quota != 0 && !state.tryQuota(today, quota)) {
+                if (interval != 0) {
+                    state.releaseRate(interval);
+                }
+                release(states, limits, materialLimits, i, today);
+                return LimitResult.QUOTA_EXCEEDED;
+            }
+        }
+        return LimitResult.WITHIN_LIMITS;
+    }
+
+    /**
+     * Gives back a craft counted by {@link #tryCraft}, because the craft was
+     * denied once its limits had been checked.
+     *
+     * @param playerId
+     *            Unique id of the player crafting.
+     * @param material
+     *            Material crafted.
+     * @param limits
+     *            Limits the craft was counted against.
+     */
+    public void release(UUID playerId, Material material, CraftLimits limits) {
+        release(playerId, material, limits, System.currentTimeMillis());
+    }
+
+    /**
+     * Gives back a craft at the specified time.
+     *
+     * @see #release(UUID, Material, CraftLimits)
+     */
+    void release(UUID playerId, Material material, CraftLimits limits, long nowMillis) {
+        int[] materialLimits = limits.getLimits(material);
+        ConcurrentMap<String, LimitState> states = playerId == null ? null : players.get(playerId);
+        if (materialLimits.length == 0 || states == null) {
+            return;
+        }
+        release(states, limits, materialLimits, materialLimits.length, day(nowMillis));
+    }
+
+    /**
+     * Gives back a refused craft to the limits it was counted against.
+     *
+     * @param states
+     *            Limit state of the player crafting.
+     * @param limits
+     *            Limits in effect.
+     * @param materialLimits
+     *            Limits applying to the craft.
+     * @param counted
+     *            Number of limits, from the first, the craft was counted
+     *            against.
+     * @param day
+     *            Day the craft was counted in.
+     */
+    private static void release(ConcurrentMap<String, LimitState> states, CraftLimits limits, int[] materialLimits,
+            int counted, long day) {
+        for (int i = 0; i < counted; i++) {
+            int limit = materialLimits[i];
+            LimitState state = states.get(limits.getId(limit));
+            if (state == null) {
+                continue;
+            }
+            long interval = limits.getIntervalMicros(limit);
+            if (interval != 0) {
+                state.releaseRate(interval);
+            }
+            if (limits.getDailyQuota(limit) != 0) {
+                state.releaseQuota(day);
+            }
+        }
+    }
+
+    /**
+     * Discards the state that no longer limits anything, because the player
+     * has caught up with the rate limit and has not crafted today, and the
+     * players left without state. Must be called from the thread counting
+     * crafts, the main server thread, or a craft counted meanwhile may be
+     * lost.
+     *
+     * @return Number of players discarded.
+     */
+    public int prune() {
+        return prune(System.currentTimeMillis());
+    }
+
+    /**
+     * Discards state at the specified time.
+     *
+     * @see #prune()
+     */
+    int prune(long nowMillis) {
+        long nowMicros = nowMillis * MICROS_PER_MILLI;
+        long today = day(nowMillis);
+        int pruned = 0;
+        Iterator<Map.Entry<UUID, ConcurrentMap<String, LimitState>>> playerStates = players.entrySet().iterator();
+        while (playerStates.hasNext()) {
+            ConcurrentMap<String, LimitState> states = playerStates.next().getValue();
+            Iterator<LimitState> limitStates = states.values().iterator();
+            while (limitStates.hasNext()) {
+                if (limitStates.next().isExpired(nowMicros, today)) {
+                    limitStates.remove();
+                }
+            }
+            if (states.isEmpty()) {
+                playerStates.remove();
+                pruned++;
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * @return Number of players with limit state.
+     */
+    public int size() {
+        return players.size();
+    }
+
+    /**
+     * Discards all state.
+     */
+    public void clear() {
+        players.clear();
+    }
+
+    /**
+     * Writes the state to the specified file. State that no longer limits
+     * anything, because the player has caught up with the rate limit and has
+     * not crafted today, is left out.
+     *
+     * @param file
+     *            File to write.
+     * @throws IOException
+     *             if the file couldn't be written.
+     */
+    public void save(File file) throws IOException {
+        long nowMillis = System.currentTimeMillis();
+        long nowMicros = nowMillis * MICROS_PER_MILLI;
+        long today = day(nowMillis);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            for (Map.Entry<UUID, ConcurrentMap<String, LimitState>> player : players.entrySet()) {
+                for (Map.Entry<String, LimitState> limit : player.getValue().entrySet()) {
+                    if (limit.getValue().isExpired(nowMicros, today)) {
+                        continue;
+                    }
+                    long arrival = limit.getValue().arrival.get();
+                    long quota = limit.getValue().quota.get();
+                    writer.write(player.getKey().toString());
+                    writer.write(FIELD_SEPARATOR);
+                    writer.write(limit.getKey());
+                    writer.write(FIELD_SEPARATOR);
+                    writer.write(Long.toString(arrival));
+                    writer.write(FIELD_SEPARATOR);
+                    writer.write(Long.toString(quota));
+                    writer.write(LINE_SEPARATOR);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads state written by {@link #save(File)}, replacing any state held
+     * for the same players and limits. Malformed lines are skipped.
+     *
+     * @param file
+     *            File to read.
+     * @return Number of limit states read.
+     * @throws IOException
+     *             if the file couldn't be read.
+     */
+    public int load(File file) throws IOException {
+        int loaded = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(FIELD_SEPARATOR);
+                if (fields.length != 4) {
+                    continue;
+                }
+                try {
+                    UUID playerId = UUID.fromString(fields[0]);
+                    LimitState state = new LimitState();
+                    state.arrival.set(Long.parseLong(fields[2]));
+                    state.quota.set(Long.parseLong(fields[3]));
+                    ConcurrentMap<String, LimitState> states = players.get(playerId);
+                    if (states == null) {
+                        states = new ConcurrentHashMap<String, LimitState>();
+                        players.put(playerId, states);
+                    }
+                    states.put(fields[1], state);
+                    loaded++;
+                } catch (IllegalArgumentException e) {
+                    // Malformed id or number, skip the line
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return loaded;
+    }
+
+    /**
+     * Number of days since the epoch in the limiter's time zone.
+     */
+    private long day(long millis) {
+        return (millis + timeZone.getOffset(millis)) / MILLIS_PER_DAY;
+    }
+
+    /**
+     * State of a single limit for a single player.
+     */
+    private static class LimitState {
+        /**
+         * Theoretical arrival time of the next craft at the limited rate, in
+         * microseconds since the epoch.
+         */
+        final AtomicLong arrival = new AtomicLong();
+
+        /**
+         * Day in the high 32 bits, crafts that day in the low 32 bits.
+         */
+        final AtomicLong quota = new AtomicLong();
+
+        /**
+         * Whether the state no longer limits anything: the next craft may
+         * come now, and no crafts have been counted today.
+         */
+        boolean isExpired(long nowMicros, long today) {
+            return arrival.get() <= nowMicros && (quota.get() >>> 32) != today;
+        }
+
+        /**
+         * Counts a craft against the rate limit, if within it.
+         */
+        boolean tryRate(long nowMicros, long interval, long tolerance) {
+            long current;
+            long next;
+            do {
+                current = arrival.get();
+                long start = Math.max(current, nowMicros);
+                if (start - nowMicros > tolerance) {
+                    return false;
+                }
+                next = start + interval;
+            } while (!arrival.compareAndSet(current, next));
+            return true;
+        }
+
+        /**
+         * Counts a craft against the daily quota, if within it.
+         */
+        boolean tryQuota(long day, int limit) {
+            long current;
+            long next;
+            do {
+                current = quota.get();
+                long count = (current >>> 32) == day ? current & COUNT_MASK : 0;
+                if (count >= limit) {
+                    return false;
+                }
+                next = (day << 32) | (count + 1);
+            } while (!quota.compareAndSet(current, next));
+            return true;
+        }
+
+        /**
+         * Gives back a craft counted against the rate limit. Crafts counted
+         * since are moved earlier by one interval, which leaves the state as
+         * if the craft had never been counted.
+         */
+        void releaseRate(long interval) {
+            arrival.addAndGet(-interval);
+        }
+
+        /**
+         * Gives back a craft counted against the daily quota on the
+         * specified day, unless the quota has since been reset.
+         */
+        void releaseQuota(long day) {
+            long current;
+            do {
+                current = quota.get();
+                if ((current >>> 32) != day || (current & COUNT_MASK) == 0) {
+                    return;
+                }
+            } while (!quota.compareAndSet(current, current - 1));
+        }
+    }
+}
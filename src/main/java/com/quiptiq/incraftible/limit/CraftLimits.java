@@ -0,0 +1,257 @@
+package com.quiptiq.incraftible.limit;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.quiptiq.incraftible.Incraftible;
+import com.quiptiq.incraftible.PermissionsReference;
+
+/**
+ * Per-player crafting rate limits and daily quotas. Each limit is configured
+ * under the limits section:
+ *
+ * <pre>
+ * limits:
+ *     tnt:
+ *         items: [tnt]
+ *         rate: 2
+ *         burst: 5
+ *         daily: 64
+ * </pre>
+ *
+ * Items are material names or ids, or permission prefixes below
+ * incraftible.craft. such as dye.*; a limit without items applies to every
+ * material. A limit is shared by all of its items, so limits for individual
+ * materials each list a single item. Rate is in crafts per second, with up to
+ * burst crafts allowed at once, and daily is the number of crafts allowed per
+ * day. Either may be left out.
+ *
+ * The limits for each material are resolved when the config is read, so
+ * finding the limits for a craft is an array lookup.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class CraftLimits {
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private static final String LOG_WARN_INVALID_LIMIT = LOG_PREFIX + "Ignoring craft limit %s: %s";
+
+    private static final String CONFIG_ITEMS = "items";
+
+    private static final String CONFIG_RATE = "rate";
+
+    private static final String CONFIG_BURST = "burst";
+
+    private static final String CONFIG_DAILY = "daily";
+
+    private static final long MICROS_PER_SECOND = 1000000L;
+
+    private static final int[] NO_LIMITS = new int[0];
+
+    private static final CraftLimits NONE = new CraftLimits(new String[0], new long[0], new long[0], new int[0],
+            new int[Material.values().length][]);
+
+    private final String[] ids;
+
+    /**
+     * Time between crafts at the limited rate, in microseconds, or 0 if the
+     * rate is not limited.
+     */
+    private final long[] intervalMicros;
+
+    /**
+     * How far ahead of the limited rate crafts may run, in microseconds, which
+     * allows bursts.
+     */
+    private final long[] toleranceMicros;
+
+    /**
+     * Crafts allowed per day, or 0 if unlimited.
+     */
+    private final int[] dailyQuotas;
+
+    /**
+     * Indices of the limits applying to each material, by ordinal.
+     */
+    private final int[][] materialLimits;
+
+    private CraftLimits(String[] ids, long[] intervalMicros, long[] toleranceMicros, int[] dailyQuotas,
+            int[][] materialLimits) {
+        this.ids = ids;
+        this.intervalMicros = intervalMicros;
+        this.toleranceMicros = toleranceMicros;
+        this.dailyQuotas = dailyQuotas;
+        this.materialLimits = materialLimits;
+        for (int i = 0; i < materialLimits.length; i++) {
+            if (materialLimits[i] == null) {
+                materialLimits[i] = NO_LIMITS;
+            }
+        }
+    }
+
+    /**
+     * Reads the limits in the specified section. Invalid limits are logged
+     * and ignored.
+     *
+     * @param limits
+     *            Section holding a subsection per limit, or null if no limits
+     *            are configured.
+     * @return Configured limits.
+     */
+    public static CraftLimits fromConfig(ConfigurationSection limits) {
+        if (limits == null) {
+            return NONE;
+        }
+        List<String> ids = new ArrayList<String>();
+        List<long[]> rates = new ArrayList<long[]>();
+        List<Integer> quotas = new ArrayList<Integer>();
+        List<Set<Material>> materials = new ArrayList<Set<Material>>();
+        for (String id : limits.getKeys(false)) {
+            ConfigurationSection limit = limits.getConfigurationSection(id);
+            try {
+                if (limit == null) {
+                    throw new IllegalArgumentException("expected a rate or daily quota");
+                }
+                double rate = limit.getDouble(CONFIG_RATE, 0);
+                int burst = limit.getInt(CONFIG_BURST, 1);
+                int daily = limit.getInt(CONFIG_DAILY, 0);
+                if (rate < 0 || burst < 1 || daily < 0 || (rate == 0 && daily == 0)) {
+                    throw new IllegalArgumentException("expected a positive rate, burst or daily quota");
+                }
+                long interval = rate == 0 ? 0 : Math.max(1, Math.round(MICROS_PER_SECOND / rate));
+                materials.add(parseItems(limit));
+                rates.add(new long[] {interval, interval * (burst - 1)});
+                quotas.add(daily);
+                ids.add(id);
+            } catch (IllegalArgumentException e) {
+                log.warning(String.format(LOG_WARN_INVALID_LIMIT, id, e.getMessage()));
+            }
+        }
+
+        int count = ids.size();
+        long[] intervalMicros = new long[count];
+        long[] toleranceMicros = new long[count];
+        int[] dailyQuotas = new int[count];
+        Material[] allMaterials = Material.values();
+        List<List<Integer>> limitsByMaterial = new ArrayList<List<Integer>>(allMaterials.length);
+        for (int ordinal = 0; ordinal < allMaterials.length; ordinal++) {
+            limitsByMaterial.add(new ArrayList<Integer>());
+        }
+        for (int i = 0; i < count; i++) {
+            intervalMicros[i] = rates.get(i)[0];
+            toleranceMicros[i] = rates.get(i)[1];
+            dailyQuotas[i] = quotas.get(i);
+            for (Material material : materials.get(i)) {
+                limitsByMaterial.get(material.ordinal()).add(i);
+            }
+        }
+        int[][] materialLimits = new int[allMaterials.length][];
+        for (int ordinal = 0; ordinal < allMaterials.length; ordinal++) {
+            List<Integer> indices = limitsByMaterial.get(ordinal);
+            if (!indices.isEmpty()) {
+                materialLimits[ordinal] = new int[indices.size()];
+                for (int j = 0; j < indices.size(); j++) {
+                    materialLimits[ordinal][j] = indices.get(j);
+                }
+            }
+        }
+        return new CraftLimits(ids.toArray(new String[count]), intervalMicros, toleranceMicros, dailyQuotas,
+                materialLimits);
+    }
+
+    /**
+     * Resolves the items of a limit to materials.
+     *
+     * @throws IllegalArgumentException
+     *             if an item is neither a material nor a craft permission
+     *             prefix.
+     */
+    private static Set<Material> parseItems(ConfigurationSection limit) {
+        if (!limit.isList(CONFIG_ITEMS)) {
+            return EnumSet.allOf(Material.class);
+        }
+        Set<Material> materials = EnumSet.noneOf(Material.class);
+        for (String item : limit.getStringList(CONFIG_ITEMS)) {
+            Set<Material> itemMaterials = PermissionsReference.getInstance().getItemMaterials(item);
+            if (itemMaterials.isEmpty()) {
+                throw new IllegalArgumentException("unknown item " + item);
+            }
+            materials.addAll(itemMaterials);
+        }
+        return materials;
+    }
+
+    /**
+     * @return True if no limits are configured.
+     */
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * @return Number of limits configured.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the limits applying to crafts of the specified material.
+     *
+     * @param material
+     *            Material crafted.
+     * @return Indices of the limits, which must not be modified.
+     */
+    public int[] getLimits(Material material) {
+        return materialLimits[material.ordinal()];
+    }
+
+    /**
+     * @param limit
+     *            Index of a limit.
+     * @return Configured id of the limit, which identifies its state across
+     *         reloads.
+     */
+    public String getId(int limit) {
+        return ids[limit];
+    }
+
+    /**
+     * @param limit
+     *            Index of a limit.
+     * @return Time between crafts at the limited rate, in microseconds, or 0
+     *         if the rate is not limited.
+     */
+    public long getIntervalMicros(int limit) {
+        return intervalMicros[limit];
+    }
+
+    /**
+     * @param limit
+     *            Index of a limit.
+     * @return How far ahead of the limited rate crafts may run, in
+     *         microseconds.
+     */
+    public long getToleranceMicros(int limit) {
+        return toleranceMicros[limit];
+    }
+
+    /**
+     * @param limit
+     *            Index of a limit.
+     * @return Crafts allowed per day, or 0 if unlimited.
+     */
+    public int getDailyQuota(int limit) {
+        return dailyQuotas[limit];
+    }
+}
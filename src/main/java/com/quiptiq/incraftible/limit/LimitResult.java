@@ -0,0 +1,21 @@
+package com.quiptiq.incraftible.limit;
+
+/**
+ * Outcome of checking a craft against the configured limits.
+ *
+ * @author Taufiq Hoven
+ */
+public enum LimitResult {
+    /**
+     * The craft is within all limits.
+     */
+    WITHIN_LIMITS,
+    /**
+     * The player is crafting faster than a rate limit allows.
+     */
+    RATE_LIMITED,
+    /**
+     * The player has used up a daily quota.
+     */
+    QUOTA_EXCEEDED;
+}
@@ -56,6 +56,13 @@ public final class FixedMessage {
     public static final String USAGE = LOG_PREFIX + "Plugin should be placed in the plugins directory of the Minecraft"
             + " server.";
 
+    /**
+     * {@value}.
+     */
+    public static final String USAGE_REPLAY = LOG_PREFIX + "To replay a craft trace against a config: java -cp"
+            + " <bukkit jar>:Incraftible.jar com.quiptiq.incraftible.Main replay <trace> <config.yml>"
+            + " [permissions.yml]";
+
     /**
      * {@value}.
      */
@@ -79,18 +86,46 @@ public final class FixedMessage {
     /**
      * @{value}.
      */
-    public static final String LOG_ENABLED = LOG_PREFIX + PLUGIN_NAME + " " + VERSION + " enabled.";
+    public static final String LOG_ENABLED = LOG_PREFIX + PLUGIN_NAME + " " + VERSION + " enabled in %s.";
 
     /**
      * @{value}.
      */
     public static final String LOG_DISABLED = LOG_PREFIX + "Plugin disabled";
 
+    /**
+     * @{value}.
+     */
+    public static final String LOG_WARN_STATS_NOT_REGISTERED = LOG_PREFIX
+            + "Couldn't register craft statistics with JMX: %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String LOG_WARN_LIMITS_NOT_LOADED = LOG_PREFIX + "Couldn't load craft limits from %s: %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String LOG_WARN_LIMITS_NOT_SAVED = LOG_PREFIX + "Couldn't save craft limits to %s: %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String LOG_WARN_WARMUP_INTERRUPTED = LOG_PREFIX
+            + "Interrupted while waiting for permission tables, building them on enable.";
+
     /**
      * @{value}
      */
     public static final String LOG_STANDARD_STRATEGY = LOG_PREFIX + "Using standard permission strategy, generating permission nodes";
 
+    /**
+     * @{value}
+     */
+    public static final String LOG_WARN_STANDARD_WITH_NONE = LOG_PREFIX
+            + "Standard permission defaults apply in every world, so worlds using none will allow standard items";
+
     /**
      * Top-level command used for incraftible subcommands.
      */
@@ -98,18 +133,36 @@ public final class FixedMessage {
 
     private static final String COMMAND_LOGPERMS = "logperms";
     private static final String COMMAND_LOG = "log";
+    private static final String COMMAND_RELOAD = "reload";
+    private static final String COMMAND_TRACE = "trace";
+    private static final String COMMAND_STATS = "stats";
+    private static final String COMMAND_AUDIT = "audit";
+    private static final String COMMAND_SHADOW = "shadow";
 
-    private static final String COMMAND_LOGPERMS_USAGE = COMMAND_LOGPERMS + " <loggedInPlayerName>";
+    private static final String COMMAND_LOGPERMS_USAGE = COMMAND_LOGPERMS + " <loggedInPlayerName> [prefix] [page|export]";
 
     private static final String COMMAND_LOG_USAGE = COMMAND_LOG + " (debug|info)";
 
+    private static final String COMMAND_TRACE_USAGE = COMMAND_TRACE + " (dump|(on|off) <loggedInPlayerName>)";
+
+    private static final String COMMAND_STATS_USAGE = COMMAND_STATS + " [reset]";
+
+    private static final String COMMAND_AUDIT_USAGE = COMMAND_AUDIT + " [material|permission]";
+
+    private static final String COMMAND_SHADOW_USAGE = COMMAND_SHADOW + " [report|reset]";
+
     /**
      * @{value}.
      */
     public static final String[] COMMAND_USAGE = {
             PLUGIN_NAME + " " + VERSION + " by Taufiq Hoven",
             "/" + COMMAND_PREFIX + " " + COMMAND_LOGPERMS_USAGE,
-            "/" + COMMAND_PREFIX + " " + COMMAND_LOG_USAGE
+            "/" + COMMAND_PREFIX + " " + COMMAND_LOG_USAGE,
+            "/" + COMMAND_PREFIX + " " + COMMAND_RELOAD,
+            "/" + COMMAND_PREFIX + " " + COMMAND_TRACE_USAGE,
+            "/" + COMMAND_PREFIX + " " + COMMAND_STATS_USAGE,
+            "/" + COMMAND_PREFIX + " " + COMMAND_AUDIT_USAGE,
+            "/" + COMMAND_PREFIX + " " + COMMAND_SHADOW_USAGE
     };
     /**
      * @{value}.
@@ -121,11 +174,129 @@ public final class FixedMessage {
      */
     public static final String PLAYER_MESSAGE_LOGPERMS_USAGE = "Usage: /" + COMMAND_PREFIX + " " + COMMAND_LOGPERMS_USAGE;
 
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_LOGPERMS_PAGE = "Craft permissions for %s, page %d of %d (%d permissions):";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_LOGPERMS_EXPORTED = "Wrote %d craft permissions for %s to %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_LOGPERMS_EXPORT_FAILED = "Couldn't export craft permissions, see the server log.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_TRACE_USAGE = "Usage: /" + COMMAND_PREFIX + " " + COMMAND_TRACE_USAGE;
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_STATS_USAGE = "Usage: /" + COMMAND_PREFIX + " " + COMMAND_STATS_USAGE;
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_STATS_RESET = "Craft statistics reset.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_AUDIT_USAGE = "Usage: /" + COMMAND_PREFIX + " " + COMMAND_AUDIT_USAGE;
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_AUDIT_NO_MATCH = "No craft permissions match %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_AUDIT_WRITTEN = "Audited %d players (%d distinct permission sets) "
+            + "against %d permissions in %d ms, written to %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_AUDIT_COLUMN = "%s: %d of %d players allowed";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_AUDIT_FAILED = "Couldn't complete the audit, see the server log.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_SHADOW_USAGE = "Usage: /" + COMMAND_PREFIX + " " + COMMAND_SHADOW_USAGE;
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_SHADOW_DISABLED = "Shadow mode is not running; enable it with shadow.enabled.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_SHADOW_STATUS = "Shadow of %s: %d sampled, %d queued, %d dropped, "
+            + "%d skipped over budget";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_SHADOW_WRITTEN = "Wrote shadow report to %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_SHADOW_WRITE_FAILED = "Couldn't write shadow report, see the server log.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_SHADOW_RESET = "Candidate config %s reloaded, shadow report cleared.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_SHADOW_RESET_FAILED = "Candidate config could not be reloaded, "
+            + "see the server log.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_TRACE_SET = "Tracing for %s set to %s";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_TRACE_EMPTY = "No craft decisions have been traced.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_PLAYER_NOT_FOUND = "No player online named %s";
+
     /**
      * @{value}.
      */
     public static final String PLAYER_MESSAGE_LOG_SET = "Log level set to %s";
 
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_RELOADED = "Incraftible config reloaded.";
+
+    /**
+     * @{value}.
+     */
+    public static final String PLAYER_MESSAGE_RELOAD_FAILED = "Incraftible config could not be reloaded, see the server log.";
+
     /**
      * @{value}.
      */
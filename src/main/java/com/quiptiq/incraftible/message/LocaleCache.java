@@ -0,0 +1,116 @@
+package com.quiptiq.incraftible.message;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of values loaded for each locale. Values are loaded on first
+ * use; once the cache is full, the locale used least recently is evicted to
+ * make room. Lookups of cached locales don't lock.
+ *
+ * This class is thread-safe.
+ *
+ * @param <V>
+ *            Type of value cached for each locale.
+ * @author Taufiq Hoven
+ */
+abstract class LocaleCache<V> {
+    /**
+     * Default number of locales cached.
+     */
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final int capacity;
+
+    private final ConcurrentHashMap<Locale, Entry<V>> entries = new ConcurrentHashMap<Locale, Entry<V>>();
+
+    /**
+     * Logical clock, advanced on each lookup, ordering the use of locales.
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * Creates a new cache holding up to the specified number of locales.
+     *
+     * @param capacity
+     *            Maximum number of locales cached.
+     */
+    LocaleCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Loads the value for the specified locale. Called at most once per
+     * locale while the locale remains cached.
+     *
+     * @param locale
+     *            Locale to load.
+     * @return Value for the locale.
+     */
+    protected abstract V load(Locale locale);
+
+    /**
+     * Gets the value for the specified locale, loading it if necessary.
+     *
+     * @param locale
+     *            Locale of the value.
+     * @return Value for the locale.
+     */
+    V get(Locale locale) {
+        Entry<V> entry = entries.get(locale);
+        if (entry == null) {
+            entry = loadEntry(locale);
+        }
+        entry.lastUsed = clock.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * @return Number of locales cached.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private synchronized Entry<V> loadEntry(Locale locale) {
+        Entry<V> entry = entries.get(locale);
+        if (entry != null) {
+            return entry;
+        }
+        if (entries.size() >= capacity) {
+            evictLeastRecentlyUsed();
+        }
+        entry = new Entry<V>(load(locale));
+        entries.put(locale, entry);
+        return entry;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Locale eldest = null;
+        long eldestUsed = Long.MAX_VALUE;
+        for (Map.Entry<Locale, Entry<V>> entry : entries.entrySet()) {
+            if (entry.getValue().lastUsed < eldestUsed) {
+                eldest = entry.getKey();
+                eldestUsed = entry.getValue().lastUsed;
+            }
+        }
+        if (eldest != null) {
+            entries.remove(eldest);
+        }
+    }
+
+    /**
+     * Cached value and the time it was last used.
+     */
+    private static final class Entry<V> {
+        private final V value;
+
+        private volatile long lastUsed;
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+}
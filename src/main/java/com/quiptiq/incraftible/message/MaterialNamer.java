@@ -3,7 +3,8 @@ package com.quiptiq.incraftible.message;
 import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
 
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
@@ -17,6 +18,9 @@ import org.bukkit.Material;
  * In its absence, names are derived from the value of the
  * {@link org.bukkit.Material} enum.
  *
+ * Names are loaded for each locale the first time it is used. A bounded
+ * number of locales other than the server's default are kept.
+ *
  * This class is thread-safe.
  *
  * @author Taufiq Hoven
@@ -41,9 +45,20 @@ public class MaterialNamer {
     private static final MaterialNamer namer = new MaterialNamer();
 
     /**
-     * Map of materials to their names.
+     * Names for the server's default locale, loaded on first use.
      */
-    private final Map<Material, String> materialNames;
+    private volatile Map<Material, String> defaultNames;
+
+    /**
+     * Names for other locales, loaded on first use of each locale.
+     */
+    private final LocaleCache<Map<Material, String>> localeNames =
+            new LocaleCache<Map<Material, String>>(LocaleCache.DEFAULT_CAPACITY) {
+                @Override
+                protected Map<Material, String> load(Locale locale) {
+                    return loadNames(getBundle(locale));
+                }
+            };
 
     /**
      * Returns an instance of a material namer, which provides human-friendly
@@ -56,21 +71,89 @@ public class MaterialNamer {
     }
 
     private MaterialNamer() {
-        ResourceBundle bundle = null;
+    }
+
+    /**
+     * Gets the name for the specified material, as determined by the message
+     * resource bundle or, failing that, the Material enum.
+     *
+     * @param material
+     *            Material for which a name is to be retrieved.
+     * @return Name for the specified material.
+     */
+    public String getName(Material material) {
+        Map<Material, String> names = defaultNames;
+        if (names == null) {
+            names = loadDefaultNames();
+        }
+        return names.get(material);
+    }
+
+    /**
+     * Gets the name for the specified material in the specified locale, as
+     * determined by the message resource bundle for that locale or, failing
+     * that, the Material enum.
+     *
+     * @param material
+     *            Material for which a name is to be retrieved.
+     * @param locale
+     *            Locale of the name, or null for the server's default.
+     * @return Name for the specified material.
+     */
+    public String getName(Material material, Locale locale) {
+        if (locale == null) {
+            return getName(material);
+        }
+        return localeNames.get(locale).get(material);
+    }
+
+    private synchronized Map<Material, String> loadDefaultNames() {
+        if (defaultNames == null) {
+            ResourceBundle bundle = null;
+            try {
+                bundle = ResourceBundle.getBundle(DEFAULT_RESOURCE_BUNDLE);
+            } catch (MissingResourceException e) {
+                log.warning(LOG_NO_ITEM_NAME_RESOURCE_BUNDLE);
+            }
+            defaultNames = loadNames(bundle);
+        }
+        return defaultNames;
+    }
+
+    /**
+     * Gets the resource bundle for the specified locale, falling back to the
+     * base bundle rather than the server's default locale.
+     *
+     * @param locale
+     *            Locale of the bundle.
+     * @return Resource bundle, or null if there is none.
+     */
+    private static ResourceBundle getBundle(Locale locale) {
         try {
-            bundle = ResourceBundle.getBundle(DEFAULT_RESOURCE_BUNDLE);
+            return ResourceBundle.getBundle(DEFAULT_RESOURCE_BUNDLE, locale,
+                    ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES));
         } catch (MissingResourceException e) {
             log.warning(LOG_NO_ITEM_NAME_RESOURCE_BUNDLE);
+            return null;
         }
-        HashMap<Material, String> names = new HashMap<Material, String>();
+    }
 
-        if (bundle != null) {
-            for (Material material : Material.values()) {
+    /**
+     * Loads the names of all materials from the specified bundle, deriving
+     * names for materials that it doesn't name.
+     *
+     * @param bundle
+     *            Bundle of names, or null to derive all names.
+     * @return Unmodifiable map of materials to their names.
+     */
+    private static Map<Material, String> loadNames(ResourceBundle bundle) {
+        EnumMap<Material, String> names = new EnumMap<Material, String>(Material.class);
+        for (Material material : Material.values()) {
+            if (bundle != null) {
                 String itemKey = RESOURCE_ITEM_PREFIX + material.name().toLowerCase() + RESOURCE_SUFFIX;
                 if (bundle.containsKey(itemKey)) {
                     try {
-                        String name = bundle.getString(itemKey);
-                        names.put(material, name);
+                        names.put(material, bundle.getString(itemKey));
                         continue;
                     } catch (MissingResourceException e) {
                         log.warning(String.format(LOG_MATERIAL_NOT_FOUND, material.name()));
@@ -78,27 +161,11 @@ public class MaterialNamer {
                         log.warning(String.format(LOG_UNEXPECTED_CLASS, material.name()));
                     }
                 }
-                // Derive the name from the enum.
-                names.put(material, deriveMaterialName(material));
-            }
-        } else {
-            for (Material material : Material.values()) {
-                names.put(material, deriveMaterialName(material));
             }
+            // Derive the name from the enum.
+            names.put(material, deriveMaterialName(material));
         }
-        materialNames = Collections.unmodifiableMap(names);
-    }
-
-    /**
-     * Gets the name for the specified material, as determined by the message
-     * resource bundle or, failing that, the Material enum.
-     *
-     * @param material
-     *            Material for which a name is to be retrieved.
-     * @return Name for the specified material.
-     */
-    public String getName(Material material) {
-        return materialNames.get(material);
+        return Collections.unmodifiableMap(names);
     }
 
     /**
@@ -4,21 +4,18 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.bukkit.Material;
-
 /**
- * Player message that can be customised.
+ * Player message that can be customised. Configured messages are compiled
+ * into the {@link MessageTemplate}s of each world's policy, so this holds
+ * only the config node and built-in text of each message.
  */
 public enum Message {
-    PLAYER_MESSAGE_DISALLOWED(Message.CONFIG_PREFIX + "disallowed");
+    PLAYER_MESSAGE_DISALLOWED(Message.CONFIG_PREFIX + "disallowed"),
+    PLAYER_MESSAGE_RATE_LIMITED(Message.CONFIG_PREFIX + "ratelimited", "You are crafting %s too quickly"),
+    PLAYER_MESSAGE_QUOTA_EXCEEDED(Message.CONFIG_PREFIX + "quota", "You can't craft any more %s today");
 
     private static final Map<String, Message> CONFIG_MESSAGES;
 
-    /**
-     * Provides names for materials.
-     */
-    private static final MaterialNamer namer = MaterialNamer.getInstance();
-
     static {
         HashMap<String, Message> messages = new HashMap<String, Message>();
         for (Message message : Message.values()) {
@@ -31,22 +28,31 @@ public enum Message {
 
     private final String configNode;
 
-    private String message = "";
+    /**
+     * Built-in message, used when the config doesn't set one.
+     */
+    private final String defaultMessage;
 
     private Message(String configNode) {
-        this.configNode = configNode;
+        this(configNode, "");
     }
 
-    public void overrideMessage(String newMessage) {
-        message = newMessage;
+    private Message(String configNode, String defaultMessage) {
+        this.configNode = configNode;
+        this.defaultMessage = defaultMessage;
     }
 
     public Message valueFor(String configNode) {
         return CONFIG_MESSAGES.get(configNode);
     }
 
-    public String getMessage() {
-        return message;
+    /**
+     * Returns the built-in message.
+     *
+     * @return Built-in message.
+     */
+    public String getDefaultMessage() {
+        return defaultMessage;
     }
 
     /**
@@ -57,23 +63,4 @@ public enum Message {
     public String getConfigNode() {
         return configNode;
     }
-
-    /**
-     * Prepares the configured message with the specified arguments, if any.
-     *
-     * @param args
-     *            Message arguments.
-     * @return String containing the prepared message.
-     */
-    public String prepareMessage(Object... args) {
-        Object[] preparedArgs = new Object[args.length];
-        for (int i = 0; i < args.length; i++) {
-            if (args[i] instanceof Material) {
-                preparedArgs[i] = namer.getName((Material)args[i]);
-            } else {
-                preparedArgs[i] = args[i];
-            }
-        }
-        return String.format(getMessage(), preparedArgs);
-    }
 }
@@ -0,0 +1,138 @@
+package com.quiptiq.incraftible.message;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+
+/**
+ * Coalesces repeated messages to a player, such as denials of a player
+ * clicking a crafting result over and over. The first message is sent
+ * immediately and opens a window; repeats of the same message for the same
+ * material within the window are only counted, and are sent as a single
+ * summary once the window has passed and {@link #flush()} is called. Messages
+ * sent and formatted per player are then bounded by the window, however fast
+ * the player clicks.
+ *
+ * This class is not thread-safe, and must only be used from the main server
+ * thread.
+ *
+ * @author Taufiq Hoven
+ */
+public class MessageCoalescer {
+    private static final String SUMMARY_FORMAT = "%s (x %d)";
+
+    private final PlayerLocales playerLocales = PlayerLocales.getInstance();
+
+    /**
+     * Open window for each player that has been sent a message.
+     */
+    private final Map<UUID, Window> windows = new HashMap<UUID, Window>();
+
+    /**
+     * Sends the specified message to the player, unless it repeats the
+     * message that opened the player's current window.
+     *
+     * @param player
+     *            Player to send the message to.
+     * @param material
+     *            Material named in the message.
+     * @param template
+     *            Template of the message.
+     * @param windowMillis
+     *            Length of the window in which repeats are coalesced, or 0
+     *            to send every message.
+     */
+    public void send(Player player, Material material, MessageTemplate template, long windowMillis) {
+        send(player, material, template, windowMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * Sends a message at the specified time.
+     *
+     * @see #send(Player, Material, MessageTemplate, long)
+     */
+    void send(Player player, Material material, MessageTemplate template, long windowMillis, long nowMillis) {
+        UUID playerId = player.getUniqueId();
+        if (windowMillis <= 0 || playerId == null) {
+            player.sendMessage(template.forMaterial(material, playerLocales.getLocale(player)));
+            return;
+        }
+        Window window = windows.get(playerId);
+        if (window != null && nowMillis < window.endMillis) {
+            if (window.material == material && window.template == template) {
+                window.repeats++;
+                return;
+            }
+            // A different message ends the window early
+            sendSummary(window);
+        }
+        player.sendMessage(template.forMaterial(material, playerLocales.getLocale(player)));
+        if (window == null) {
+            window = new Window();
+            windows.put(playerId, window);
+        }
+        window.player = player;
+        window.material = material;
+        window.template = template;
+        window.endMillis = nowMillis + windowMillis;
+        window.repeats = 0;
+    }
+
+    /**
+     * Sends summaries for windows that have passed, and discards them.
+     */
+    public void flush() {
+        flush(System.currentTimeMillis());
+    }
+
+    /**
+     * Flushes windows that have passed at the specified time.
+     *
+     * @see #flush()
+     */
+    void flush(long nowMillis) {
+        Iterator<Window> iterator = windows.values().iterator();
+        while (iterator.hasNext()) {
+            Window window = iterator.next();
+            if (nowMillis >= window.endMillis) {
+                sendSummary(window);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Number of players with an open window.
+     */
+    public int size() {
+        return windows.size();
+    }
+
+    private void sendSummary(Window window) {
+        if (window.repeats > 0 && window.player.isOnline()) {
+            window.player.sendMessage(String.format(SUMMARY_FORMAT,
+                    window.template.forMaterial(window.material, playerLocales.getLocale(window.player)),
+                    window.repeats));
+        }
+        window.repeats = 0;
+    }
+
+    /**
+     * Message that opened a window, and the repeats counted in it.
+     */
+    private static class Window {
+        Player player;
+
+        Material material;
+
+        MessageTemplate template;
+
+        long endMillis;
+
+        int repeats;
+    }
+}
@@ -0,0 +1,121 @@
+package com.quiptiq.incraftible.message;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.util.EnumMap;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+
+/**
+ * Message compiled for a single material argument. The message is formatted
+ * once for every material when the template is created, so that preparing the
+ * message for a material is a single table lookup with no formatting.
+ * Messages naming materials in other locales are compiled the first time each
+ * locale is used.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class MessageTemplate {
+    private static final String LOG_WARN_INVALID_FORMAT = LOG_PREFIX + "Invalid message format \"%s\": %s";
+
+    private static final Logger log = Logger.getLogger("Minecraft");
+
+    private final String format;
+
+    private final MaterialNamer namer;
+
+    /**
+     * Finished message for each material, in the server's default locale.
+     */
+    private final Map<Material, String> materialMessages;
+
+    /**
+     * Finished messages for each material in other locales.
+     */
+    private final LocaleCache<Map<Material, String>> localeMessages =
+            new LocaleCache<Map<Material, String>>(LocaleCache.DEFAULT_CAPACITY) {
+                @Override
+                protected Map<Material, String> load(Locale locale) {
+                    return compile(locale);
+                }
+            };
+
+    /**
+     * Compiles the specified message format, naming materials with the
+     * specified namer.
+     *
+     * @param format
+     *            Message format, using %s to denote the material name.
+     * @param namer
+     *            Namer for materials.
+     */
+    public MessageTemplate(String format, MaterialNamer namer) {
+        this.format = format;
+        this.namer = namer;
+        materialMessages = compile(null);
+    }
+
+    /**
+     * Formats the message for every material, named in the specified locale.
+     *
+     * @param locale
+     *            Locale of material names, or null for the server's default.
+     * @return Finished message for each material.
+     */
+    private Map<Material, String> compile(Locale locale) {
+        EnumMap<Material, String> messages = new EnumMap<Material, String>(Material.class);
+        try {
+            for (Material material : Material.values()) {
+                messages.put(material, String.format(format, namer.getName(material, locale)));
+            }
+        } catch (IllegalFormatException e) {
+            log.warning(String.format(LOG_WARN_INVALID_FORMAT, format, e.getMessage()));
+            for (Material material : Material.values()) {
+                messages.put(material, format);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @return Format from which the template was compiled.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the finished message for the specified material.
+     *
+     * @param material
+     *            Material named in the message.
+     * @return Message for the material.
+     */
+    public String forMaterial(Material material) {
+        return materialMessages.get(material);
+    }
+
+    /**
+     * Returns the finished message for the specified material, naming it in
+     * the specified locale.
+     *
+     * @param material
+     *            Material named in the message.
+     * @param locale
+     *            Locale of the material name, or null for the server's
+     *            default.
+     * @return Message for the material.
+     */
+    public String forMaterial(Material material, Locale locale) {
+        if (locale == null) {
+            return materialMessages.get(material);
+        }
+        return localeMessages.get(locale).get(material);
+    }
+}
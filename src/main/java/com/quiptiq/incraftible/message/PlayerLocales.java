@@ -0,0 +1,180 @@
+package com.quiptiq.incraftible.message;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Resolves the locale of a player's client. Bukkit does not expose the client
+ * locale, so it is read through a getLocale method if the server's player
+ * class has one, such as on servers that have added it. The method is looked
+ * up once, from the first player seen, as a server has a single player class.
+ * Each player's locale is read when they join and kept until they quit, so
+ * sending a message doesn't go through reflection; a locale changed during a
+ * session is seen from the player's next session.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class PlayerLocales {
+    private static final String LOCALE_METHOD = "getLocale";
+
+    private static final String LOCALE_SEPARATOR = "_";
+
+    private static final PlayerLocales instance = new PlayerLocales();
+
+    /**
+     * Marker for player classes without a locale method.
+     */
+    private static final Object NO_LOCALE_METHOD = new Object();
+
+    /**
+     * Marker for players whose locale is not known, as the map of player
+     * locales can't hold null.
+     */
+    private static final Locale UNKNOWN_LOCALE = new Locale("");
+
+    /**
+     * Locale method, {@link #NO_LOCALE_METHOD}, or null until the first
+     * player is seen.
+     */
+    private volatile Object localeMethod;
+
+    /**
+     * Locale of each player whose locale has been read, by player id.
+     */
+    private final ConcurrentHashMap<UUID, Locale> playerLocales = new ConcurrentHashMap<UUID, Locale>();
+
+    /**
+     * Locales parsed from the names reported by clients.
+     */
+    private final ConcurrentHashMap<String, Locale> locales = new ConcurrentHashMap<String, Locale>();
+
+    /**
+     * @return Instance of PlayerLocales.
+     */
+    public static PlayerLocales getInstance() {
+        return instance;
+    }
+
+    private PlayerLocales() {
+    }
+
+    /**
+     * Reads and keeps the locale of a player who has joined.
+     *
+     * @param player
+     *            Player who joined.
+     */
+    public void addPlayer(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (playerId != null) {
+            playerLocales.put(playerId, readLocale(player));
+        }
+    }
+
+    /**
+     * Discards the locale of a player who has quit.
+     *
+     * @param player
+     *            Player who quit.
+     */
+    public void removePlayer(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (playerId != null) {
+            playerLocales.remove(playerId);
+        }
+    }
+
+    /**
+     * Gets the locale of the specified player's client. Players who were
+     * online before the plugin was enabled have their locale read on first
+     * use.
+     *
+     * @param player
+     *            Player whose locale is resolved.
+     * @return Locale of the player's client, or null if it is not known.
+     */
+    public Locale getLocale(Player player) {
+        UUID playerId = player.getUniqueId();
+        Locale locale = playerId == null ? null : playerLocales.get(playerId);
+        if (locale == null) {
+            locale = readLocale(player);
+            if (playerId != null) {
+                playerLocales.put(playerId, locale);
+            }
+        }
+        return locale == UNKNOWN_LOCALE ? null : locale;
+    }
+
+    /**
+     * Reads the locale reported by the player's client.
+     *
+     * @return Locale of the player's client, or {@link #UNKNOWN_LOCALE}.
+     */
+    private Locale readLocale(Player player) {
+        Object method = localeMethod;
+        if (method == null) {
+            method = findLocaleMethod(player.getClass());
+            localeMethod = method;
+        }
+        if (method == NO_LOCALE_METHOD) {
+            return UNKNOWN_LOCALE;
+        }
+        Object localeName;
+        try {
+            localeName = ((Method) method).invoke(player);
+        } catch (IllegalAccessException e) {
+            return UNKNOWN_LOCALE;
+        } catch (IllegalArgumentException e) {
+            // Player of another class than the one the method was found on
+            return UNKNOWN_LOCALE;
+        } catch (InvocationTargetException e) {
+            return UNKNOWN_LOCALE;
+        }
+        if (localeName instanceof Locale) {
+            return (Locale) localeName;
+        }
+        return localeName instanceof String ? parseLocale((String) localeName) : UNKNOWN_LOCALE;
+    }
+
+    /**
+     * Parses a locale name as reported by clients, such as en_US or en_us.
+     *
+     * @param localeName
+     *            Name of the locale.
+     * @return Parsed locale.
+     */
+    Locale parseLocale(String localeName) {
+        Locale locale = locales.get(localeName);
+        if (locale == null) {
+            String[] parts = localeName.split(LOCALE_SEPARATOR, 3);
+            if (parts.length == 1) {
+                locale = new Locale(parts[0].toLowerCase());
+            } else if (parts.length == 2) {
+                locale = new Locale(parts[0].toLowerCase(), parts[1].toUpperCase());
+            } else {
+                locale = new Locale(parts[0].toLowerCase(), parts[1].toUpperCase(), parts[2]);
+            }
+            locales.put(localeName, locale);
+        }
+        return locale;
+    }
+
+    private static Object findLocaleMethod(Class<?> playerClass) {
+        try {
+            Method method = playerClass.getMethod(LOCALE_METHOD);
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException e) {
+            return NO_LOCALE_METHOD;
+        } catch (SecurityException e) {
+            return NO_LOCALE_METHOD;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.quiptiq.incraftible.recipe;
+
+/**
+ * Open addressing hash table from recipe fingerprints to rule indices, held
+ * in primitive arrays so that a lookup is a probe of a long array without
+ * boxing. The table is kept at most half full, so probes are short.
+ *
+ * Entries are only added while the table is built; once published through a
+ * final field of an immutable object, the table is safe to read from any
+ * thread.
+ *
+ * @author Taufiq Hoven
+ */
+final class FingerprintIndex {
+    /**
+     * Key of an empty entry. Fingerprints are never 0.
+     */
+    private static final long EMPTY_KEY = 0;
+
+    /**
+     * Value returned for fingerprints that are not in the table.
+     */
+    static final int NOT_FOUND = -1;
+
+    private final long[] keys;
+
+    private final int[] values;
+
+    private final int mask;
+
+    /**
+     * Creates an empty table able to hold the specified number of entries.
+     *
+     * @param expectedSize
+     *            Number of entries to be added.
+     */
+    FingerprintIndex(int expectedSize) {
+        int capacity = 2;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds an entry, unless the fingerprint is already present.
+     *
+     * @param fingerprint
+     *            Non-zero fingerprint.
+     * @param value
+     *            Value for the fingerprint.
+     * @return True if added, false if the fingerprint was already present.
+     */
+    boolean put(long fingerprint, int value) {
+        int index = indexFor(fingerprint);
+        while (keys[index] != EMPTY_KEY) {
+            if (keys[index] == fingerprint) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = fingerprint;
+        values[index] = value;
+        return true;
+    }
+
+    /**
+     * Gets the value for the specified fingerprint.
+     *
+     * @param fingerprint
+     *            Fingerprint to look up.
+     * @return Value for the fingerprint, or {@link #NOT_FOUND}.
+     */
+    int get(long fingerprint) {
+        int index = indexFor(fingerprint);
+        long key;
+        while ((key = keys[index]) != EMPTY_KEY) {
+            if (key == fingerprint) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private int indexFor(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+}
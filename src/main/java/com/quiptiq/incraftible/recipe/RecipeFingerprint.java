@@ -0,0 +1,240 @@
+package com.quiptiq.incraftible.recipe;
+
+import java.util.Arrays;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import com.quiptiq.incraftible.PermissionsReference;
+
+/**
+ * Canonical 64 bit fingerprints of crafting matrices. Each slot of a matrix
+ * is reduced to a cell holding the material id and, for materials with data
+ * permissions such as wool and dye, the data value. A cell may instead hold
+ * {@link #anyData any data value}, for rules that accept an ingredient
+ * whatever its data. Shaped matrices are then trimmed to the rows and columns
+ * holding ingredients, so that a shape has the same fingerprint wherever it
+ * is placed in the grid. A shape and its {@link #mirror mirror image} have
+ * different fingerprints, although Minecraft crafts both. Shapeless matrices
+ * are reduced to their sorted ingredients, so that placement does not matter
+ * at all.
+ *
+ * Fingerprints are never 0, which {@link FingerprintIndex} reserves for empty
+ * entries.
+ *
+ * @author Taufiq Hoven
+ */
+public final class RecipeFingerprint {
+    /**
+     * Cell for a slot without an ingredient.
+     */
+    public static final int EMPTY = 0;
+
+    private static final PermissionsReference perms = PermissionsReference.getInstance();
+
+    /**
+     * Bits of a cell below the material id: the data value, and a bit for
+     * any data value.
+     */
+    private static final int DATA_BITS = 5;
+
+    private static final int DATA_MASK = 0xf;
+
+    private static final int ANY_DATA = 0x10;
+
+    /* Tags distinguishing shaped from shapeless fingerprints */
+    private static final int SHAPED = 1;
+    private static final int SHAPELESS = 2;
+
+    /* 64 bit FNV-1a parameters */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private RecipeFingerprint() {
+    }
+
+    /**
+     * Gets the cell for an ingredient. Data values are only kept for
+     * materials with data permissions; for other materials, such as tools,
+     * the data value is damage and is ignored.
+     *
+     * @param material
+     *            Ingredient material, or null if there is no ingredient.
+     * @param data
+     *            Data value of the ingredient.
+     * @return Cell for the ingredient.
+     */
+    public static int cell(Material material, int data) {
+        if (material == null || Material.AIR.equals(material)) {
+            return EMPTY;
+        }
+        int cellData = perms.hasDataPermission(material) && (data & ~DATA_MASK) == 0 ? data : 0;
+        return (material.getId() << DATA_BITS) | cellData;
+    }
+
+    /**
+     * Gets the cell matching an ingredient of the specified material whatever
+     * its data value.
+     *
+     * @param cell
+     *            Cell for the ingredient.
+     * @return Cell for the ingredient with any data value, or the cell itself
+     *         if it is empty.
+     */
+    public static int anyData(int cell) {
+        return cell == EMPTY ? EMPTY : (cell & ~(DATA_MASK | ANY_DATA)) | ANY_DATA;
+    }
+
+    /**
+     * Gets the material id of a cell.
+     *
+     * @param cell
+     *            Cell for an ingredient.
+     * @return Material id of the ingredient, or 0 if the cell is empty.
+     */
+    public static int materialId(int cell) {
+        return cell >>> DATA_BITS;
+    }
+
+    /**
+     * Reduces the contents of a crafting matrix to cells.
+     *
+     * @param matrix
+     *            Square crafting matrix, in row-major order, as given by
+     *            CraftingInventory.getMatrix().
+     * @return Cells in row-major order.
+     */
+    public static int[] cells(ItemStack[] matrix) {
+        int[] cells = new int[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            ItemStack stack = matrix[i];
+            cells[i] = stack == null ? EMPTY : cell(stack.getType(), stack.getDurability());
+        }
+        return cells;
+    }
+
+    /**
+     * Fingerprints the contents of a crafting matrix.
+     *
+     * @param matrix
+     *            Square crafting matrix, in row-major order, as given by
+     *            CraftingInventory.getMatrix().
+     * @param shapeless
+     *            Whether the recipe crafted is shapeless.
+     * @return Fingerprint of the matrix.
+     */
+    public static long ofMatrix(ItemStack[] matrix, boolean shapeless) {
+        return ofCells(cells(matrix), shapeless);
+    }
+
+    /**
+     * Fingerprints the cells of a square crafting matrix.
+     *
+     * @param cells
+     *            Cells of the matrix, in row-major order, as given by
+     *            {@link #cells}.
+     * @param shapeless
+     *            Whether the recipe crafted is shapeless.
+     * @return Fingerprint of the matrix.
+     */
+    public static long ofCells(int[] cells, boolean shapeless) {
+        if (shapeless) {
+            return shapeless(cells);
+        }
+        return shaped((int) Math.round(Math.sqrt(cells.length)), cells);
+    }
+
+    /**
+     * Mirrors a shaped arrangement of cells from left to right.
+     *
+     * @param width
+     *            Number of columns.
+     * @param cells
+     *            Cells in row-major order.
+     * @return Mirrored cells in row-major order.
+     */
+    public static int[] mirror(int width, int[] cells) {
+        int[] mirrored = new int[cells.length];
+        for (int i = 0; i < cells.length; i += width) {
+            for (int column = 0; column < width; column++) {
+                mirrored[i + column] = cells[i + width - 1 - column];
+            }
+        }
+        return mirrored;
+    }
+
+    /**
+     * Fingerprints a shaped arrangement of cells.
+     *
+     * @param width
+     *            Number of columns.
+     * @param cells
+     *            Cells in row-major order.
+     * @return Fingerprint of the arrangement.
+     */
+    public static long shaped(int width, int[] cells) {
+        int height = cells.length / width;
+        int top = height;
+        int bottom = -1;
+        int left = width;
+        int right = -1;
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                if (cells[row * width + column] != EMPTY) {
+                    top = Math.min(top, row);
+                    bottom = Math.max(bottom, row);
+                    left = Math.min(left, column);
+                    right = Math.max(right, column);
+                }
+            }
+        }
+        long hash = mix(FNV_OFFSET_BASIS, SHAPED);
+        if (bottom < 0) {
+            return nonZero(hash);
+        }
+        hash = mix(hash, right - left + 1);
+        hash = mix(hash, bottom - top + 1);
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                hash = mix(hash, cells[row * width + column]);
+            }
+        }
+        return nonZero(hash);
+    }
+
+    /**
+     * Fingerprints a shapeless collection of cells.
+     *
+     * @param cells
+     *            Cells in any order.
+     * @return Fingerprint of the collection.
+     */
+    public static long shapeless(int[] cells) {
+        int[] ingredients = new int[cells.length];
+        int count = 0;
+        for (int cell : cells) {
+            if (cell != EMPTY) {
+                ingredients[count++] = cell;
+            }
+        }
+        Arrays.sort(ingredients, 0, count);
+        long hash = mix(FNV_OFFSET_BASIS, SHAPELESS);
+        hash = mix(hash, count);
+        for (int i = 0; i < count; i++) {
+            hash = mix(hash, ingredients[i]);
+        }
+        return nonZero(hash);
+    }
+
+    private static long mix(long hash, int value) {
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            hash ^= (value >>> shift) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
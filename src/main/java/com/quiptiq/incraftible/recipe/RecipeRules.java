@@ -0,0 +1,393 @@
+package com.quiptiq.incraftible.recipe;
+
+import static com.quiptiq.incraftible.PermissionsReference.PERMISSION_ROOT;
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.inventory.ShapelessRecipe;
+
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.Incraftible;
+import com.quiptiq.incraftible.PermissionsReference;
+
+/**
+ * Rules that allow or deny particular recipes, rather than every recipe for a
+ * result. Each rule is configured under the recipes section with either a
+ * shape, a list of rows of ingredients, or a shapeless list of ingredients:
+ *
+ * <pre>
+ * recipes:
+ *     gravel_tnt:
+ *         shape:
+ *         - "sulphur gravel sulphur"
+ *         - "gravel sulphur gravel"
+ *         - "sulphur gravel sulphur"
+ *         allowed: false
+ * </pre>
+ *
+ * Ingredients are material names or ids, optionally followed by a colon and
+ * data value, with - for an empty slot. A data value of * or -1 matches the
+ * ingredient whatever its data, as recipes with -1 data do, so that
+ * "wool:* wool:* wool:*" matches beds of any colour. A shape also matches its
+ * mirror image, which Minecraft crafts too. A player with the permission
+ * incraftible.recipe.&lt;rule&gt; set is allowed or denied according to the
+ * permission; otherwise the rule's allowed setting applies.
+ *
+ * Rules are indexed by the fingerprint of their matrix and of its mirror
+ * image, so matching a craft is a single probe however many rules are
+ * configured, plus a probe for each distinct set of materials that rules
+ * accept with any data. Rules with exact data values are probed first, then
+ * those accepting fewer materials with any data.
+ * Distinct matrices whose 64 bit fingerprints collide are not told apart.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class RecipeRules {
+    /**
+     * Prefix of the permissions that override a recipe rule.
+     */
+    public static final String PERMISSION_RECIPE_PREFIX = PERMISSION_ROOT + ".recipe.";
+
+    /**
+     * Value returned when no rule matches.
+     */
+    public static final int NO_RULE = FingerprintIndex.NOT_FOUND;
+
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private static final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private static final String LOG_WARN_INVALID_RULE = LOG_PREFIX + "Ignoring recipe rule %s: %s";
+
+    private static final String LOG_WARN_DUPLICATE_RULE = LOG_PREFIX
+            + "Ignoring recipe rule %s, which has the same recipe as %s";
+
+    private static final String CONFIG_SHAPE = "shape";
+
+    private static final String CONFIG_INGREDIENTS = "ingredients";
+
+    private static final String CONFIG_ALLOWED = "allowed";
+
+    private static final String EMPTY_INGREDIENT = "-";
+
+    private static final String DATA_SEPARATOR = ":";
+
+    private static final String ANY_DATA = "*";
+
+    private static final int RECIPE_ANY_DATA = -1;
+
+    private static final RecipeRules NONE = new RecipeRules(new String[0], new boolean[0], new FingerprintIndex(0),
+            new BitSet[0]);
+
+    private final String[] ids;
+
+    private final boolean[] allowed;
+
+    private final String[] permissionNames;
+
+    private final FingerprintIndex index;
+
+    /**
+     * Distinct sets of material ids that rules accept with any data value.
+     */
+    private final BitSet[] anyDataMaterials;
+
+    private RecipeRules(String[] ids, boolean[] allowed, FingerprintIndex index, BitSet[] anyDataMaterials) {
+        this.ids = ids;
+        this.allowed = allowed;
+        this.index = index;
+        this.anyDataMaterials = anyDataMaterials;
+        permissionNames = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            permissionNames[i] = PERMISSION_RECIPE_PREFIX + ids[i].toLowerCase();
+        }
+    }
+
+    /**
+     * Reads the rules in the specified section. Invalid rules are logged and
+     * ignored.
+     *
+     * @param recipes
+     *            Section holding a subsection per rule, or null if no rules
+     *            are configured.
+     * @return Configured rules.
+     */
+    public static RecipeRules fromConfig(ConfigurationSection recipes) {
+        if (recipes == null) {
+            return NONE;
+        }
+        List<String> ids = new ArrayList<String>();
+        List<Boolean> allowed = new ArrayList<Boolean>();
+        List<long[]> fingerprints = new ArrayList<long[]>();
+        List<BitSet> ruleAnyData = new ArrayList<BitSet>();
+        for (String id : recipes.getKeys(false)) {
+            ConfigurationSection rule = recipes.getConfigurationSection(id);
+            BitSet anyData = new BitSet();
+            try {
+                if (rule == null) {
+                    throw new IllegalArgumentException("expected a shape or ingredients");
+                }
+                fingerprints.add(fingerprints(rule, anyData));
+            } catch (IllegalArgumentException e) {
+                log.warning(String.format(LOG_WARN_INVALID_RULE, id, e.getMessage()));
+                continue;
+            }
+            ids.add(id);
+            allowed.add(rule.getBoolean(CONFIG_ALLOWED, false));
+            ruleAnyData.add(anyData);
+        }
+        FingerprintIndex index = new FingerprintIndex(ids.size() * 2);
+        List<String> indexedIds = new ArrayList<String>();
+        List<Boolean> indexedAllowed = new ArrayList<Boolean>();
+        Set<BitSet> anyDataMaterials = new HashSet<BitSet>();
+        List<BitSet> orderedAnyData = new ArrayList<BitSet>();
+        for (int i = 0; i < ids.size(); i++) {
+            int existing = FingerprintIndex.NOT_FOUND;
+            for (long fingerprint : fingerprints.get(i)) {
+                if (existing == FingerprintIndex.NOT_FOUND) {
+                    existing = index.get(fingerprint);
+                }
+            }
+            if (existing != FingerprintIndex.NOT_FOUND) {
+                log.warning(String.format(LOG_WARN_DUPLICATE_RULE, ids.get(i), indexedIds.get(existing)));
+                continue;
+            }
+            for (long fingerprint : fingerprints.get(i)) {
+                // A symmetric shape is its own mirror image
+                index.put(fingerprint, indexedIds.size());
+            }
+            indexedIds.add(ids.get(i));
+            indexedAllowed.add(allowed.get(i));
+            BitSet anyData = ruleAnyData.get(i);
+            if (!anyData.isEmpty() && anyDataMaterials.add(anyData)) {
+                orderedAnyData.add(anyData);
+            }
+        }
+        // Fewer materials with any data value make a more specific rule
+        Collections.sort(orderedAnyData, new Comparator<BitSet>() {
+            @Override
+            public int compare(BitSet first, BitSet second) {
+                return first.cardinality() - second.cardinality();
+            }
+        });
+        boolean[] allowedValues = new boolean[indexedAllowed.size()];
+        for (int i = 0; i < allowedValues.length; i++) {
+            allowedValues[i] = indexedAllowed.get(i);
+        }
+        return new RecipeRules(indexedIds.toArray(new String[indexedIds.size()]), allowedValues, index,
+                orderedAnyData.toArray(new BitSet[orderedAnyData.size()]));
+    }
+
+    /**
+     * Fingerprints the shape or ingredients of a rule, and for a shape its
+     * mirror image.
+     *
+     * @param anyData
+     *            Set to the ids of the materials the rule accepts with any
+     *            data value.
+     * @throws IllegalArgumentException
+     *             if the rule has neither, an ingredient is not a known
+     *             material, or a material is given both with and without any
+     *             data value.
+     */
+    private static long[] fingerprints(ConfigurationSection rule, BitSet anyData) {
+        BitSet exactData = new BitSet();
+        long[] fingerprints;
+        if (rule.isList(CONFIG_SHAPE)) {
+            List<String> rows = rule.getStringList(CONFIG_SHAPE);
+            List<String[]> rowIngredients = new ArrayList<String[]>();
+            int width = 0;
+            for (String row : rows) {
+                String[] ingredients = row.trim().split("\\s+");
+                rowIngredients.add(ingredients);
+                width = Math.max(width, ingredients.length);
+            }
+            if (width == 0) {
+                throw new IllegalArgumentException("shape is empty");
+            }
+            int[] cells = new int[width * rowIngredients.size()];
+            for (int row = 0; row < rowIngredients.size(); row++) {
+                String[] ingredients = rowIngredients.get(row);
+                for (int column = 0; column < ingredients.length; column++) {
+                    cells[row * width + column] = parseCell(ingredients[column], anyData, exactData);
+                }
+            }
+            fingerprints = new long[] {RecipeFingerprint.shaped(width, cells),
+                    RecipeFingerprint.shaped(width, RecipeFingerprint.mirror(width, cells))};
+        } else if (rule.isList(CONFIG_INGREDIENTS)) {
+            List<String> ingredients = rule.getStringList(CONFIG_INGREDIENTS);
+            int[] cells = new int[ingredients.size()];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = parseCell(ingredients.get(i).trim(), anyData, exactData);
+            }
+            fingerprints = new long[] {RecipeFingerprint.shapeless(cells)};
+        } else {
+            throw new IllegalArgumentException("expected a shape or ingredients");
+        }
+        if (anyData.intersects(exactData)) {
+            throw new IllegalArgumentException("materials given both with and without any data value");
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Parses an ingredient into a cell, adding its material id to the
+     * materials with any or exact data values.
+     */
+    private static int parseCell(String ingredient, BitSet anyData, BitSet exactData) {
+        if (ingredient.length() == 0 || EMPTY_INGREDIENT.equals(ingredient)) {
+            return RecipeFingerprint.EMPTY;
+        }
+        String materialName = ingredient;
+        int data = 0;
+        int separator = ingredient.indexOf(DATA_SEPARATOR);
+        if (separator >= 0) {
+            materialName = ingredient.substring(0, separator);
+            String dataValue = ingredient.substring(separator + 1);
+            try {
+                data = ANY_DATA.equals(dataValue) ? RECIPE_ANY_DATA : Integer.parseInt(dataValue);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid data value in " + ingredient);
+            }
+        }
+        Material material = Material.matchMaterial(materialName);
+        if (material == null) {
+            throw new IllegalArgumentException("unknown material " + materialName);
+        }
+        int cell = RecipeFingerprint.cell(material, data);
+        if (!perms.hasDataPermission(material)) {
+            // Data values of other materials are ignored already
+            return cell;
+        }
+        if (data == RECIPE_ANY_DATA) {
+            anyData.set(material.getId());
+            return RecipeFingerprint.anyData(cell);
+        }
+        exactData.set(material.getId());
+        return cell;
+    }
+
+    /**
+     * @return True if no rules are configured.
+     */
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * @return Number of rules configured.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Finds the rule for the specified crafting matrix.
+     *
+     * @param recipe
+     *            Recipe crafted, used to tell whether the matrix is shaped.
+     * @param matrix
+     *            Contents of the crafting matrix, or null if unknown.
+     * @return Index of the matching rule, or {@link #NO_RULE}.
+     */
+    public int match(Recipe recipe, ItemStack[] matrix) {
+        if (matrix == null || ids.length == 0) {
+            return NO_RULE;
+        }
+        return match(RecipeFingerprint.cells(matrix), recipe instanceof ShapelessRecipe);
+    }
+
+    /**
+     * Finds the rule for the specified matrix cells. Rules with exact data
+     * values are tried first, then each set of materials that rules accept
+     * with any data value, smallest first.
+     *
+     * @param cells
+     *            Cells of the crafting matrix, as given by
+     *            {@link RecipeFingerprint#cells}.
+     * @param shapeless
+     *            Whether the recipe crafted is shapeless.
+     * @return Index of the matching rule, or {@link #NO_RULE}.
+     */
+    public int match(int[] cells, boolean shapeless) {
+        if (ids.length == 0) {
+            return NO_RULE;
+        }
+        int rule = index.get(RecipeFingerprint.ofCells(cells, shapeless));
+        for (int i = 0; i < anyDataMaterials.length && rule == NO_RULE; i++) {
+            int[] anyDataCells = null;
+            for (int j = 0; j < cells.length; j++) {
+                if (anyDataMaterials[i].get(RecipeFingerprint.materialId(cells[j]))) {
+                    if (anyDataCells == null) {
+                        anyDataCells = cells.clone();
+                    }
+                    anyDataCells[j] = RecipeFingerprint.anyData(cells[j]);
+                }
+            }
+            if (anyDataCells != null) {
+                rule = index.get(RecipeFingerprint.ofCells(anyDataCells, shapeless));
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * @param rule
+     *            Index of a rule.
+     * @return Configured id of the rule.
+     */
+    public String getId(int rule) {
+        return ids[rule];
+    }
+
+    /**
+     * @param rule
+     *            Index of a rule.
+     * @return Permission that overrides the rule.
+     */
+    public String getPermissionName(int rule) {
+        return permissionNames[rule];
+    }
+
+    /**
+     * @param rule
+     *            Index of a rule.
+     * @return Whether the rule allows crafting, for players without the
+     *         permission that overrides it.
+     */
+    public boolean isAllowed(int rule) {
+        return allowed[rule];
+    }
+
+    /**
+     * Decides whether the specified player may craft a recipe matching the
+     * specified rule.
+     *
+     * @param rule
+     *            Index of the matching rule.
+     * @param player
+     *            Player crafting.
+     * @return {@link CraftDecision#ALLOWED} or {@link CraftDecision#DENIED}.
+     */
+    public CraftDecision decide(int rule, Player player) {
+        String permissionName = permissionNames[rule];
+        boolean ruleAllowed = player.isPermissionSet(permissionName) ? player.hasPermission(permissionName)
+                : allowed[rule];
+        return ruleAllowed ? CraftDecision.ALLOWED : CraftDecision.DENIED;
+    }
+}
@@ -0,0 +1,411 @@
+package com.quiptiq.incraftible.shadow;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.inventory.ShapelessRecipe;
+
+import com.quiptiq.incraftible.ConfigSnapshot;
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.CraftPermissionTable;
+import com.quiptiq.incraftible.Incraftible;
+import com.quiptiq.incraftible.PermissionsReference;
+import com.quiptiq.incraftible.PermissionsStrategy;
+import com.quiptiq.incraftible.recipe.RecipeFingerprint;
+import com.quiptiq.incraftible.recipe.RecipeRules;
+import com.quiptiq.incraftible.world.Region;
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * Evaluates a sampled fraction of craft checks against a candidate config in
+ * shadow mode, so that the impact of a config change can be seen before it is
+ * made live. The live decision always stays in force; the candidate's
+ * decision is only recorded in a {@link ShadowReport}.
+ *
+ * Permissions are not part of the config, so each sample carries the
+ * permission decision made on the main server thread, along with the player's
+ * world and location. The candidate's recipe rules, then the regions and
+ * material lists and permission strategy of the candidate's policy for the
+ * world, are applied to it on a background thread, in the same order as the
+ * live decision. Under the standard strategy, permissions granted by default are only
+ * registered while it is live, so a candidate using it treats the slots it
+ * grants by default as allowed when their permission is not set. Players'
+ * permissions overriding a candidate recipe rule are not consulted.
+ *
+ * The cost is bounded three ways: only the sampled fraction of checks is
+ * captured, samples beyond the queue capacity are dropped and counted, and
+ * once evaluation has taken its budget of time within a second, sampling
+ * pauses until the next second.
+ *
+ * {@link #sample()} and {@link #offer} must only be called from the main
+ * server thread; other methods are thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class ShadowEvaluator implements Runnable {
+    private static final String THREAD_NAME = "Incraftible shadow evaluator";
+
+    /**
+     * Interval in milliseconds between evaluations of queued samples.
+     */
+    private static final long POLL_MILLIS = 50;
+
+    private static final long BUDGET_WINDOW_NANOS = 1000000000L;
+
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private static final String LOG_WARN_DROPPED = LOG_PREFIX + "Shadow queue full, dropped %d samples";
+
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private static final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private final String candidateName;
+
+    private final BitSet standardDefaults;
+
+    private final double sampleRate;
+
+    private final int capacity;
+
+    private final long budgetNanos;
+
+    private volatile ConfigSnapshot candidate;
+
+    private final ShadowReport report = new ShadowReport();
+
+    private final ConcurrentLinkedQueue<ShadowSample> queue = new ConcurrentLinkedQueue<ShadowSample>();
+
+    /**
+     * Number of samples in the queue. Tracked separately as the size of a
+     * ConcurrentLinkedQueue is not constant time.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong sampled = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Whether the budget for the current second has been spent.
+     */
+    private volatile boolean throttled = false;
+
+    private volatile boolean running = false;
+
+    private Thread evaluatorThread;
+
+    /**
+     * Chooses the checks sampled. Only used from the main server thread.
+     */
+    private final Random random = new Random();
+
+    /* Evaluator state, only accessed from the evaluator thread. */
+    private long windowStart;
+
+    private long windowNanos;
+
+    private long reportedDrops = 0;
+
+    /**
+     * Creates a new evaluator for the specified candidate config.
+     *
+     * @param candidateName
+     *            Name of the candidate config, for reports.
+     * @param candidate
+     *            Candidate config.
+     * @param standardDefaults
+     *            Names of the permissions granted by default under the
+     *            standard strategy.
+     * @param sampleRate
+     *            Fraction of checks, between 0 and 1, that are sampled.
+     * @param capacity
+     *            Maximum number of samples waiting to be evaluated.
+     * @param budgetMicros
+     *            Time in microseconds that may be spent evaluating samples in
+     *            each second.
+     */
+    public ShadowEvaluator(String candidateName, ConfigSnapshot candidate, Collection<String> standardDefaults,
+            double sampleRate, int capacity, long budgetMicros) {
+        this.candidateName = candidateName;
+        this.candidate = candidate;
+        this.standardDefaults = new BitSet(PermissionsReference.SLOT_COUNT);
+        for (String permissionName : standardDefaults) {
+            String lowerName = permissionName.toLowerCase();
+            int slot = perms.getPermissionSlot(lowerName);
+            Material dataMaterial = perms.getDataMaterial(lowerName);
+            if (slot >= 0) {
+                this.standardDefaults.set(slot);
+            } else if (dataMaterial != null) {
+                // Material permission, granting every data value by default
+                int first = PermissionsReference.slot(dataMaterial, 0);
+                this.standardDefaults.set(first, first + PermissionsReference.DATA_VALUES);
+            }
+        }
+        this.sampleRate = sampleRate;
+        this.capacity = capacity;
+        this.budgetNanos = budgetMicros * NANOS_PER_MICRO;
+    }
+
+    /**
+     * Decides whether the current check is sampled. Must only be called from
+     * the main server thread.
+     *
+     * @return True if the check should be offered to the evaluator.
+     */
+    public boolean sample() {
+        if (!running || random.nextDouble() >= sampleRate) {
+            return false;
+        }
+        if (throttled) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether samples need the crafting matrix, which is only the case if the
+     * candidate has recipe rules.
+     *
+     * @return True if the matrix should be offered with each sample.
+     */
+    public boolean needsMatrix() {
+        return !candidate.getRecipeRules().isEmpty();
+    }
+
+    /**
+     * Queues a sampled check for evaluation. Never blocks; if the queue is
+     * full the sample is dropped and counted. Must only be called from the
+     * main server thread.
+     *
+     * @param player
+     *            Player crafting.
+     * @param material
+     *            Material crafted.
+     * @param data
+     *            Data value of the material.
+     * @param recipe
+     *            Recipe crafted, or null if unknown.
+     * @param matrix
+     *            Contents of the crafting matrix, or null if not needed or
+     *            unknown.
+     * @param decision
+     *            Permission decision for the craft, regardless of any recipe
+     *            rule.
+     * @param liveAllowed
+     *            Whether the live config allowed the craft.
+     * @return True if the sample was queued, false if it was dropped or the
+     *         evaluator is stopped.
+     */
+    public boolean offer(Player player, Material material, byte data, Recipe recipe, ItemStack[] matrix,
+            CraftDecision decision, boolean liveAllowed) {
+        if (!running) {
+            return false;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        int[] cells = matrix == null ? null : RecipeFingerprint.cells(matrix);
+        World world = player.getWorld();
+        Location location = player.getLocation();
+        int[] block = location == null ? null
+                : new int[] {location.getBlockX(), location.getBlockY(), location.getBlockZ()};
+        sampled.incrementAndGet();
+        queue.offer(new ShadowSample(player.getName(), world == null ? null : world.getName(), block, material, data,
+                cells, recipe instanceof ShapelessRecipe, decision, liveAllowed));
+        return true;
+    }
+
+    /**
+     * Decides whether the candidate config would allow a sampled craft.
+     *
+     * @param sample
+     *            Sampled craft check.
+     * @param candidateSettings
+     *            Candidate config.
+     * @return True if the candidate would allow the craft.
+     */
+    boolean evaluate(ShadowSample sample, ConfigSnapshot candidateSettings) {
+        if (sample.getCells() != null) {
+            RecipeRules rules = candidateSettings.getRecipeRules();
+            int rule = rules.match(sample.getCells(), sample.isShapeless());
+            if (rule != RecipeRules.NO_RULE) {
+                return rules.isAllowed(rule);
+            }
+        }
+        WorldPolicy policy = candidateSettings.getWorldPolicy(sample.getWorldName());
+        Material material = sample.getMaterial();
+        int[] block = sample.getBlock();
+        Region region = block == null ? null : policy.getRegions().find(material, block[0], block[1], block[2]);
+        CraftDecision materialDecision = region != null ? region.getMaterialDecision(material)
+                : policy.getMaterialDecision(material);
+        if (materialDecision != null) {
+            return CraftDecision.ALLOWED.equals(materialDecision);
+        }
+        PermissionsStrategy strategy = policy.getPermissionsStrategy();
+        if (CraftDecision.UNSET.equals(sample.getDecision()) && PermissionsStrategy.STANDARD.equals(strategy)) {
+            return isStandardDefault(sample.getMaterial(), sample.getData());
+        }
+        return sample.getDecision().isAllowed(strategy);
+    }
+
+    /**
+     * Whether the permission for the specified material and data value is
+     * granted by default under the standard strategy.
+     */
+    private boolean isStandardDefault(Material material, byte data) {
+        byte slotData = perms.hasDataPermission(material) ? data : 0;
+        return CraftPermissionTable.covers(slotData)
+                && standardDefaults.get(PermissionsReference.slot(material, slotData));
+    }
+
+    /**
+     * @return Name of the candidate config.
+     */
+    public String getCandidateName() {
+        return candidateName;
+    }
+
+    /**
+     * Replaces the candidate config, clearing the report.
+     *
+     * @param newCandidate
+     *            New candidate config.
+     */
+    public void setCandidate(ConfigSnapshot newCandidate) {
+        candidate = newCandidate;
+        report.clear();
+    }
+
+    /**
+     * @return Disagreements found so far.
+     */
+    public ShadowReport getReport() {
+        return report;
+    }
+
+    /**
+     * @return Total number of checks sampled and queued.
+     */
+    public long getSampledCount() {
+        return sampled.get();
+    }
+
+    /**
+     * @return Total number of samples dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Total number of samples skipped because the budget was spent.
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * @return Number of samples waiting to be evaluated.
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Starts the background evaluator.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        evaluatorThread = new Thread(this, THREAD_NAME);
+        evaluatorThread.setDaemon(true);
+        evaluatorThread.start();
+    }
+
+    /**
+     * Stops the background evaluator. Samples still queued are discarded.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        evaluatorThread.interrupt();
+        try {
+            evaluatorThread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        evaluatorThread = null;
+        queue.clear();
+        queued.set(0);
+    }
+
+    @Override
+    public void run() {
+        windowStart = System.nanoTime();
+        windowNanos = 0;
+        while (running) {
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                // Stopping
+                return;
+            }
+            evaluateQueued();
+        }
+    }
+
+    /**
+     * Evaluates queued samples until the queue is empty or the budget for the
+     * current second is spent.
+     */
+    void evaluateQueued() {
+        long now = System.nanoTime();
+        if (now - windowStart >= BUDGET_WINDOW_NANOS) {
+            windowStart = now;
+            windowNanos = 0;
+            throttled = false;
+        }
+        ConfigSnapshot candidateSettings = candidate;
+        ShadowSample sample;
+        while (!throttled && (sample = queue.poll()) != null) {
+            queued.decrementAndGet();
+            long start = System.nanoTime();
+            report.record(sample.getPlayerName(), sample.getMaterial(), sample.isLiveAllowed(),
+                    evaluate(sample, candidateSettings));
+            windowNanos += System.nanoTime() - start;
+            if (windowNanos >= budgetNanos) {
+                throttled = true;
+            }
+        }
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            log.warning(String.format(LOG_WARN_DROPPED, drops - reportedDrops));
+            reportedDrops = drops;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.quiptiq.incraftible.shadow;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Material;
+
+/**
+ * Disagreements between the live and candidate configs, aggregated per
+ * material and per player. A disagreement is either stricter, a craft allowed
+ * live that the candidate would deny, or looser, a craft denied live that the
+ * candidate would allow.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class ShadowReport {
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private static final String SUMMARY_TOTALS = "%d checks evaluated, %d disagreed: %d would be denied, %d would be allowed";
+
+    private static final String SUMMARY_HEADING = "By %s, most disagreements first:";
+
+    private static final String SUMMARY_ENTRY = "  %s: %d of %d disagreed, %d would be denied, %d would be allowed";
+
+    private static final int EVALUATED = 0;
+
+    private static final int STRICTER = 1;
+
+    private static final int LOOSER = 2;
+
+    private static final int COUNTS = 3;
+
+    private final Map<Material, long[]> materials = new EnumMap<Material, long[]>(Material.class);
+
+    private final Map<String, long[]> players = new HashMap<String, long[]>();
+
+    private final long[] totals = new long[COUNTS];
+
+    /**
+     * Records the outcome of a sampled check.
+     *
+     * @param playerName
+     *            Name of the player crafting.
+     * @param material
+     *            Material crafted.
+     * @param liveAllowed
+     *            Whether the live config allowed the craft.
+     * @param candidateAllowed
+     *            Whether the candidate config would allow the craft.
+     */
+    public synchronized void record(String playerName, Material material, boolean liveAllowed,
+            boolean candidateAllowed) {
+        int outcome = liveAllowed == candidateAllowed ? -1 : (liveAllowed ? STRICTER : LOOSER);
+        count(totals, outcome);
+        long[] materialCounts = materials.get(material);
+        if (materialCounts == null) {
+            materialCounts = new long[COUNTS];
+            materials.put(material, materialCounts);
+        }
+        count(materialCounts, outcome);
+        long[] playerCounts = players.get(playerName);
+        if (playerCounts == null) {
+            playerCounts = new long[COUNTS];
+            players.put(playerName, playerCounts);
+        }
+        count(playerCounts, outcome);
+    }
+
+    private static void count(long[] counts, int outcome) {
+        counts[EVALUATED]++;
+        if (outcome >= 0) {
+            counts[outcome]++;
+        }
+    }
+
+    /**
+     * @return Number of checks evaluated.
+     */
+    public synchronized long getEvaluatedCount() {
+        return totals[EVALUATED];
+    }
+
+    /**
+     * @return Number of checks allowed live that the candidate would deny.
+     */
+    public synchronized long getStricterCount() {
+        return totals[STRICTER];
+    }
+
+    /**
+     * @return Number of checks denied live that the candidate would allow.
+     */
+    public synchronized long getLooserCount() {
+        return totals[LOOSER];
+    }
+
+    /**
+     * Discards everything recorded.
+     */
+    public synchronized void clear() {
+        materials.clear();
+        players.clear();
+        for (int i = 0; i < COUNTS; i++) {
+            totals[i] = 0;
+        }
+    }
+
+    /**
+     * Summarises the report, listing the materials and players with the most
+     * disagreements.
+     *
+     * @param top
+     *            Maximum number of materials and of players listed.
+     * @return Lines of the summary.
+     */
+    public synchronized List<String> summary(int top) {
+        List<String> lines = new ArrayList<String>();
+        lines.add(String.format(SUMMARY_TOTALS, totals[EVALUATED], totals[STRICTER] + totals[LOOSER],
+                totals[STRICTER], totals[LOOSER]));
+        addEntries(lines, "material", materials, top);
+        addEntries(lines, "player", players, top);
+        return lines;
+    }
+
+    /**
+     * Writes the full report, with every material and player that had a
+     * disagreement, to the specified file.
+     *
+     * @param file
+     *            File to write.
+     * @throws IOException
+     *             if the file couldn't be written.
+     */
+    public void write(File file) throws IOException {
+        List<String> lines = summary(Integer.MAX_VALUE);
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            for (String line : lines) {
+                out.write(line);
+                out.write(LINE_SEPARATOR);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Adds a heading and an entry for each key with a disagreement, most
+     * disagreements first, up to the specified number of entries.
+     */
+    private static <K> void addEntries(List<String> lines, String heading, Map<K, long[]> counts, int top) {
+        List<Map.Entry<K, long[]>> entries = new ArrayList<Map.Entry<K, long[]>>();
+        for (Map.Entry<K, long[]> entry : counts.entrySet()) {
+            if (disagreed(entry.getValue()) > 0) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<K, long[]>>() {
+            @Override
+            public int compare(Map.Entry<K, long[]> a, Map.Entry<K, long[]> b) {
+                long difference = disagreed(b.getValue()) - disagreed(a.getValue());
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        lines.add(String.format(SUMMARY_HEADING, heading));
+        for (Map.Entry<K, long[]> entry : entries.subList(0, Math.min(top, entries.size()))) {
+            long[] entryCounts = entry.getValue();
+            lines.add(String.format(SUMMARY_ENTRY, entry.getKey(), disagreed(entryCounts),
+                    entryCounts[EVALUATED], entryCounts[STRICTER], entryCounts[LOOSER]));
+        }
+    }
+
+    private static long disagreed(long[] counts) {
+        return counts[STRICTER] + counts[LOOSER];
+    }
+}
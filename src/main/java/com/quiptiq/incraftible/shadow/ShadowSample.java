@@ -0,0 +1,113 @@
+package com.quiptiq.incraftible.shadow;
+
+import org.bukkit.Material;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * A craft check sampled for evaluation against the candidate config. Holds
+ * only what was captured on the main server thread, so that it can be
+ * evaluated without touching the player or inventory.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+final class ShadowSample {
+    private final String playerName;
+
+    private final String worldName;
+
+    private final int[] block;
+
+    private final Material material;
+
+    private final byte data;
+
+    private final int[] cells;
+
+    private final boolean shapeless;
+
+    private final CraftDecision decision;
+
+    private final boolean liveAllowed;
+
+    /**
+     * @param playerName
+     *            Name of the player crafting.
+     * @param worldName
+     *            Name of the player's world, or null if not known.
+     * @param block
+     *            Block coordinates of the player, as x, y and z, or null if
+     *            not known.
+     * @param material
+     *            Material crafted.
+     * @param data
+     *            Data value of the material.
+     * @param cells
+     *            Cells of the crafting matrix, as given by
+     *            RecipeFingerprint.cells(), or null if it was not captured.
+     * @param shapeless
+     *            Whether the recipe crafted is shapeless.
+     * @param decision
+     *            Permission decision for the craft, regardless of any recipe
+     *            rule.
+     * @param liveAllowed
+     *            Whether the live config allowed the craft.
+     */
+    ShadowSample(String playerName, String worldName, int[] block, Material material, byte data, int[] cells,
+            boolean shapeless, CraftDecision decision, boolean liveAllowed) {
+        this.playerName = playerName;
+        this.worldName = worldName;
+        this.block = block;
+        this.material = material;
+        this.data = data;
+        this.cells = cells;
+        this.shapeless = shapeless;
+        this.decision = decision;
+        this.liveAllowed = liveAllowed;
+    }
+
+    String getPlayerName() {
+        return playerName;
+    }
+
+    String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * @return Block coordinates of the player, as x, y and z, or null if not
+     *         known.
+     */
+    int[] getBlock() {
+        return block;
+    }
+
+    Material getMaterial() {
+        return material;
+    }
+
+    byte getData() {
+        return data;
+    }
+
+    /**
+     * @return Cells of the crafting matrix, or null if it was not captured.
+     */
+    int[] getCells() {
+        return cells;
+    }
+
+    boolean isShapeless() {
+        return shapeless;
+    }
+
+    CraftDecision getDecision() {
+        return decision;
+    }
+
+    boolean isLiveAllowed() {
+        return liveAllowed;
+    }
+}
@@ -0,0 +1,205 @@
+package com.quiptiq.incraftible.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counters and latency histograms for the craft path. Recording does not
+ * allocate, so it is always on.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class CraftStats implements CraftStatsMBean {
+    /**
+     * Name under which the statistics are registered as an MBean: {@value}.
+     */
+    public static final String OBJECT_NAME = "com.quiptiq.incraftible:type=CraftStats";
+
+    private static final String COUNTER_FORMAT = "%s: %d (%.1f/s)";
+
+    private static final String LATENCY_FORMAT = "%s: p50 %dns, p99 %dns, max %dns (%.1f/s)";
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final StripedCounter checks = new StripedCounter();
+
+    private final StripedCounter allows = new StripedCounter();
+
+    private final StripedCounter denials = new StripedCounter();
+
+    private final StripedCounter limited = new StripedCounter();
+
+    private final LatencyHistogram clickLatency = new LatencyHistogram();
+
+    private final LatencyHistogram handleCraftLatency = new LatencyHistogram();
+
+    private final LatencyHistogram itemAllowedLatency = new LatencyHistogram();
+
+    /**
+     * Time at which the statistics were last reset, from
+     * {@link System#nanoTime()}.
+     */
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Records the outcome of a craft check.
+     *
+     * @param allowed
+     *            Whether the craft was allowed.
+     */
+    public void recordCheck(boolean allowed) {
+        checks.increment();
+        if (allowed) {
+            allows.increment();
+        } else {
+            denials.increment();
+        }
+    }
+
+    /**
+     * Records a craft cancelled by a rate limit or quota.
+     */
+    public void recordLimited() {
+        limited.increment();
+    }
+
+    /**
+     * @return Latencies of inventory click handling.
+     */
+    public LatencyHistogram getClickLatency() {
+        return clickLatency;
+    }
+
+    /**
+     * @return Latencies of craft handling.
+     */
+    public LatencyHistogram getHandleCraftLatency() {
+        return handleCraftLatency;
+    }
+
+    /**
+     * @return Latencies of craft decisions, from recipe rules through
+     *         permissions.
+     */
+    public LatencyHistogram getItemAllowedLatency() {
+        return itemAllowedLatency;
+    }
+
+    @Override
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    @Override
+    public long getAllows() {
+        return allows.sum();
+    }
+
+    @Override
+    public long getDenials() {
+        return denials.sum();
+    }
+
+    @Override
+    public long getLimited() {
+        return limited.sum();
+    }
+
+    @Override
+    public double getChecksPerSecond() {
+        return perSecond(checks.sum());
+    }
+
+    @Override
+    public long getClickP50Nanos() {
+        return clickLatency.getPercentile(0.5);
+    }
+
+    @Override
+    public long getClickP99Nanos() {
+        return clickLatency.getPercentile(0.99);
+    }
+
+    @Override
+    public long getClickMaxNanos() {
+        return clickLatency.getMax();
+    }
+
+    @Override
+    public long getHandleCraftP50Nanos() {
+        return handleCraftLatency.getPercentile(0.5);
+    }
+
+    @Override
+    public long getHandleCraftP99Nanos() {
+        return handleCraftLatency.getPercentile(0.99);
+    }
+
+    @Override
+    public long getHandleCraftMaxNanos() {
+        return handleCraftLatency.getMax();
+    }
+
+    @Override
+    public long getItemAllowedP50Nanos() {
+        return itemAllowedLatency.getPercentile(0.5);
+    }
+
+    @Override
+    public long getItemAllowedP99Nanos() {
+        return itemAllowedLatency.getPercentile(0.99);
+    }
+
+    @Override
+    public long getItemAllowedMaxNanos() {
+        return itemAllowedLatency.getMax();
+    }
+
+    @Override
+    public void reset() {
+        checks.reset();
+        allows.reset();
+        denials.reset();
+        limited.reset();
+        clickLatency.reset();
+        handleCraftLatency.reset();
+        itemAllowedLatency.reset();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Formats the statistics for display, one line per counter or histogram.
+     *
+     * @return Formatted statistics.
+     */
+    public List<String> report() {
+        List<String> lines = new ArrayList<String>();
+        addCounter(lines, "Checks", checks.sum());
+        addCounter(lines, "Allowed", allows.sum());
+        addCounter(lines, "Denied", denials.sum());
+        addCounter(lines, "Limited", limited.sum());
+        addLatency(lines, "Inventory click", clickLatency);
+        addLatency(lines, "Handle craft", handleCraftLatency);
+        addLatency(lines, "Craft decision", itemAllowedLatency);
+        return lines;
+    }
+
+    private void addCounter(List<String> lines, String name, long count) {
+        lines.add(String.format(COUNTER_FORMAT, name, count, perSecond(count)));
+    }
+
+    private void addLatency(List<String> lines, String name, LatencyHistogram histogram) {
+        lines.add(String.format(LATENCY_FORMAT, name, histogram.getPercentile(0.5), histogram.getPercentile(0.99),
+                histogram.getMax(), perSecond(histogram.getCount())));
+    }
+
+    /**
+     * Rate of the specified count since the statistics were reset.
+     */
+    private double perSecond(long count) {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : count * NANOS_PER_SECOND / elapsed;
+    }
+}
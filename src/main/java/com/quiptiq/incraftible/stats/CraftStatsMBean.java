@@ -0,0 +1,85 @@
+package com.quiptiq.incraftible.stats;
+
+/**
+ * Management interface for {@link CraftStats}, registered with the platform
+ * MBean server under {@link CraftStats#OBJECT_NAME}.
+ *
+ * @author Taufiq Hoven
+ */
+public interface CraftStatsMBean {
+    /**
+     * @return Number of crafts checked.
+     */
+    long getChecks();
+
+    /**
+     * @return Number of crafts allowed.
+     */
+    long getAllows();
+
+    /**
+     * @return Number of crafts denied.
+     */
+    long getDenials();
+
+    /**
+     * @return Number of crafts cancelled by rate limits or quotas.
+     */
+    long getLimited();
+
+    /**
+     * @return Crafts checked per second since the statistics were reset.
+     */
+    double getChecksPerSecond();
+
+    /**
+     * @return Median latency of inventory click handling, in nanoseconds.
+     */
+    long getClickP50Nanos();
+
+    /**
+     * @return 99th percentile latency of inventory click handling, in
+     *         nanoseconds.
+     */
+    long getClickP99Nanos();
+
+    /**
+     * @return Maximum latency of inventory click handling, in nanoseconds.
+     */
+    long getClickMaxNanos();
+
+    /**
+     * @return Median latency of craft handling, in nanoseconds.
+     */
+    long getHandleCraftP50Nanos();
+
+    /**
+     * @return 99th percentile latency of craft handling, in nanoseconds.
+     */
+    long getHandleCraftP99Nanos();
+
+    /**
+     * @return Maximum latency of craft handling, in nanoseconds.
+     */
+    long getHandleCraftMaxNanos();
+
+    /**
+     * @return Median latency of craft decisions, in nanoseconds.
+     */
+    long getItemAllowedP50Nanos();
+
+    /**
+     * @return 99th percentile latency of craft decisions, in nanoseconds.
+     */
+    long getItemAllowedP99Nanos();
+
+    /**
+     * @return Maximum latency of craft decisions, in nanoseconds.
+     */
+    long getItemAllowedMaxNanos();
+
+    /**
+     * Discards all counts and latencies.
+     */
+    void reset();
+}
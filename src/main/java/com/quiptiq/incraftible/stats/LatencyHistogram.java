@@ -0,0 +1,106 @@
+package com.quiptiq.incraftible.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, with a fixed bucket for each power
+ * of two. Recording a latency is a bucket increment and does not allocate;
+ * percentiles are reported as the upper bound of the bucket they fall in.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class LatencyHistogram {
+    /**
+     * One bucket per bit length of a non-negative long, where bucket 0 holds
+     * zero and bucket n holds latencies from 2^(n-1) to 2^n - 1.
+     */
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos
+     *            Latency in nanoseconds. Negative values, as from a clock
+     *            adjustment, are recorded as zero.
+     */
+    public void record(long nanos) {
+        long latency = nanos < 0 ? 0 : nanos;
+        counts.getAndIncrement(BUCKETS - Long.numberOfLeadingZeros(latency));
+        long currentMax;
+        do {
+            currentMax = max.get();
+        } while (latency > currentMax && !max.compareAndSet(currentMax, latency));
+    }
+
+    /**
+     * @return Number of latencies recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return Largest latency recorded, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the latency below which the specified fraction of recorded
+     * latencies fall, to the precision of a bucket.
+     *
+     * @param fraction
+     *            Fraction of latencies, between 0 and 1.
+     * @return Upper bound of the bucket holding the percentile, in
+     *         nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Discards all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /**
+     * Largest latency held by the specified bucket.
+     */
+    private static long upperBound(int bucket) {
+        return (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,73 @@
+package com.quiptiq.incraftible.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that spreads increments from different threads over separate cache
+ * lines, so that threads counting at the same time don't contend on one
+ * value. Reading the count sums all stripes.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class StripedCounter {
+    /**
+     * Longs per stripe, so that each stripe sits on its own cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final int stripeMask;
+
+    private final AtomicLongArray cells;
+
+    /**
+     * Creates a counter with a stripe for each available processor, rounded
+     * up to a power of two.
+     */
+    public StripedCounter() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        stripeMask = stripes - 1;
+        cells = new AtomicLongArray(stripes * PADDING);
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Adds the specified amount to the count.
+     *
+     * @param delta
+     *            Amount to add.
+     */
+    public void add(long delta) {
+        cells.getAndAdd(((int) Thread.currentThread().getId() & stripeMask) * PADDING, delta);
+    }
+
+    /**
+     * Returns the count. Increments made while the count is read may or may
+     * not be included.
+     *
+     * @return Sum of all stripes.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Sets the count back to zero.
+     */
+    public void reset() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+}
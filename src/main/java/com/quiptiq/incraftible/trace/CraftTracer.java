@@ -0,0 +1,195 @@
+package com.quiptiq.incraftible.trace;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+import org.bukkit.entity.HumanEntity;
+
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.Incraftible;
+
+/**
+ * Debug tracing for craft checks. Tracing is either enabled for all players or
+ * for individual players. Callers must guard each trace point with
+ * {@link #isTracing(HumanEntity)} so that no message arguments are built while
+ * tracing is off; messages are only formatted once the guard has passed.
+ *
+ * Traced decisions are also kept in a {@link TraceBuffer} until dumped.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class CraftTracer {
+    /**
+     * Default number of decisions held for dumping.
+     */
+    public static final int DEFAULT_BUFFER_CAPACITY = 256;
+
+    private static final String LOG_DECISION = LOG_PREFIX + "%s: %s:%d checked %s, %s -> %s";
+
+    private final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    /**
+     * Whether tracing is enabled for all players.
+     */
+    private volatile boolean enabled = false;
+
+    /**
+     * Players for which tracing has been individually enabled.
+     */
+    private final Set<UUID> tracedPlayers = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
+    private final TraceBuffer buffer;
+
+    /**
+     * Creates a new tracer with the default buffer capacity.
+     */
+    public CraftTracer() {
+        this(DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Creates a new tracer holding the specified number of decisions.
+     *
+     * @param bufferCapacity
+     *            Number of decisions held for dumping.
+     */
+    public CraftTracer(int bufferCapacity) {
+        buffer = new TraceBuffer(bufferCapacity);
+    }
+
+    /**
+     * Sets whether tracing is enabled for all players.
+     *
+     * @param enabled
+     *            True to trace all players, false to trace only individually
+     *            enabled players.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return True if tracing is enabled for all players.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether tracing is enabled for the specified player, regardless of
+     * whether it is enabled for all players.
+     *
+     * @param playerId
+     *            Unique id of the player.
+     * @param traced
+     *            True to trace the player, otherwise false.
+     */
+    public void setTracing(UUID playerId, boolean traced) {
+        if (traced) {
+            tracedPlayers.add(playerId);
+        } else {
+            tracedPlayers.remove(playerId);
+        }
+    }
+
+    /**
+     * Whether craft checks by the specified entity are traced.
+     *
+     * @param who
+     *            Entity crafting.
+     * @return True if trace points for the entity should be recorded.
+     */
+    public boolean isTracing(HumanEntity who) {
+        if (enabled) {
+            return true;
+        }
+        if (tracedPlayers.isEmpty()) {
+            return false;
+        }
+        UUID playerId = who.getUniqueId();
+        return playerId != null && tracedPlayers.contains(playerId);
+    }
+
+    /**
+     * Logs a trace message. Must only be called once
+     * {@link #isTracing(HumanEntity)} has passed.
+     *
+     * @param format
+     *            Message format.
+     * @param arg
+     *            Message argument.
+     */
+    public void trace(String format, Object arg) {
+        log.info(LOG_PREFIX + String.format(format, arg));
+    }
+
+    /**
+     * Logs a trace message. Must only be called once
+     * {@link #isTracing(HumanEntity)} has passed.
+     *
+     * @param format
+     *            Message format.
+     * @param arg1
+     *            First message argument.
+     * @param arg2
+     *            Second message argument.
+     */
+    public void trace(String format, Object arg1, Object arg2) {
+        log.info(LOG_PREFIX + String.format(format, arg1, arg2));
+    }
+
+    /**
+     * Logs a trace message. Must only be called once
+     * {@link #isTracing(HumanEntity)} has passed.
+     *
+     * @param format
+     *            Message format.
+     * @param args
+     *            Message arguments.
+     */
+    public void trace(String format, Object... args) {
+        log.info(LOG_PREFIX + String.format(format, args));
+    }
+
+    /**
+     * Logs a craft decision and holds it for dumping. Must only be called once
+     * {@link #isTracing(HumanEntity)} has passed.
+     *
+     * @param who
+     *            Entity crafting.
+     * @param material
+     *            Material crafted.
+     * @param data
+     *            Data value of the material.
+     * @param permissionName
+     *            Permission checked.
+     * @param decision
+     *            Permission decision.
+     * @param allowed
+     *            Whether the craft was allowed.
+     */
+    public void traceDecision(HumanEntity who, Material material, byte data, String permissionName,
+            CraftDecision decision, boolean allowed) {
+        buffer.record(who.getName(), material, data, permissionName, decision, allowed);
+        log.info(String.format(LOG_DECISION, who.getName(), material, data, permissionName, decision,
+                allowed ? "allowed" : "denied"));
+    }
+
+    /**
+     * Formats and clears all held decisions, oldest first.
+     *
+     * @return Formatted decisions.
+     */
+    public List<String> dump() {
+        return buffer.drain();
+    }
+}
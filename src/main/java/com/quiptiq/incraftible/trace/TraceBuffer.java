@@ -0,0 +1,121 @@
+package com.quiptiq.incraftible.trace;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bukkit.Material;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Fixed-size ring buffer of recent craft decisions. Records are stored in
+ * preallocated parallel arrays, so that recording a decision does not
+ * allocate. Once full, the oldest records are overwritten.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class TraceBuffer {
+    private static final String RECORD_FORMAT = "%s %s crafted %s:%d, %s %s -> %s";
+
+    private static final String TIME_FORMAT = "HH:mm:ss.SSS";
+
+    private final long[] times;
+
+    private final String[] playerNames;
+
+    private final Material[] materials;
+
+    private final byte[] data;
+
+    private final String[] permissionNames;
+
+    private final CraftDecision[] decisions;
+
+    private final boolean[] allowed;
+
+    /**
+     * Total number of records written since the buffer was last cleared.
+     */
+    private long written = 0;
+
+    /**
+     * Creates a new buffer that holds the specified number of records.
+     *
+     * @param capacity
+     *            Maximum number of records held.
+     */
+    public TraceBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Trace buffer capacity must be positive: " + capacity);
+        }
+        times = new long[capacity];
+        playerNames = new String[capacity];
+        materials = new Material[capacity];
+        data = new byte[capacity];
+        permissionNames = new String[capacity];
+        decisions = new CraftDecision[capacity];
+        allowed = new boolean[capacity];
+    }
+
+    /**
+     * Records a craft decision, overwriting the oldest record if the buffer is
+     * full.
+     *
+     * @param playerName
+     *            Name of the player crafting.
+     * @param material
+     *            Material crafted.
+     * @param dataValue
+     *            Data value of the material.
+     * @param permissionName
+     *            Permission checked.
+     * @param decision
+     *            Permission decision.
+     * @param isAllowed
+     *            Whether the craft was allowed.
+     */
+    public synchronized void record(String playerName, Material material, byte dataValue, String permissionName,
+            CraftDecision decision, boolean isAllowed) {
+        int index = (int) (written % times.length);
+        times[index] = System.currentTimeMillis();
+        playerNames[index] = playerName;
+        materials[index] = material;
+        data[index] = dataValue;
+        permissionNames[index] = permissionName;
+        decisions[index] = decision;
+        allowed[index] = isAllowed;
+        written++;
+    }
+
+    /**
+     * Formats all held records, oldest first, and clears the buffer.
+     *
+     * @return Formatted records.
+     */
+    public synchronized List<String> drain() {
+        int count = (int) Math.min(written, times.length);
+        List<String> lines = new ArrayList<String>(count);
+        SimpleDateFormat timeFormat = new SimpleDateFormat(TIME_FORMAT);
+        for (long i = written - count; i < written; i++) {
+            int index = (int) (i % times.length);
+            lines.add(String.format(RECORD_FORMAT, timeFormat.format(new Date(times[index])), playerNames[index],
+                    materials[index], data[index], permissionNames[index], decisions[index],
+                    allowed[index] ? "allowed" : "denied"));
+            playerNames[index] = null;
+            permissionNames[index] = null;
+        }
+        written = 0;
+        return lines;
+    }
+
+    /**
+     * @return Number of records currently held.
+     */
+    public synchronized int size() {
+        return (int) Math.min(written, times.length);
+    }
+}
@@ -0,0 +1,91 @@
+package com.quiptiq.incraftible.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary format of craft traces. A trace starts with a header of the magic
+ * number and version, followed by entries each starting with a tag byte:
+ * <ul>
+ * <li>A player entry, written before the first craft by each player: the
+ * player's unique id as two longs, name, and the number of permissions
+ * followed by each permission's name and value. Players are numbered in the
+ * order of their entries.</li>
+ * <li>A world entry, written before the first craft in each world: the
+ * world's name. Worlds are numbered in the order of their entries.</li>
+ * <li>A craft entry: the time since the previous craft in milliseconds, the
+ * player's number, the world's number or -1 if not known, the material id as
+ * a short, the data value, and the decision ordinal shifted left by two, with
+ * the second lowest bit set if the decision was made by a recipe rule, region
+ * or world list rather than by permissions, and the lowest bit set if the
+ * craft was allowed.</li>
+ * </ul>
+ * Times, player and world numbers are written as variable length integers, so
+ * most crafts take nine bytes or fewer. Version 1 traces have no world
+ * entries or numbers, and the decision ordinal is shifted left by one.
+ *
+ * @author Taufiq Hoven
+ */
+final class TraceFormat {
+    static final int MAGIC = 0x49435452;
+
+    static final int VERSION = 2;
+
+    /**
+     * Version of traces written before worlds and rule decisions were
+     * recorded, which can still be read.
+     */
+    static final int VERSION_WITHOUT_WORLDS = 1;
+
+    static final int TAG_PLAYER = 'P';
+
+    static final int TAG_CRAFT = 'C';
+
+    static final int TAG_WORLD = 'W';
+
+    /**
+     * World number of crafts whose world is not known.
+     */
+    static final int NO_WORLD = -1;
+
+    private static final int VARINT_MASK = 0x7f;
+
+    private static final int VARINT_CONTINUE = 0x80;
+
+    private static final int VARINT_SHIFT = 7;
+
+    private TraceFormat() {
+    }
+
+    /**
+     * Writes a signed long in as few bytes as its magnitude needs, using
+     * zig-zag encoding so that small negative values stay small.
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~VARINT_MASK) != 0) {
+            out.writeByte((int) ((zigZag & VARINT_MASK) | VARINT_CONTINUE));
+            zigZag >>>= VARINT_SHIFT;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    /**
+     * Reads a long written by {@link #writeVarLong(DataOutput, long)}.
+     */
+    static long readVarLong(DataInput in) throws IOException {
+        long zigZag = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift >= Long.SIZE) {
+                throw new IOException("Malformed variable length integer");
+            }
+            b = in.readUnsignedByte();
+            zigZag |= (long) (b & VARINT_MASK) << shift;
+            shift += VARINT_SHIFT;
+        } while ((b & VARINT_CONTINUE) != 0);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+}
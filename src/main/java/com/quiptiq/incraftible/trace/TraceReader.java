@@ -0,0 +1,172 @@
+package com.quiptiq.incraftible.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Material;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Reads a craft trace written by a {@link TraceRecorder}, one record at a
+ * time.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class TraceReader implements Closeable {
+    private static final CraftDecision[] DECISIONS = CraftDecision.values();
+
+    private final DataInputStream in;
+
+    private final List<TracePlayer> players = new ArrayList<TracePlayer>();
+
+    private final List<String> worlds = new ArrayList<String>();
+
+    private final int version;
+
+    private long lastTimestamp;
+
+    /**
+     * Opens the specified trace.
+     *
+     * @param file
+     *            Trace file.
+     * @throws IOException
+     *             if the file couldn't be read or is not a trace.
+     */
+    public TraceReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * Reads a trace from the specified stream.
+     *
+     * @param stream
+     *            Stream holding the trace, which is closed with the reader.
+     * @throws IOException
+     *             if the stream couldn't be read or is not a trace.
+     */
+    public TraceReader(InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream));
+        try {
+            if (in.readInt() != TraceFormat.MAGIC) {
+                throw new IOException("Not a craft trace");
+            }
+            version = in.readUnsignedByte();
+            if (version != TraceFormat.VERSION && version != TraceFormat.VERSION_WITHOUT_WORLDS) {
+                throw new IOException("Unsupported craft trace version " + version);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next craft in the trace. The first record for each player
+     * carries the player's permissions, as captured by the recorder.
+     *
+     * @return Next craft, or null at the end of the trace.
+     * @throws IOException
+     *             if the trace couldn't be read or is malformed.
+     */
+    public TraceRecord read() throws IOException {
+        Map<String, Boolean> permissions = null;
+        while (true) {
+            int tag = in.read();
+            if (tag == -1) {
+                return null;
+            }
+            try {
+                if (tag == TraceFormat.TAG_PLAYER) {
+                    TracePlayer player = readPlayer();
+                    players.add(player);
+                    permissions = player.permissions;
+                } else if (tag == TraceFormat.TAG_WORLD && version != TraceFormat.VERSION_WITHOUT_WORLDS) {
+                    worlds.add(in.readUTF());
+                } else if (tag == TraceFormat.TAG_CRAFT) {
+                    return readCraft(permissions);
+                } else {
+                    throw new IOException("Unknown craft trace entry " + tag);
+                }
+            } catch (EOFException e) {
+                // A trace cut short by a crash ends at the last whole entry
+                return null;
+            }
+        }
+    }
+
+    private TracePlayer readPlayer() throws IOException {
+        UUID playerId = new UUID(in.readLong(), in.readLong());
+        String name = in.readUTF();
+        long count = TraceFormat.readVarLong(in);
+        Map<String, Boolean> permissions = new HashMap<String, Boolean>();
+        for (long i = 0; i < count; i++) {
+            String permission = in.readUTF();
+            permissions.put(permission, in.readBoolean());
+        }
+        return new TracePlayer(playerId, name, permissions);
+    }
+
+    private TraceRecord readCraft(Map<String, Boolean> permissions) throws IOException {
+        long timestamp = lastTimestamp + TraceFormat.readVarLong(in);
+        lastTimestamp = timestamp;
+        long playerNumber = TraceFormat.readVarLong(in);
+        boolean hasWorlds = version != TraceFormat.VERSION_WITHOUT_WORLDS;
+        long worldNumber = hasWorlds ? TraceFormat.readVarLong(in) : TraceFormat.NO_WORLD;
+        int materialId = in.readUnsignedShort();
+        byte data = in.readByte();
+        int outcome = in.readUnsignedByte();
+        if (playerNumber < 0 || playerNumber >= players.size()) {
+            throw new IOException("Unknown player " + playerNumber + " in craft trace");
+        }
+        if (worldNumber < TraceFormat.NO_WORLD || worldNumber >= worlds.size()) {
+            throw new IOException("Unknown world " + worldNumber + " in craft trace");
+        }
+        Material material = Material.getMaterial(materialId);
+        int decision = outcome >>> (hasWorlds ? 2 : 1);
+        if (material == null || decision >= DECISIONS.length) {
+            throw new IOException("Unknown material " + materialId + " or decision " + decision + " in craft trace");
+        }
+        TracePlayer player = players.get((int) playerNumber);
+        String worldName = worldNumber == TraceFormat.NO_WORLD ? null : worlds.get((int) worldNumber);
+        boolean ruled = hasWorlds && (outcome & 2) != 0;
+        return new TraceRecord(timestamp, player.playerId, player.name, permissions, worldName, material, data,
+                DECISIONS[decision], ruled, (outcome & 1) != 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Player entry in a trace.
+     */
+    private static class TracePlayer {
+        final UUID playerId;
+
+        final String name;
+
+        final Map<String, Boolean> permissions;
+
+        TracePlayer(UUID playerId, String name, Map<String, Boolean> permissions) {
+            this.playerId = playerId;
+            this.name = name;
+            this.permissions = permissions;
+        }
+    }
+}
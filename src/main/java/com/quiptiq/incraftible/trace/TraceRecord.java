@@ -0,0 +1,128 @@
+package com.quiptiq.incraftible.trace;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Material;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Immutable record of an evaluated craft, as captured by a
+ * {@link TraceRecorder} and read back by a {@link TraceReader}.
+ *
+ * @author Taufiq Hoven
+ */
+public final class TraceRecord {
+    private final long timestamp;
+
+    private final UUID playerId;
+
+    private final String playerName;
+
+    private final Map<String, Boolean> permissions;
+
+    private final String worldName;
+
+    private final Material material;
+
+    private final byte data;
+
+    private final CraftDecision decision;
+
+    private final boolean ruled;
+
+    private final boolean allowed;
+
+    /**
+     * Creates a new trace record.
+     *
+     * @param timestamp
+     *            Time of the craft, in milliseconds since the epoch.
+     * @param playerId
+     *            Unique id of the player crafting.
+     * @param playerName
+     *            Name of the player crafting.
+     * @param permissions
+     *            Effective permissions of the player, if this is the first
+     *            record for the player in the trace, otherwise null.
+     * @param worldName
+     *            Name of the world the player was in, or null if not known.
+     * @param material
+     *            Material crafted.
+     * @param data
+     *            Data value of the material.
+     * @param decision
+     *            Decision for the craft.
+     * @param ruled
+     *            Whether the decision was made by a recipe rule, region or
+     *            world list rather than by the player's permissions.
+     * @param allowed
+     *            Whether the craft was allowed.
+     */
+    public TraceRecord(long timestamp, UUID playerId, String playerName, Map<String, Boolean> permissions,
+            String worldName, Material material, byte data, CraftDecision decision, boolean ruled,
+            boolean allowed) {
+        this.timestamp = timestamp;
+        this.playerId = playerId;
+        this.playerName = playerName;
+        this.permissions = permissions;
+        this.worldName = worldName;
+        this.material = material;
+        this.data = data;
+        this.decision = decision;
+        this.ruled = ruled;
+        this.allowed = allowed;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * @return Effective permissions of the player when first seen in the
+     *         trace, or null if the player was seen in an earlier record.
+     */
+    public Map<String, Boolean> getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * @return Name of the world the player was in, or null if not known.
+     */
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public byte getData() {
+        return data;
+    }
+
+    public CraftDecision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return True if the decision was made by a recipe rule, region or world
+     *         list, false if by the player's permissions.
+     */
+    public boolean isRuled() {
+        return ruled;
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+}
@@ -0,0 +1,363 @@
+package com.quiptiq.incraftible.trace;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.Incraftible;
+import com.quiptiq.incraftible.PermissionsReference;
+
+/**
+ * Captures every evaluated craft to a compact binary trace, which can be
+ * replayed offline against another config by {@link TraceReplay}. As with the
+ * denial audit log, records are offered from the main server thread into a
+ * bounded, lock-free queue and written in batches by a background thread;
+ * when the queue is full, records are dropped and counted. The first record
+ * for each player also captures the player's Incraftible permissions, so that
+ * a trace can be replayed without a server.
+ *
+ * Each start of the recorder writes a new trace file, named with the time it
+ * was started. The format is described by {@link TraceFormat}.
+ *
+ * {@link #offer} must only be called from the main server thread; other
+ * methods are thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public class TraceRecorder implements Runnable {
+    /**
+     * Name of the trace directory, within the plugin data folder.
+     */
+    public static final String TRACE_DIRECTORY = "traces";
+
+    private static final String TRACE_PREFIX = "craft-";
+
+    private static final String TRACE_SUFFIX = ".trace";
+
+    private static final String TRACE_TIME_FORMAT = "yyyyMMdd-HHmmss";
+
+    private static final String THREAD_NAME = "Incraftible trace writer";
+
+    /**
+     * Maximum number of records written between flushes.
+     */
+    private static final int BATCH_SIZE = 512;
+
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private static final String LOG_WARN_DROPPED = LOG_PREFIX + "Trace queue full, dropped %d craft records";
+
+    private static final String LOG_WARN_WRITE_FAILED = LOG_PREFIX + "Couldn't write craft trace %s: %s";
+
+    private static final String LOG_WARN_CREATE_DIRECTORY = LOG_PREFIX + "Couldn't create trace directory %s";
+
+    private static final String LOG_RECORDING = LOG_PREFIX + "Recording craft trace to %s";
+
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private final File directory;
+
+    private final int capacity;
+
+    private final long flushMillis;
+
+    private final ConcurrentLinkedQueue<TraceRecord> queue = new ConcurrentLinkedQueue<TraceRecord>();
+
+    /**
+     * Number of records in the queue. Tracked separately as the size of a
+     * ConcurrentLinkedQueue is not constant time.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = false;
+
+    private Thread writerThread;
+
+    /**
+     * Players whose permissions have been queued for the current trace. Only
+     * accessed from the main server thread.
+     */
+    private Set<UUID> seenPlayers = new HashSet<UUID>();
+
+    /* Writer state, only accessed from the writer thread. */
+    private File traceFile;
+
+    private DataOutputStream out;
+
+    private final Map<UUID, Integer> playerNumbers = new HashMap<UUID, Integer>();
+
+    private final Map<String, Integer> worldNumbers = new HashMap<String, Integer>();
+
+    private long lastTimestamp;
+
+    private long reportedDrops = 0;
+
+    /**
+     * Creates a new recorder writing traces to the specified directory.
+     *
+     * @param directory
+     *            Directory containing the traces.
+     * @param capacity
+     *            Maximum number of records waiting to be written.
+     * @param flushMillis
+     *            Interval in milliseconds between writes of queued records.
+     */
+    public TraceRecorder(File directory, int capacity, long flushMillis) {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Queues an evaluated craft for writing. Never blocks; if the queue is
+     * full the record is dropped and counted. Must only be called from the
+     * main server thread.
+     *
+     * @param player
+     *            Player crafting.
+     * @param material
+     *            Material crafted.
+     * @param data
+     *            Data value of the material.
+     * @param decision
+     *            Decision for the craft.
+     * @param ruled
+     *            Whether the decision was made by a recipe rule, region or
+     *            world list rather than by the player's permissions.
+     * @param allowed
+     *            Whether the craft was allowed.
+     * @return True if the record was queued, false if it was dropped or the
+     *         recorder is stopped.
+     */
+    public boolean offer(Player player, Material material, byte data, CraftDecision decision, boolean ruled,
+            boolean allowed) {
+        if (!running) {
+            return false;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        UUID playerId = player.getUniqueId();
+        Map<String, Boolean> permissions = null;
+        if (seenPlayers.add(playerId)) {
+            permissions = getPermissions(player);
+        }
+        World world = player.getWorld();
+        queue.offer(new TraceRecord(System.currentTimeMillis(), playerId, player.getName(), permissions,
+                world == null ? null : world.getName(), material, data, decision, ruled, allowed));
+        return true;
+    }
+
+    /**
+     * Gets the Incraftible permissions in effect for a player.
+     */
+    private static Map<String, Boolean> getPermissions(Player player) {
+        Map<String, Boolean> permissions = new HashMap<String, Boolean>();
+        for (PermissionAttachmentInfo info : player.getEffectivePermissions()) {
+            String name = info.getPermission().toLowerCase();
+            if (name.startsWith(PermissionsReference.PERMISSION_ROOT)) {
+                permissions.put(name, info.getValue());
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * @return Total number of records dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Number of records waiting to be written.
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Starts the background writer on a new trace file.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        seenPlayers = new HashSet<UUID>();
+        writerThread = new Thread(this, THREAD_NAME);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the background writer, waiting for queued records to be written.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+
+    @Override
+    public void run() {
+        if (!directory.exists() && !directory.mkdirs()) {
+            log.warning(String.format(LOG_WARN_CREATE_DIRECTORY, directory.getPath()));
+            running = false;
+            return;
+        }
+        traceFile = new File(directory, TRACE_PREFIX + new SimpleDateFormat(TRACE_TIME_FORMAT).format(new Date())
+                + TRACE_SUFFIX);
+        playerNumbers.clear();
+        lastTimestamp = 0;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(traceFile)));
+            out.writeInt(TraceFormat.MAGIC);
+            out.writeByte(TraceFormat.VERSION);
+            log.info(String.format(LOG_RECORDING, traceFile.getPath()));
+            while (running) {
+                try {
+                    Thread.sleep(flushMillis);
+                } catch (InterruptedException e) {
+                    // Stopping, write whatever remains below
+                }
+                writeQueued();
+            }
+            writeQueued();
+        } catch (IOException e) {
+            log.warning(String.format(LOG_WARN_WRITE_FAILED, traceFile.getPath(), e.getMessage()));
+            running = false;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Writes all queued records in batches.
+     *
+     * @throws IOException
+     *             if the records couldn't be written.
+     */
+    private void writeQueued() throws IOException {
+        int written;
+        do {
+            written = writeBatch();
+        } while (written == BATCH_SIZE);
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+            log.warning(String.format(LOG_WARN_DROPPED, drops - reportedDrops));
+            reportedDrops = drops;
+        }
+    }
+
+    /**
+     * Writes up to {@link #BATCH_SIZE} queued records and flushes them.
+     *
+     * @return Number of records written.
+     * @throws IOException
+     *             if the records couldn't be written.
+     */
+    private int writeBatch() throws IOException {
+        int written = 0;
+        TraceRecord record;
+        while (written < BATCH_SIZE && (record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            writeRecord(record);
+            written++;
+        }
+        if (written > 0) {
+            out.flush();
+        }
+        return written;
+    }
+
+    private void writeRecord(TraceRecord record) throws IOException {
+        Integer playerNumber = playerNumbers.get(record.getPlayerId());
+        if (playerNumber == null) {
+            playerNumber = playerNumbers.size();
+            playerNumbers.put(record.getPlayerId(), playerNumber);
+            writePlayer(record);
+        }
+        Integer worldNumber = TraceFormat.NO_WORLD;
+        if (record.getWorldName() != null) {
+            worldNumber = worldNumbers.get(record.getWorldName());
+            if (worldNumber == null) {
+                worldNumber = worldNumbers.size();
+                worldNumbers.put(record.getWorldName(), worldNumber);
+                out.writeByte(TraceFormat.TAG_WORLD);
+                out.writeUTF(record.getWorldName());
+            }
+        }
+        out.writeByte(TraceFormat.TAG_CRAFT);
+        TraceFormat.writeVarLong(out, record.getTimestamp() - lastTimestamp);
+        lastTimestamp = record.getTimestamp();
+        TraceFormat.writeVarLong(out, playerNumber);
+        TraceFormat.writeVarLong(out, worldNumber);
+        out.writeShort(record.getMaterial().getId());
+        out.writeByte(record.getData());
+        out.writeByte((record.getDecision().ordinal() << 2) | (record.isRuled() ? 2 : 0)
+                | (record.isAllowed() ? 1 : 0));
+    }
+
+    private void writePlayer(TraceRecord record) throws IOException {
+        out.writeByte(TraceFormat.TAG_PLAYER);
+        out.writeLong(record.getPlayerId().getMostSignificantBits());
+        out.writeLong(record.getPlayerId().getLeastSignificantBits());
+        out.writeUTF(record.getPlayerName() == null ? "" : record.getPlayerName());
+        Map<String, Boolean> permissions = record.getPermissions();
+        if (permissions == null) {
+            // Only if the player was seen by an earlier trace; record none
+            TraceFormat.writeVarLong(out, 0);
+            return;
+        }
+        TraceFormat.writeVarLong(out, permissions.size());
+        for (Map.Entry<String, Boolean> permission : permissions.entrySet()) {
+            out.writeUTF(permission.getKey());
+            out.writeBoolean(permission.getValue());
+        }
+    }
+
+    private void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warning(String.format(LOG_WARN_WRITE_FAILED, traceFile.getPath(), e.getMessage()));
+            }
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.quiptiq.incraftible.trace;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.plugin.InvalidDescriptionException;
+import org.bukkit.plugin.PluginDescriptionFile;
+
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.Incraftible;
+import com.quiptiq.incraftible.IncraftibleConfig;
+import com.quiptiq.incraftible.PermissionsStrategy;
+
+/**
+ * Replays a craft trace offline, without a server, through the craft decision
+ * of a chosen config, reporting throughput and every craft whose decision
+ * differs from the one recorded.
+ *
+ * Players have the permissions captured with the trace, unless a permission
+ * snapshot is given: a YAML file with a section for each player, keyed by name
+ * or unique id, holding the effective permissions to use instead:
+ *
+ * <pre>
+ * notch:
+ *     incraftible.craft.tnt: false
+ * </pre>
+ *
+ * Only the permission decision is replayed, resolved with the permissions
+ * strategy the replayed config gives the world of each craft. Crafts decided
+ * by a recipe rule, region or world list are skipped, as rules depend on the
+ * crafting matrix and player location, which are not recorded; so are limits,
+ * which depend on timing.
+ *
+ * @author Taufiq Hoven
+ */
+public final class TraceReplay {
+    private static final String CONFIG_FILENAME = "config.yml";
+
+    private static final String PLUGIN_FILENAME = "plugin.yml";
+
+    private static final String REPORT_MISMATCH = "%tFT%<tT.%<tL %s %s:%d recorded %s (%s), replayed %s (%s)";
+
+    private static final String REPORT_SUMMARY = "Replayed %d crafts by %d players in %.2f s, %.0f decisions/s;"
+            + " %d differed from the trace, %d decided by rules were skipped";
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final IncraftibleConfig config;
+
+    private final Map<String, Map<String, Boolean>> snapshot;
+
+    private final Map<UUID, Player> players = new HashMap<UUID, Player>();
+
+    /**
+     * Creates a replay through the specified config.
+     *
+     * @param config
+     *            Config deciding the replayed crafts.
+     * @param snapshot
+     *            Permissions by player name or unique id, replacing those
+     *            captured with the trace, or null to use the captured
+     *            permissions.
+     */
+    public TraceReplay(IncraftibleConfig config, Map<String, Map<String, Boolean>> snapshot) {
+        this.config = config;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Replays a trace against a config file, as run from the command line.
+     *
+     * @param traceFile
+     *            Trace to replay.
+     * @param configFile
+     *            Config file to replay against.
+     * @param snapshotFile
+     *            Permission snapshot, or null to use the permissions captured
+     *            with the trace.
+     * @param out
+     *            Stream to which differences and the summary are reported.
+     * @return Number of crafts whose decision differed.
+     * @throws IOException
+     *             if a file couldn't be read.
+     * @throws InvalidDescriptionException
+     *             if the plugin description couldn't be read.
+     */
+    public static long replay(File traceFile, File configFile, File snapshotFile, PrintStream out)
+            throws IOException, InvalidDescriptionException {
+        IncraftibleConfig config = loadConfig(configFile);
+        Map<String, Map<String, Boolean>> snapshot = snapshotFile == null ? null : loadSnapshot(snapshotFile);
+        TraceReader reader = new TraceReader(traceFile);
+        try {
+            return new TraceReplay(config, snapshot).replay(reader, out);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Replays every craft in a trace.
+     *
+     * @param reader
+     *            Reader of the trace.
+     * @param out
+     *            Stream to which differences and the summary are reported.
+     * @return Number of crafts whose decision differed.
+     * @throws IOException
+     *             if the trace couldn't be read.
+     */
+    public long replay(TraceReader reader, PrintStream out) throws IOException {
+        long crafts = 0;
+        long differences = 0;
+        long skipped = 0;
+        long decisionNanos = 0;
+        TraceRecord record;
+        while ((record = reader.read()) != null) {
+            Player player = getPlayer(record);
+            if (record.isRuled()) {
+                skipped++;
+                continue;
+            }
+            ItemStack stack = new ItemStack(record.getMaterial(), 1, record.getData());
+            long start = System.nanoTime();
+            CraftDecision decision = config.getCraftDecision(record.getMaterial(), stack, player);
+            PermissionsStrategy strategy = config.getSnapshot().getWorldPolicy(record.getWorldName())
+                    .getPermissionsStrategy();
+            boolean allowed = decision.isAllowed(strategy);
+            decisionNanos += System.nanoTime() - start;
+            crafts++;
+            if (decision != record.getDecision() || allowed != record.isAllowed()) {
+                differences++;
+                out.println(String.format(REPORT_MISMATCH, record.getTimestamp(), record.getPlayerName(),
+                        record.getMaterial(), record.getData(), record.getDecision(), outcome(record.isAllowed()),
+                        decision, outcome(allowed)));
+            }
+        }
+        double seconds = decisionNanos / NANOS_PER_SECOND;
+        out.println(String.format(REPORT_SUMMARY, crafts, players.size(), seconds,
+                seconds == 0 ? 0 : crafts / seconds, differences, skipped));
+        return differences;
+    }
+
+    private static String outcome(boolean allowed) {
+        return allowed ? "allowed" : "denied";
+    }
+
+    /**
+     * Gets the stand-in for the player of a record, creating it on the
+     * player's first record.
+     */
+    private Player getPlayer(TraceRecord record) {
+        Player player = players.get(record.getPlayerId());
+        if (player == null) {
+            Map<String, Boolean> permissions = null;
+            if (snapshot != null) {
+                permissions = snapshot.get(record.getPlayerName().toLowerCase());
+                if (permissions == null) {
+                    permissions = snapshot.get(record.getPlayerId().toString());
+                }
+            }
+            if (permissions == null) {
+                permissions = record.getPermissions();
+            }
+            player = createPlayer(record.getPlayerId(), record.getPlayerName(),
+                    permissions == null ? new HashMap<String, Boolean>() : permissions);
+            players.put(record.getPlayerId(), player);
+            config.getContestedMaterials().addGranted(player);
+        }
+        return player;
+    }
+
+    /**
+     * Reads a permission snapshot.
+     *
+     * @param file
+     *            YAML file with a section of permissions per player.
+     * @return Permissions by lower case player name or unique id.
+     */
+    static Map<String, Map<String, Boolean>> loadSnapshot(File file) {
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+        Map<String, Map<String, Boolean>> snapshot = new HashMap<String, Map<String, Boolean>>();
+        for (String playerKey : yaml.getKeys(false)) {
+            ConfigurationSection section = yaml.getConfigurationSection(playerKey);
+            if (section == null) {
+                continue;
+            }
+            Map<String, Boolean> permissions = new HashMap<String, Boolean>();
+            // Permission names contain the path separator, so are read as
+            // nested sections
+            for (String path : section.getKeys(true)) {
+                Object value = section.get(path);
+                if (value instanceof Boolean) {
+                    permissions.put(path.toLowerCase(), (Boolean) value);
+                }
+            }
+            snapshot.put(playerKey.toLowerCase(), permissions);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Loads a config from the specified file, for a plugin without a server.
+     */
+    private static IncraftibleConfig loadConfig(File configFile) throws IOException, InvalidDescriptionException {
+        File dataFolder = File.createTempFile("incraftible-replay", "");
+        if (!dataFolder.delete() || !dataFolder.mkdirs()) {
+            throw new IOException("Couldn't create replay data folder " + dataFolder);
+        }
+        dataFolder.deleteOnExit();
+        File replayConfig = new File(dataFolder, CONFIG_FILENAME);
+        replayConfig.deleteOnExit();
+        copy(configFile, replayConfig);
+        return new IncraftibleConfig(new ReplayIncraftible(dataFolder), null);
+    }
+
+    private static void copy(File source, File destination) throws IOException {
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream copyOut = new FileOutputStream(destination);
+            try {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    copyOut.write(buffer, 0, read);
+                }
+            } finally {
+                copyOut.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Creates a player with the specified effective permissions, answering
+     * only the calls made by the craft decision.
+     */
+    private static Player createPlayer(final UUID playerId, final String name,
+            final Map<String, Boolean> permissions) {
+        return (Player) Proxy.newProxyInstance(TraceReplay.class.getClassLoader(), new Class<?>[] {Player.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String methodName = method.getName();
+                        if ("isPermissionSet".equals(methodName) && args[0] instanceof String) {
+                            return permissions.containsKey(((String) args[0]).toLowerCase());
+                        } else if ("hasPermission".equals(methodName) && args[0] instanceof String) {
+                            Boolean value = permissions.get(((String) args[0]).toLowerCase());
+                            return value != null && value.booleanValue();
+                        } else if ("getEffectivePermissions".equals(methodName)) {
+                            Set<PermissionAttachmentInfo> infos = new HashSet<PermissionAttachmentInfo>();
+                            for (Map.Entry<String, Boolean> permission : permissions.entrySet()) {
+                                infos.add(new PermissionAttachmentInfo((Player) proxy, permission.getKey(), null,
+                                        permission.getValue()));
+                            }
+                            return infos;
+                        } else if ("getUniqueId".equals(methodName)) {
+                            return playerId;
+                        } else if ("getName".equals(methodName) || "toString".equals(methodName)) {
+                            return name;
+                        } else if ("equals".equals(methodName)) {
+                            return proxy == args[0];
+                        } else if ("hashCode".equals(methodName)) {
+                            return playerId.hashCode();
+                        } else if ("isOnline".equals(methodName)) {
+                            return true;
+                        }
+                        throw new UnsupportedOperationException(methodName + " is not available during replay");
+                    }
+                });
+    }
+
+    /**
+     * Plugin initialised against a temporary data folder, without a server.
+     */
+    private static class ReplayIncraftible extends Incraftible {
+        ReplayIncraftible(File dataFolder) throws IOException, InvalidDescriptionException {
+            InputStream description = Incraftible.class.getClassLoader().getResourceAsStream(PLUGIN_FILENAME);
+            if (description == null) {
+                throw new IOException(PLUGIN_FILENAME + " is not on the class path");
+            }
+            try {
+                initialize(null, null, new PluginDescriptionFile(description), dataFolder,
+                        new File(dataFolder, "Incraftible.jar"), TraceReplay.class.getClassLoader());
+            } finally {
+                description.close();
+            }
+        }
+    }
+}
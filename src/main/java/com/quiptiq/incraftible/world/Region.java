@@ -0,0 +1,198 @@
+package com.quiptiq.incraftible.world;
+
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Cuboid of a world in which materials are always allowed or always denied,
+ * whatever the player's permissions. Each region is configured under the
+ * regions section:
+ *
+ * <pre>
+ * regions:
+ *     spawn:
+ *         world: world
+ *         min: [-64, 0, -64]
+ *         max: [64, 127, 64]
+ *         deny: [tnt]
+ * </pre>
+ *
+ * Min and max are opposite corners of the cuboid, as block coordinates, and
+ * both are inside it. Items are material names or ids, or permission
+ * prefixes below incraftible.craft. such as dye.*; a material that is both
+ * allowed and denied is denied.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class Region {
+    private static final String CONFIG_WORLD = "world";
+
+    private static final String CONFIG_MIN = "min";
+
+    private static final String CONFIG_MAX = "max";
+
+    private static final String CONFIG_ALLOW = "allow";
+
+    private static final String CONFIG_DENY = "deny";
+
+    private static final int COORDINATES = 3;
+
+    private final String id;
+
+    private final String worldName;
+
+    private final int minX;
+
+    private final int minY;
+
+    private final int minZ;
+
+    private final int maxX;
+
+    private final int maxY;
+
+    private final int maxZ;
+
+    /**
+     * Decision for each material that is always allowed or denied, by
+     * ordinal, or null if the region doesn't decide the material.
+     */
+    private final CraftDecision[] materialDecisions;
+
+    /**
+     * Creates a region. The corners may be given in any order.
+     *
+     * @param id
+     *            Configured id of the region.
+     * @param worldName
+     *            Name of the world containing the region.
+     * @param corner
+     *            Block coordinates of one corner, as x, y and z.
+     * @param oppositeCorner
+     *            Block coordinates of the opposite corner, as x, y and z.
+     * @param materialDecisions
+     *            Decision for each material, by ordinal, or null if not
+     *            decided by the region.
+     */
+    Region(String id, String worldName, int[] corner, int[] oppositeCorner, CraftDecision[] materialDecisions) {
+        this.id = id;
+        this.worldName = worldName;
+        minX = Math.min(corner[0], oppositeCorner[0]);
+        minY = Math.min(corner[1], oppositeCorner[1]);
+        minZ = Math.min(corner[2], oppositeCorner[2]);
+        maxX = Math.max(corner[0], oppositeCorner[0]);
+        maxY = Math.max(corner[1], oppositeCorner[1]);
+        maxZ = Math.max(corner[2], oppositeCorner[2]);
+        this.materialDecisions = materialDecisions;
+    }
+
+    /**
+     * Reads a region from its section.
+     *
+     * @param id
+     *            Configured id of the region.
+     * @param section
+     *            Section configuring the region.
+     * @return Region read.
+     * @throws IllegalArgumentException
+     *             if the region has no world or its corners are invalid.
+     */
+    public static Region fromConfig(String id, ConfigurationSection section) {
+        String worldName = section.getString(CONFIG_WORLD);
+        if (worldName == null) {
+            throw new IllegalArgumentException("expected a world");
+        }
+        CraftDecision[] materialDecisions = new CraftDecision[Material.values().length];
+        // Denials are applied last, so that they take precedence
+        WorldPolicy.addMaterialDecisions(materialDecisions, id, section.getStringList(CONFIG_ALLOW),
+                CraftDecision.ALLOWED);
+        WorldPolicy.addMaterialDecisions(materialDecisions, id, section.getStringList(CONFIG_DENY),
+                CraftDecision.DENIED);
+        return new Region(id, worldName, parseCorner(section, CONFIG_MIN), parseCorner(section, CONFIG_MAX),
+                materialDecisions);
+    }
+
+    private static int[] parseCorner(ConfigurationSection section, String path) {
+        List<Integer> coordinates = section.getIntegerList(path);
+        if (coordinates == null || coordinates.size() != COORDINATES) {
+            throw new IllegalArgumentException("expected " + path + " as [x, y, z]");
+        }
+        return new int[] {coordinates.get(0), coordinates.get(1), coordinates.get(2)};
+    }
+
+    /**
+     * @return Configured id of the region.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return Name of the world containing the region.
+     */
+    public String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * Whether the region contains the specified block.
+     *
+     * @param x
+     *            X coordinate of the block.
+     * @param y
+     *            Y coordinate of the block.
+     * @param z
+     *            Z coordinate of the block.
+     * @return True if the block is inside the region.
+     */
+    public boolean contains(int x, int y, int z) {
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Gets the decision for a material that is always allowed or denied in
+     * the region.
+     *
+     * @param material
+     *            Material crafted.
+     * @return {@link CraftDecision#ALLOWED} or {@link CraftDecision#DENIED},
+     *         or null if the region doesn't decide the material.
+     */
+    public CraftDecision getMaterialDecision(Material material) {
+        return materialDecisions[material.ordinal()];
+    }
+
+    /**
+     * @return Lowest block x coordinate in the region.
+     */
+    int getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return Lowest block z coordinate in the region.
+     */
+    int getMinZ() {
+        return minZ;
+    }
+
+    /**
+     * @return Highest block x coordinate in the region.
+     */
+    int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * @return Highest block z coordinate in the region.
+     */
+    int getMaxZ() {
+        return maxZ;
+    }
+}
@@ -0,0 +1,194 @@
+package com.quiptiq.incraftible.world;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Material;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Regions of a single world, indexed by the chunks they overlap so that the
+ * regions containing a block are found in roughly constant time however many
+ * regions there are. Regions overlapping more than
+ * {@link #MAX_INDEXED_CHUNKS} chunks are kept aside rather than entered in
+ * every chunk. The regions overlapping a chunk, including those kept aside,
+ * are cached for the chunk on first use. An index is replaced as a whole
+ * whenever regions change, which discards its cache.
+ *
+ * This class is thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class RegionIndex {
+    /**
+     * Index without any regions.
+     */
+    public static final RegionIndex EMPTY = new RegionIndex(Collections.<Long, Region[]> emptyMap(), new Region[0]);
+
+    /**
+     * Number of bits of a block coordinate within its chunk.
+     */
+    private static final int CHUNK_BITS = 4;
+
+    /**
+     * Most chunks that a region is entered in.
+     */
+    static final int MAX_INDEXED_CHUNKS = 4096;
+
+    /**
+     * Most chunks whose regions are cached, beyond which the cache is
+     * cleared.
+     */
+    private static final int MAX_CACHED_CHUNKS = 16384;
+
+    private static final Region[] NO_REGIONS = new Region[0];
+
+    /**
+     * Regions overlapping each chunk, by chunk key.
+     */
+    private final Map<Long, Region[]> grid;
+
+    /**
+     * Regions overlapping too many chunks to be entered in each.
+     */
+    private final Region[] largeRegions;
+
+    /**
+     * Regions overlapping each chunk used so far, by chunk key. Only used if
+     * there are large regions, as the grid is complete otherwise.
+     */
+    private final ConcurrentHashMap<Long, Region[]> chunkCache = new ConcurrentHashMap<Long, Region[]>();
+
+    private RegionIndex(Map<Long, Region[]> grid, Region[] largeRegions) {
+        this.grid = grid;
+        this.largeRegions = largeRegions;
+    }
+
+    /**
+     * Indexes the specified regions, which must all be in the same world.
+     *
+     * @param regions
+     *            Regions to index.
+     * @return Index of the regions.
+     */
+    public static RegionIndex build(List<Region> regions) {
+        if (regions.isEmpty()) {
+            return EMPTY;
+        }
+        Map<Long, List<Region>> cells = new HashMap<Long, List<Region>>();
+        List<Region> large = new ArrayList<Region>();
+        for (Region region : regions) {
+            int minChunkX = region.getMinX() >> CHUNK_BITS;
+            int maxChunkX = region.getMaxX() >> CHUNK_BITS;
+            int minChunkZ = region.getMinZ() >> CHUNK_BITS;
+            int maxChunkZ = region.getMaxZ() >> CHUNK_BITS;
+            long chunks = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+            if (chunks > MAX_INDEXED_CHUNKS) {
+                large.add(region);
+                continue;
+            }
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    Long key = chunkKey(chunkX, chunkZ);
+                    List<Region> cell = cells.get(key);
+                    if (cell == null) {
+                        cell = new ArrayList<Region>(1);
+                        cells.put(key, cell);
+                    }
+                    cell.add(region);
+                }
+            }
+        }
+        Map<Long, Region[]> grid = new HashMap<Long, Region[]>(cells.size() * 2);
+        for (Map.Entry<Long, List<Region>> cell : cells.entrySet()) {
+            grid.put(cell.getKey(), cell.getValue().toArray(new Region[cell.getValue().size()]));
+        }
+        return new RegionIndex(grid, large.toArray(new Region[large.size()]));
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xffffffffL);
+    }
+
+    /**
+     * @return True if there are no regions.
+     */
+    public boolean isEmpty() {
+        return grid.isEmpty() && largeRegions.length == 0;
+    }
+
+    /**
+     * Finds the region deciding the specified material at a block. A region
+     * denying the material takes precedence over a region allowing it.
+     *
+     * @param material
+     *            Material crafted.
+     * @param x
+     *            X coordinate of the block.
+     * @param y
+     *            Y coordinate of the block.
+     * @param z
+     *            Z coordinate of the block.
+     * @return Region deciding the material, or null if no region containing
+     *         the block decides it.
+     */
+    public Region find(Material material, int x, int y, int z) {
+        Region allowing = null;
+        for (Region region : getChunkRegions(x >> CHUNK_BITS, z >> CHUNK_BITS)) {
+            if (!region.contains(x, y, z)) {
+                continue;
+            }
+            CraftDecision decision = region.getMaterialDecision(material);
+            if (CraftDecision.DENIED.equals(decision)) {
+                return region;
+            }
+            if (decision != null && allowing == null) {
+                allowing = region;
+            }
+        }
+        return allowing;
+    }
+
+    /**
+     * Gets the regions overlapping the specified chunk.
+     */
+    Region[] getChunkRegions(int chunkX, int chunkZ) {
+        Long key = chunkKey(chunkX, chunkZ);
+        if (largeRegions.length == 0) {
+            Region[] regions = grid.get(key);
+            return regions == null ? NO_REGIONS : regions;
+        }
+        Region[] regions = chunkCache.get(key);
+        if (regions == null) {
+            regions = mergeLargeRegions(chunkX, chunkZ, grid.get(key));
+            if (chunkCache.size() >= MAX_CACHED_CHUNKS) {
+                chunkCache.clear();
+            }
+            chunkCache.put(key, regions);
+        }
+        return regions;
+    }
+
+    /**
+     * Adds the large regions overlapping a chunk to the regions entered for
+     * it in the grid.
+     */
+    private Region[] mergeLargeRegions(int chunkX, int chunkZ, Region[] indexed) {
+        List<Region> regions = new ArrayList<Region>();
+        if (indexed != null) {
+            Collections.addAll(regions, indexed);
+        }
+        for (Region region : largeRegions) {
+            if (chunkX >= region.getMinX() >> CHUNK_BITS && chunkX <= region.getMaxX() >> CHUNK_BITS
+                    && chunkZ >= region.getMinZ() >> CHUNK_BITS && chunkZ <= region.getMaxZ() >> CHUNK_BITS) {
+                regions.add(region);
+            }
+        }
+        return regions.isEmpty() ? NO_REGIONS : regions.toArray(new Region[regions.size()]);
+    }
+}
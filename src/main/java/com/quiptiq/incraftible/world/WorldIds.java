@@ -0,0 +1,105 @@
+package com.quiptiq.incraftible.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.World;
+
+/**
+ * Small ids for the server's worlds, assigned as each world is loaded. A
+ * world keeps its id if it is unloaded and loaded again, so ids are never
+ * more than the number of worlds the server has loaded.
+ *
+ * Servers have few worlds, so a world's id is found by comparing it with
+ * each loaded world by identity, which is cheaper than hashing its name.
+ *
+ * Worlds must only be loaded and unloaded, and ids looked up, from the main
+ * server thread; the names of worlds with ids may be read from any thread.
+ *
+ * @author Taufiq Hoven
+ */
+public class WorldIds {
+    /**
+     * Id of a world that has not been loaded.
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * Name of the world with each id.
+     */
+    private final List<String> names = new ArrayList<String>();
+
+    /**
+     * Loaded world with each id, or null if the world is not loaded. Only
+     * used from the main server thread.
+     */
+    private World[] worlds = new World[0];
+
+    /**
+     * Assigns an id to a loaded world, if it doesn't already have one.
+     *
+     * @param world
+     *            World loaded.
+     * @return Id of the world.
+     */
+    public int load(World world) {
+        int id;
+        synchronized (names) {
+            id = names.indexOf(world.getName());
+            if (id < 0) {
+                id = names.size();
+                names.add(world.getName());
+            }
+        }
+        if (id >= worlds.length) {
+            World[] grown = new World[id + 1];
+            System.arraycopy(worlds, 0, grown, 0, worlds.length);
+            worlds = grown;
+        }
+        worlds[id] = world;
+        return id;
+    }
+
+    /**
+     * Releases an unloaded world. Its id is kept for when it is loaded again.
+     *
+     * @param world
+     *            World unloaded.
+     */
+    public void unload(World world) {
+        for (int id = 0; id < worlds.length; id++) {
+            if (worlds[id] == world) {
+                worlds[id] = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the id of the specified world.
+     *
+     * @param world
+     *            World to find, may be null.
+     * @return Id of the world, or {@link #NO_ID} if it is not loaded.
+     */
+    public int getId(World world) {
+        if (world == null) {
+            return NO_ID;
+        }
+        World[] loaded = worlds;
+        for (int id = 0; id < loaded.length; id++) {
+            if (loaded[id] == world) {
+                return id;
+            }
+        }
+        return NO_ID;
+    }
+
+    /**
+     * @return Name of the world with each id, indexed by id.
+     */
+    public String[] getNames() {
+        synchronized (names) {
+            return names.toArray(new String[names.size()]);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.quiptiq.incraftible.world;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import com.quiptiq.incraftible.IncraftibleConfig;
+
+/**
+ * Listener for worlds being loaded and unloaded, which assigns world ids and
+ * compiles the policy of each world.
+ *
+ * @author Taufiq Hoven
+ */
+public class WorldListener implements Listener {
+    /**
+     * Configuration holding the world policies.
+     */
+    private final IncraftibleConfig config;
+
+    /**
+     * Create a new listener for the specified plugin config.
+     *
+     * @param config
+     *            Configuration for the plugin behaviour.
+     */
+    public WorldListener(IncraftibleConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Called when a world is loaded, assigning it an id.
+     *
+     * @param event
+     *            Event containing the world loaded.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        config.loadWorld(event.getWorld());
+    }
+
+    /**
+     * Called when a world is unloaded, releasing it.
+     *
+     * @param event
+     *            Event containing the world unloaded.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        if (!event.isCancelled()) {
+            config.unloadWorld(event.getWorld());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.quiptiq.incraftible.world;
+
+import java.util.Map;
+
+/**
+ * Craft policy of each world, compiled into an array indexed by the world's
+ * id from {@link WorldIds}, so that finding the policy for a craft is a
+ * single array read. Worlds without a section of their own, and worlds
+ * loaded since the policies were compiled, have the default policy.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class WorldPolicies {
+    private final WorldPolicy defaultPolicy;
+
+    /**
+     * Policy of each world, indexed by world id.
+     */
+    private final WorldPolicy[] policies;
+
+    private WorldPolicies(WorldPolicy defaultPolicy, WorldPolicy[] policies) {
+        this.defaultPolicy = defaultPolicy;
+        this.policies = policies;
+    }
+
+    /**
+     * Compiles the policies of the worlds with ids.
+     *
+     * @param defaultPolicy
+     *            Policy of worlds without a section of their own.
+     * @param configured
+     *            Configured policies, by world name.
+     * @param worldNames
+     *            Name of the world with each id, indexed by id.
+     * @return Compiled policies.
+     */
+    public static WorldPolicies compile(WorldPolicy defaultPolicy, Map<String, WorldPolicy> configured,
+            String[] worldNames) {
+        WorldPolicy[] policies = new WorldPolicy[worldNames.length];
+        for (int id = 0; id < worldNames.length; id++) {
+            WorldPolicy policy = configured.get(worldNames[id]);
+            policies[id] = policy == null ? defaultPolicy : policy;
+        }
+        return new WorldPolicies(defaultPolicy, policies);
+    }
+
+    /**
+     * Gets the policy of the world with the specified id.
+     *
+     * @param worldId
+     *            Id of the world, or {@link WorldIds#NO_ID}.
+     * @return Policy of the world.
+     */
+    public WorldPolicy get(int worldId) {
+        return worldId >= 0 && worldId < policies.length ? policies[worldId] : defaultPolicy;
+    }
+
+    /**
+     * @return Policy of worlds without a section of their own.
+     */
+    public WorldPolicy getDefault() {
+        return defaultPolicy;
+    }
+}
@@ -0,0 +1,221 @@
+package com.quiptiq.incraftible.world;
+
+import static com.quiptiq.incraftible.message.FixedMessage.LOG_PREFIX;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.Incraftible;
+import com.quiptiq.incraftible.PermissionsReference;
+import com.quiptiq.incraftible.PermissionsStrategy;
+import com.quiptiq.incraftible.message.MaterialNamer;
+import com.quiptiq.incraftible.message.Message;
+import com.quiptiq.incraftible.message.MessageTemplate;
+
+/**
+ * Craft policy in effect in a world: the permissions strategy, the messages
+ * sent to players, the materials that are always allowed or always denied
+ * there, whatever the player's permissions, and the world's {@link Region}s.
+ * Each world may be configured under the worlds section:
+ *
+ * <pre>
+ * worlds:
+ *     creative:
+ *         craft.default: none
+ *         messages:
+ *             disallowed: Crafting %s is disabled in creative
+ *         allow: [workbench]
+ *         deny: [tnt, tools.*]
+ * </pre>
+ *
+ * Anything left out is taken from the rest of the config. Items are material
+ * names or ids, or permission prefixes below incraftible.craft. such as
+ * dye.*; a material that is both allowed and denied is denied.
+ *
+ * This class is immutable and thread-safe.
+ *
+ * @author Taufiq Hoven
+ */
+public final class WorldPolicy {
+    private static final Logger log = Logger.getLogger(Incraftible.DEFAULT_LOGGER);
+
+    private static final String LOG_WARN_INVALID_STRATEGY = LOG_PREFIX + "Invalid crafting default for world %s: %s";
+
+    private static final String LOG_WARN_UNKNOWN_ITEM = LOG_PREFIX + "Ignoring unknown item for %s: %s";
+
+    private static final String CONFIG_CRAFT_DEFAULT = "craft.default";
+
+    private static final String CONFIG_ALLOW = "allow";
+
+    private static final String CONFIG_DENY = "deny";
+
+    private final String worldName;
+
+    private final PermissionsStrategy strategy;
+
+    private final Map<Message, MessageTemplate> messageTemplates;
+
+    /**
+     * Decision for each material that is always allowed or denied, by
+     * ordinal, or null if the material's permissions apply.
+     */
+    private final CraftDecision[] materialDecisions;
+
+    private final RegionIndex regions;
+
+    private WorldPolicy(String worldName, PermissionsStrategy strategy, Map<Message, MessageTemplate> messageTemplates,
+            CraftDecision[] materialDecisions, RegionIndex regions) {
+        this.worldName = worldName;
+        this.strategy = strategy;
+        this.messageTemplates = messageTemplates;
+        this.materialDecisions = materialDecisions;
+        this.regions = regions;
+    }
+
+    /**
+     * Creates the policy for worlds without a section of their own.
+     *
+     * @param strategy
+     *            Configured permissions strategy.
+     * @param messageTemplates
+     *            Template for every message.
+     * @return Policy applying the rest of the config unchanged.
+     */
+    public static WorldPolicy createDefault(PermissionsStrategy strategy,
+            Map<Message, MessageTemplate> messageTemplates) {
+        return new WorldPolicy(null, strategy, messageTemplates, new CraftDecision[Material.values().length],
+                RegionIndex.EMPTY);
+    }
+
+    /**
+     * Reads the policy for a world from its section. Invalid settings are
+     * logged and replaced by those of the default policy.
+     *
+     * @param worldName
+     *            Name of the world.
+     * @param section
+     *            Section configuring the world, or null if the world only
+     *            has regions.
+     * @param defaultPolicy
+     *            Policy from which settings that aren't configured are taken.
+     * @param regions
+     *            Regions of the world.
+     * @return Policy for the world.
+     */
+    public static WorldPolicy fromConfig(String worldName, ConfigurationSection section, WorldPolicy defaultPolicy,
+            RegionIndex regions) {
+        if (section == null) {
+            return new WorldPolicy(worldName, defaultPolicy.strategy, defaultPolicy.messageTemplates,
+                    defaultPolicy.materialDecisions, regions);
+        }
+        PermissionsStrategy strategy = defaultPolicy.strategy;
+        String configuredDefault = section.getString(CONFIG_CRAFT_DEFAULT);
+        if (configuredDefault != null) {
+            strategy = PermissionsStrategy.strategyForConfig(configuredDefault);
+            if (strategy == null) {
+                log.warning(String.format(LOG_WARN_INVALID_STRATEGY, worldName, configuredDefault));
+                strategy = defaultPolicy.strategy;
+            }
+        }
+
+        EnumMap<Message, MessageTemplate> templates = new EnumMap<Message, MessageTemplate>(Message.class);
+        for (Message message : Message.values()) {
+            String configuredMessage = section.getString(message.getConfigNode());
+            if (configuredMessage != null) {
+                templates.put(message, new MessageTemplate(configuredMessage, MaterialNamer.getInstance()));
+            } else {
+                templates.put(message, defaultPolicy.getMessageTemplate(message));
+            }
+        }
+
+        CraftDecision[] materialDecisions = new CraftDecision[Material.values().length];
+        // Denials are applied last, so that they take precedence
+        addMaterialDecisions(materialDecisions, worldName, section.getStringList(CONFIG_ALLOW),
+                CraftDecision.ALLOWED);
+        addMaterialDecisions(materialDecisions, worldName, section.getStringList(CONFIG_DENY), CraftDecision.DENIED);
+        return new WorldPolicy(worldName, strategy, Collections.unmodifiableMap(templates), materialDecisions,
+                regions);
+    }
+
+    /**
+     * Sets the decision for each material named by the specified items.
+     * Unknown items are logged and ignored.
+     *
+     * @param materialDecisions
+     *            Decision for each material, by ordinal.
+     * @param owner
+     *            World or region whose items these are, for logging.
+     * @param items
+     *            Items named in the config, or null if there are none.
+     * @param decision
+     *            Decision for the materials.
+     */
+    static void addMaterialDecisions(CraftDecision[] materialDecisions, String owner, List<String> items,
+            CraftDecision decision) {
+        if (items == null) {
+            return;
+        }
+        for (String item : items) {
+            Set<Material> materials = PermissionsReference.getInstance().getItemMaterials(item);
+            if (materials.isEmpty()) {
+                log.warning(String.format(LOG_WARN_UNKNOWN_ITEM, owner, item));
+            }
+            for (Material material : materials) {
+                materialDecisions[material.ordinal()] = decision;
+            }
+        }
+    }
+
+    /**
+     * @return Name of the world configured, or null for the default policy.
+     */
+    public String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * @return Method of granting craft permissions that aren't set.
+     */
+    public PermissionsStrategy getPermissionsStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Gets the compiled template for the specified message.
+     *
+     * @param message
+     *            Message to get.
+     * @return Template for the message.
+     */
+    public MessageTemplate getMessageTemplate(Message message) {
+        return messageTemplates.get(message);
+    }
+
+    /**
+     * Gets the decision for a material that is always allowed or denied in
+     * the world.
+     *
+     * @param material
+     *            Material crafted.
+     * @return {@link CraftDecision#ALLOWED} or {@link CraftDecision#DENIED},
+     *         or null if the player's permissions apply.
+     */
+    public CraftDecision getMaterialDecision(Material material) {
+        return materialDecisions[material.ordinal()];
+    }
+
+    /**
+     * @return Regions of the world.
+     */
+    public RegionIndex getRegions() {
+        return regions;
+    }
+}
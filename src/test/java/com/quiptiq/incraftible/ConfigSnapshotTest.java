@@ -0,0 +1,53 @@
+package com.quiptiq.incraftible;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.message.Message;
+
+/**
+ * Tests the ConfigSnapshot class.
+ */
+public class ConfigSnapshotTest {
+    /**
+     * Configured settings should be read into the snapshot.
+     */
+    @Test
+    public void testConfiguredSettings() {
+        ConfigurationSection config = mock(ConfigurationSection.class);
+        when(config.getString("craft.default", PermissionsStrategy.ALL.getConfigString())).thenReturn(
+                PermissionsStrategy.NONE.getConfigString());
+        when(config.getString(Message.PLAYER_MESSAGE_DISALLOWED.getConfigNode())).thenReturn("No %s for you");
+        when(config.getString("craft.event.source", CraftEventSource.CLICK.getConfigString())).thenReturn(
+                CraftEventSource.BOTH.getConfigString());
+        ConfigSnapshot snapshot = ConfigSnapshot.fromConfig(config);
+        assertEquals("Configured strategy should be used", PermissionsStrategy.NONE,
+                snapshot.getPermissionsStrategy());
+        assertEquals("Configured message should be compiled", "No %s for you",
+                snapshot.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED).getFormat());
+        assertEquals("Configured event source should be used", CraftEventSource.BOTH,
+                snapshot.getCraftEventSource());
+    }
+
+    /**
+     * Invalid strategies should fall back to the default, and messages that
+     * aren't configured should take their built-in text.
+     */
+    @Test
+    public void testDefaults() {
+        ConfigurationSection config = mock(ConfigurationSection.class);
+        when(config.getString("craft.default", PermissionsStrategy.ALL.getConfigString())).thenReturn("bogus");
+        Message message = Message.PLAYER_MESSAGE_RATE_LIMITED;
+        ConfigSnapshot snapshot = ConfigSnapshot.fromConfig(config);
+        assertEquals("Invalid strategy should fall back to the default", PermissionsStrategy.ALL,
+                snapshot.getPermissionsStrategy());
+        assertEquals("Missing event source should fall back to the default", CraftEventSource.CLICK,
+                snapshot.getCraftEventSource());
+        assertEquals("Unconfigured message should take its built-in text", message.getDefaultMessage(),
+                snapshot.getMessageTemplate(message).getFormat());
+    }
+}
@@ -0,0 +1,98 @@
+package com.quiptiq.incraftible;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.bukkit.plugin.PluginManager;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the ContestedMaterials class.
+ */
+public class ContestedMaterialsTest {
+    private ContestedMaterials contested;
+
+    private PluginManager pluginManager;
+
+    @Before
+    public void setUp() {
+        contested = new ContestedMaterials();
+        pluginManager = mock(PluginManager.class);
+        Permission tntPermission = mock(Permission.class);
+        when(tntPermission.getName()).thenReturn("incraftible.craft.tnt");
+        when(tntPermission.getChildren()).thenReturn(new HashMap<String, Boolean>());
+        Set<Permission> permissions = new HashSet<Permission>();
+        permissions.add(tntPermission);
+        when(pluginManager.getPermissions()).thenReturn(permissions);
+    }
+
+    /**
+     * All materials should be contested until the set is built.
+     */
+    @Test
+    public void testContestedBeforeBuild() {
+        assertTrue("Materials should be contested before building", contested.isContested(Material.APPLE));
+    }
+
+    /**
+     * Only registered and granted permissions should be contested.
+     */
+    @Test
+    public void testRegisteredAndGranted() {
+        contested.rebuild(pluginManager, new Player[0]);
+        assertTrue("Registered material should be contested", contested.isContested(Material.TNT));
+        assertFalse("Unregistered material should not be contested", contested.isContested(Material.APPLE));
+        contested.addGranted(playerWith("incraftible.craft.apple"));
+        assertTrue("Granted material should be contested", contested.isContested(Material.APPLE));
+    }
+
+    /**
+     * A granted wildcard that is not registered should contest all materials.
+     */
+    @Test
+    public void testGrantedWildcard() {
+        contested.rebuild(pluginManager, new Player[] {playerWith("incraftible.*")});
+        assertTrue("Wildcard should contest all materials", contested.isContested(Material.APPLE));
+    }
+
+    /**
+     * Periodic checks should add permissions granted since the set was
+     * built, and rebuild it when a registered permission is replaced.
+     */
+    @Test
+    public void testRebuildIfChanged() {
+        contested.rebuild(pluginManager, new Player[0]);
+        assertFalse("Unchanged permissions should not rebuild",
+                contested.rebuildIfChanged(pluginManager, new Player[] {playerWith("incraftible.craft.apple")}));
+        assertTrue("Permission granted at runtime should be contested", contested.isContested(Material.APPLE));
+
+        Permission workbenchPermission = mock(Permission.class);
+        when(workbenchPermission.getName()).thenReturn("incraftible.craft.workbench");
+        when(workbenchPermission.getChildren()).thenReturn(new HashMap<String, Boolean>());
+        when(pluginManager.getPermissions()).thenReturn(Collections.singleton(workbenchPermission));
+        assertTrue("Replaced permission should rebuild",
+                contested.rebuildIfChanged(pluginManager, new Player[0]));
+        assertTrue(contested.isContested(Material.WORKBENCH));
+        assertFalse("Rebuilt set should drop the replaced permission", contested.isContested(Material.TNT));
+    }
+
+    private static Player playerWith(String permissionName) {
+        Player player = mock(Player.class);
+        Set<PermissionAttachmentInfo> infos = Collections.singleton(
+                new PermissionAttachmentInfo(player, permissionName, null, true));
+        when(player.getEffectivePermissions()).thenReturn(infos);
+        return player;
+    }
+}
@@ -0,0 +1,131 @@
+package com.quiptiq.incraftible;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.world.RegionIndex;
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * Tests the CraftAudit class.
+ */
+public class CraftAuditTest {
+    private final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private CraftDecisionCache cache;
+
+    private ContestedMaterials contested;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        contested = new ContestedMaterials();
+        cache = new CraftDecisionCache(contested);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Material filters should select each slot of the material with a
+     * permission, and prefixes each slot whose permission starts with them.
+     */
+    @Test
+    public void testSelectSlots() {
+        assertEquals("Each wool colour should be selected", 16, CraftAudit.selectSlots("wool", null).length);
+        int[] tntSlots = CraftAudit.selectSlots("TNT", null);
+        assertEquals("Base permission should be a single slot", 1, tntSlots.length);
+        assertEquals("Base permission should be data value 0", PermissionsReference.slot(Material.TNT, 0),
+                tntSlots[0]);
+        assertEquals("Prefix should be relative to the craft node", 16,
+                CraftAudit.selectSlots("dye.*", null).length);
+        assertEquals("Unmatched filters should select nothing", 0,
+                CraftAudit.selectSlots("no.such.permission", null).length);
+        assertTrue("No filter should select every permission", CraftAudit.selectSlots(null, null).length > 100);
+    }
+
+    /**
+     * The matrix should follow the permissions strategy of each player's
+     * world for unset permissions, with players sharing a table in the same
+     * world sharing a row.
+     */
+    @Test
+    public void testEvaluate() throws Exception {
+        Player allowed = mockPlayer("allowed", true);
+        Player denied = mockPlayer("denied", false);
+        Player alsoAllowed = mockPlayer("alsoAllowed", true);
+        Player unset = mockPlayer("unset", null);
+        Player[] players = new Player[] {allowed, denied, alsoAllowed, unset};
+        int[] slots = CraftAudit.selectSlots("tnt", null);
+        WorldPolicy defaultPolicy = ConfigSnapshot.fromConfig(new YamlConfiguration()).getDefaultWorldPolicy();
+        WorldPolicy all = WorldPolicy.fromConfig("all", section("craft.default", "all"), defaultPolicy,
+                RegionIndex.EMPTY);
+        WorldPolicy none = WorldPolicy.fromConfig("none", section("craft.default", "none"), defaultPolicy,
+                RegionIndex.EMPTY);
+
+        CraftAudit audit = CraftAudit.snapshot(players, new WorldPolicy[] {all, all, all, all}, cache, contested,
+                slots);
+        audit.evaluate(executor, 2);
+        assertEquals("All players should be audited", 4, audit.getPlayerCount());
+        assertEquals("Identical permissions should share a table", 3, audit.getTableCount());
+        assertEquals("Unset permissions should be allowed by ALL", 3, audit.getAllowedCount(0));
+
+        audit = CraftAudit.snapshot(players, new WorldPolicy[] {none, none, none, none}, cache, contested, slots);
+        audit.evaluate(executor, 2);
+        assertEquals("Unset permissions should be denied by NONE", 2, audit.getAllowedCount(0));
+
+        audit = CraftAudit.snapshot(players, new WorldPolicy[] {all, all, none, all}, cache, contested, slots);
+        audit.evaluate(executor, 2);
+        assertEquals("Identical permissions in different worlds should not share a row", 4, audit.getTableCount());
+        assertEquals("Unset permissions should follow the player's world", 3, audit.getAllowedCount(0));
+
+        YamlConfiguration denyingWorld = section("craft.default", "all");
+        denyingWorld.set("deny", Arrays.asList("tnt"));
+        WorldPolicy denying = WorldPolicy.fromConfig("denying", denyingWorld, defaultPolicy, RegionIndex.EMPTY);
+        audit = CraftAudit.snapshot(players, new WorldPolicy[] {denying, denying, denying, denying}, cache,
+                contested, slots);
+        audit.evaluate(executor, 2);
+        assertEquals("Materials denied in the world should be denied whatever the permissions", 0,
+                audit.getAllowedCount(0));
+    }
+
+    private static YamlConfiguration section(String path, String value) {
+        YamlConfiguration section = new YamlConfiguration();
+        section.set(path, value);
+        return section;
+    }
+
+    private Player mockPlayer(String name, Boolean tntValue) {
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        if (tntValue == null) {
+            when(player.getEffectivePermissions()).thenReturn(Collections.<PermissionAttachmentInfo>emptySet());
+        } else {
+            when(player.getEffectivePermissions()).thenReturn(Collections.singleton(
+                    new PermissionAttachmentInfo(player, perms.getBasePermissionName(Material.TNT), null,
+                            tntValue.booleanValue())));
+        }
+        return player;
+    }
+}
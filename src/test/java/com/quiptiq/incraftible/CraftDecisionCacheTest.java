@@ -0,0 +1,168 @@
+package com.quiptiq.incraftible;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests the CraftDecisionCache and CraftPermissionTable classes.
+ */
+public class CraftDecisionCacheTest {
+    private final PermissionsReference perms = PermissionsReference.getInstance();
+
+    private CraftDecisionCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new CraftDecisionCache(new ContestedMaterials());
+    }
+
+    /**
+     * Compiled tables should hold the value of each set permission, for the
+     * same material and data value only.
+     */
+    @Test
+    public void testCompiledTable() {
+        Player player = mockPlayer();
+        Set<PermissionAttachmentInfo> infos = new HashSet<PermissionAttachmentInfo>();
+        infos.add(new PermissionAttachmentInfo(player, perms.getDataPermissionName(Material.WOOL, (byte) 3), null,
+                false));
+        infos.add(new PermissionAttachmentInfo(player, perms.getBasePermissionName(Material.TNT), null, true));
+        infos.add(new PermissionAttachmentInfo(player, "other.plugin.permission", null, true));
+        when(player.getEffectivePermissions()).thenReturn(infos);
+
+        CraftPermissionTable table = cache.getTable(player);
+        assertEquals("Denied permission should be compiled", CraftDecision.DENIED,
+                table.get(Material.WOOL, (byte) 3));
+        assertEquals("Other data values should be unset", CraftDecision.UNSET, table.get(Material.WOOL, (byte) 4));
+        assertEquals("Allowed permission should be compiled", CraftDecision.ALLOWED,
+                table.get(Material.TNT, (byte) 0));
+        assertEquals("Other materials should be unset", CraftDecision.UNSET, table.get(Material.APPLE, (byte) 0));
+        assertSame("Table should be compiled once", table, cache.getTable(player));
+    }
+
+    /**
+     * For materials with data permissions, the material permission should
+     * apply to every data value whose own permission is not set.
+     */
+    @Test
+    public void testMaterialPermissionFallback() {
+        Player player = mockPlayer();
+        Set<PermissionAttachmentInfo> infos = new HashSet<PermissionAttachmentInfo>();
+        infos.add(new PermissionAttachmentInfo(player, perms.getMaterialPermissionName(Material.STEP), null, false));
+        infos.add(new PermissionAttachmentInfo(player, perms.getDataPermissionName(Material.STEP, (byte) 2), null,
+                true));
+        when(player.getEffectivePermissions()).thenReturn(infos);
+
+        CraftPermissionTable table = cache.getTable(player);
+        assertEquals("Data permission should take precedence", CraftDecision.ALLOWED,
+                table.get(Material.STEP, (byte) 2));
+        assertEquals("Material permission should apply to other data values", CraftDecision.DENIED,
+                table.get(Material.STEP, (byte) 0));
+        assertEquals("Material permission should apply to data values without a permission",
+                CraftDecision.DENIED, table.get(Material.STEP, (byte) 15));
+    }
+
+    /**
+     * A table compiled from permissions read before the cache was invalidated
+     * should answer the check it was compiled for, but not be cached.
+     */
+    @Test
+    public void testStaleCompileDiscarded() {
+        final Player player = mockPlayer();
+        when(player.getEffectivePermissions()).thenAnswer(new Answer<Set<PermissionAttachmentInfo>>() {
+            @Override
+            public Set<PermissionAttachmentInfo> answer(InvocationOnMock invocation) {
+                // Permissions change while the table is being compiled
+                cache.invalidateAll();
+                return Collections.<PermissionAttachmentInfo> emptySet();
+            }
+        });
+        assertNotNull("Stale table should still answer the check", cache.getTable(player));
+        assertEquals("Stale table should not be cached", 0, cache.size());
+        assertEquals("Stale table should not be shared", 0, cache.getSharedTableCount());
+    }
+
+    /**
+     * Invalidating a player should discard only that player's table.
+     */
+    @Test
+    public void testInvalidatePlayer() {
+        Player player = mockPlayer();
+        Player otherPlayer = mockPlayer();
+        cache.getTable(player);
+        CraftPermissionTable otherTable = cache.getTable(otherPlayer);
+        cache.invalidate(player);
+        assertEquals("Invalidated table should be discarded", 1, cache.size());
+        assertSame("Other players should keep their tables", otherTable, cache.getTable(otherPlayer));
+        cache.invalidateAll();
+        assertEquals("Invalidating all should discard all players", 0, cache.size());
+    }
+
+    /**
+     * Players with the same craft permissions should share a table, which is
+     * discarded once no player refers to it.
+     */
+    @Test
+    public void testSharedTables() {
+        Player player = mockPlayer();
+        Player otherPlayer = mockPlayer();
+        Set<PermissionAttachmentInfo> infos = new HashSet<PermissionAttachmentInfo>();
+        infos.add(new PermissionAttachmentInfo(player, perms.getBasePermissionName(Material.TNT), null, false));
+        when(player.getEffectivePermissions()).thenReturn(infos);
+        when(otherPlayer.getEffectivePermissions()).thenReturn(infos);
+
+        assertSame("Identical permissions should share a table", cache.getTable(player),
+                cache.getTable(otherPlayer));
+        cache.getTable(mockPlayer());
+        assertEquals("Distinct permissions should not share a table", 2, cache.getSharedTableCount());
+        cache.invalidate(player);
+        assertEquals("Referenced table should be kept", 2, cache.getSharedTableCount());
+        cache.invalidate(otherPlayer);
+        assertEquals("Unreferenced table should be discarded", 1, cache.getSharedTableCount());
+    }
+
+    /**
+     * Players that cannot be identified should not have tables.
+     */
+    @Test
+    public void testUnidentifiedPlayer() {
+        assertNull("Unidentified player should not have a table", cache.getTable(mock(Player.class)));
+    }
+
+    /**
+     * Only data values with slots should be covered by tables.
+     */
+    @Test
+    public void testCovers() {
+        assertTrue("Data value 0 should be covered", CraftPermissionTable.covers((byte) 0));
+        assertTrue("Data value 15 should be covered", CraftPermissionTable.covers((byte) 15));
+        assertFalse("Data value 16 should not be covered", CraftPermissionTable.covers((byte) 16));
+        assertFalse("Negative data values should not be covered", CraftPermissionTable.covers((byte) -1));
+    }
+
+    private static Player mockPlayer() {
+        Player mockPlayer = mock(Player.class);
+        when(mockPlayer.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(mockPlayer.getEffectivePermissions()).thenReturn(Collections.<PermissionAttachmentInfo>emptySet());
+        return mockPlayer;
+    }
+}
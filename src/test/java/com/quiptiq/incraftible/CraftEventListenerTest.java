@@ -0,0 +1,257 @@
+package com.quiptiq.incraftible;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import java.util.logging.Level;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event.Result;
+import org.bukkit.event.inventory.CraftItemEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.inventory.InventoryType.SlotType;
+import org.bukkit.inventory.CraftingInventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.ShapedRecipe;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.limit.CraftLimiter;
+import com.quiptiq.incraftible.message.Message;
+import com.quiptiq.incraftible.message.MessageCoalescer;
+import com.quiptiq.incraftible.stats.CraftStats;
+import com.quiptiq.incraftible.trace.CraftTracer;
+import com.quiptiq.incraftible.world.WorldPolicy;
+
+/**
+ * Tests the CraftEventListener class: duplicate event handling, and the
+ * outcome of the craft pipeline for a player crafting TNT.
+ */
+public class CraftEventListenerTest {
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private CraftEventListener listener;
+
+    private final HumanEntity who = mock(HumanEntity.class);
+
+    private final CraftingInventory inventory = mock(CraftingInventory.class);
+
+    @Before
+    public void setUp() {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("craft.event.source", CraftEventSource.BOTH.getConfigString());
+        IncraftibleConfig config = mock(IncraftibleConfig.class);
+        when(config.getSnapshot()).thenReturn(ConfigSnapshot.fromConfig(yaml));
+        when(config.getStats()).thenReturn(new CraftStats());
+        when(config.getTracer()).thenReturn(mock(CraftTracer.class));
+        listener = new CraftEventListener(config);
+    }
+
+    /**
+     * A craft item event following a click on the same craft in the same
+     * tick should take the outcome of the click, once.
+     */
+    @Test
+    public void testClickAndCraftPaired() {
+        InventoryClickEvent click = mockEvent(InventoryClickEvent.class);
+        CraftItemEvent craft = mockEvent(CraftItemEvent.class);
+        CraftItemEvent secondCraft = mockEvent(CraftItemEvent.class);
+        listener.onInventoryClick(click);
+        listener.onInventoryCraft(craft);
+        verify(craft).setCancelled(false);
+        listener.onInventoryCraft(secondCraft);
+        verify(secondCraft, never()).setCancelled(anyBoolean());
+    }
+
+    /**
+     * Repeated clicks in the same tick should each be checked.
+     */
+    @Test
+    public void testRepeatedClicksChecked() {
+        InventoryClickEvent click = mockEvent(InventoryClickEvent.class);
+        InventoryClickEvent secondClick = mockEvent(InventoryClickEvent.class);
+        listener.onInventoryClick(click);
+        listener.onInventoryClick(secondClick);
+        verify(secondClick, never()).setCancelled(anyBoolean());
+    }
+
+    /**
+     * Events in a later tick should not be paired with earlier ones.
+     */
+    @Test
+    public void testLaterTickChecked() {
+        InventoryClickEvent click = mockEvent(InventoryClickEvent.class);
+        CraftItemEvent craft = mockEvent(CraftItemEvent.class);
+        listener.onInventoryClick(click);
+        listener.tick();
+        listener.onInventoryCraft(craft);
+        verify(craft, never()).setCancelled(anyBoolean());
+    }
+
+    /**
+     * A matching recipe rule should decide the craft before the player's
+     * permissions are looked up, denying it even though they allow it.
+     */
+    @Test
+    public void testRuleDecidesBeforePermissions() throws Exception {
+        Crafting crafting = new Crafting("recipes:" + NEWLINE
+                + "    gravel_tnt:" + NEWLINE
+                + "        shape:" + NEWLINE
+                + "        - \"sulphur gravel\"" + NEWLINE
+                + "        - \"gravel -\"" + NEWLINE);
+        crafting.decide(CraftDecision.ALLOWED);
+        InventoryClickEvent click = crafting.click();
+        verify(click).setCancelled(true);
+        verify(crafting.config, never()).getCraftDecision(any(Material.class), any(ItemStack.class),
+                any(Player.class));
+    }
+
+    /**
+     * An allowed craft should leave the event and the player alone, while a
+     * denied one should be cancelled, have its result made null if so
+     * configured, and tell the player.
+     */
+    @Test
+    public void testEffectsOnlyOnDenial() throws Exception {
+        Crafting crafting = new Crafting("event.craft.returnvalue.null: true" + NEWLINE);
+        crafting.decide(CraftDecision.ALLOWED);
+        InventoryClickEvent allowedClick = crafting.click();
+        verify(allowedClick, never()).setCancelled(anyBoolean());
+        verify(allowedClick, never()).setResult(any(Result.class));
+        verify(crafting.coalescer, never()).send(crafting.player, Material.TNT,
+                crafting.policy.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED),
+                crafting.settings.getMessageCoalesceMillis());
+
+        crafting.decide(CraftDecision.DENIED);
+        InventoryClickEvent deniedClick = crafting.click();
+        verify(deniedClick).setCancelled(true);
+        verify(deniedClick).setResult(null);
+        verify(crafting.coalescer).send(crafting.player, Material.TNT,
+                crafting.policy.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED),
+                crafting.settings.getMessageCoalesceMillis());
+    }
+
+    /**
+     * A click over a rate limit should be cancelled before the recipe is
+     * resolved or the craft decided.
+     */
+    @Test
+    public void testLimitCancelsBeforeDecision() throws Exception {
+        Crafting crafting = new Crafting("limits:" + NEWLINE
+                + "    tnt:" + NEWLINE
+                + "        items: [tnt]" + NEWLINE
+                + "        rate: 1" + NEWLINE
+                + "        burst: 1" + NEWLINE);
+        crafting.decide(CraftDecision.ALLOWED);
+        InventoryClickEvent allowedClick = crafting.click();
+        verify(allowedClick, never()).setCancelled(anyBoolean());
+
+        InventoryClickEvent limitedClick = crafting.click();
+        verify(limitedClick).setCancelled(true);
+        verify(limitedClick, never()).setResult(any(Result.class));
+        verify(crafting.config, times(1)).getCraftDecision(eq(Material.TNT), any(ItemStack.class),
+                eq(crafting.player));
+        verify(crafting.inventory, times(1)).getRecipe();
+        verify(crafting.coalescer).send(crafting.player, Material.TNT,
+                crafting.policy.getMessageTemplate(Message.PLAYER_MESSAGE_RATE_LIMITED),
+                crafting.settings.getMessageCoalesceMillis());
+    }
+
+    /**
+     * Creates a mock event on the result slot of the test inventory. The
+     * clicker is not a player, so events that aren't suppressed end the
+     * pipeline without changing the event.
+     */
+    private <T extends InventoryClickEvent> T mockEvent(Class<T> eventClass) {
+        T event = mock(eventClass);
+        when(event.getSlotType()).thenReturn(SlotType.RESULT);
+        when(event.getWhoClicked()).thenReturn(who);
+        when(event.getInventory()).thenReturn(inventory);
+        return event;
+    }
+
+    /**
+     * A player crafting TNT from sulphur and gravel in their crafting grid,
+     * checked by a listener with the specified config. Every material is
+     * contested, so each craft reaches the decision unless a filter ends it.
+     */
+    private static class Crafting {
+        final IncraftibleConfig config = mock(IncraftibleConfig.class);
+
+        final MessageCoalescer coalescer = mock(MessageCoalescer.class);
+
+        final Player player = mock(Player.class);
+
+        final CraftingInventory inventory = mock(CraftingInventory.class);
+
+        final ItemStack result = new ItemStack(Material.TNT, 1);
+
+        final ConfigSnapshot settings;
+
+        final WorldPolicy policy;
+
+        final CraftEventListener listener;
+
+        Crafting(String yaml) throws Exception {
+            YamlConfiguration yamlConfig = new YamlConfiguration();
+            yamlConfig.loadFromString(yaml);
+            settings = ConfigSnapshot.fromConfig(yamlConfig);
+            policy = settings.getDefaultWorldPolicy();
+            World world = mock(World.class);
+            when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+            when(player.getWorld()).thenReturn(world);
+            when(config.getSnapshot()).thenReturn(settings);
+            when(config.getWorldPolicy(world)).thenReturn(policy);
+            when(config.getStats()).thenReturn(new CraftStats());
+            when(config.getTracer()).thenReturn(mock(CraftTracer.class));
+            when(config.getLimiter()).thenReturn(new CraftLimiter());
+            when(config.getMessageCoalescer()).thenReturn(coalescer);
+            when(config.getContestedMaterials()).thenReturn(new ContestedMaterials());
+            when(config.getLogLevel()).thenReturn(Level.FINE);
+
+            ItemStack sulphur = new ItemStack(Material.SULPHUR, 1);
+            ItemStack gravel = new ItemStack(Material.GRAVEL, 1);
+            ShapedRecipe recipe = mock(ShapedRecipe.class);
+            when(recipe.getResult()).thenReturn(result);
+            when(inventory.getType()).thenReturn(InventoryType.CRAFTING);
+            when(inventory.getRecipe()).thenReturn(recipe);
+            when(inventory.getMatrix()).thenReturn(
+                    new ItemStack[] {null, null, null, null, sulphur, gravel, null, gravel, null});
+            listener = new CraftEventListener(this.config);
+        }
+
+        /**
+         * Sets the decision of the player's permissions for the result.
+         */
+        void decide(CraftDecision decision) {
+            when(config.getCraftDecision(Material.TNT, result, player)).thenReturn(decision);
+        }
+
+        /**
+         * Clicks the result slot.
+         *
+         * @return Event raised by the click.
+         */
+        InventoryClickEvent click() {
+            InventoryClickEvent event = mock(InventoryClickEvent.class);
+            when(event.getSlotType()).thenReturn(SlotType.RESULT);
+            when(event.getWhoClicked()).thenReturn(player);
+            when(event.getInventory()).thenReturn(inventory);
+            when(event.getCurrentItem()).thenReturn(result);
+            listener.onInventoryClick(event);
+            return event;
+        }
+    }
+}
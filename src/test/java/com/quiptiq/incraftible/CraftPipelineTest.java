@@ -0,0 +1,58 @@
+package com.quiptiq.incraftible;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+/**
+ * Tests the CraftPipeline class and CraftEventSource.
+ */
+public class CraftPipelineTest {
+    /**
+     * Every stage should be applied in order while each continues the
+     * pipeline.
+     */
+    @Test
+    public void testAllStagesApplied() {
+        CraftContext context = new CraftContext(null, CraftEventSource.CLICK, null);
+        CraftStage first = mock(CraftStage.class);
+        CraftStage second = mock(CraftStage.class);
+        when(first.apply(context)).thenReturn(true);
+        when(second.apply(context)).thenReturn(true);
+        assertTrue("Pipeline should complete", new CraftPipeline(first, second).apply(context));
+        verify(first).apply(context);
+        verify(second).apply(context);
+    }
+
+    /**
+     * A stage that ends the pipeline should stop later stages being applied.
+     */
+    @Test
+    public void testEarlyExit() {
+        CraftContext context = new CraftContext(null, CraftEventSource.CLICK, null);
+        CraftStage first = mock(CraftStage.class);
+        CraftStage second = mock(CraftStage.class);
+        when(first.apply(context)).thenReturn(false);
+        assertFalse("Pipeline should end early", new CraftPipeline(first, second).apply(context));
+        verify(second, never()).apply(context);
+    }
+
+    /**
+     * Each source should accept only its own events, and both should accept
+     * either.
+     */
+    @Test
+    public void testEventSourceAccepts() {
+        assertTrue(CraftEventSource.CLICK.accepts(CraftEventSource.CLICK));
+        assertFalse(CraftEventSource.CLICK.accepts(CraftEventSource.CRAFT));
+        assertTrue(CraftEventSource.CRAFT.accepts(CraftEventSource.CRAFT));
+        assertFalse(CraftEventSource.CRAFT.accepts(CraftEventSource.CLICK));
+        assertTrue(CraftEventSource.BOTH.accepts(CraftEventSource.CLICK));
+        assertTrue(CraftEventSource.BOTH.accepts(CraftEventSource.CRAFT));
+    }
+}
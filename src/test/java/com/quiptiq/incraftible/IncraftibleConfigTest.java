@@ -7,9 +7,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.*;
+import java.util.Collections;
+import java.util.UUID;
 
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.plugin.InvalidDescriptionException;
 import org.bukkit.plugin.PluginDescriptionFile;
 import org.junit.After;
@@ -78,10 +81,10 @@ public class IncraftibleConfigTest {
         TestIncraftible testIncraftible = new TestIncraftible();
         File testConfigFile = new File(TEST_CONFIG_DIR + TEST_CONFIG_FILE);
         assertTrue("Test plugin file should have been created", testConfigFile.exists());
-        new IncraftibleConfig(testIncraftible, null);
+        IncraftibleConfig config = new IncraftibleConfig(testIncraftible, null);
         assertEquals(
                 "Message should match test configuration", DISALLOW_TEST_MESSAGE,
-                Message.PLAYER_MESSAGE_DISALLOWED.getMessage());
+                config.getSnapshot().getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED).getFormat());
     }
 
     /**
@@ -111,13 +114,12 @@ public class IncraftibleConfigTest {
     public void testIsAllowedDefault() throws IOException, InvalidDescriptionException {
         IncraftibleConfig config = new IncraftibleConfig(new TestIncraftible(), new File(TEST_JAR_PATH));
         String allowedPermission = "incraftible.craft.clay";
-        Player mockPlayer = mock(Player.class);
+        Player mockPlayer = mockPlayer(allowedPermission, true);
         Material testMaterial = Material.CLAY;
-        when(mockPlayer.isPermissionSet(allowedPermission)).thenReturn(true);
-        when(mockPlayer.hasPermission(allowedPermission)).thenReturn(true);
         assertTrue(
                 "Default items configured as allowed should be returned as such",
                 config.isItemAllowed(testMaterial, null, mockPlayer));
+        assertEquals("Decision should come from the compiled table", 1, config.getDecisionCache().size());
     }
 
     /**
@@ -131,13 +133,28 @@ public class IncraftibleConfigTest {
     public void testIsDisallowedDefault() throws IOException, InvalidDescriptionException {
         IncraftibleConfig config = new IncraftibleConfig(new TestIncraftible(), new File(TEST_JAR_PATH));
         String disallowedPermission = "incraftible.craft.apple";
-        Player mockPlayer = mock(Player.class);
+        Player mockPlayer = mockPlayer(disallowedPermission, false);
         Material testMaterial = Material.APPLE;
-        when(mockPlayer.isPermissionSet(disallowedPermission)).thenReturn(true);
-        when(mockPlayer.hasPermission(disallowedPermission)).thenReturn(false);
         assertFalse(
                 "Default items configured as disallowed should be returned as such",
                 config.isItemAllowed(testMaterial, null, mockPlayer));
+        assertEquals("Decision should come from the compiled table", 1, config.getDecisionCache().size());
+    }
+
+    /**
+     * Creates a mock player with a unique id, so that its permissions are
+     * compiled, and a single set permission.
+     *
+     * @return Mock player with the specified permission set to the value.
+     */
+    private static Player mockPlayer(String permissionName, boolean value) {
+        Player mockPlayer = mock(Player.class);
+        when(mockPlayer.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(mockPlayer.isPermissionSet(permissionName)).thenReturn(true);
+        when(mockPlayer.hasPermission(permissionName)).thenReturn(value);
+        when(mockPlayer.getEffectivePermissions()).thenReturn(Collections.singleton(
+                new PermissionAttachmentInfo(mockPlayer, permissionName, null, value)));
+        return mockPlayer;
     }
 
     /**
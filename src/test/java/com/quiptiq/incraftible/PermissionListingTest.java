@@ -0,0 +1,62 @@
+package com.quiptiq.incraftible;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the PermissionListing class.
+ */
+public class PermissionListingTest {
+    private Player player;
+
+    @Before
+    public void setUp() {
+        player = mock(Player.class);
+        when(player.getName()).thenReturn("testPlayer");
+        Set<PermissionAttachmentInfo> infos = new HashSet<PermissionAttachmentInfo>();
+        for (int i = 0; i < PermissionListing.PAGE_SIZE + 2; i++) {
+            infos.add(new PermissionAttachmentInfo(player, "incraftible.craft.tools.item" + (char) ('a' + i), null,
+                    i % 2 == 0));
+        }
+        infos.add(new PermissionAttachmentInfo(player, "incraftible.craft.tnt", null, false));
+        infos.add(new PermissionAttachmentInfo(player, "other.plugin.permission", null, true));
+        when(player.getEffectivePermissions()).thenReturn(infos);
+    }
+
+    /**
+     * Only permissions with the prefix should be listed, sorted by name.
+     */
+    @Test
+    public void testPrefixAndSort() {
+        PermissionListing listing = PermissionListing.snapshot(player, "incraftible.craft.TOOLS.").sort();
+        assertEquals("Only tools should be listed", PermissionListing.PAGE_SIZE + 2, listing.size());
+        List<String> first = listing.getPage(1);
+        assertEquals("First entry should sort first", "incraftible.craft.tools.itema:true", first.get(0));
+        assertEquals("Second entry should sort second", "incraftible.craft.tools.itemb:false", first.get(1));
+    }
+
+    /**
+     * Pages should hold at most PAGE_SIZE entries, with out of range pages
+     * empty.
+     */
+    @Test
+    public void testPages() {
+        PermissionListing listing = PermissionListing.snapshot(player, "incraftible.craft.").sort();
+        assertEquals("Listing should span two pages", 2, listing.getPageCount());
+        assertEquals("First page should be full", PermissionListing.PAGE_SIZE, listing.getPage(1).size());
+        assertEquals("Second page should hold the rest", 3, listing.getPage(2).size());
+        assertTrue("Page past the end should be empty", listing.getPage(3).isEmpty());
+        assertTrue("Page zero should be empty", listing.getPage(0).isEmpty());
+    }
+}
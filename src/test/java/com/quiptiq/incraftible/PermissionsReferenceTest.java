@@ -1,6 +1,7 @@
 package com.quiptiq.incraftible;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -8,6 +9,7 @@ import java.util.*;
 import java.util.logging.Logger;
 
 import org.bukkit.*;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.Dye;
 import org.bukkit.permissions.Permissible;
 import org.bukkit.permissions.Permission;
@@ -110,6 +112,52 @@ public class PermissionsReferenceTest {
         assertEquals("Default permissions should contain sample node.", true, foundSample);
     }
 
+    /**
+     * Wool data permissions should be named by the colour of the data value.
+     */
+    @Test
+    public void testWoolDataMapping() {
+        PermissionsReference reference = PermissionsReference.getInstance();
+        for (DyeColor color : DyeColor.values()) {
+            assertEquals("Wool data value should map to its colour",
+                    "incraftible.craft.wool." + color.toString().toLowerCase(),
+                    reference.getDataPermissionName(Material.WOOL, color.getData()));
+        }
+    }
+
+    /**
+     * Slabs should have a data permission per texture, and data values
+     * without a texture should be left to the material permission.
+     */
+    @Test
+    public void testStepDataValues() {
+        PermissionsReference reference = PermissionsReference.getInstance();
+        ArrayList<Permission> permissions = new ArrayList<Permission>();
+        HashMap<String, Boolean> children = new HashMap<String, Boolean>();
+        children.put("incraftible.craft.step.*", true);
+        permissions.add(mockPermission("incraftible.craft.standard", children));
+        assertEquals("Number of permissions = Number of textures + 1 (for parent)",
+                7, reference.createDefaultMaterialPermissions(permissions).size());
+        assertEquals("incraftible.craft.step.wood", reference.getDataPermissionName(Material.STEP, (byte) 2));
+        assertNull("Data values without a texture should have no data permission",
+                reference.getDataPermissionName(Material.STEP, (byte) 7));
+        assertEquals("Material permission should control slabs as a whole", Material.STEP,
+                reference.getDataMaterial("incraftible.craft.step"));
+        assertNull("Materials without data permissions should not be data materials",
+                reference.getDataMaterial("incraftible.craft.tnt"));
+    }
+
+    /**
+     * Data values should be read from durability, and only within the range
+     * of data permissions.
+     */
+    @Test
+    public void testGetDataValue() {
+        assertEquals(2, PermissionsReference.getDataValue(new ItemStack(Material.LOG, 1, (short) 2)));
+        assertEquals("Durability beyond the data permissions should not be a data value",
+                -1, PermissionsReference.getDataValue(new ItemStack(Material.WOOD_SWORD, 1, (short) 40)));
+    }
+
     /**
      * Creates a mock permission. Needed as permission creation is not well
      * designed for testing as it has too many side-effects.
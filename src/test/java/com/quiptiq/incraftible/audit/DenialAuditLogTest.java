@@ -0,0 +1,105 @@
+package com.quiptiq.incraftible.audit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import org.bukkit.Material;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.PermissionsStrategy;
+
+/**
+ * Tests the DenialAuditLog class.
+ */
+public class DenialAuditLogTest {
+    private static final String TEST_AUDIT_DIR = "testAuditDir";
+
+    private static final long HOUR_MILLIS = 60L * 60 * 1000;
+
+    private File auditDir;
+
+    @Before
+    public void setUp() {
+        auditDir = new File(TEST_AUDIT_DIR);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = auditDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        auditDir.delete();
+    }
+
+    /**
+     * Records offered beyond the queue capacity should be dropped and counted.
+     */
+    @Test
+    public void testDropWhenFull() {
+        DenialAuditLog auditLog = new DenialAuditLog(auditDir, 1, 1024, HOUR_MILLIS, 10);
+        assertTrue("First record should be queued", auditLog.offer(record("first")));
+        assertFalse("Record beyond capacity should be dropped", auditLog.offer(record("second")));
+        assertEquals("Dropped records should be counted", 1, auditLog.getDroppedCount());
+        assertEquals("Queue should hold its capacity", 1, auditLog.getQueuedCount());
+    }
+
+    /**
+     * Queued records should be written once the writer stops.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testWriteOnStop() throws IOException {
+        DenialAuditLog auditLog = new DenialAuditLog(auditDir, 16, 1024 * 1024, HOUR_MILLIS, 10);
+        auditLog.start();
+        auditLog.offer(record("auditedPlayer"));
+        auditLog.stop();
+        BufferedReader reader = new BufferedReader(new FileReader(new File(auditDir, "denials.log")));
+        try {
+            String line = reader.readLine();
+            assertTrue("Record should contain the player", line.contains("auditedPlayer"));
+            assertTrue("Record should contain the material", line.contains("TNT:0"));
+            assertTrue("Record should contain the reason", line.contains("UNSET/none"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Segments rotated within the same second should each be kept.
+     */
+    @Test
+    public void testRotateWithinSecond() {
+        for (int i = 0; i < 3; i++) {
+            DenialAuditLog auditLog = new DenialAuditLog(auditDir, 16, 1, HOUR_MILLIS, 10);
+            auditLog.start();
+            auditLog.offer(record("rotatedPlayer" + i));
+            auditLog.stop();
+        }
+        String[] segments = auditDir.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".log.gz");
+            }
+        });
+        assertEquals("Each rotated segment should be kept", 3, segments.length);
+    }
+
+    private static DenialRecord record(String playerName) {
+        return new DenialRecord(System.currentTimeMillis(), playerName, Material.TNT, (byte) 0, "world",
+                CraftDecision.UNSET, PermissionsStrategy.NONE);
+    }
+}
@@ -0,0 +1,170 @@
+package com.quiptiq.incraftible.limit;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.File;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the CraftLimiter and CraftLimits classes.
+ */
+public class CraftLimiterTest {
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private CraftLimits limits;
+
+    private CraftLimiter limiter;
+
+    private final UUID playerId = UUID.randomUUID();
+
+    @Before
+    public void setUp() throws Exception {
+        YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString("limits:" + NEWLINE
+                + "    tnt:" + NEWLINE
+                + "        items: [tnt]" + NEWLINE
+                + "        rate: 1" + NEWLINE
+                + "        burst: 2" + NEWLINE
+                + "    dye:" + NEWLINE
+                + "        items: [\"dye.*\"]" + NEWLINE
+                + "        daily: 3" + NEWLINE
+                + "    invalid:" + NEWLINE
+                + "        items: [not_a_material]" + NEWLINE
+                + "        rate: 1" + NEWLINE);
+        limits = CraftLimits.fromConfig(config.getConfigurationSection("limits"));
+        limiter = new CraftLimiter(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Limits should apply to their items only, ignoring invalid limits.
+     */
+    @Test
+    public void testLimitsRead() {
+        assertEquals("Invalid limit should be ignored", 2, limits.size());
+        assertEquals("TNT should have one limit", 1, limits.getLimits(Material.TNT).length);
+        assertEquals("Dye should be limited by prefix", 1, limits.getLimits(Material.INK_SACK).length);
+        assertEquals("Other materials should not be limited", 0, limits.getLimits(Material.APPLE).length);
+    }
+
+    /**
+     * Bursts should be allowed up to the burst size, then crafts limited to
+     * the rate.
+     */
+    @Test
+    public void testRate() {
+        long now = 1000000L;
+        assertEquals(LimitResult.WITHIN_LIMITS, limiter.tryCraft(playerId, Material.TNT, limits, now));
+        assertEquals(LimitResult.WITHIN_LIMITS, limiter.tryCraft(playerId, Material.TNT, limits, now));
+        assertEquals("Craft past the burst should be limited", LimitResult.RATE_LIMITED,
+                limiter.tryCraft(playerId, Material.TNT, limits, now));
+        assertEquals("Craft after the interval should be allowed", LimitResult.WITHIN_LIMITS,
+                limiter.tryCraft(playerId, Material.TNT, limits, now + 1000));
+        assertEquals("Other players should not be limited", LimitResult.WITHIN_LIMITS,
+                limiter.tryCraft(UUID.randomUUID(), Material.TNT, limits, now));
+    }
+
+    /**
+     * Quotas should be used up within a day and reset the next day.
+     */
+    @Test
+    public void testQuota() {
+        long now = 100 * MILLIS_PER_DAY;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(LimitResult.WITHIN_LIMITS, limiter.tryCraft(playerId, Material.INK_SACK, limits, now + i));
+        }
+        assertEquals("Craft past the quota should be refused", LimitResult.QUOTA_EXCEEDED,
+                limiter.tryCraft(playerId, Material.INK_SACK, limits, now + 10));
+        assertEquals("Quota should reset the next day", LimitResult.WITHIN_LIMITS,
+                limiter.tryCraft(playerId, Material.INK_SACK, limits, now + MILLIS_PER_DAY));
+    }
+
+    /**
+     * A craft refused by one limit should not be counted against the other
+     * limits applying to it.
+     */
+    @Test
+    public void testOverlappingLimits() throws Exception {
+        YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString("limits:" + NEWLINE
+                + "    daily:" + NEWLINE
+                + "        items: [tnt]" + NEWLINE
+                + "        daily: 2" + NEWLINE
+                + "    rate:" + NEWLINE
+                + "        items: [tnt]" + NEWLINE
+                + "        rate: 1" + NEWLINE);
+        CraftLimits overlapping = CraftLimits.fromConfig(config.getConfigurationSection("limits"));
+        assertEquals("TNT should have both limits", 2, overlapping.getLimits(Material.TNT).length);
+        long now = 100 * MILLIS_PER_DAY;
+        assertEquals(LimitResult.WITHIN_LIMITS, limiter.tryCraft(playerId, Material.TNT, overlapping, now));
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Crafts within the interval should be rate limited", LimitResult.RATE_LIMITED,
+                    limiter.tryCraft(playerId, Material.TNT, overlapping, now));
+        }
+        assertEquals("Rate limited crafts should not use up the quota", LimitResult.WITHIN_LIMITS,
+                limiter.tryCraft(playerId, Material.TNT, overlapping, now + 1000));
+        assertEquals(LimitResult.QUOTA_EXCEEDED, limiter.tryCraft(playerId, Material.TNT, overlapping, now + 2000));
+        assertEquals("Quota should reset the next day", LimitResult.WITHIN_LIMITS,
+                limiter.tryCraft(playerId, Material.TNT, overlapping, now + MILLIS_PER_DAY));
+    }
+
+    /**
+     * A craft given back should leave its limits as if it had never been
+     * counted.
+     */
+    @Test
+    public void testRelease() {
+        long now = 100 * MILLIS_PER_DAY;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(LimitResult.WITHIN_LIMITS, limiter.tryCraft(playerId, Material.INK_SACK, limits, now));
+            limiter.release(playerId, Material.INK_SACK, limits, now);
+        }
+        assertEquals("Crafts given back should not use up the quota", LimitResult.WITHIN_LIMITS,
+                limiter.tryCraft(playerId, Material.INK_SACK, limits, now));
+        assertEquals(LimitResult.WITHIN_LIMITS, limiter.tryCraft(playerId, Material.TNT, limits, now));
+        limiter.release(playerId, Material.TNT, limits, now);
+        assertEquals(LimitResult.WITHIN_LIMITS, limiter.tryCraft(playerId, Material.TNT, limits, now));
+        assertEquals("Crafts given back should not use up the burst", LimitResult.WITHIN_LIMITS,
+                limiter.tryCraft(playerId, Material.TNT, limits, now));
+    }
+
+    /**
+     * State should be pruned once it no longer limits anything.
+     */
+    @Test
+    public void testPrune() {
+        long now = 100 * MILLIS_PER_DAY;
+        limiter.tryCraft(playerId, Material.TNT, limits, now);
+        limiter.tryCraft(UUID.randomUUID(), Material.INK_SACK, limits, now);
+        assertEquals("State still limiting should be kept", 0, limiter.prune(now));
+        assertEquals("Rate limit caught up with should be pruned", 1, limiter.prune(now + 2000));
+        assertEquals("Quota from another day should be pruned", 1, limiter.prune(now + MILLIS_PER_DAY));
+        assertEquals(0, limiter.size());
+    }
+
+    /**
+     * Saved state should be restored on load.
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            limiter.tryCraft(playerId, Material.INK_SACK, limits, now);
+        }
+        File file = File.createTempFile("incraftible-limits", ".dat");
+        file.deleteOnExit();
+        limiter.save(file);
+
+        CraftLimiter restored = new CraftLimiter(TimeZone.getTimeZone("UTC"));
+        assertEquals("Saved state should be read", 1, restored.load(file));
+        assertEquals("Restored quota should still be used up", LimitResult.QUOTA_EXCEEDED,
+                restored.tryCraft(playerId, Material.INK_SACK, limits, now));
+    }
+}
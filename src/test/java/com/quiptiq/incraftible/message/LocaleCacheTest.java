@@ -0,0 +1,49 @@
+package com.quiptiq.incraftible.message;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * Tests the LocaleCache and PlayerLocales classes.
+ */
+public class LocaleCacheTest {
+    /**
+     * Values should be loaded once per locale, and the least recently used
+     * locale evicted once the cache is full.
+     */
+    @Test
+    public void testEviction() {
+        final int[] loads = new int[1];
+        LocaleCache<String> cache = new LocaleCache<String>(2) {
+            @Override
+            protected String load(Locale locale) {
+                loads[0]++;
+                return locale.toString();
+            }
+        };
+        assertEquals("Value should be loaded", "fr", cache.get(Locale.FRENCH));
+        cache.get(Locale.GERMAN);
+        cache.get(Locale.FRENCH);
+        assertEquals("Cached locales should not be reloaded", 2, loads[0]);
+        cache.get(Locale.ITALIAN);
+        assertEquals("Cache should be bounded", 2, cache.size());
+        cache.get(Locale.FRENCH);
+        assertEquals("Recently used locale should be kept", 3, loads[0]);
+        cache.get(Locale.GERMAN);
+        assertEquals("Least recently used locale should be evicted", 4, loads[0]);
+    }
+
+    /**
+     * Client locale names should be parsed regardless of case.
+     */
+    @Test
+    public void testParseLocale() {
+        assertEquals("Lower case country should be parsed", Locale.US,
+                PlayerLocales.getInstance().parseLocale("en_us"));
+        assertEquals("Language alone should be parsed", Locale.GERMAN,
+                PlayerLocales.getInstance().parseLocale("de"));
+    }
+}
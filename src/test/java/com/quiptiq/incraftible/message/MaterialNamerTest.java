@@ -1,5 +1,7 @@
 package com.quiptiq.incraftible.message;
 
+import java.util.Locale;
+
 import junit.framework.Assert;
 
 import org.bukkit.Material;
@@ -34,4 +36,14 @@ public class MaterialNamerTest {
                 "Material without an item name specified should return a derived value", "bed block",
                 namer.getName(Material.BED_BLOCK));
     }
+
+    /**
+     * Locales without their own bundle should fall back to the base bundle.
+     */
+    @Test
+    public void testLocaleFallback() {
+        Assert.assertEquals(
+                "Locale without a bundle should use the base bundle", "Minecart with Furnace",
+                namer.getName(Material.POWERED_MINECART, Locale.JAPANESE));
+    }
 }
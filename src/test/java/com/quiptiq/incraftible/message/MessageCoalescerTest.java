@@ -0,0 +1,77 @@
+package com.quiptiq.incraftible.message;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the MessageCoalescer class.
+ */
+public class MessageCoalescerTest {
+    private static final long WINDOW = 1000;
+
+    private MessageCoalescer coalescer;
+
+    private MessageTemplate template;
+
+    private Player player;
+
+    @Before
+    public void setUp() {
+        coalescer = new MessageCoalescer();
+        template = new MessageTemplate("No %s", MaterialNamer.getInstance());
+        player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isOnline()).thenReturn(true);
+    }
+
+    /**
+     * Repeats within the window should be sent once as a summary after the
+     * window.
+     */
+    @Test
+    public void testRepeatsCoalesced() {
+        for (int i = 0; i < 5; i++) {
+            coalescer.send(player, Material.POWERED_MINECART, template, WINDOW, 100 + i);
+        }
+        verify(player, times(1)).sendMessage("No Minecart with Furnace");
+        coalescer.flush(500);
+        assertEquals("Window should stay open until it has passed", 1, coalescer.size());
+        coalescer.flush(1100);
+        verify(player).sendMessage("No Minecart with Furnace (x 4)");
+        assertEquals("Passed window should be discarded", 0, coalescer.size());
+    }
+
+    /**
+     * A different material should end the window early and be sent
+     * immediately.
+     */
+    @Test
+    public void testDifferentMaterial() {
+        coalescer.send(player, Material.POWERED_MINECART, template, WINDOW, 100);
+        coalescer.send(player, Material.POWERED_MINECART, template, WINDOW, 101);
+        coalescer.send(player, Material.APPLE, template, WINDOW, 102);
+        verify(player).sendMessage("No Minecart with Furnace (x 1)");
+        verify(player).sendMessage("No Apple");
+    }
+
+    /**
+     * Without a window, every message should be sent.
+     */
+    @Test
+    public void testNoWindow() {
+        coalescer.send(player, Material.POWERED_MINECART, template, 0, 100);
+        coalescer.send(player, Material.POWERED_MINECART, template, 0, 101);
+        verify(player, times(2)).sendMessage("No Minecart with Furnace");
+        assertEquals("No window should be opened", 0, coalescer.size());
+    }
+}
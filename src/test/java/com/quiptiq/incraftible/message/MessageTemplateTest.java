@@ -0,0 +1,34 @@
+package com.quiptiq.incraftible.message;
+
+import junit.framework.Assert;
+
+import org.bukkit.Material;
+import org.junit.Test;
+
+/**
+ * Tests compiled message templates.
+ */
+public class MessageTemplateTest {
+    /**
+     * Compiled message should contain the material name.
+     */
+    @Test
+    public void testMaterialMessage() {
+        MessageTemplate template = new MessageTemplate("No %s for you", MaterialNamer.getInstance());
+        Assert.assertEquals(
+                "Compiled message should name the material", "No Minecart with Furnace for you",
+                template.forMaterial(Material.POWERED_MINECART));
+    }
+
+    /**
+     * A message that can't be formatted with a material name should be used
+     * as is.
+     */
+    @Test
+    public void testInvalidFormat() {
+        MessageTemplate template = new MessageTemplate("No %d for you", MaterialNamer.getInstance());
+        Assert.assertEquals(
+                "Invalid format should be used unformatted", "No %d for you",
+                template.forMaterial(Material.POWERED_MINECART));
+    }
+}
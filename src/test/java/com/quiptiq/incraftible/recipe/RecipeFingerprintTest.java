@@ -0,0 +1,94 @@
+package com.quiptiq.incraftible.recipe;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.Test;
+
+/**
+ * Tests the RecipeFingerprint and FingerprintIndex classes.
+ */
+public class RecipeFingerprintTest {
+    /**
+     * A shape should have the same fingerprint wherever it is placed in the
+     * grid, and in a 2x2 or 3x3 grid.
+     */
+    @Test
+    public void testShapedTranslation() {
+        ItemStack plank = new ItemStack(Material.WOOD, 1);
+        ItemStack[] topLeft = {plank, null, null, plank, null, null, null, null, null};
+        ItemStack[] bottomRight = {null, null, null, null, null, plank, null, null, plank};
+        ItemStack[] small = {null, plank, null, plank};
+        long fingerprint = RecipeFingerprint.ofMatrix(topLeft, false);
+        assertEquals("Translated shape should match", fingerprint, RecipeFingerprint.ofMatrix(bottomRight, false));
+        assertEquals("Shape in the small grid should match", fingerprint, RecipeFingerprint.ofMatrix(small, false));
+        ItemStack[] sideBySide = {plank, plank, null, null, null, null, null, null, null};
+        assertFalse("Different shape should not match",
+                fingerprint == RecipeFingerprint.ofMatrix(sideBySide, false));
+        assertFalse("Shapeless ingredients should not match a shape",
+                fingerprint == RecipeFingerprint.ofMatrix(topLeft, true));
+    }
+
+    /**
+     * Shapeless fingerprints should ignore placement, and data values should
+     * only count for materials with data permissions.
+     */
+    @Test
+    public void testShapelessAndData() {
+        ItemStack sand = new ItemStack(Material.SAND, 1);
+        ItemStack gravel = new ItemStack(Material.GRAVEL, 1);
+        assertEquals("Shapeless placement should not matter",
+                RecipeFingerprint.ofMatrix(new ItemStack[] {sand, gravel, null, null}, true),
+                RecipeFingerprint.ofMatrix(new ItemStack[] {null, null, gravel, sand}, true));
+        assertEquals("Damage should be ignored", RecipeFingerprint.cell(Material.IRON_SWORD, 0),
+                RecipeFingerprint.cell(Material.IRON_SWORD, 12));
+        assertFalse("Wool colour should count",
+                RecipeFingerprint.cell(Material.WOOL, 0) == RecipeFingerprint.cell(Material.WOOL, 14));
+        assertEquals("Air should be empty", RecipeFingerprint.EMPTY, RecipeFingerprint.cell(Material.AIR, 0));
+        assertEquals("Any data should not depend on the data value",
+                RecipeFingerprint.anyData(RecipeFingerprint.cell(Material.WOOL, 0)),
+                RecipeFingerprint.anyData(RecipeFingerprint.cell(Material.WOOL, 14)));
+        assertFalse("Any data should differ from every data value",
+                RecipeFingerprint.anyData(RecipeFingerprint.cell(Material.WOOL, 0))
+                        == RecipeFingerprint.cell(Material.WOOL, 0));
+        assertEquals(Material.WOOL.getId(),
+                RecipeFingerprint.materialId(RecipeFingerprint.cell(Material.WOOL, 14)));
+    }
+
+    /**
+     * Mirroring should reverse each row of a shape.
+     */
+    @Test
+    public void testMirror() {
+        int sand = RecipeFingerprint.cell(Material.SAND, 0);
+        int gravel = RecipeFingerprint.cell(Material.GRAVEL, 0);
+        int[] cells = {sand, gravel, RecipeFingerprint.EMPTY, sand};
+        int[] mirrored = RecipeFingerprint.mirror(2, cells);
+        assertEquals(gravel, mirrored[0]);
+        assertEquals(sand, mirrored[1]);
+        assertEquals(sand, mirrored[2]);
+        assertEquals(RecipeFingerprint.EMPTY, mirrored[3]);
+        assertFalse("Mirror image should have a different fingerprint",
+                RecipeFingerprint.shaped(2, cells) == RecipeFingerprint.shaped(2, mirrored));
+    }
+
+    /**
+     * The index should find every entry added and nothing else, including
+     * when probes wrap around the table.
+     */
+    @Test
+    public void testIndex() {
+        FingerprintIndex index = new FingerprintIndex(100);
+        for (int i = 1; i <= 100; i++) {
+            assertTrue("New fingerprint should be added", index.put(i * 0x100000001L, i));
+        }
+        assertFalse("Duplicate fingerprint should not be added", index.put(0x100000001L, 0));
+        for (int i = 1; i <= 100; i++) {
+            assertEquals("Added fingerprint should be found", i, index.get(i * 0x100000001L));
+        }
+        assertEquals("Missing fingerprint should not be found", FingerprintIndex.NOT_FOUND, index.get(7));
+    }
+}
@@ -0,0 +1,128 @@
+package com.quiptiq.incraftible.recipe;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.ShapedRecipe;
+import org.bukkit.inventory.ShapelessRecipe;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Tests the RecipeRules class.
+ */
+public class RecipeRulesTest {
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private RecipeRules rules;
+
+    @Before
+    public void setUp() throws Exception {
+        YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString("recipes:" + NEWLINE
+                + "    gravel_tnt:" + NEWLINE
+                + "        shape:" + NEWLINE
+                + "        - \"sulphur gravel\"" + NEWLINE
+                + "        - \"gravel -\"" + NEWLINE
+                + "    red_wool:" + NEWLINE
+                + "        ingredients: [\"wool:0\", \"ink_sack:1\"]" + NEWLINE
+                + "        allowed: true" + NEWLINE
+                + "    duplicate:" + NEWLINE
+                + "        ingredients: [\"ink_sack:1\", \"wool\"]" + NEWLINE
+                + "    unknown:" + NEWLINE
+                + "        ingredients: [\"not_a_material\"]" + NEWLINE
+                + "    bed:" + NEWLINE
+                + "        shape:" + NEWLINE
+                + "        - \"wool:* wool:* wool:*\"" + NEWLINE
+                + "        - \"wood:-1 wood:-1 wood:-1\"" + NEWLINE
+                + "    white_bed:" + NEWLINE
+                + "        shape:" + NEWLINE
+                + "        - \"wool:0 wool:0 wool:0\"" + NEWLINE
+                + "        - \"wood:* wood:* wood:*\"" + NEWLINE
+                + "        allowed: true" + NEWLINE
+                + "    mixed:" + NEWLINE
+                + "        ingredients: [\"wool:*\", \"wool:1\"]" + NEWLINE);
+        rules = RecipeRules.fromConfig(config.getConfigurationSection("recipes"));
+    }
+
+    /**
+     * Valid rules should be indexed, ignoring duplicate and invalid rules.
+     */
+    @Test
+    public void testRulesRead() {
+        assertEquals("Duplicate and invalid rules should be ignored", 4, rules.size());
+    }
+
+    /**
+     * Crafts should match the rule for their matrix, wherever it is placed.
+     */
+    @Test
+    public void testMatch() {
+        ItemStack sulphur = new ItemStack(Material.SULPHUR, 1);
+        ItemStack gravel = new ItemStack(Material.GRAVEL, 1);
+        ShapedRecipe shaped = new ShapedRecipe(new ItemStack(Material.TNT, 1));
+        int rule = rules.match(shaped, new ItemStack[] {null, null, null, null, sulphur, gravel, null, gravel, null});
+        assertEquals("Shaped rule should match", "gravel_tnt", rules.getId(rule));
+        assertEquals("Other matrices should not match", RecipeRules.NO_RULE,
+                rules.match(shaped, new ItemStack[] {gravel, sulphur, gravel, null}));
+
+        ShapelessRecipe shapeless = new ShapelessRecipe(new ItemStack(Material.WOOL, 1, (short) 14));
+        rule = rules.match(shapeless, new ItemStack[] {null, new ItemStack(Material.INK_SACK, 1, (short) 1), null,
+                new ItemStack(Material.WOOL, 1)});
+        assertEquals("Shapeless rule should match", "red_wool", rules.getId(rule));
+    }
+
+    /**
+     * Shapes should match their mirror image.
+     */
+    @Test
+    public void testMirroredMatch() {
+        ItemStack sulphur = new ItemStack(Material.SULPHUR, 1);
+        ItemStack gravel = new ItemStack(Material.GRAVEL, 1);
+        int rule = rules.match(new ShapedRecipe(new ItemStack(Material.TNT, 1)),
+                new ItemStack[] {gravel, sulphur, null, gravel});
+        assertEquals("Mirrored shape should match", "gravel_tnt", rules.getId(rule));
+    }
+
+    /**
+     * Ingredients with any data value should match every data value, after
+     * rules with exact data values.
+     */
+    @Test
+    public void testAnyDataMatch() {
+        ShapedRecipe bed = new ShapedRecipe(new ItemStack(Material.BED, 1));
+        ItemStack redWool = new ItemStack(Material.WOOL, 1, (short) 14);
+        ItemStack whiteWool = new ItemStack(Material.WOOL, 1, (short) 0);
+        ItemStack oak = new ItemStack(Material.WOOD, 1, (short) 0);
+        ItemStack birch = new ItemStack(Material.WOOD, 1, (short) 2);
+        int rule = rules.match(bed, new ItemStack[] {redWool, redWool, redWool, oak, birch, oak, null, null, null});
+        assertEquals("Any data values should match", "bed", rules.getId(rule));
+        rule = rules.match(bed, new ItemStack[] {null, null, null, whiteWool, whiteWool, whiteWool, birch, birch,
+                birch});
+        assertEquals("Exact data values should take precedence", "white_bed", rules.getId(rule));
+        assertEquals("Other materials should not match", RecipeRules.NO_RULE, rules.match(bed, new ItemStack[] {
+                redWool, redWool, redWool, oak, new ItemStack(Material.LOG, 1), oak, null, null, null}));
+    }
+
+    /**
+     * Permissions should override the rule's allowed setting.
+     */
+    @Test
+    public void testDecide() {
+        Player player = mock(Player.class);
+        int rule = rules.match(new ShapedRecipe(new ItemStack(Material.TNT, 1)), new ItemStack[] {
+                new ItemStack(Material.SULPHUR, 1), new ItemStack(Material.GRAVEL, 1),
+                new ItemStack(Material.GRAVEL, 1), null});
+        assertEquals("Rule setting should apply", CraftDecision.DENIED, rules.decide(rule, player));
+        when(player.isPermissionSet("incraftible.recipe.gravel_tnt")).thenReturn(true);
+        when(player.hasPermission("incraftible.recipe.gravel_tnt")).thenReturn(true);
+        assertEquals("Permission should override the rule", CraftDecision.ALLOWED, rules.decide(rule, player));
+    }
+}
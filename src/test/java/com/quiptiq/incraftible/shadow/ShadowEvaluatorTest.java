@@ -0,0 +1,124 @@
+package com.quiptiq.incraftible.shadow;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.ConfigSnapshot;
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Tests the ShadowEvaluator and ShadowReport classes.
+ */
+public class ShadowEvaluatorTest {
+    /**
+     * Unset permissions are allowed under ALL, denied under NONE, and under
+     * STANDARD allowed only for permissions granted by default.
+     */
+    @Test
+    public void testEvaluateUnsetPermissions() {
+        ShadowEvaluator evaluator = createEvaluator("none");
+        ShadowSample unset = new ShadowSample("alice", null, null, Material.TNT, (byte) 0, null, false,
+                CraftDecision.UNSET, true);
+        ShadowSample granted = new ShadowSample("alice", null, null, Material.TNT, (byte) 0, null, false,
+                CraftDecision.ALLOWED, true);
+        assertTrue(evaluator.evaluate(unset, createSnapshot("all")));
+        assertFalse(evaluator.evaluate(unset, createSnapshot("none")));
+        assertTrue("Granted permissions should stand under every strategy",
+                evaluator.evaluate(granted, createSnapshot("none")));
+
+        ConfigSnapshot standard = createSnapshot("standard");
+        assertTrue("Standard permissions should be granted by default", evaluator.evaluate(unset, standard));
+        assertFalse("Other permissions should not be granted by default", evaluator.evaluate(
+                new ShadowSample("alice", null, null, Material.BED, (byte) 0, null, false,
+                        CraftDecision.UNSET, true), standard));
+        assertFalse("Denied permissions should stand under the standard strategy", evaluator.evaluate(
+                new ShadowSample("alice", null, null, Material.TNT, (byte) 0, null, false,
+                        CraftDecision.DENIED, false), standard));
+    }
+
+    /**
+     * The candidate's policy for the sample's world should apply: its
+     * strategy, its material lists, and its regions containing the player.
+     */
+    @Test
+    public void testEvaluateWorldPolicies() {
+        ShadowEvaluator evaluator = createEvaluator("all");
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("craft.default", "all");
+        config.set("worlds.creative.craft.default", "none");
+        config.set("worlds.creative.allow", Arrays.asList("bed"));
+        config.set("regions.spawn.world", "world");
+        config.set("regions.spawn.min", Arrays.asList(-16, 0, -16));
+        config.set("regions.spawn.max", Arrays.asList(16, 127, 16));
+        config.set("regions.spawn.deny", Arrays.asList("tnt"));
+        ConfigSnapshot candidate = ConfigSnapshot.fromConfig(config);
+
+        assertFalse("World strategy should apply", evaluator.evaluate(new ShadowSample("alice", "creative", null,
+                Material.TNT, (byte) 0, null, false, CraftDecision.UNSET, true), candidate));
+        assertTrue("World material list should apply", evaluator.evaluate(new ShadowSample("alice", "creative",
+                null, Material.BED, (byte) 0, null, false, CraftDecision.UNSET, false), candidate));
+        assertFalse("Region containing the player should apply", evaluator.evaluate(new ShadowSample("alice",
+                "world", new int[] {0, 64, 0}, Material.TNT, (byte) 0, null, false, CraftDecision.UNSET, true),
+                candidate));
+        assertTrue("Regions elsewhere should not apply", evaluator.evaluate(new ShadowSample("alice", "world",
+                new int[] {100, 64, 0}, Material.TNT, (byte) 0, null, false, CraftDecision.UNSET, true), candidate));
+    }
+
+    /**
+     * Samples should not be taken or queued while the evaluator is stopped.
+     */
+    @Test
+    public void testStopped() {
+        ShadowEvaluator evaluator = new ShadowEvaluator("candidate", createSnapshot("none"),
+                Collections.<String> emptyList(), 1, 16, 1000);
+        assertFalse("Checks should not be sampled while stopped", evaluator.sample());
+        assertFalse("Samples should not be queued while stopped", evaluator.offer(null, Material.TNT, (byte) 0,
+                null, null, CraftDecision.UNSET, true));
+        assertEquals(0, evaluator.getSampledCount());
+    }
+
+    /**
+     * Disagreements should be counted by direction, and the materials and
+     * players with the most listed first.
+     */
+    @Test
+    public void testReport() {
+        ShadowReport report = new ShadowReport();
+        report.record("alice", Material.TNT, true, false);
+        report.record("alice", Material.TNT, true, false);
+        report.record("bob", Material.BED, false, true);
+        report.record("bob", Material.WORKBENCH, true, true);
+        assertEquals(4, report.getEvaluatedCount());
+        assertEquals(2, report.getStricterCount());
+        assertEquals(1, report.getLooserCount());
+
+        List<String> lines = report.summary(1);
+        assertEquals("Totals, and a heading and single entry each for materials and players", 5, lines.size());
+        assertTrue("Material with most disagreements should be listed", lines.get(2).contains("TNT: 2 of 2"));
+        assertTrue("Player with most disagreements should be listed", lines.get(4).contains("alice: 2 of 2"));
+
+        report.clear();
+        assertEquals(0, report.getEvaluatedCount());
+        assertEquals("Only totals should be listed once cleared", 1, report.summary(1).size());
+    }
+
+    private static ShadowEvaluator createEvaluator(String strategy) {
+        return new ShadowEvaluator("candidate", createSnapshot(strategy), Arrays.asList("incraftible.craft.tnt"),
+                1, 16, 1000);
+    }
+
+    private static ConfigSnapshot createSnapshot(String strategy) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("craft.default", strategy);
+        return ConfigSnapshot.fromConfig(config);
+    }
+}
@@ -0,0 +1,68 @@
+package com.quiptiq.incraftible.stats;
+
+import static junit.framework.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the LatencyHistogram and StripedCounter classes.
+ */
+public class LatencyHistogramTest {
+    /**
+     * Percentiles should be reported as the upper bound of their bucket, never
+     * above the maximum recorded.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("Empty histogram should report zero", 0, histogram.getPercentile(0.5));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        assertEquals("All latencies should be counted", 100, histogram.getCount());
+        assertEquals("Median should be the bound of its bucket", 127, histogram.getPercentile(0.5));
+        assertEquals("99th percentile should be the bound of its bucket", 127, histogram.getPercentile(0.99));
+        assertEquals("Maximum should be exact", 5000, histogram.getMax());
+        assertEquals("Top percentile should not exceed the maximum", 5000, histogram.getPercentile(1.0));
+        histogram.reset();
+        assertEquals("Reset should discard latencies", 0, histogram.getCount());
+    }
+
+    /**
+     * Negative latencies should be recorded as zero.
+     */
+    @Test
+    public void testNegativeLatency() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals("Negative latency should be counted", 1, histogram.getCount());
+        assertEquals("Negative latency should be recorded as zero", 0, histogram.getMax());
+    }
+
+    /**
+     * Striped counts from several threads should sum to the total.
+     */
+    @Test
+    public void testStripedCounter() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        counter.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("Counts from all threads should be summed", 4000, counter.sum());
+        counter.reset();
+        assertEquals("Reset should clear the count", 0, counter.sum());
+    }
+}
@@ -0,0 +1,43 @@
+package com.quiptiq.incraftible.trace;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.List;
+
+import org.bukkit.Material;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Tests the TraceBuffer class.
+ */
+public class TraceBufferTest {
+    /**
+     * Once full, the oldest records should be overwritten and the remainder
+     * dumped oldest first.
+     */
+    @Test
+    public void testOverwriteOldest() {
+        TraceBuffer buffer = new TraceBuffer(2);
+        buffer.record("first", Material.APPLE, (byte) 0, "incraftible.craft.apple", CraftDecision.DENIED, false);
+        buffer.record("second", Material.CLAY, (byte) 0, "incraftible.craft.clay", CraftDecision.ALLOWED, true);
+        buffer.record("third", Material.WOOL, (byte) 5, "incraftible.craft.wool.lime", CraftDecision.UNSET, true);
+        List<String> lines = buffer.drain();
+        assertEquals("Buffer should hold only its capacity", 2, lines.size());
+        assertTrue("Oldest remaining record should be dumped first", lines.get(0).contains("second"));
+        assertTrue("Newest record should be dumped last", lines.get(1).contains("third"));
+    }
+
+    /**
+     * Draining the buffer should clear it.
+     */
+    @Test
+    public void testDrainClears() {
+        TraceBuffer buffer = new TraceBuffer(4);
+        buffer.record("player", Material.APPLE, (byte) 0, "incraftible.craft.apple", CraftDecision.DENIED, false);
+        buffer.drain();
+        assertEquals("Drained buffer should be empty", 0, buffer.size());
+    }
+}
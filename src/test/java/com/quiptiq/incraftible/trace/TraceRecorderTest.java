@@ -0,0 +1,142 @@
+package com.quiptiq.incraftible.trace;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.permissions.PermissionAttachmentInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Tests the TraceRecorder and TraceReader classes.
+ */
+public class TraceRecorderTest {
+    private static final String TEST_TRACE_DIR = "testTraceDir";
+
+    private File traceDir;
+
+    @Before
+    public void setUp() {
+        traceDir = new File(TEST_TRACE_DIR);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = traceDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        traceDir.delete();
+    }
+
+    /**
+     * Crafts should not be queued while the recorder is stopped, and should
+     * be dropped and counted beyond the queue capacity.
+     */
+    @Test
+    public void testOfferWhenStoppedOrFull() {
+        TraceRecorder recorder = new TraceRecorder(traceDir, 1, 10000);
+        Player player = createPlayer("stopped", Collections.<PermissionAttachmentInfo> emptySet());
+        assertFalse("Craft should not be queued while stopped",
+                recorder.offer(player, Material.TNT, (byte) 0, CraftDecision.DENIED, false, false));
+        recorder.start();
+        try {
+            assertTrue("First craft should be queued",
+                    recorder.offer(player, Material.TNT, (byte) 0, CraftDecision.DENIED, false, false));
+            assertFalse("Craft beyond capacity should be dropped",
+                    recorder.offer(player, Material.TNT, (byte) 0, CraftDecision.DENIED, false, false));
+            assertEquals("Dropped crafts should be counted", 1, recorder.getDroppedCount());
+        } finally {
+            recorder.stop();
+        }
+    }
+
+    /**
+     * Recorded crafts should be read back in order, with the permissions of
+     * each player on the player's first record.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        TraceRecorder recorder = new TraceRecorder(traceDir, 16, 10);
+        Set<PermissionAttachmentInfo> permissions = new HashSet<PermissionAttachmentInfo>();
+        Player alice = createPlayer("alice", permissions);
+        permissions.add(new PermissionAttachmentInfo(alice, "incraftible.craft.tnt", null, false));
+        permissions.add(new PermissionAttachmentInfo(alice, "other.plugin.node", null, true));
+        World nether = mock(World.class);
+        when(nether.getName()).thenReturn("nether");
+        when(alice.getWorld()).thenReturn(nether);
+        Player bob = createPlayer("bob", Collections.<PermissionAttachmentInfo> emptySet());
+        recorder.start();
+        recorder.offer(alice, Material.TNT, (byte) 0, CraftDecision.DENIED, false, false);
+        recorder.offer(bob, Material.INK_SACK, (byte) 4, CraftDecision.UNSET, false, true);
+        recorder.offer(alice, Material.WOOD_AXE, (byte) 0, CraftDecision.ALLOWED, true, true);
+        recorder.stop();
+
+        File[] traces = traceDir.listFiles();
+        assertEquals("One trace should be written", 1, traces.length);
+        TraceReader reader = new TraceReader(traces[0]);
+        try {
+            TraceRecord first = reader.read();
+            assertEquals("alice", first.getPlayerName());
+            assertEquals(Material.TNT, first.getMaterial());
+            assertEquals(CraftDecision.DENIED, first.getDecision());
+            assertFalse(first.isAllowed());
+            assertFalse("Permission decision should not be ruled", first.isRuled());
+            assertEquals("nether", first.getWorldName());
+            assertNotNull("First record should carry permissions", first.getPermissions());
+            assertEquals("Only Incraftible permissions should be captured",
+                    Collections.singletonMap("incraftible.craft.tnt", false), first.getPermissions());
+
+            TraceRecord second = reader.read();
+            assertEquals("bob", second.getPlayerName());
+            assertEquals(Material.INK_SACK, second.getMaterial());
+            assertEquals(4, second.getData());
+            assertEquals(CraftDecision.UNSET, second.getDecision());
+            assertTrue(second.isAllowed());
+            assertNull("Unknown world should be read as such", second.getWorldName());
+            assertTrue("Second player's first record should carry permissions",
+                    second.getPermissions().isEmpty());
+
+            TraceRecord third = reader.read();
+            assertEquals(alice.getUniqueId(), third.getPlayerId());
+            assertEquals(Material.WOOD_AXE, third.getMaterial());
+            assertEquals(CraftDecision.ALLOWED, third.getDecision());
+            assertTrue("Rule decision should be read as such", third.isRuled());
+            assertEquals("nether", third.getWorldName());
+            assertNull("Later records should not carry permissions", third.getPermissions());
+            assertTrue("Timestamps should not go backwards", third.getTimestamp() >= first.getTimestamp());
+
+            assertNull("Trace should end", reader.read());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Player createPlayer(String name, Set<PermissionAttachmentInfo> permissions) {
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getEffectivePermissions()).thenReturn(permissions);
+        return player;
+    }
+}
@@ -0,0 +1,106 @@
+package com.quiptiq.incraftible.world;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.ConfigSnapshot;
+import com.quiptiq.incraftible.CraftDecision;
+
+/**
+ * Tests the Region and RegionIndex classes.
+ */
+public class RegionIndexTest {
+    /**
+     * Regions should decide materials only for blocks inside them, including
+     * blocks on their faces and at negative coordinates.
+     */
+    @Test
+    public void testFind() {
+        Region spawn = createRegion("spawn", new int[] {-20, 0, -20}, new int[] {20, 127, 20}, Material.TNT,
+                CraftDecision.DENIED);
+        RegionIndex index = RegionIndex.build(Arrays.asList(spawn));
+        assertSame(spawn, index.find(Material.TNT, 0, 64, 0));
+        assertSame("Corners should be inside the region", spawn, index.find(Material.TNT, -20, 0, -20));
+        assertNull("Blocks outside the region should not be decided", index.find(Material.TNT, -21, 64, 0));
+        assertNull("Blocks above the region should not be decided", index.find(Material.TNT, 0, 128, 0));
+        assertNull("Other materials should not be decided", index.find(Material.WORKBENCH, 0, 64, 0));
+        assertTrue(RegionIndex.EMPTY.isEmpty());
+        assertNull(RegionIndex.EMPTY.find(Material.TNT, 0, 64, 0));
+    }
+
+    /**
+     * Where regions overlap, a region denying a material should take
+     * precedence over one allowing it.
+     */
+    @Test
+    public void testDenialPrecedence() {
+        Region allowing = createRegion("arena", new int[] {0, 0, 0}, new int[] {100, 127, 100}, Material.TNT,
+                CraftDecision.ALLOWED);
+        Region denying = createRegion("pit", new int[] {40, 0, 40}, new int[] {60, 127, 60}, Material.TNT,
+                CraftDecision.DENIED);
+        RegionIndex index = RegionIndex.build(Arrays.asList(allowing, denying));
+        assertSame(denying, index.find(Material.TNT, 50, 64, 50));
+        assertSame(allowing, index.find(Material.TNT, 10, 64, 10));
+    }
+
+    /**
+     * Regions too large to be entered in every chunk should still be found,
+     * alongside the regions entered in the grid.
+     */
+    @Test
+    public void testLargeRegions() {
+        int size = 16 * ((int) Math.sqrt(RegionIndex.MAX_INDEXED_CHUNKS) + 1);
+        Region large = createRegion("wilderness", new int[] {-size, 0, -size}, new int[] {size, 127, size},
+                Material.DIAMOND_SWORD, CraftDecision.DENIED);
+        List<Region> regions = new ArrayList<Region>();
+        regions.add(large);
+        for (int i = 0; i < 1000; i++) {
+            regions.add(createRegion("plot" + i, new int[] {i * 32, 0, 0}, new int[] {i * 32 + 15, 127, 15},
+                    Material.TNT, CraftDecision.DENIED));
+        }
+        RegionIndex index = RegionIndex.build(regions);
+        assertSame(large, index.find(Material.DIAMOND_SWORD, -size, 64, size));
+        assertSame("Cached chunks should give the same result", large,
+                index.find(Material.DIAMOND_SWORD, -size, 64, size));
+        assertEquals("plot500", index.find(Material.TNT, 500 * 32, 64, 8).getId());
+        assertEquals("Grid regions and large regions should both be found for a chunk", 2,
+                index.getChunkRegions(0, 0).length);
+    }
+
+    /**
+     * Regions should be read from the config into the policy of their world.
+     */
+    @Test
+    public void testConfiguredRegions() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("regions.spawn.world", "world");
+        config.set("regions.spawn.min", Arrays.asList(-64, 0, -64));
+        config.set("regions.spawn.max", Arrays.asList(64, 127, 64));
+        config.set("regions.spawn.deny", Arrays.asList("tnt"));
+        config.set("regions.broken.world", "world");
+        config.set("regions.broken.min", Arrays.asList(0, 0));
+        ConfigSnapshot snapshot = ConfigSnapshot.fromConfig(config);
+        WorldPolicy world = snapshot.getWorldPolicies().get("world");
+        assertEquals("spawn", world.getRegions().find(Material.TNT, 0, 64, 0).getId());
+        assertNull("Invalid regions should be ignored", world.getRegions().find(Material.TNT, 0, 64, 100));
+        assertSame("World without a section should take the default strategy",
+                snapshot.getDefaultWorldPolicy().getPermissionsStrategy(), world.getPermissionsStrategy());
+    }
+
+    private static Region createRegion(String id, int[] corner, int[] oppositeCorner, Material material,
+            CraftDecision decision) {
+        CraftDecision[] materialDecisions = new CraftDecision[Material.values().length];
+        materialDecisions[material.ordinal()] = decision;
+        return new Region(id, "world", corner, oppositeCorner, materialDecisions);
+    }
+}
@@ -0,0 +1,92 @@
+package com.quiptiq.incraftible.world;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.Test;
+
+import com.quiptiq.incraftible.ConfigSnapshot;
+import com.quiptiq.incraftible.CraftDecision;
+import com.quiptiq.incraftible.PermissionsStrategy;
+import com.quiptiq.incraftible.message.Message;
+
+/**
+ * Tests the WorldPolicy, WorldPolicies and WorldIds classes.
+ */
+public class WorldPolicyTest {
+    /**
+     * Configured world settings should override the rest of the config, and
+     * settings left out should be taken from it.
+     */
+    @Test
+    public void testConfiguredWorld() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("craft.default", "all");
+        config.set("messages.disallowed", "No %s");
+        config.set("worlds.creative.craft.default", "none");
+        config.set("worlds.creative.allow", Arrays.asList("workbench"));
+        config.set("worlds.creative.deny", Arrays.asList("tnt", "workbench"));
+        config.set("worlds.event.messages.disallowed", "No %s during the event");
+        ConfigSnapshot snapshot = ConfigSnapshot.fromConfig(config);
+
+        WorldPolicy creative = snapshot.getWorldPolicies().get("creative");
+        assertEquals("Configured strategy should be used", PermissionsStrategy.NONE,
+                creative.getPermissionsStrategy());
+        assertSame("Unconfigured message should be taken from the config",
+                snapshot.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED),
+                creative.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED));
+        assertEquals(CraftDecision.DENIED, creative.getMaterialDecision(Material.TNT));
+        assertEquals("Denial should take precedence over allowing", CraftDecision.DENIED,
+                creative.getMaterialDecision(Material.WORKBENCH));
+        assertNull("Unlisted materials should be left to permissions", creative.getMaterialDecision(Material.BED));
+
+        WorldPolicy event = snapshot.getWorldPolicies().get("event");
+        assertEquals("Unconfigured strategy should be taken from the config", PermissionsStrategy.ALL,
+                event.getPermissionsStrategy());
+        assertEquals("No %s during the event",
+                event.getMessageTemplate(Message.PLAYER_MESSAGE_DISALLOWED).getFormat());
+    }
+
+    /**
+     * Worlds should get the policy configured for their name, keeping their
+     * id across unloads, and other worlds the default policy.
+     */
+    @Test
+    public void testCompiledPolicies() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("worlds.creative.craft.default", "none");
+        ConfigSnapshot snapshot = ConfigSnapshot.fromConfig(config);
+        WorldIds worldIds = new WorldIds();
+        World survival = mockWorld("survival");
+        World creative = mockWorld("creative");
+        assertEquals(0, worldIds.load(survival));
+        assertEquals(1, worldIds.load(creative));
+
+        WorldPolicies policies = WorldPolicies.compile(snapshot.getDefaultWorldPolicy(),
+                snapshot.getWorldPolicies(), worldIds.getNames());
+        assertSame(snapshot.getWorldPolicies().get("creative"), policies.get(worldIds.getId(creative)));
+        assertSame(snapshot.getDefaultWorldPolicy(), policies.get(worldIds.getId(survival)));
+        assertSame("Worlds that aren't loaded should have the default policy", snapshot.getDefaultWorldPolicy(),
+                policies.get(worldIds.getId(mockWorld("nether"))));
+        assertSame(snapshot.getDefaultWorldPolicy(), policies.get(worldIds.getId(null)));
+
+        worldIds.unload(creative);
+        assertEquals("Unloaded worlds should have no id", WorldIds.NO_ID, worldIds.getId(creative));
+        World reloaded = mockWorld("creative");
+        assertEquals("Reloaded worlds should keep their id", 1, worldIds.load(reloaded));
+    }
+
+    private static World mockWorld(String name) {
+        World world = mock(World.class);
+        when(world.getName()).thenReturn(name);
+        return world;
+    }
+}